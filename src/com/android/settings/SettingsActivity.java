@@ -27,15 +27,17 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.pm.ActivityInfo;
+import android.content.pm.FeatureInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.res.Resources.Theme;
 import android.graphics.drawable.Icon;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -56,6 +58,7 @@ import com.android.settings.applications.manageapplications.ManageApplications;
 import com.android.settings.core.OnActivityResultListener;
 import com.android.settings.core.SettingsBaseActivity;
 import com.android.settings.core.SubSettingLauncher;
+import com.android.settings.core.TileEnabledStateUpdater;
 import com.android.settings.core.gateway.SettingsGateway;
 import com.android.settings.dashboard.DashboardFeatureProvider;
 import com.android.settings.homepage.TopLevelSettings;
@@ -71,6 +74,7 @@ import com.google.android.setupcompat.util.WizardManagerHelper;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 
 public class SettingsActivity extends SettingsBaseActivity
@@ -592,66 +596,58 @@ public class SettingsActivity extends SettingsBaseActivity
         // Generally the items that are will be changing from these updates will
         // not be in the top list of tiles, so run it in the background and the
         // SettingsBaseActivity will pick up on the updates automatically.
-        AsyncTask.execute(() -> doUpdateTilesList());
+        final boolean batteryPresent = mBatteryPresent;
+        TileEnabledStateUpdater.getInstance(this).requestUpdate(
+                () -> getTileEnabledStates(batteryPresent),
+                () -> {
+                    if (!isDestroyed()) {
+                        updateCategories();
+                    }
+                });
     }
 
-    private void doUpdateTilesList() {
-        PackageManager pm = getPackageManager();
-        final UserManager um = UserManager.get(this);
-        final boolean isAdmin = um.isAdminUser();
-        boolean somethingChanged = false;
+    /**
+     * @return the enabled state each tile of Settings should have.
+     */
+    @VisibleForTesting
+    Map<ComponentName, Boolean> getTileEnabledStates(boolean batteryPresent) {
+        final ArrayMap<ComponentName, Boolean> states = new ArrayMap<>();
+        final ArraySet<String> features = new ArraySet<>();
+        for (FeatureInfo feature : getPackageManager().getSystemAvailableFeatures()) {
+            if (feature.name != null) {
+                features.add(feature.name);
+            }
+        }
         final String packageName = getPackageName();
-        final StringBuilder changedList = new StringBuilder();
-        somethingChanged = setTileEnabled(changedList,
-                new ComponentName(packageName, WifiSettingsActivity.class.getName()),
-                pm.hasSystemFeature(PackageManager.FEATURE_WIFI), isAdmin) || somethingChanged;
+        final boolean isMonkeyRunning = Utils.isMonkeyRunning();
 
-        somethingChanged = setTileEnabled(changedList, new ComponentName(packageName,
+        states.put(new ComponentName(packageName, WifiSettingsActivity.class.getName()),
+                features.contains(PackageManager.FEATURE_WIFI));
+        states.put(new ComponentName(packageName,
                         Settings.BluetoothSettingsActivity.class.getName()),
-                pm.hasSystemFeature(PackageManager.FEATURE_BLUETOOTH), isAdmin)
-                || somethingChanged;
-
-        // Enable DataUsageSummaryActivity if the data plan feature flag is turned on otherwise
-        // enable DataPlanUsageSummaryActivity.
-        somethingChanged = setTileEnabled(changedList,
-                new ComponentName(packageName, Settings.DataUsageSummaryActivity.class.getName()),
-                Utils.isBandwidthControlEnabled() /* enabled */,
-                isAdmin) || somethingChanged;
-
-        somethingChanged = setTileEnabled(changedList,
-                new ComponentName(packageName,
+                features.contains(PackageManager.FEATURE_BLUETOOTH));
+        states.put(new ComponentName(packageName,
+                        Settings.DataUsageSummaryActivity.class.getName()),
+                Utils.isBandwidthControlEnabled());
+        states.put(new ComponentName(packageName,
                         Settings.ConnectedDeviceDashboardActivity.class.getName()),
-                !UserManager.isDeviceInDemoMode(this) /* enabled */,
-                isAdmin) || somethingChanged;
-
-        somethingChanged = setTileEnabled(changedList, new ComponentName(packageName,
+                !UserManager.isDeviceInDemoMode(this));
+        states.put(new ComponentName(packageName,
                         Settings.PowerUsageSummaryActivity.class.getName()),
-                mBatteryPresent, isAdmin) || somethingChanged;
-
-        somethingChanged = setTileEnabled(changedList, new ComponentName(packageName,
-                        Settings.DataUsageSummaryActivity.class.getName()),
-                Utils.isBandwidthControlEnabled(), isAdmin)
-                || somethingChanged;
-
-        somethingChanged = setTileEnabled(changedList, new ComponentName(packageName,
+                batteryPresent);
+        states.put(new ComponentName(packageName,
                         Settings.UserSettingsActivity.class.getName()),
                 UserHandle.MU_ENABLED && UserManager.supportsMultipleUsers()
-                        && !Utils.isMonkeyRunning(), isAdmin)
-                || somethingChanged;
-
-        final boolean showDev = DevelopmentSettingsEnabler.isDevelopmentSettingsEnabled(this)
-                && !Utils.isMonkeyRunning();
-        somethingChanged = setTileEnabled(changedList, new ComponentName(packageName,
+                        && !isMonkeyRunning);
+        states.put(new ComponentName(packageName,
                         Settings.DevelopmentSettingsDashboardActivity.class.getName()),
-                showDev, isAdmin)
-                || somethingChanged;
-
-        somethingChanged = setTileEnabled(changedList, new ComponentName(packageName,
+                DevelopmentSettingsEnabler.isDevelopmentSettingsEnabled(this)
+                        && !isMonkeyRunning);
+        states.put(new ComponentName(packageName,
                         Settings.WifiDisplaySettingsActivity.class.getName()),
-                WifiDisplaySettings.isAvailable(this), isAdmin)
-                || somethingChanged;
+                WifiDisplaySettings.isAvailable(this));
 
-        if (UserHandle.MU_ENABLED && !isAdmin) {
+        if (UserHandle.MU_ENABLED && !UserManager.get(this).isAdminUser()) {
             // When on restricted users, disable all extra categories (but only the settings ones).
             final List<DashboardCategory> categories = mDashboardFeatureProvider.getAllCategories();
             synchronized (categories) {
@@ -660,45 +656,26 @@ public class SettingsActivity extends SettingsBaseActivity
                     for (int i = 0; i < tileCount; i++) {
                         final ComponentName component = category.getTile(i)
                                 .getIntent().getComponent();
-                        final String name = component.getClassName();
-                        final boolean isEnabledForRestricted = ArrayUtils.contains(
-                                SettingsGateway.SETTINGS_FOR_RESTRICTED, name);
                         if (packageName.equals(component.getPackageName())
-                                && !isEnabledForRestricted) {
-                            somethingChanged =
-                                    setTileEnabled(changedList, component, false, isAdmin)
-                                            || somethingChanged;
+                                && !isEnabledForRestricted(component)) {
+                            states.put(component, false);
                         }
                     }
                 }
             }
+            // Allowed tiles keep the state computed above.
+            for (int i = 0; i < states.size(); i++) {
+                if (!isEnabledForRestricted(states.keyAt(i))) {
+                    states.setValueAt(i, false);
+                }
+            }
         }
-
-        // Final step, refresh categories.
-        if (somethingChanged) {
-            Log.d(LOG_TAG, "Enabled state changed for some tiles, reloading all categories "
-                    + changedList.toString());
-            updateCategories();
-        } else {
-            Log.d(LOG_TAG, "No enabled state changed, skipping updateCategory call");
-        }
+        return states;
     }
 
-    /**
-     * @return whether or not the enabled state actually changed.
-     */
-    private boolean setTileEnabled(StringBuilder changedList, ComponentName component,
-            boolean enabled, boolean isAdmin) {
-        if (UserHandle.MU_ENABLED && !isAdmin && getPackageName().equals(component.getPackageName())
-                && !ArrayUtils.contains(SettingsGateway.SETTINGS_FOR_RESTRICTED,
-                component.getClassName())) {
-            enabled = false;
-        }
-        boolean changed = setTileEnabled(component, enabled);
-        if (changed) {
-            changedList.append(component.toShortString()).append(",");
-        }
-        return changed;
+    private static boolean isEnabledForRestricted(ComponentName component) {
+        return ArrayUtils.contains(SettingsGateway.SETTINGS_FOR_RESTRICTED,
+                component.getClassName());
     }
 
     private void getMetaData() {
@@ -32,8 +32,18 @@ import android.telephony.TelephonyManager;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.applications.AppIconCache;
 import com.android.settings.applications.ProcStatsData;
+import com.android.settings.core.AvailabilityCache;
+import com.android.settings.core.PreferenceXmlMetadataCache;
+import com.android.settings.core.instrumentation.SettingsMetricsFeatureProvider;
 import com.android.settings.fuelgauge.batterytip.AnomalyConfigJobService;
+import com.android.settings.fuelgauge.batterytip.BatteryTipCache;
+import com.android.settings.homepage.contextualcards.CardEvaluationExecutor;
+import com.android.settings.overlay.FeatureFactory;
+import com.android.settings.slices.SliceBackgroundWorker;
+import com.android.settings.slices.SliceDataCache;
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.net.DataUsageController;
 
 import org.json.JSONArray;
@@ -58,6 +68,22 @@ public class SettingsDumpService extends Service {
     @VisibleForTesting
     static final String KEY_ANOMALY_DETECTION = "anomaly_detection";
     @VisibleForTesting
+    static final String KEY_PREFERENCE_METADATA_CACHE = "preference_metadata_cache";
+    @VisibleForTesting
+    static final String KEY_CONTEXTUAL_CARD_EVALUATION = "contextual_card_evaluation";
+    @VisibleForTesting
+    static final String KEY_SLICE_DATA_CACHE = "slice_data_cache";
+    @VisibleForTesting
+    static final String KEY_INTELLIGENCE_LOG_WRITER = "intelligence_log_writer";
+    @VisibleForTesting
+    static final String KEY_APP_ICON_CACHE = "app_icon_cache";
+    @VisibleForTesting
+    static final String KEY_AVAILABILITY_CACHE = "availability_cache";
+    @VisibleForTesting
+    static final String KEY_SLICE_WORKER_UPDATE_RATES = "slice_worker_update_rates";
+    @VisibleForTesting
+    static final String KEY_BATTERY_TIP_CACHE = "battery_tip_cache";
+    @VisibleForTesting
     static final Intent BROWSER_INTENT =
             new Intent("android.intent.action.VIEW", Uri.parse("http://"));
 
@@ -77,6 +103,22 @@ public class SettingsDumpService extends Service {
             dump.put(KEY_MEMORY, dumpMemory());
             dump.put(KEY_DEFAULT_BROWSER_APP, dumpDefaultBrowser());
             dump.put(KEY_ANOMALY_DETECTION, dumpAnomalyDetection());
+            dump.put(KEY_PREFERENCE_METADATA_CACHE,
+                    PreferenceXmlMetadataCache.getInstance(this).dump());
+            dump.put(KEY_CONTEXTUAL_CARD_EVALUATION,
+                    CardEvaluationExecutor.getInstance(this).dump());
+            dump.put(KEY_SLICE_DATA_CACHE, SliceDataCache.getInstance().dump());
+            dump.put(KEY_APP_ICON_CACHE, AppIconCache.getInstance(this).dump());
+            dump.put(KEY_AVAILABILITY_CACHE, AvailabilityCache.getInstance(this).dump());
+            dump.put(KEY_SLICE_WORKER_UPDATE_RATES, SliceBackgroundWorker.dumpUpdateRates());
+            dump.put(KEY_BATTERY_TIP_CACHE, BatteryTipCache.getInstance(this).dump());
+            final MetricsFeatureProvider metricsFeatureProvider =
+                    FeatureFactory.getFactory(this).getMetricsFeatureProvider();
+            if (metricsFeatureProvider instanceof SettingsMetricsFeatureProvider) {
+                dump.put(KEY_INTELLIGENCE_LOG_WRITER,
+                        ((SettingsMetricsFeatureProvider) metricsFeatureProvider)
+                                .dumpIntelligenceLogWriter());
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -45,6 +45,7 @@ import android.security.KeyChain;
 import android.security.KeyChain.KeyChainConnection;
 import android.util.ArraySet;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -62,6 +63,8 @@ import android.widget.Switch;
 import android.widget.TabHost;
 import android.widget.TextView;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.internal.annotations.GuardedBy;
 import com.android.internal.app.UnlaunchableAppActivity;
 import com.android.internal.widget.LockPatternUtils;
@@ -70,9 +73,16 @@ import com.android.settings.core.InstrumentedFragment;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.IntConsumer;
 
 public class TrustedCredentialsSettings extends InstrumentedFragment
@@ -91,6 +101,20 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
     private static final String USER_ACTION = "com.android.settings.TRUSTED_CREDENTIALS_USER";
     private static final int REQUEST_CONFIRM_CREDENTIALS = 1;
 
+    private static final int CERT_DECODE_THREADS = 4;
+    private static final long CERT_DECODE_KEEP_ALIVE_SECONDS = 10L;
+    // Certificates are fetched and decoded in parallel, Binder calls to KeyChain included.
+    private static final ThreadPoolExecutor sCertDecodeExecutor = new ThreadPoolExecutor(
+            CERT_DECODE_THREADS, CERT_DECODE_THREADS, CERT_DECODE_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    static {
+        sCertDecodeExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    // Decoded certificates of the previous loads, kept across fragment instances.
+    private static final CertInfoCache sCertInfoCache = new CertInfoCache();
+
     @Override
     public int getMetricsCategory() {
         return SettingsEnums.TRUSTED_CREDENTIALS;
@@ -164,7 +188,13 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
         @Override
         public void onReceive(Context context, Intent intent) {
             final String action = intent.getAction();
-            if (Intent.ACTION_MANAGED_PROFILE_AVAILABLE.equals(action) ||
+            if (KeyChain.ACTION_TRUST_STORE_CHANGED.equals(action)) {
+                // Cached certificates are checked against their encoding, so reloading after
+                // a change, including one made by this screen, decodes only what changed.
+                for (GroupAdapter adapter : mGroupAdapters) {
+                    adapter.load();
+                }
+            } else if (Intent.ACTION_MANAGED_PROFILE_AVAILABLE.equals(action) ||
                     Intent.ACTION_MANAGED_PROFILE_UNAVAILABLE.equals(action) ||
                     Intent.ACTION_MANAGED_PROFILE_UNLOCKED.equals(action)) {
                 for (GroupAdapter adapter : mGroupAdapters) {
@@ -202,6 +232,7 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
         filter.addAction(Intent.ACTION_MANAGED_PROFILE_AVAILABLE);
         filter.addAction(Intent.ACTION_MANAGED_PROFILE_UNAVAILABLE);
         filter.addAction(Intent.ACTION_MANAGED_PROFILE_UNLOCKED);
+        filter.addAction(KeyChain.ACTION_TRUST_STORE_CHANGED);
         activity.registerReceiver(mWorkProfileChangedReceiver, filter);
 
         activity.setTitle(R.string.trusted_credentials);
@@ -664,6 +695,8 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
         }
 
         private class AliasLoader extends AsyncTask<Void, Integer, SparseArray<List<CertHolder>>> {
+            // Profiles fully loaded but not yet shown, guarded by itself.
+            private final SparseArray<List<CertHolder>> mLoadedCertHolders = new SparseArray<>();
             private ProgressBar mProgressBar;
             private View mContentView;
             private Context mContext;
@@ -734,20 +767,41 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                                 certHoldersByProfile.put(profileId, new ArrayList<CertHolder>(0));
                                 continue;
                             }
-                            IKeyChainService service = keyChainConnection.getService();
-                            List<CertHolder> certHolders = new ArrayList<CertHolder>(max);
-                            final int aliasMax = aliases.size();
-                            for (int j = 0; j < aliasMax; ++j) {
-                                String alias = aliases.get(j);
-                                byte[] encodedCertificate = service.getEncodedCaCertificate(alias,
-                                        true);
-                                X509Certificate cert = KeyChain.toCertificate(encodedCertificate);
-                                certHolders.add(new CertHolder(service, mAdapter,
-                                        mTab, alias, cert, profileId));
-                                publishProgress(++progress, max);
+                            final IKeyChainService service = keyChainConnection.getService();
+                            final List<Future<CertHolder>> futures = new ArrayList<>();
+                            final ExecutorCompletionService<CertHolder> completionService =
+                                    new ExecutorCompletionService<>(sCertDecodeExecutor);
+                            for (String alias : aliases) {
+                                futures.add(completionService.submit(
+                                        () -> loadCertHolder(service, alias, profileId)));
+                            }
+                            final List<CertHolder> certHolders =
+                                    new ArrayList<CertHolder>(aliases.size());
+                            try {
+                                for (int j = 0; j < futures.size(); ++j) {
+                                    if (isCancelled()) {
+                                        return new SparseArray<List<CertHolder>>();
+                                    }
+                                    certHolders.add(completionService.take().get());
+                                    publishProgress(++progress, max);
+                                }
+                            } catch (ExecutionException e) {
+                                if (e.getCause() instanceof RemoteException) {
+                                    throw (RemoteException) e.getCause();
+                                }
+                                throw new IllegalStateException(e.getCause());
+                            } finally {
+                                for (Future<CertHolder> future : futures) {
+                                    future.cancel(true /* mayInterruptIfRunning */);
+                                }
                             }
                             Collections.sort(certHolders);
                             certHoldersByProfile.put(profileId, certHolders);
+                            // Show the certificates of this profile before loading the next one.
+                            synchronized (mLoadedCertHolders) {
+                                mLoadedCertHolders.put(profileId, certHolders);
+                            }
+                            publishProgress(progress, max);
                         }
                         return certHoldersByProfile;
                     }
@@ -759,6 +813,18 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                     return new SparseArray<List<CertHolder>>();
                 }
             }
+            private CertHolder loadCertHolder(IKeyChainService service, String alias,
+                    int profileId) throws RemoteException {
+                final byte[] encodedCertificate = service.getEncodedCaCertificate(alias, true);
+                CertInfo certInfo = sCertInfoCache.get(profileId, alias, encodedCertificate);
+                if (certInfo == null) {
+                    certInfo = new CertInfo(encodedCertificate,
+                            KeyChain.toCertificate(encodedCertificate));
+                    sCertInfoCache.put(profileId, alias, certInfo);
+                }
+                return new CertHolder(service, mAdapter, mTab, alias, certInfo, profileId);
+            }
+
             @Override protected void onProgressUpdate(Integer... progressAndMax) {
                 int progress = progressAndMax[0];
                 int max = progressAndMax[1];
@@ -766,6 +832,18 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                     mProgressBar.setMax(max);
                 }
                 mProgressBar.setProgress(progress);
+                synchronized (mLoadedCertHolders) {
+                    if (mLoadedCertHolders.size() == 0) {
+                        return;
+                    }
+                    for (int i = 0; i < mLoadedCertHolders.size(); ++i) {
+                        mCertHoldersByUserId.put(mLoadedCertHolders.keyAt(i),
+                                mLoadedCertHolders.valueAt(i));
+                    }
+                    mLoadedCertHolders.clear();
+                }
+                mAdapter.notifyDataSetChanged();
+                mContentView.setVisibility(View.VISIBLE);
             }
             @Override protected void onPostExecute(SparseArray<List<CertHolder>> certHolders) {
                 mCertHoldersByUserId.clear();
@@ -839,40 +917,18 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                            GroupAdapter adapter,
                            Tab tab,
                            String alias,
-                           X509Certificate x509Cert,
+                           CertInfo certInfo,
                            int profileId) {
             mProfileId = profileId;
             mService = service;
             mAdapter = adapter;
             mTab = tab;
             mAlias = alias;
-            mX509Cert = x509Cert;
-
-            mSslCert = new SslCertificate(x509Cert);
+            mX509Cert = certInfo.mX509Cert;
+            mSslCert = certInfo.mSslCert;
+            mSubjectPrimary = certInfo.mSubjectPrimary;
+            mSubjectSecondary = certInfo.mSubjectSecondary;
 
-            String cn = mSslCert.getIssuedTo().getCName();
-            String o = mSslCert.getIssuedTo().getOName();
-            String ou = mSslCert.getIssuedTo().getUName();
-            // if we have a O, use O as primary subject, secondary prefer CN over OU
-            // if we don't have an O, use CN as primary, empty secondary
-            // if we don't have O or CN, use DName as primary, empty secondary
-            if (!o.isEmpty()) {
-                if (!cn.isEmpty()) {
-                    mSubjectPrimary = o;
-                    mSubjectSecondary = cn;
-                } else {
-                    mSubjectPrimary = o;
-                    mSubjectSecondary = ou;
-                }
-            } else {
-                if (!cn.isEmpty()) {
-                    mSubjectPrimary = cn;
-                    mSubjectSecondary = "";
-                } else {
-                    mSubjectPrimary = mSslCert.getIssuedTo().getDName();
-                    mSubjectSecondary = "";
-                }
-            }
             try {
                 mDeleted = mTab.deleted(mService, mAlias);
             } catch (RemoteException e) {
@@ -917,6 +973,82 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
     }
 
 
+    /**
+     * Decoded certificate and the subject lines displayed for it.
+     */
+    @VisibleForTesting
+    static class CertInfo {
+        private final byte[] mEncoded;
+        private final X509Certificate mX509Cert;
+        private final SslCertificate mSslCert;
+        private final String mSubjectPrimary;
+        private final String mSubjectSecondary;
+
+        @VisibleForTesting
+        CertInfo(byte[] encoded, X509Certificate x509Cert) {
+            mEncoded = encoded;
+            mX509Cert = x509Cert;
+            mSslCert = new SslCertificate(x509Cert);
+
+            String cn = mSslCert.getIssuedTo().getCName();
+            String o = mSslCert.getIssuedTo().getOName();
+            String ou = mSslCert.getIssuedTo().getUName();
+            // if we have a O, use O as primary subject, secondary prefer CN over OU
+            // if we don't have an O, use CN as primary, empty secondary
+            // if we don't have O or CN, use DName as primary, empty secondary
+            if (!o.isEmpty()) {
+                if (!cn.isEmpty()) {
+                    mSubjectPrimary = o;
+                    mSubjectSecondary = cn;
+                } else {
+                    mSubjectPrimary = o;
+                    mSubjectSecondary = ou;
+                }
+            } else {
+                if (!cn.isEmpty()) {
+                    mSubjectPrimary = cn;
+                    mSubjectSecondary = "";
+                } else {
+                    mSubjectPrimary = mSslCert.getIssuedTo().getDName();
+                    mSubjectSecondary = "";
+                }
+            }
+        }
+
+        byte[] getEncoded() {
+            return mEncoded;
+        }
+    }
+
+    /**
+     * {@link CertInfo}s keyed by profile and alias. An entry is only returned for the exact
+     * certificate it was decoded from, so an alias reused for another certificate is decoded
+     * again.
+     */
+    @VisibleForTesting
+    static class CertInfoCache {
+        @VisibleForTesting
+        static final int MAX_ENTRIES = 1024;
+
+        private final LruCache<String, CertInfo> mCache = new LruCache<>(MAX_ENTRIES);
+
+        synchronized CertInfo get(int profileId, String alias, byte[] encoded) {
+            final CertInfo certInfo = mCache.get(getKey(profileId, alias));
+            if (certInfo == null || !Arrays.equals(certInfo.getEncoded(), encoded)) {
+                return null;
+            }
+            return certInfo;
+        }
+
+        synchronized void put(int profileId, String alias, CertInfo certInfo) {
+            mCache.put(getKey(profileId, alias), certInfo);
+        }
+
+        private static String getKey(int profileId, String alias) {
+            return profileId + "/" + alias;
+        }
+    }
+
     private boolean isTrustAllCaCertModeInProgress() {
         return mTrustAllCaUserId != UserHandle.USER_NULL;
     }
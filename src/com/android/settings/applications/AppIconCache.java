@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.IconDrawableFactory;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Process-wide cache of app icons and labels, shared by the screens listing apps.
+ *
+ * Icons are keyed by package, user, density and whether they are badged, and bounded by an
+ * estimate of their memory. Entries of a package are dropped when it is added, changed or
+ * removed, labels when the configuration changes. Concurrent asynchronous loads of the same icon
+ * share one load. The hit rate and memory use are reported by
+ * {@link com.android.settings.SettingsDumpService}.
+ */
+public class AppIconCache implements ComponentCallbacks2 {
+
+    @VisibleForTesting
+    static final int MAX_ICON_BYTES = 4 * 1024 * 1024;
+    @VisibleForTesting
+    static final int MAX_LABELS = 512;
+
+    private static AppIconCache sInstance;
+
+    private final Context mContext;
+    private final PackageManager mPackageManager;
+    private final IconDrawableFactory mIconDrawableFactory;
+    private final LruCache<String, Drawable> mIcons = new LruCache<String, Drawable>(
+            MAX_ICON_BYTES) {
+        @Override
+        protected int sizeOf(String key, Drawable icon) {
+            return getByteCount(icon);
+        }
+    };
+    private final LruCache<String, CharSequence> mLabels = new LruCache<>(MAX_LABELS);
+    // Icon key -> callbacks waiting for the icon being loaded.
+    private final ArrayMap<String, List<Consumer<Drawable>>> mPendingIcons = new ArrayMap<>();
+    // Incremented when entries are dropped, so that loads started before do not cache.
+    private int mGeneration;
+    private long mHitCount;
+    private long mMissCount;
+    private long mJoinedCount;
+    private long mInvalidationCount;
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            if (data != null) {
+                invalidate(data.getSchemeSpecificPart());
+            }
+        }
+    };
+
+    public static synchronized AppIconCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AppIconCache(context.getApplicationContext());
+            sInstance.register();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AppIconCache(Context context) {
+        mContext = context;
+        mPackageManager = context.getPackageManager();
+        mIconDrawableFactory = IconDrawableFactory.newInstance(context);
+    }
+
+    private void register() {
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        mContext.registerReceiverAsUser(mPackageReceiver, UserHandle.ALL, filter,
+                null /* broadcastPermission */, null /* scheduler */);
+        mContext.registerComponentCallbacks(this);
+    }
+
+    /**
+     * @return the badged icon of {@code info} for the user of its uid, loading it on a miss.
+     */
+    public Drawable getBadgedIcon(ApplicationInfo info) {
+        return getIcon(info, UserHandle.getUserId(info.uid), true /* badged */);
+    }
+
+    /**
+     * @return the icon of {@code info} for {@code userId}, loading it on a miss.
+     */
+    public Drawable getIcon(ApplicationInfo info, int userId, boolean badged) {
+        final String key = getIconKey(info.packageName, userId, badged);
+        final int generation;
+        synchronized (this) {
+            final Drawable icon = mIcons.get(key);
+            if (icon != null) {
+                mHitCount++;
+                return newDrawable(icon);
+            }
+            mMissCount++;
+            generation = mGeneration;
+        }
+        final Drawable icon = loadIcon(info, userId, badged);
+        cacheIcon(key, icon, generation);
+        return newDrawable(icon);
+    }
+
+    /**
+     * Delivers the badged icon of {@code info} to {@code callback} on the main thread, right
+     * away if it is cached. Requests of an icon already being loaded wait for that load.
+     */
+    public void loadBadgedIcon(ApplicationInfo info, Consumer<Drawable> callback) {
+        final int userId = UserHandle.getUserId(info.uid);
+        final String key = getIconKey(info.packageName, userId, true /* badged */);
+        final int generation;
+        synchronized (this) {
+            final Drawable icon = mIcons.get(key);
+            if (icon != null) {
+                mHitCount++;
+                callback.accept(newDrawable(icon));
+                return;
+            }
+            List<Consumer<Drawable>> callbacks = mPendingIcons.get(key);
+            if (callbacks != null) {
+                mJoinedCount++;
+                callbacks.add(callback);
+                return;
+            }
+            mMissCount++;
+            callbacks = new ArrayList<>();
+            callbacks.add(callback);
+            mPendingIcons.put(key, callbacks);
+            generation = mGeneration;
+        }
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final Drawable icon = loadIcon(info, userId, true /* badged */);
+            final List<Consumer<Drawable>> callbacks;
+            synchronized (this) {
+                callbacks = mPendingIcons.remove(key);
+            }
+            cacheIcon(key, icon, generation);
+            ThreadUtils.postOnMainThread(() -> {
+                for (Consumer<Drawable> pending : callbacks) {
+                    pending.accept(newDrawable(icon));
+                }
+            });
+        });
+    }
+
+    /**
+     * @return the label of {@code info}, loading it on a miss.
+     */
+    public CharSequence getLabel(ApplicationInfo info) {
+        final String key = getLabelKey(info.packageName, UserHandle.getUserId(info.uid));
+        final int generation;
+        synchronized (this) {
+            final CharSequence label = mLabels.get(key);
+            if (label != null) {
+                mHitCount++;
+                return label;
+            }
+            mMissCount++;
+            generation = mGeneration;
+        }
+        final CharSequence label = info.loadLabel(mPackageManager);
+        synchronized (this) {
+            if (generation == mGeneration && label != null) {
+                mLabels.put(key, label);
+            }
+        }
+        return label;
+    }
+
+    /**
+     * Drops the icons and labels of {@code packageName}, for all users.
+     */
+    public synchronized void invalidate(String packageName) {
+        final String prefix = packageName + "/";
+        for (String key : mIcons.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                mIcons.remove(key);
+            }
+        }
+        for (String key : mLabels.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                mLabels.remove(key);
+            }
+        }
+        mInvalidationCount++;
+        mGeneration++;
+    }
+
+    public synchronized void clear() {
+        mIcons.evictAll();
+        mLabels.evictAll();
+        mGeneration++;
+    }
+
+    @Override
+    public synchronized void onConfigurationChanged(Configuration newConfig) {
+        // Labels may be localized, icons are keyed by density.
+        mLabels.evictAll();
+        mGeneration++;
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public synchronized void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            mIcons.evictAll();
+        }
+    }
+
+    /**
+     * Dumps the hit/miss and memory counters for {@link com.android.settings.SettingsDumpService}.
+     */
+    public synchronized JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        final long total = mHitCount + mMissCount;
+        obj.put("hit", mHitCount);
+        obj.put("miss", mMissCount);
+        obj.put("hit_rate", total == 0 ? 0 : (double) mHitCount / total);
+        obj.put("joined_loads", mJoinedCount);
+        obj.put("invalidations", mInvalidationCount);
+        obj.put("icon_count", mIcons.snapshot().size());
+        // Sized by sizeOf(), so the size of the icon cache is its estimated memory.
+        obj.put("icon_bytes", mIcons.size());
+        obj.put("icon_max_bytes", mIcons.maxSize());
+        obj.put("icon_evictions", mIcons.evictionCount());
+        obj.put("label_count", mLabels.size());
+        return obj;
+    }
+
+    @VisibleForTesting
+    synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    @VisibleForTesting
+    synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    @VisibleForTesting
+    Drawable loadIcon(ApplicationInfo info, int userId, boolean badged) {
+        return badged ? mIconDrawableFactory.getBadgedIcon(info, userId)
+                : info.loadIcon(mPackageManager);
+    }
+
+    private synchronized void cacheIcon(String key, Drawable icon, int generation) {
+        if (icon != null && generation == mGeneration) {
+            mIcons.put(key, icon);
+        }
+    }
+
+    private String getIconKey(String packageName, int userId, boolean badged) {
+        return packageName + "/" + userId + "/"
+                + mContext.getResources().getConfiguration().densityDpi + "/"
+                + (badged ? "badged" : "plain");
+    }
+
+    private static String getLabelKey(String packageName, int userId) {
+        return packageName + "/" + userId;
+    }
+
+    // Views set bounds and tints on their icons, each caller gets its own drawable.
+    private static Drawable newDrawable(Drawable icon) {
+        final Drawable.ConstantState state = icon != null ? icon.getConstantState() : null;
+        return state != null ? state.newDrawable() : icon;
+    }
+
+    @VisibleForTesting
+    static int getByteCount(Drawable icon) {
+        if (icon instanceof BitmapDrawable && ((BitmapDrawable) icon).getBitmap() != null) {
+            return ((BitmapDrawable) icon).getBitmap().getAllocationByteCount();
+        }
+        // Other icons are rendered at their intrinsic size in 32 bits per pixel.
+        return Math.max(1, icon.getIntrinsicWidth()) * Math.max(1, icon.getIntrinsicHeight()) * 4;
+    }
+}
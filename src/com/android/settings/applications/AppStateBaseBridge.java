@@ -15,27 +15,47 @@
  */
 package com.android.settings.applications;
 
+import android.content.pm.ApplicationInfo;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
 
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.Session;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Common base class for bridging information to ApplicationsState.
+ *
+ * The loaded apps are indexed by uid and package name. When the package list changes, only the
+ * apps whose {@link ApplicationInfo} was replaced since their extra info was loaded are updated,
+ * and the callback is told which entries changed.
  */
 public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks {
 
+    // Above this share of changed apps, reloading everything at once is cheaper than updating
+    // each app on its own.
+    @VisibleForTesting
+    static final float MAX_CHANGED_FRACTION = 0.25f;
+
     protected final ApplicationsState mAppState;
     protected final Session mAppSession;
     protected final Callback mCallback;
     protected final BackgroundHandler mHandler;
     protected final MainHandler mMainHandler;
 
+    // Entries whose extra info is loaded, keyed by uid and package name. Only used on mHandler.
+    private final ArrayMap<String, AppEntry> mLoadedEntries = new ArrayMap<>();
+    // The ApplicationInfo of each entry when its extra info was loaded. ApplicationsState
+    // replaces it when the package changes, so it tells which entries are out of date.
+    private final ArrayMap<String, ApplicationInfo> mLoadedInfos = new ArrayMap<>();
+
     public AppStateBaseBridge(ApplicationsState appState, Callback callback) {
         mAppState = appState;
         mAppSession = mAppState != null ? mAppState.newSession(this) : null;
@@ -67,7 +87,7 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
 
     @Override
     public void onPackageListChanged() {
-        mHandler.sendEmptyMessage(BackgroundHandler.MSG_LOAD_ALL);
+        mHandler.sendEmptyMessage(BackgroundHandler.MSG_LOAD_CHANGED);
     }
 
     @Override
@@ -109,6 +129,98 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
 
     protected abstract void updateExtraInfo(AppEntry app, String pkg, int uid);
 
+    /**
+     * Loads the extra info of a few changed apps. Subclasses which can fetch the info of several
+     * apps with one call should override this.
+     */
+    protected void loadExtraInfo(List<AppEntry> apps) {
+        for (AppEntry app : apps) {
+            updateExtraInfo(app, app.info.packageName, app.info.uid);
+        }
+    }
+
+    @VisibleForTesting
+    void loadAll() {
+        loadAllExtraInfo();
+        mLoadedEntries.clear();
+        mLoadedInfos.clear();
+        final ArrayList<AppEntry> apps = mAppSession.getAllApps();
+        if (apps != null) {
+            markLoaded(apps);
+        }
+    }
+
+    /**
+     * Updates the apps which were added or changed since they were last loaded.
+     *
+     * @return the updated entries, or null if everything was reloaded.
+     */
+    @VisibleForTesting
+    List<AppEntry> loadChanged() {
+        final ArrayList<AppEntry> apps = mAppSession.getAllApps();
+        if (apps == null || mLoadedEntries.isEmpty()) {
+            loadAll();
+            return null;
+        }
+        final ArrayMap<String, AppEntry> current = new ArrayMap<>(apps.size());
+        final List<AppEntry> changed = new ArrayList<>();
+        for (AppEntry app : apps) {
+            final String key = getKey(app.info.uid, app.info.packageName);
+            current.put(key, app);
+            if (mLoadedEntries.get(key) != app || mLoadedInfos.get(key) != app.info) {
+                changed.add(app);
+            }
+        }
+        if (changed.size() > apps.size() * MAX_CHANGED_FRACTION) {
+            loadAll();
+            return null;
+        }
+        // Forget the apps which are gone.
+        mLoadedEntries.retainAll(current.keySet());
+        mLoadedInfos.retainAll(current.keySet());
+        if (!changed.isEmpty()) {
+            loadExtraInfo(changed);
+            markLoaded(changed);
+        }
+        return changed;
+    }
+
+    @VisibleForTesting
+    AppEntry loadPackage(String pkg, int uid) {
+        final String key = getKey(uid, pkg);
+        AppEntry app = mLoadedEntries.get(key);
+        if (app == null) {
+            // Not loaded yet, e.g. the package was just installed.
+            final ArrayList<AppEntry> apps = mAppSession.getAllApps();
+            for (int i = 0, size = apps != null ? apps.size() : 0; i < size; i++) {
+                final AppEntry entry = apps.get(i);
+                if (entry.info.uid == uid && pkg.equals(entry.info.packageName)) {
+                    app = entry;
+                    break;
+                }
+            }
+            if (app == null) {
+                return null;
+            }
+        }
+        updateExtraInfo(app, pkg, uid);
+        mLoadedEntries.put(key, app);
+        mLoadedInfos.put(key, app.info);
+        return app;
+    }
+
+    private void markLoaded(List<AppEntry> apps) {
+        for (AppEntry app : apps) {
+            final String key = getKey(app.info.uid, app.info.packageName);
+            mLoadedEntries.put(key, app);
+            mLoadedInfos.put(key, app.info);
+        }
+    }
+
+    private static String getKey(int uid, String pkg) {
+        return uid + "|" + pkg;
+    }
+
     private class MainHandler extends Handler {
         private static final int MSG_INFO_UPDATED = 1;
 
@@ -117,10 +229,15 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case MSG_INFO_UPDATED:
-                    mCallback.onExtraInfoUpdated();
+                    if (msg.obj != null) {
+                        mCallback.onExtraInfoUpdated((List<AppEntry>) msg.obj);
+                    } else {
+                        mCallback.onExtraInfoUpdated();
+                    }
                     break;
             }
         }
@@ -129,6 +246,7 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
     private class BackgroundHandler extends Handler {
         private static final int MSG_LOAD_ALL = 1;
         private static final int MSG_FORCE_LOAD_PKG = 2;
+        private static final int MSG_LOAD_CHANGED = 3;
 
         public BackgroundHandler(Looper looper) {
             super(looper);
@@ -138,21 +256,25 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case MSG_LOAD_ALL:
-                    loadAllExtraInfo();
+                    removeMessages(MSG_LOAD_CHANGED);
+                    loadAll();
                     mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
                     break;
+                case MSG_LOAD_CHANGED:
+                    final List<AppEntry> changed = loadChanged();
+                    if (changed == null || !changed.isEmpty()) {
+                        mMainHandler.obtainMessage(MainHandler.MSG_INFO_UPDATED, changed)
+                                .sendToTarget();
+                    }
+                    break;
                 case MSG_FORCE_LOAD_PKG:
-                    ArrayList<AppEntry> apps = mAppSession.getAllApps();
-                    final int N = apps.size();
-                    String pkg = (String) msg.obj;
-                    int uid = msg.arg1;
-                    for (int i = 0; i < N; i++) {
-                        AppEntry app = apps.get(i);
-                        if (app.info.uid == uid && pkg.equals(app.info.packageName)) {
-                            updateExtraInfo(app, pkg, uid);
-                        }
+                    final AppEntry app = loadPackage((String) msg.obj, msg.arg1);
+                    if (app != null) {
+                        final List<AppEntry> apps = new ArrayList<>(1);
+                        apps.add(app);
+                        mMainHandler.obtainMessage(MainHandler.MSG_INFO_UPDATED, apps)
+                                .sendToTarget();
                     }
-                    mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
                     break;
             }
         }
@@ -161,5 +283,13 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
 
     public interface Callback {
         void onExtraInfoUpdated();
+
+        /**
+         * Called instead of {@link #onExtraInfoUpdated()} when only the extra info of
+         * {@code entries} was reloaded.
+         */
+        default void onExtraInfoUpdated(List<AppEntry> entries) {
+            onExtraInfoUpdated();
+        }
     }
 }
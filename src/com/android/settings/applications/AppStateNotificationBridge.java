@@ -54,6 +54,14 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
     protected List<Integer> mUserIds;
     private NotificationBackend mBackend;
     private static final int DAYS_TO_CHECK = 7;
+    // How long the aggregated week of usage events is extended with newer events before it is
+    // aggregated again, so that old events eventually leave the window.
+    private static final long AGGREGATE_MAX_AGE_MS = 15 * DateUtils.MINUTE_IN_MILLIS;
+
+    // Raw counts of the last aggregation, only used on the background thread.
+    private ArrayMap<String, NotificationsSentState> mAggregatedStats;
+    private long mAggregatedTime;
+    private long mAggregatedEndTime;
 
     public AppStateNotificationBridge(Context context, ApplicationsState appState,
             Callback callback, IUsageStatsManager usageStatsManager,
@@ -140,10 +148,19 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
     }
 
     protected Map<String, NotificationsSentState> getAggregatedUsageEvents() {
-        ArrayMap<String, NotificationsSentState> aggregatedStats = new ArrayMap<>();
-
         long now = System.currentTimeMillis();
-        long startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
+        long startTime;
+        if (mAggregatedStats == null || now < mAggregatedEndTime
+                || now - mAggregatedTime > AGGREGATE_MAX_AGE_MS) {
+            mAggregatedStats = new ArrayMap<>();
+            mAggregatedTime = now;
+            startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
+        } else {
+            // Only query the events sent since the last aggregation.
+            startTime = mAggregatedEndTime;
+        }
+        mAggregatedEndTime = now;
+
         for (int userId : mUserIds) {
             UsageEvents events = null;
             try {
@@ -157,10 +174,10 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
                 while (events.hasNextEvent()) {
                     events.getNextEvent(event);
                     NotificationsSentState stats =
-                            aggregatedStats.get(getKey(userId, event.getPackageName()));
+                            mAggregatedStats.get(getKey(userId, event.getPackageName()));
                     if (stats == null) {
                         stats = new NotificationsSentState();
-                        aggregatedStats.put(getKey(userId, event.getPackageName()), stats);
+                        mAggregatedStats.put(getKey(userId, event.getPackageName()), stats);
                     }
 
                     if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
@@ -173,6 +190,17 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
                 }
             }
         }
+
+        // Hand out copies, the callers fill in the per app fields.
+        final int size = mAggregatedStats.size();
+        ArrayMap<String, NotificationsSentState> aggregatedStats = new ArrayMap<>(size);
+        for (int i = 0; i < size; i++) {
+            final NotificationsSentState cached = mAggregatedStats.valueAt(i);
+            final NotificationsSentState stats = new NotificationsSentState();
+            stats.lastSent = cached.lastSent;
+            stats.sentCount = cached.sentCount;
+            aggregatedStats.put(mAggregatedStats.keyAt(i), stats);
+        }
         return aggregatedStats;
     }
 
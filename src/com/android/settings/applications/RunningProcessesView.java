@@ -174,35 +174,33 @@ public class RunningProcessesView extends FrameLayout
 
         public ActiveItem bind(RunningState state, RunningState.BaseItem item,
                 StringBuilder builder) {
-            synchronized (state.mLock) {
-                PackageManager pm = rootView.getContext().getPackageManager();
-                if (item.mPackageInfo == null && item instanceof RunningState.MergedItem) {
-                    // Items for background processes don't normally load
-                    // their labels for performance reasons.  Do it now.
-                    RunningState.MergedItem mergedItem = (RunningState.MergedItem)item;
-                    if (mergedItem.mProcess != null) {
-                        ((RunningState.MergedItem)item).mProcess.ensureLabel(pm);
-                        item.mPackageInfo = ((RunningState.MergedItem)item).mProcess.mPackageInfo;
-                        item.mDisplayLabel = ((RunningState.MergedItem)item).mProcess.mDisplayLabel;
-                    }
-                }
-                name.setText(item.mDisplayLabel);
-                ActiveItem ai = new ActiveItem();
-                ai.mRootView = rootView;
-                ai.mItem = item;
-                ai.mHolder = this;
-                ai.mFirstRunTime = item.mActiveSince;
-                if (item.mBackground) {
-                    description.setText(rootView.getContext().getText(R.string.cached));
-                } else {
-                    description.setText(item.mDescription);
+            PackageManager pm = rootView.getContext().getPackageManager();
+            if (item.mPackageInfo == null && item instanceof RunningState.MergedItem) {
+                // Items for background processes don't normally load
+                // their labels for performance reasons.  Do it now.
+                RunningState.MergedItem mergedItem = (RunningState.MergedItem)item;
+                if (mergedItem.mProcess != null) {
+                    ((RunningState.MergedItem)item).mProcess.ensureLabel(pm);
+                    item.mPackageInfo = ((RunningState.MergedItem)item).mProcess.mPackageInfo;
+                    item.mDisplayLabel = ((RunningState.MergedItem)item).mProcess.mDisplayLabel;
                 }
-                item.mCurSizeStr = null;
-                icon.setImageDrawable(item.loadIcon(rootView.getContext(), state));
-                icon.setVisibility(View.VISIBLE);
-                ai.updateTime(rootView.getContext(), builder);
-                return ai;
             }
+            name.setText(item.mDisplayLabel);
+            ActiveItem ai = new ActiveItem();
+            ai.mRootView = rootView;
+            ai.mItem = item;
+            ai.mHolder = this;
+            ai.mFirstRunTime = item.mActiveSince;
+            if (item.mBackground) {
+                description.setText(rootView.getContext().getText(R.string.cached));
+            } else {
+                description.setText(item.mDescription);
+            }
+            item.mCurSizeStr = null;
+            icon.setImageDrawable(item.loadIcon(rootView.getContext(), state));
+            icon.setVisibility(View.VISIBLE);
+            ai.updateTime(rootView.getContext(), builder);
+            return ai;
         }
     }
 
@@ -299,18 +297,16 @@ public class RunningProcessesView extends FrameLayout
         }
 
         public void bindView(View view, int position) {
-            synchronized (mState.mLock) {
-                if (position >= mItems.size()) {
-                    // List must have changed since we last reported its
-                    // size...  ignore here, we will be doing a data changed
-                    // to refresh the entire list.
-                    return;
-                }
-                ViewHolder vh = (ViewHolder) view.getTag();
-                RunningState.MergedItem item = mItems.get(position);
-                ActiveItem ai = vh.bind(mState, item, mBuilder);
-                mActiveItems.put(view, ai);
+            if (position >= mItems.size()) {
+                // List must have changed since we last reported its
+                // size...  ignore here, we will be doing a data changed
+                // to refresh the entire list.
+                return;
             }
+            ViewHolder vh = (ViewHolder) view.getTag();
+            RunningState.MergedItem item = mItems.get(position);
+            ActiveItem ai = vh.bind(mState, item, mBuilder);
+            mActiveItems.put(view, ai);
         }
     }
 
@@ -338,60 +334,59 @@ public class RunningProcessesView extends FrameLayout
         }
         */
 
-        synchronized (mState.mLock) {
-            if (mCurShowCached != mAdapter.mShowBackground) {
-                mCurShowCached = mAdapter.mShowBackground;
-                if (mCurShowCached) {
-                    mForegroundProcessPrefix.setText(getResources().getText(
-                            R.string.running_processes_header_used_prefix));
-                    mAppsProcessPrefix.setText(getResources().getText(
-                            R.string.running_processes_header_cached_prefix));
-                } else {
-                    mForegroundProcessPrefix.setText(getResources().getText(
-                            R.string.running_processes_header_system_prefix));
-                    mAppsProcessPrefix.setText(getResources().getText(
-                            R.string.running_processes_header_apps_prefix));
-                }
-            }
-
-            final long totalRam = mMemInfoReader.getTotalSize();
-            final long medRam;
-            final long lowRam;
+        final RunningState.Snapshot snapshot = mState.getCurrentSnapshot();
+        if (mCurShowCached != mAdapter.mShowBackground) {
+            mCurShowCached = mAdapter.mShowBackground;
             if (mCurShowCached) {
-                lowRam = mMemInfoReader.getFreeSize() + mMemInfoReader.getCachedSize();
-                medRam = mState.mBackgroundProcessMemory;
+                mForegroundProcessPrefix.setText(getResources().getText(
+                        R.string.running_processes_header_used_prefix));
+                mAppsProcessPrefix.setText(getResources().getText(
+                        R.string.running_processes_header_cached_prefix));
             } else {
-                lowRam = mMemInfoReader.getFreeSize() + mMemInfoReader.getCachedSize()
-                        + mState.mBackgroundProcessMemory;
-                medRam = mState.mServiceProcessMemory;
-
-            }
-            final long highRam = totalRam - medRam - lowRam;
-
-            if (mCurTotalRam != totalRam || mCurHighRam != highRam || mCurMedRam != medRam
-                    || mCurLowRam != lowRam) {
-                mCurTotalRam = totalRam;
-                mCurHighRam = highRam;
-                mCurMedRam = medRam;
-                mCurLowRam = lowRam;
-                BidiFormatter bidiFormatter = BidiFormatter.getInstance();
-                String sizeStr = bidiFormatter.unicodeWrap(
-                        Formatter.formatShortFileSize(getContext(), lowRam));
-                mBackgroundProcessText.setText(getResources().getString(
-                        R.string.running_processes_header_ram, sizeStr));
-                sizeStr = bidiFormatter.unicodeWrap(
-                        Formatter.formatShortFileSize(getContext(), medRam));
-                mAppsProcessText.setText(getResources().getString(
-                        R.string.running_processes_header_ram, sizeStr));
-                sizeStr = bidiFormatter.unicodeWrap(
-                        Formatter.formatShortFileSize(getContext(), highRam));
-                mForegroundProcessText.setText(getResources().getString(
-                        R.string.running_processes_header_ram, sizeStr));
-                int progress = (int) ((highRam/(float) totalRam) * 100);
-                mColorBar.setProgress(progress);
-                mColorBar.setSecondaryProgress(progress + (int) ((medRam/(float) totalRam) * 100));
+                mForegroundProcessPrefix.setText(getResources().getText(
+                        R.string.running_processes_header_system_prefix));
+                mAppsProcessPrefix.setText(getResources().getText(
+                        R.string.running_processes_header_apps_prefix));
             }
         }
+
+        final long totalRam = mMemInfoReader.getTotalSize();
+        final long medRam;
+        final long lowRam;
+        if (mCurShowCached) {
+            lowRam = mMemInfoReader.getFreeSize() + mMemInfoReader.getCachedSize();
+            medRam = snapshot.mBackgroundProcessMemory;
+        } else {
+            lowRam = mMemInfoReader.getFreeSize() + mMemInfoReader.getCachedSize()
+                    + snapshot.mBackgroundProcessMemory;
+            medRam = snapshot.mServiceProcessMemory;
+
+        }
+        final long highRam = totalRam - medRam - lowRam;
+
+        if (mCurTotalRam != totalRam || mCurHighRam != highRam || mCurMedRam != medRam
+                || mCurLowRam != lowRam) {
+            mCurTotalRam = totalRam;
+            mCurHighRam = highRam;
+            mCurMedRam = medRam;
+            mCurLowRam = lowRam;
+            BidiFormatter bidiFormatter = BidiFormatter.getInstance();
+            String sizeStr = bidiFormatter.unicodeWrap(
+                    Formatter.formatShortFileSize(getContext(), lowRam));
+            mBackgroundProcessText.setText(getResources().getString(
+                    R.string.running_processes_header_ram, sizeStr));
+            sizeStr = bidiFormatter.unicodeWrap(
+                    Formatter.formatShortFileSize(getContext(), medRam));
+            mAppsProcessText.setText(getResources().getString(
+                    R.string.running_processes_header_ram, sizeStr));
+            sizeStr = bidiFormatter.unicodeWrap(
+                    Formatter.formatShortFileSize(getContext(), highRam));
+            mForegroundProcessText.setText(getResources().getString(
+                    R.string.running_processes_header_ram, sizeStr));
+            int progress = (int) ((highRam/(float) totalRam) * 100);
+            mColorBar.setProgress(progress);
+            mColorBar.setSecondaryProgress(progress + (int) ((medRam/(float) totalRam) * 100));
+        }
     }
 
     public void onItemClick(AdapterView<?> parent, View v, int position, long id) {
@@ -37,10 +37,12 @@ import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.format.Formatter;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.SparseArray;
 
 import com.android.settings.R;
@@ -69,9 +71,16 @@ public class RunningState {
     static final int MSG_UPDATE_CONTENTS = 2;
     static final int MSG_REFRESH_UI = 3;
     static final int MSG_UPDATE_TIME = 4;
+    static final int MSG_UPDATE_NOW = 5;
 
     static final long TIME_UPDATE_DELAY = 1000;
     static final long CONTENTS_UPDATE_DELAY = 2000;
+    // Upper bound of the poll interval while nothing changes.
+    static final long MAX_CONTENTS_UPDATE_DELAY = 8000;
+    // Minimum time between two polls requested through updateNow().
+    static final long MIN_CONTENTS_UPDATE_INTERVAL = 500;
+
+    static final int MAX_CACHED_ICONS = 64;
 
     static final int MAX_SERVICES = 100;
 
@@ -197,26 +206,66 @@ public class RunningState {
     };
 
     // ----- following protected by mLock -----
-    
-    // Lock for protecting the state that will be shared between the
-    // background update thread and the UI thread.
+
+    // Lock for protecting the resume/pause state.  It is never held
+    // while the background thread is polling, and the UI reads the
+    // data from mSnapshot instead.
     final Object mLock = new Object();
-    
-    boolean mResumed;
-    boolean mHaveData;
-    boolean mWatchingBackgroundItems;
+
+    volatile boolean mResumed;
+    volatile boolean mWatchingBackgroundItems;
+
+    // Monitor used by waitForData() until the first snapshot has been published.
+    final Object mDataLock = new Object();
+    volatile boolean mHaveData;
+
+    // Last complete result of update(), replaced as a whole.
+    volatile Snapshot mSnapshot = new Snapshot();
+
+    // ----- following only touched by the background thread -----
 
     ArrayList<BaseItem> mItems = new ArrayList<BaseItem>();
     ArrayList<MergedItem> mMergedItems = new ArrayList<MergedItem>();
     ArrayList<MergedItem> mBackgroundItems = new ArrayList<MergedItem>();
     ArrayList<MergedItem> mUserBackgroundItems = new ArrayList<MergedItem>();
-    
-    int mNumBackgroundProcesses;
-    long mBackgroundProcessMemory;
-    int mNumForegroundProcesses;
-    long mForegroundProcessMemory;
-    int mNumServiceProcesses;
-    long mServiceProcessMemory;
+
+    // Current delay between two polls, grown while nothing changes.
+    long mContentsUpdateDelay = CONTENTS_UPDATE_DELAY;
+    long mLastUpdateTime;
+
+    /**
+     * The result of one refresh.  The lists are never modified once the
+     * snapshot has been published; a refresh that changes them builds new
+     * lists and publishes a new snapshot.
+     */
+    static final class Snapshot {
+        final ArrayList<MergedItem> mMergedItems;
+        final ArrayList<MergedItem> mUserBackgroundItems;
+        final int mNumBackgroundProcesses;
+        final long mBackgroundProcessMemory;
+        final int mNumForegroundProcesses;
+        final long mForegroundProcessMemory;
+        final int mNumServiceProcesses;
+        final long mServiceProcessMemory;
+
+        Snapshot() {
+            this(new ArrayList<MergedItem>(), new ArrayList<MergedItem>(), 0, 0, 0, 0, 0, 0);
+        }
+
+        Snapshot(ArrayList<MergedItem> mergedItems, ArrayList<MergedItem> userBackgroundItems,
+                int numBackgroundProcesses, long backgroundProcessMemory,
+                int numForegroundProcesses, long foregroundProcessMemory,
+                int numServiceProcesses, long serviceProcessMemory) {
+            mMergedItems = mergedItems;
+            mUserBackgroundItems = userBackgroundItems;
+            mNumBackgroundProcesses = numBackgroundProcesses;
+            mBackgroundProcessMemory = backgroundProcessMemory;
+            mNumForegroundProcesses = numForegroundProcesses;
+            mForegroundProcessMemory = foregroundProcessMemory;
+            mNumServiceProcesses = numServiceProcesses;
+            mServiceProcessMemory = serviceProcessMemory;
+        }
+    }
 
     // ----- BACKGROUND MONITORING THREAD -----
 
@@ -233,17 +282,27 @@ public class RunningState {
                     reset();
                     break;
                 case MSG_UPDATE_CONTENTS:
-                    synchronized (mLock) {
-                        if (!mResumed) {
-                            return;
-                        }
+                    if (!mResumed) {
+                        return;
                     }
+                    // Any request queued meanwhile is served by this pass.
+                    removeMessages(MSG_UPDATE_CONTENTS);
+                    final boolean changed = update(mApplicationContext, mAm);
+                    mLastUpdateTime = SystemClock.uptimeMillis();
+                    mContentsUpdateDelay = getContentsUpdateDelay(mContentsUpdateDelay, changed);
                     Message cmd = mHandler.obtainMessage(MSG_REFRESH_UI);
-                    cmd.arg1 = update(mApplicationContext, mAm) ? 1 : 0;
+                    cmd.arg1 = changed ? 1 : 0;
                     mHandler.sendMessage(cmd);
+                    sendEmptyMessageDelayed(MSG_UPDATE_CONTENTS, mContentsUpdateDelay);
+                    break;
+                case MSG_UPDATE_NOW:
+                    // Coalesce bursts of explicit requests, e.g. while a
+                    // service is being stopped, into one poll per interval.
+                    mContentsUpdateDelay = CONTENTS_UPDATE_DELAY;
                     removeMessages(MSG_UPDATE_CONTENTS);
-                    msg = obtainMessage(MSG_UPDATE_CONTENTS);
-                    sendMessageDelayed(msg, CONTENTS_UPDATE_DELAY);
+                    sendEmptyMessageDelayed(MSG_UPDATE_CONTENTS, Math.max(0,
+                            mLastUpdateTime + MIN_CONTENTS_UPDATE_INTERVAL
+                                    - SystemClock.uptimeMillis()));
                     break;
             }
         }
@@ -263,10 +322,8 @@ public class RunningState {
                             : OnRefreshUiListener.REFRESH_DATA;
                     break;
                 case MSG_UPDATE_TIME:
-                    synchronized (mLock) {
-                        if (!mResumed) {
-                            return;
-                        }
+                    if (!mResumed) {
+                        return;
                     }
                     removeMessages(MSG_UPDATE_TIME);
                     Message m = obtainMessage(MSG_UPDATE_TIME);
@@ -319,6 +376,25 @@ public class RunningState {
     private final UserManagerBroadcastReceiver mUmBroadcastReceiver =
             new UserManagerBroadcastReceiver();
 
+    private final class PackageBroadcastReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            clearLabelsAndIcons();
+        }
+
+        void register(Context context) {
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addDataScheme("package");
+            context.registerReceiverAsUser(this, UserHandle.ALL, filter, null, null);
+        }
+    }
+
+    private final PackageBroadcastReceiver mPackageBroadcastReceiver =
+            new PackageBroadcastReceiver();
+
     // ----- DATA STRUCTURES -----
 
     static interface OnRefreshUiListener {
@@ -335,6 +411,46 @@ public class RunningState {
         Drawable mIcon;
     }
 
+    /**
+     * Labels resolved by {@link ProcessItem#ensureLabel}, kept across refreshes
+     * so that a process which restarts or moves in and out of the lists does not
+     * go through the package manager again.  Cleared when a package or the
+     * configuration changes.
+     */
+    static final class LabelCache {
+        static final class Label {
+            final CharSequence mDisplayLabel;
+            final PackageItemInfo mPackageInfo;
+
+            Label(CharSequence displayLabel, PackageItemInfo packageInfo) {
+                mDisplayLabel = displayLabel;
+                mPackageInfo = packageInfo;
+            }
+        }
+
+        private final HashMap<String, Label> mLabels = new HashMap<String, Label>();
+
+        synchronized Label get(int uid, String processName) {
+            return mLabels.get(uid + ":" + processName);
+        }
+
+        synchronized void put(int uid, String processName, CharSequence displayLabel,
+                PackageItemInfo packageInfo) {
+            mLabels.put(uid + ":" + processName, new Label(displayLabel, packageInfo));
+        }
+
+        synchronized void clear() {
+            mLabels.clear();
+        }
+    }
+
+    static final LabelCache sLabelCache = new LabelCache();
+
+    // Badged icons of the items, so that rebinding a row does not decode
+    // the icon again.
+    final LruCache<String, ConstantState> mIconCache =
+            new LruCache<String, ConstantState>(MAX_CACHED_ICONS);
+
     static class BaseItem {
         final boolean mIsProcess;
         final int mUserId;
@@ -360,9 +476,7 @@ public class RunningState {
 
         public Drawable loadIcon(Context context, RunningState state) {
             if (mPackageInfo != null) {
-                Drawable unbadgedIcon = mPackageInfo.loadUnbadgedIcon(state.mPm);
-                Drawable icon = state.mPm.getUserBadgedIcon(unbadgedIcon, new UserHandle(mUserId));
-                return icon;
+                return state.loadBadgedIcon(mPackageInfo, mUserId);
             }
             return null;
         }
@@ -417,14 +531,18 @@ public class RunningState {
             if (mLabel != null) {
                 return;
             }
-            
+
+            final LabelCache.Label cached = sLabelCache.get(mUid, mProcessName);
+            if (cached != null) {
+                setLabel(cached.mDisplayLabel, cached.mPackageInfo);
+                return;
+            }
+
             try {
                 ApplicationInfo ai = pm.getApplicationInfo(mProcessName,
                         PackageManager.MATCH_ANY_USER);
                 if (ai.uid == mUid) {
-                    mDisplayLabel = ai.loadLabel(pm);
-                    mLabel = mDisplayLabel.toString();
-                    mPackageInfo = ai;
+                    setCachedLabel(ai.loadLabel(pm), ai);
                     return;
                 }
             } catch (PackageManager.NameNotFoundException e) {
@@ -439,9 +557,7 @@ public class RunningState {
                 try {
                     ApplicationInfo ai = pm.getApplicationInfo(pkgs[0],
                             PackageManager.MATCH_ANY_USER);
-                    mDisplayLabel = ai.loadLabel(pm);
-                    mLabel = mDisplayLabel.toString();
-                    mPackageInfo = ai;
+                    setCachedLabel(ai.loadLabel(pm), ai);
                     return;
                 } catch (PackageManager.NameNotFoundException e) {
                 }
@@ -456,9 +572,7 @@ public class RunningState {
                         CharSequence nm = pm.getText(name,
                                 pi.sharedUserLabel, pi.applicationInfo);
                         if (nm != null) {
-                            mDisplayLabel = nm;
-                            mLabel = nm.toString();
-                            mPackageInfo = pi.applicationInfo;
+                            setCachedLabel(nm, pi.applicationInfo);
                             return;
                         }
                     }
@@ -467,13 +581,12 @@ public class RunningState {
             }
             
             // If still don't have anything to display, just use the
-            // service info.
+            // service info.  This depends on the services currently
+            // running, so it is not memoized.
             if (mServices.size() > 0) {
                 ApplicationInfo ai = mServices.values().iterator().next()
                         .mServiceInfo.applicationInfo;
-                mPackageInfo = ai;
-                mDisplayLabel = mPackageInfo.loadLabel(pm);
-                mLabel = mDisplayLabel.toString();
+                setLabel(ai.loadLabel(pm), ai);
                 return;
             }
             
@@ -481,14 +594,23 @@ public class RunningState {
             try {
                 ApplicationInfo ai = pm.getApplicationInfo(pkgs[0],
                         PackageManager.MATCH_ANY_USER);
-                mDisplayLabel = ai.loadLabel(pm);
-                mLabel = mDisplayLabel.toString();
-                mPackageInfo = ai;
+                setLabel(ai.loadLabel(pm), ai);
                 return;
             } catch (PackageManager.NameNotFoundException e) {
             }
         }
 
+        private void setLabel(CharSequence displayLabel, PackageItemInfo packageInfo) {
+            mDisplayLabel = displayLabel;
+            mLabel = displayLabel.toString();
+            mPackageInfo = packageInfo;
+        }
+
+        private void setCachedLabel(CharSequence displayLabel, PackageItemInfo packageInfo) {
+            setLabel(displayLabel, packageInfo);
+            sLabelCache.put(mUid, mProcessName, displayLabel, packageInfo);
+        }
+
         boolean updateService(Context context, ActivityManager.RunningServiceInfo service) {
             final PackageManager pm = context.getPackageManager();
 
@@ -787,6 +909,7 @@ public class RunningState {
         mBackgroundThread.start();
         mBackgroundHandler = new BackgroundHandler(mBackgroundThread.getLooper());
         mUmBroadcastReceiver.register(mApplicationContext);
+        mPackageBroadcastReceiver.register(mApplicationContext);
     }
 
     void resume(OnRefreshUiListener listener) {
@@ -796,37 +919,36 @@ public class RunningState {
             boolean usersChanged = mUmBroadcastReceiver.checkUsersChangedLocked();
             boolean configChanged =
                     mInterestingConfigChanges.applyNewConfig(mApplicationContext.getResources());
+            if (configChanged) {
+                clearLabelsAndIcons();
+            }
             if (usersChanged || configChanged) {
                 mHaveData = false;
                 mBackgroundHandler.removeMessages(MSG_RESET_CONTENTS);
                 mBackgroundHandler.removeMessages(MSG_UPDATE_CONTENTS);
                 mBackgroundHandler.sendEmptyMessage(MSG_RESET_CONTENTS);
             }
-            if (!mBackgroundHandler.hasMessages(MSG_UPDATE_CONTENTS)) {
-                mBackgroundHandler.sendEmptyMessage(MSG_UPDATE_CONTENTS);
-            }
+            // Poll right away rather than waiting for a backed off poll.
+            mBackgroundHandler.removeMessages(MSG_UPDATE_NOW);
+            mBackgroundHandler.sendEmptyMessage(MSG_UPDATE_NOW);
             mHandler.sendEmptyMessage(MSG_UPDATE_TIME);
         }
     }
 
     void updateNow() {
-        synchronized (mLock) {
-            mBackgroundHandler.removeMessages(MSG_UPDATE_CONTENTS);
-            mBackgroundHandler.sendEmptyMessage(MSG_UPDATE_CONTENTS);
-        }
+        mBackgroundHandler.removeMessages(MSG_UPDATE_NOW);
+        mBackgroundHandler.sendEmptyMessage(MSG_UPDATE_NOW);
     }
 
     boolean hasData() {
-        synchronized (mLock) {
-            return mHaveData;
-        }
+        return mHaveData;
     }
 
     void waitForData() {
-        synchronized (mLock) {
+        synchronized (mDataLock) {
             while (!mHaveData) {
                 try {
-                    mLock.wait(0);
+                    mDataLock.wait(0);
                 } catch (InterruptedException e) {
                 }
             }
@@ -841,6 +963,38 @@ public class RunningState {
         }
     }
 
+    Drawable loadBadgedIcon(PackageItemInfo info, int userId) {
+        final String key = info.packageName + "/" + info.name + "/" + userId;
+        final ConstantState cached = mIconCache.get(key);
+        if (cached != null) {
+            return cached.newDrawable();
+        }
+        final Drawable unbadgedIcon = info.loadUnbadgedIcon(mPm);
+        final Drawable icon = mPm.getUserBadgedIcon(unbadgedIcon, new UserHandle(userId));
+        final ConstantState state = icon.getConstantState();
+        if (state != null) {
+            mIconCache.put(key, state);
+        }
+        return icon;
+    }
+
+    void clearLabelsAndIcons() {
+        sLabelCache.clear();
+        mIconCache.evictAll();
+    }
+
+    /**
+     * @return the delay before the next poll: it doubles up to
+     * {@link #MAX_CONTENTS_UPDATE_DELAY} while the polls find nothing new,
+     * and goes back to {@link #CONTENTS_UPDATE_DELAY} on the first change.
+     */
+    static long getContentsUpdateDelay(long previousDelay, boolean changed) {
+        if (changed) {
+            return CONTENTS_UPDATE_DELAY;
+        }
+        return Math.min(previousDelay * 2, MAX_CONTENTS_UPDATE_DELAY);
+    }
+
     private boolean isInterestingProcess(ActivityManager.RunningAppProcessInfo pi) {
         if ((pi.flags&ActivityManager.RunningAppProcessInfo.FLAG_CANT_SAVE_STATE) != 0) {
             return true;
@@ -1271,10 +1425,8 @@ public class RunningState {
                 }
             }
 
-            synchronized (mLock) {
-                mItems = newItems;
-                mMergedItems = newMergedItems;
-            }
+            mItems = newItems;
+            mMergedItems = newMergedItems;
         }
         
         // Count number of interesting other (non-active) processes, and
@@ -1413,23 +1565,23 @@ public class RunningState {
             mMergedItems.get(i).updateSize(context);
         }
         
-        synchronized (mLock) {
-            mNumBackgroundProcesses = numBackgroundProcesses;
-            mNumForegroundProcesses = numForegroundProcesses;
-            mNumServiceProcesses = numServiceProcesses;
-            mBackgroundProcessMemory = backgroundProcessMemory;
-            mForegroundProcessMemory = foregroundProcessMemory;
-            mServiceProcessMemory = serviceProcessMemory;
-            if (newBackgroundItems != null) {
-                mBackgroundItems = newBackgroundItems;
-                mUserBackgroundItems = newUserBackgroundItems;
-                if (mWatchingBackgroundItems) {
-                    changed = true;
-                }
+        if (newBackgroundItems != null) {
+            mBackgroundItems = newBackgroundItems;
+            mUserBackgroundItems = newUserBackgroundItems;
+            if (mWatchingBackgroundItems) {
+                changed = true;
             }
-            if (!mHaveData) {
+        }
+
+        // Publish everything at once; readers only ever see complete results.
+        mSnapshot = new Snapshot(mMergedItems, mUserBackgroundItems,
+                numBackgroundProcesses, backgroundProcessMemory,
+                numForegroundProcesses, foregroundProcessMemory,
+                numServiceProcesses, serviceProcessMemory);
+        if (!mHaveData) {
+            synchronized (mDataLock) {
                 mHaveData = true;
-                mLock.notifyAll();
+                mDataLock.notifyAll();
             }
         }
         
@@ -1437,20 +1589,18 @@ public class RunningState {
     }
     
     void setWatchingBackgroundItems(boolean watching) {
-        synchronized (mLock) {
-            mWatchingBackgroundItems = watching;
-        }
+        mWatchingBackgroundItems = watching;
+    }
+
+    Snapshot getCurrentSnapshot() {
+        return mSnapshot;
     }
 
     ArrayList<MergedItem> getCurrentMergedItems() {
-        synchronized (mLock) {
-            return mMergedItems;
-        }
+        return mSnapshot.mMergedItems;
     }
 
     ArrayList<MergedItem> getCurrentBackgroundItems() {
-        synchronized (mLock) {
-            return mUserBackgroundItems;
-        }
+        return mSnapshot.mUserBackgroundItems;
     }
 }
@@ -135,6 +135,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -1030,6 +1031,8 @@ public class ManageApplications extends InstrumentedFragment
         private int mLastSortMode = -1;
         private int mWhichSize = SIZE_TOTAL;
         private AppFilter mCompositeFilter;
+        // The filter of the last rebuild, used to tell whether an updated entry stays in the list.
+        private AppFilter mLastFilter;
         private boolean mHasReceivedLoadEntries;
         private boolean mHasReceivedBridgeCallback;
         private FileViewHolderController mExtraViewController;
@@ -1261,6 +1264,7 @@ public class ManageApplications extends InstrumentedFragment
 
             final AppFilter finalFilterObj = new CompoundFilter(filterObj,
                     ApplicationsState.FILTER_NOT_HIDE);
+            mLastFilter = finalFilterObj;
             ThreadUtils.postOnBackgroundThread(() -> {
                 mSession.rebuild(finalFilterObj, comparatorObj, false);
             });
@@ -1373,6 +1377,28 @@ public class ManageApplications extends InstrumentedFragment
             rebuild();
         }
 
+        @Override
+        public void onExtraInfoUpdated(List<AppEntry> entries) {
+            if (!mHasReceivedBridgeCallback || mEntries == null || mLastFilter == null
+                    || mLastSortMode == R.id.sort_order_recent_notification
+                    || mLastSortMode == R.id.sort_order_frequent_notification) {
+                // The order may depend on the extra info, rebuild the whole list.
+                onExtraInfoUpdated();
+                return;
+            }
+            for (AppEntry entry : entries) {
+                final int position = mEntries.indexOf(entry);
+                if ((position >= 0) != mLastFilter.filterApp(entry)) {
+                    // The entry has to be added to or removed from the list.
+                    rebuild();
+                    return;
+                }
+                if (position >= 0) {
+                    mOnScrollListener.postNotifyItemChange(position);
+                }
+            }
+        }
+
         @Override
         public void onRunningStateChanged(boolean running) {
             mManageApplications.getActivity().setProgressBarIndeterminateVisibility(running);
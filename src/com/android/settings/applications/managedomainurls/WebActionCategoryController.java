@@ -19,6 +19,7 @@ package com.android.settings.applications.managedomainurls;
 import android.content.Context;
 import android.provider.Settings;
 
+import com.android.settings.core.AvailabilityDependencies;
 import com.android.settings.core.BasePreferenceController;
 
 public class WebActionCategoryController extends BasePreferenceController {
@@ -32,6 +33,12 @@ public class WebActionCategoryController extends BasePreferenceController {
         return isDisableWebActions(mContext) ? UNSUPPORTED_ON_DEVICE : AVAILABLE;
     }
 
+    @Override
+    protected AvailabilityDependencies getAvailabilityDependencies() {
+        return new AvailabilityDependencies().addSetting(
+                Settings.Global.getUriFor(Settings.Global.ENABLE_EPHEMERAL_FEATURE));
+    }
+
     public static boolean isDisableWebActions(Context context) {
         return Settings.Global.getInt(context.getContentResolver(),
                 Settings.Global.ENABLE_EPHEMERAL_FEATURE, 1) == 0;
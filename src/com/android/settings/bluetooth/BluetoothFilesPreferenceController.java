@@ -24,6 +24,7 @@ import android.content.pm.PackageManager;
 import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 
+import com.android.settings.core.AvailabilityDependencies;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settings.overlay.FeatureFactory;
@@ -60,6 +61,12 @@ public class BluetoothFilesPreferenceController extends BasePreferenceController
                 : UNSUPPORTED_ON_DEVICE;
     }
 
+    @Override
+    protected AvailabilityDependencies getAvailabilityDependencies() {
+        // System features do not change while the process runs.
+        return new AvailabilityDependencies();
+    }
+
     @Override
     public String getPreferenceKey() {
         return KEY_RECEIVED_FILES;
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.UserManager;
+import android.telephony.CarrierConfigManager;
+import android.telephony.SubscriptionManager;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Process-wide cache of the availability of the controllers declaring
+ * {@link AvailabilityDependencies}, so that the several {@code isAvailable()} and
+ * {@code isSupported()} calls of one navigation, search indexing and slices evaluate a controller
+ * once.
+ *
+ * The dependencies are observed from the first evaluation of a controller depending on them, and
+ * only the entries depending on what changed are dropped.
+ */
+public class AvailabilityCache {
+
+    private static AvailabilityCache sInstance;
+
+    private final Context mContext;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Controller key -> cached availability.
+    private final ArrayMap<String, Entry> mEntries = new ArrayMap<>();
+    private final ArraySet<Uri> mObservedUris = new ArraySet<>();
+    // Observed user restriction -> whether it was set, and set as a base restriction, when last
+    // checked. Controllers check either one.
+    private final ArrayMap<String, Integer> mUserRestrictionValues = new ArrayMap<>();
+    private boolean mObservingSubscriptions;
+    private boolean mObservingCarrierConfig;
+    // Incremented on invalidation, so that evaluations started before are not cached.
+    private int mGeneration;
+    private long mHitCount;
+    private long mMissCount;
+    private long mInvalidationCount;
+
+    private final ContentObserver mSettingsObserver = new ContentObserver(mHandler) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            invalidate(dependencies -> uri == null
+                    ? !dependencies.getSettingUris().isEmpty()
+                    : dependencies.getSettingUris().contains(uri));
+        }
+    };
+
+    private final BroadcastReceiver mUserRestrictionsReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // The broadcast does not say which restriction changed.
+            final Set<String> changed = getChangedUserRestrictions();
+            if (!changed.isEmpty()) {
+                invalidate(dependencies ->
+                        !Collections.disjoint(dependencies.getUserRestrictions(), changed));
+            }
+        }
+    };
+
+    private final BroadcastReceiver mCarrierConfigReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate(AvailabilityDependencies::dependsOnCarrierConfig);
+        }
+    };
+
+    public static synchronized AvailabilityCache getInstance(Context context) {
+        final Context appContext = context.getApplicationContext();
+        // Bound to the application, which lives as long as the process.
+        if (sInstance == null || sInstance.mContext != appContext) {
+            sInstance = new AvailabilityCache(appContext);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AvailabilityCache(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @return the cached availability of {@code controller}, evaluating it on a miss.
+     */
+    int getAvailabilityStatus(BasePreferenceController controller,
+            AvailabilityDependencies dependencies) {
+        final String key = controller.getAvailabilityCacheKey();
+        final int generation;
+        synchronized (this) {
+            final Entry entry = mEntries.get(key);
+            if (entry != null) {
+                mHitCount++;
+                return entry.mStatus;
+            }
+            mMissCount++;
+            // Observe before evaluating, so that a change during the evaluation is not missed.
+            observe(dependencies);
+            generation = mGeneration;
+        }
+        final int status = controller.getAvailabilityStatus();
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mEntries.put(key, new Entry(status, dependencies));
+            }
+        }
+        return status;
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mGeneration++;
+    }
+
+    /**
+     * Dumps the hit/miss counters for {@link com.android.settings.SettingsDumpService}.
+     */
+    public synchronized JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        obj.put("hit", mHitCount);
+        obj.put("miss", mMissCount);
+        obj.put("invalidations", mInvalidationCount);
+        obj.put("entries", mEntries.size());
+        obj.put("observed_settings", mObservedUris.size());
+        obj.put("observed_user_restrictions", mUserRestrictionValues.size());
+        return obj;
+    }
+
+    @VisibleForTesting
+    synchronized void invalidate(Predicate<AvailabilityDependencies> dependsOnChange) {
+        for (int i = mEntries.size() - 1; i >= 0; i--) {
+            if (dependsOnChange.test(mEntries.valueAt(i).mDependencies)) {
+                mEntries.removeAt(i);
+            }
+        }
+        mInvalidationCount++;
+        mGeneration++;
+    }
+
+    private void observe(AvailabilityDependencies dependencies) {
+        for (Uri uri : dependencies.getSettingUris()) {
+            if (mObservedUris.add(uri)) {
+                mContext.getContentResolver().registerContentObserver(uri,
+                        false /* notifyForDescendants */, mSettingsObserver);
+            }
+        }
+        for (String restriction : dependencies.getUserRestrictions()) {
+            if (mUserRestrictionValues.containsKey(restriction)) {
+                continue;
+            }
+            if (mUserRestrictionValues.isEmpty()) {
+                mContext.registerReceiver(mUserRestrictionsReceiver,
+                        new IntentFilter(UserManager.ACTION_USER_RESTRICTIONS_CHANGED),
+                        null /* broadcastPermission */, mHandler);
+            }
+            mUserRestrictionValues.put(restriction, getUserRestrictionValue(
+                    mContext.getSystemService(UserManager.class), restriction));
+        }
+        if (dependencies.dependsOnCarrierConfig() && !mObservingCarrierConfig) {
+            mObservingCarrierConfig = true;
+            mContext.registerReceiver(mCarrierConfigReceiver,
+                    new IntentFilter(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED),
+                    null /* broadcastPermission */, mHandler);
+        }
+        if (dependencies.dependsOnSubscriptions() && !mObservingSubscriptions) {
+            mObservingSubscriptions = true;
+            // The listener needs a looper, it is called back once when added.
+            ThreadUtils.postOnMainThread(() -> {
+                final SubscriptionManager subscriptionManager =
+                        mContext.getSystemService(SubscriptionManager.class);
+                subscriptionManager.addOnSubscriptionsChangedListener(mContext.getMainExecutor(),
+                        new SubscriptionManager.OnSubscriptionsChangedListener() {
+                            @Override
+                            public void onSubscriptionsChanged() {
+                                invalidate(AvailabilityDependencies::dependsOnSubscriptions);
+                            }
+                        });
+            });
+        }
+    }
+
+    /**
+     * @return the observed user restrictions that were set or cleared since last checked.
+     */
+    private Set<String> getChangedUserRestrictions() {
+        final Set<String> restrictions;
+        synchronized (this) {
+            restrictions = new ArraySet<>(mUserRestrictionValues.keySet());
+        }
+        final UserManager userManager = mContext.getSystemService(UserManager.class);
+        final Set<String> changed = new ArraySet<>();
+        for (String restriction : restrictions) {
+            final int value = getUserRestrictionValue(userManager, restriction);
+            synchronized (this) {
+                final Integer oldValue = mUserRestrictionValues.put(restriction, value);
+                if (oldValue == null || oldValue != value) {
+                    changed.add(restriction);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static int getUserRestrictionValue(UserManager userManager, String restriction) {
+        int value = 0;
+        if (userManager.hasUserRestriction(restriction)) {
+            value |= 1;
+        }
+        if (userManager.hasBaseUserRestriction(restriction, Process.myUserHandle())) {
+            value |= 2;
+        }
+        return value;
+    }
+
+    private static class Entry {
+        private final int mStatus;
+        private final AvailabilityDependencies mDependencies;
+
+        Entry(int status, AvailabilityDependencies dependencies) {
+            mStatus = status;
+            mDependencies = dependencies;
+        }
+    }
+}
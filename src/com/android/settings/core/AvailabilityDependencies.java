@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.net.Uri;
+import android.util.ArraySet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Everything the {@link BasePreferenceController#getAvailabilityStatus()} of a controller
+ * depends on, declared through {@link BasePreferenceController#getAvailabilityDependencies()}.
+ *
+ * The availability is cached by {@link AvailabilityCache} until one of these changes. An empty
+ * instance declares an availability that does not change while the process runs, such as one
+ * depending only on system features or on the type of the user.
+ */
+public class AvailabilityDependencies {
+
+    private final List<Uri> mSettingUris = new ArrayList<>();
+    private final Set<String> mUserRestrictions = new ArraySet<>();
+    private boolean mSubscriptions;
+    private boolean mCarrierConfig;
+
+    /**
+     * Depends on a setting, as returned by {@code Settings.Global.getUriFor(name)} or the Secure
+     * and System equivalents.
+     */
+    public AvailabilityDependencies addSetting(Uri uri) {
+        mSettingUris.add(uri);
+        return this;
+    }
+
+    /**
+     * Depends on a user restriction, such as {@link android.os.UserManager#DISALLOW_CONFIG_WIFI},
+     * whether it is checked as set or as a base restriction.
+     */
+    public AvailabilityDependencies addUserRestriction(String restriction) {
+        mUserRestrictions.add(restriction);
+        return this;
+    }
+
+    /**
+     * Depends on the active subscriptions.
+     */
+    public AvailabilityDependencies addSubscriptions() {
+        mSubscriptions = true;
+        return this;
+    }
+
+    /**
+     * Depends on the carrier config of the active subscriptions.
+     */
+    public AvailabilityDependencies addCarrierConfig() {
+        mCarrierConfig = true;
+        return this;
+    }
+
+    List<Uri> getSettingUris() {
+        return mSettingUris;
+    }
+
+    Set<String> getUserRestrictions() {
+        return mUserRestrictions;
+    }
+
+    boolean dependsOnSubscriptions() {
+        return mSubscriptions;
+    }
+
+    boolean dependsOnCarrierConfig() {
+        return mCarrierConfig;
+    }
+}
@@ -214,6 +214,39 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     @AvailabilityStatus
     public abstract int getAvailabilityStatus();
 
+    /**
+     * @return what {@link #getAvailabilityStatus()} depends on, or {@code null} to evaluate it on
+     * every call.
+     * </p>
+     * When declared, the availability is cached per process and only evaluated again after one
+     * of the dependencies changed. It must then not depend on anything else, including state set
+     * on the controller after it is created.
+     */
+    @Nullable
+    protected AvailabilityDependencies getAvailabilityDependencies() {
+        return null;
+    }
+
+    /**
+     * @return the {@link AvailabilityStatus} of the Setting, cached when the controller declares
+     * {@link #getAvailabilityDependencies()}.
+     */
+    @AvailabilityStatus
+    public final int getCachedAvailabilityStatus() {
+        final AvailabilityDependencies dependencies = getAvailabilityDependencies();
+        if (dependencies == null) {
+            return getAvailabilityStatus();
+        }
+        return AvailabilityCache.getInstance(mContext).getAvailabilityStatus(this, dependencies);
+    }
+
+    /**
+     * @return the key of this controller in {@link AvailabilityCache}.
+     */
+    String getAvailabilityCacheKey() {
+        return getClass().getName() + "/" + getPreferenceKey() + (mIsForWork ? "/work" : "");
+    }
+
     @Override
     public String getPreferenceKey() {
         return mPreferenceKey;
@@ -254,7 +287,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
             return false;
         }
 
-        final int availabilityStatus = getAvailabilityStatus();
+        final int availabilityStatus = getCachedAvailabilityStatus();
         return (availabilityStatus == AVAILABLE
                 || availabilityStatus == AVAILABLE_UNSEARCHABLE
                 || availabilityStatus == DISABLED_DEPENDENT_SETTING);
@@ -268,7 +301,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      * Note that a return value of {@code true} does not mean that the setting is available.
      */
     public final boolean isSupported() {
-        return getAvailabilityStatus() != UNSUPPORTED_ON_DEVICE;
+        return getCachedAvailabilityStatus() != UNSUPPORTED_ON_DEVICE;
     }
 
     /**
@@ -277,7 +310,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     @Override
     public void displayPreference(PreferenceScreen screen) {
         super.displayPreference(screen);
-        if (getAvailabilityStatus() == DISABLED_DEPENDENT_SETTING) {
+        if (getCachedAvailabilityStatus() == DISABLED_DEPENDENT_SETTING) {
             // Disable preference if it depends on another setting.
             final Preference preference = screen.findPreference(getPreferenceKey());
             if (preference != null) {
@@ -301,7 +334,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      */
     public void updateNonIndexableKeys(List<String> keys) {
         final boolean shouldSuppressFromSearch = !isAvailable()
-                || getAvailabilityStatus() == AVAILABLE_UNSEARCHABLE;
+                || getCachedAvailabilityStatus() == AVAILABLE_UNSEARCHABLE;
         if (shouldSuppressFromSearch) {
             final String key = getPreferenceKey();
             if (TextUtils.isEmpty(key)) {
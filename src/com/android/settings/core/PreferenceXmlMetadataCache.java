@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.annotation.XmlRes;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide cache of {@link PreferenceXmlParserUtils#extractMetadata(Context, int, int)}
+ * results, keyed by xml resource, metadata flags, the full resource configuration and the loaded
+ * apks, so that enabling or updating a resource overlay does not return stale strings.
+ *
+ * The cache is persisted to disk and only reused while the Settings apk and the build stay the
+ * same, so a cold start can read prebuilt metadata instead of inflating XML again.
+ */
+public class PreferenceXmlMetadataCache implements ComponentCallbacks2 {
+
+    private static final String TAG = "PrefXmlMetadataCache";
+    @VisibleForTesting
+    static final String CACHE_FILE_NAME = "preference_metadata_cache";
+    private static final int FORMAT_VERSION = 2;
+    private static final int MAX_ENTRIES = 256;
+
+    private static PreferenceXmlMetadataCache sInstance;
+
+    private final Context mContext;
+    private final LruCache<String, List<Bundle>> mCache = new LruCache<>(MAX_ENTRIES);
+    private final AtomicFile mFile;
+    private final String mApkVersion;
+    private boolean mLoadedFromDisk;
+    private boolean mPersistScheduled;
+    private boolean mPreloadScheduled;
+    private long mHitCount;
+    private long mMissCount;
+
+    public static synchronized PreferenceXmlMetadataCache getInstance(Context context) {
+        final Context appContext = context.getApplicationContext();
+        // A new application (e.g. the next Robolectric test) must not see the old entries.
+        if (sInstance == null || sInstance.mContext != appContext) {
+            sInstance = new PreferenceXmlMetadataCache(appContext);
+            sInstance.mContext.registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PreferenceXmlMetadataCache(Context context) {
+        mContext = context;
+        mFile = new AtomicFile(new File(context.getCacheDir(), CACHE_FILE_NAME));
+        mApkVersion = getApkVersion(context);
+    }
+
+    /**
+     * Reads the persisted entries in the background, so that the first lookup of a cold start
+     * does not read the file on the main thread.
+     */
+    public void preload() {
+        synchronized (this) {
+            if (mLoadedFromDisk || mPreloadScheduled) {
+                return;
+            }
+            mPreloadScheduled = true;
+        }
+        ThreadUtils.postOnBackgroundThread(() -> {
+            synchronized (this) {
+                mPreloadScheduled = false;
+                loadFromDiskLocked();
+            }
+        });
+    }
+
+    /**
+     * Returns a copy of the cached metadata, parsing the xml on a miss.
+     */
+    public List<Bundle> getMetadata(Context context, @XmlRes int xmlResId, int flags)
+            throws IOException, XmlPullParserException {
+        final String key = getKey(context, xmlResId, flags);
+        synchronized (this) {
+            loadFromDiskLocked();
+            final List<Bundle> cached = mCache.get(key);
+            if (cached != null) {
+                mHitCount++;
+                return copy(cached);
+            }
+            mMissCount++;
+        }
+
+        final List<Bundle> metadata = PreferenceXmlParserUtils.parseMetadata(context, xmlResId,
+                flags);
+        synchronized (this) {
+            mCache.put(key, copy(metadata));
+            schedulePersistLocked();
+        }
+        return metadata;
+    }
+
+    /**
+     * Drops the in-memory entries, which are keyed by a configuration that is no longer current.
+     * Entries persisted for the new configuration are read again on the next lookup.
+     */
+    @Override
+    public synchronized void onConfigurationChanged(Configuration newConfig) {
+        mCache.evictAll();
+        mLoadedFromDisk = false;
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public synchronized void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            mCache.evictAll();
+            // The file still has the evicted entries, read it again before the next persist.
+            mLoadedFromDisk = false;
+        }
+    }
+
+    /**
+     * Dumps the hit/miss counters for {@link com.android.settings.SettingsDumpService}.
+     */
+    public synchronized JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        obj.put("hit", mHitCount);
+        obj.put("miss", mMissCount);
+        obj.put("size", mCache.size());
+        return obj;
+    }
+
+    @VisibleForTesting
+    synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    @VisibleForTesting
+    synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    @VisibleForTesting
+    static String getKey(Context context, int xmlResId, int flags) {
+        final Resources res = context.getResources();
+        // The qualifier string covers every qualifier, including mcc/mnc. The apk paths change
+        // when an overlay is enabled, disabled or updated.
+        return xmlResId + ":" + flags + ":"
+                + Configuration.resourceQualifierString(res.getConfiguration()) + ":"
+                + Integer.toHexString(Arrays.hashCode(res.getAssets().getApkPaths()));
+    }
+
+    private void schedulePersistLocked() {
+        if (mPersistScheduled) {
+            return;
+        }
+        mPersistScheduled = true;
+        ThreadUtils.postOnBackgroundThread(this::persist);
+    }
+
+    @VisibleForTesting
+    void persist() {
+        final Parcel parcel = Parcel.obtain();
+        synchronized (this) {
+            mPersistScheduled = false;
+            // Keeps the persisted entries that are no longer in memory.
+            loadFromDiskLocked();
+            final Map<String, List<Bundle>> snapshot = mCache.snapshot();
+            parcel.writeInt(FORMAT_VERSION);
+            parcel.writeString(mApkVersion);
+            parcel.writeInt(snapshot.size());
+            for (Map.Entry<String, List<Bundle>> entry : snapshot.entrySet()) {
+                parcel.writeString(entry.getKey());
+                parcel.writeTypedList(entry.getValue());
+            }
+        }
+
+        FileOutputStream out = null;
+        try {
+            out = mFile.startWrite();
+            out.write(parcel.marshall());
+            mFile.finishWrite(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to persist metadata cache", e);
+            mFile.failWrite(out);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private void loadFromDiskLocked() {
+        if (mLoadedFromDisk) {
+            return;
+        }
+        mLoadedFromDisk = true;
+        if (!mFile.getBaseFile().exists()) {
+            return;
+        }
+
+        final Parcel parcel = Parcel.obtain();
+        try {
+            final byte[] data = mFile.readFully();
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            if (parcel.readInt() != FORMAT_VERSION
+                    || !mApkVersion.equals(parcel.readString())) {
+                Log.d(TAG, "Metadata cache is stale, discarding");
+                mFile.delete();
+                return;
+            }
+            final int size = parcel.readInt();
+            for (int i = 0; i < size; i++) {
+                final String key = parcel.readString();
+                final List<Bundle> metadata = parcel.createTypedArrayList(Bundle.CREATOR);
+                // Entries parsed since a trim are as recent as the persisted ones.
+                if (mCache.get(key) == null) {
+                    mCache.put(key, metadata);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to read metadata cache", e);
+            mCache.evictAll();
+            mFile.delete();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static List<Bundle> copy(List<Bundle> metadata) {
+        final List<Bundle> copy = new ArrayList<>(metadata.size());
+        for (Bundle bundle : metadata) {
+            copy.add(new Bundle(bundle));
+        }
+        return copy;
+    }
+
+    private static String getApkVersion(Context context) {
+        try {
+            final PackageInfo info = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0 /* flags */);
+            return info.getLongVersionCode() + ":" + info.lastUpdateTime + ":" + Build.FINGERPRINT;
+        } catch (PackageManager.NameNotFoundException e) {
+            return Build.FINGERPRINT;
+        }
+    }
+}
@@ -176,6 +176,21 @@ public class PreferenceXmlParserUtils {
     @NonNull
     public static List<Bundle> extractMetadata(Context context, @XmlRes int xmlResId, int flags)
             throws IOException, XmlPullParserException {
+        if (xmlResId <= 0) {
+            Log.d(TAG, xmlResId + " is invalid.");
+            return new ArrayList<>();
+        }
+        return PreferenceXmlMetadataCache.getInstance(context).getMetadata(context, xmlResId,
+                flags);
+    }
+
+    /**
+     * Parses the metadata from preference xml without going through
+     * {@link PreferenceXmlMetadataCache}.
+     */
+    @NonNull
+    static List<Bundle> parseMetadata(Context context, @XmlRes int xmlResId, int flags)
+            throws IOException, XmlPullParserException {
         final List<Bundle> metadata = new ArrayList<>();
         if (xmlResId <= 0) {
             Log.d(TAG, xmlResId + " is invalid.");
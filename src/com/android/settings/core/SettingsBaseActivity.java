@@ -23,7 +23,6 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.pm.PackageManager;
 import android.content.res.TypedArray;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -41,6 +40,7 @@ import androidx.fragment.app.FragmentActivity;
 import com.android.settings.R;
 import com.android.settings.SubSettings;
 import com.android.settings.dashboard.CategoryManager;
+import com.android.settings.dashboard.TileIconCache;
 import com.android.settingslib.drawer.Tile;
 
 import com.google.android.setupcompat.util.WizardManagerHelper;
@@ -58,7 +58,7 @@ public class SettingsBaseActivity extends FragmentActivity {
 
     // Serves as a temporary list of tiles to ignore until we heard back from the PM that they
     // are disabled.
-    private static ArraySet<ComponentName> sTileBlacklist = new ArraySet<>();
+    private static final ArraySet<ComponentName> sTileBlacklist = new ArraySet<>();
 
     private final PackageReceiver mPackageReceiver = new PackageReceiver();
     private final List<CategoryListener> mCategoryListeners = new ArrayList<>();
@@ -73,6 +73,8 @@ public class SettingsBaseActivity extends FragmentActivity {
         }
         final long startTime = System.currentTimeMillis();
         getLifecycle().addObserver(new HideNonSystemOverlayMixin(this));
+        // Read before the fragment parses its preference xml.
+        PreferenceXmlMetadataCache.getInstance(this).preload();
 
         final TypedArray theme = getTheme().obtainStyledAttributes(android.R.styleable.Theme);
         if (!theme.getBoolean(android.R.styleable.Theme_windowNoTitle, false)) {
@@ -183,22 +185,18 @@ public class SettingsBaseActivity extends FragmentActivity {
      * @return whether or not the enabled state actually changed.
      */
     public boolean setTileEnabled(ComponentName component, boolean enabled) {
-        final PackageManager pm = getPackageManager();
-        int state = pm.getComponentEnabledSetting(component);
-        boolean isEnabled = state == PackageManager.COMPONENT_ENABLED_STATE_ENABLED;
-        if (isEnabled != enabled || state == PackageManager.COMPONENT_ENABLED_STATE_DEFAULT) {
+        return TileEnabledStateUpdater.setComponentEnabled(getPackageManager(), component,
+                enabled);
+    }
+
+    static void updateTileBlacklist(ComponentName component, boolean enabled) {
+        synchronized (sTileBlacklist) {
             if (enabled) {
                 sTileBlacklist.remove(component);
             } else {
                 sTileBlacklist.add(component);
             }
-            pm.setComponentEnabledSetting(component, enabled
-                            ? PackageManager.COMPONENT_ENABLED_STATE_ENABLED
-                            : PackageManager.COMPONENT_ENABLED_STATE_DISABLED,
-                    PackageManager.DONT_KILL_APP);
-            return true;
         }
-        return false;
     }
 
     /**
@@ -242,7 +240,9 @@ public class SettingsBaseActivity extends FragmentActivity {
         protected Set<String> doInBackground(Boolean... params) {
             mPreviousTileMap = mCategoryManager.getTileByComponentMap();
             mCategoryManager.reloadAllCategories(mContext);
-            mCategoryManager.updateCategoryFromBlacklist(sTileBlacklist);
+            synchronized (sTileBlacklist) {
+                mCategoryManager.updateCategoryFromBlacklist(sTileBlacklist);
+            }
             return getChangedCategories(params[0]);
         }
 
@@ -298,6 +298,8 @@ public class SettingsBaseActivity extends FragmentActivity {
     private class PackageReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
+            CategoryManager.get(context).onPackageChanged();
+            TileIconCache.getInstance().clear();
             updateCategories(true /* fromBroadcast */);
         }
     }
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Applies the enabled state of Settings tiles, only calling into {@link PackageManager} for the
+ * components whose desired state differs from the one last applied.
+ *
+ * The last applied states are persisted, so a new process does not set every tile again. They
+ * are dropped when the build changes. Requests made while an update is pending are coalesced
+ * into one update with the latest desired states.
+ */
+public class TileEnabledStateUpdater {
+
+    private static final String TAG = "TileEnabledState";
+
+    @VisibleForTesting
+    static final String PREFS_NAME = "tile_enabled_state";
+    private static final String KEY_BUILD_FINGERPRINT = "build_fingerprint";
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static TileEnabledStateUpdater sInstance;
+
+    private final Context mContext;
+    private final Executor mExecutor;
+    private final List<Runnable> mPendingCallbacks = new ArrayList<>();
+    private Supplier<Map<ComponentName, Boolean>> mPendingStates;
+    // Flattened component name -> last applied enabled state, only used on the executor.
+    private Map<String, Boolean> mAppliedStates;
+
+    public static synchronized TileEnabledStateUpdater getInstance(Context context) {
+        if (sInstance == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            sInstance = new TileEnabledStateUpdater(context.getApplicationContext(), executor);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    TileEnabledStateUpdater(Context context, Executor executor) {
+        mContext = context;
+        mExecutor = executor;
+    }
+
+    /**
+     * Requests the tiles to be updated in the background.
+     *
+     * @param desiredStates computes the enabled state of each tile, called in the background
+     * @param onChanged     posted to the main thread if any enabled state changed
+     */
+    public void requestUpdate(Supplier<Map<ComponentName, Boolean>> desiredStates,
+            Runnable onChanged) {
+        final boolean schedule;
+        synchronized (this) {
+            schedule = mPendingStates == null;
+            mPendingStates = desiredStates;
+            if (onChanged != null) {
+                mPendingCallbacks.add(onChanged);
+            }
+        }
+        if (schedule) {
+            mExecutor.execute(this::update);
+        }
+    }
+
+    private void update() {
+        final Supplier<Map<ComponentName, Boolean>> desiredStates;
+        final List<Runnable> callbacks;
+        synchronized (this) {
+            desiredStates = mPendingStates;
+            mPendingStates = null;
+            callbacks = new ArrayList<>(mPendingCallbacks);
+            mPendingCallbacks.clear();
+        }
+
+        final SharedPreferences prefs = mContext.getSharedPreferences(PREFS_NAME,
+                Context.MODE_PRIVATE);
+        if (mAppliedStates == null) {
+            mAppliedStates = loadAppliedStates(prefs);
+        }
+        final PackageManager pm = mContext.getPackageManager();
+        final StringBuilder changedList = new StringBuilder();
+        SharedPreferences.Editor editor = null;
+        for (Map.Entry<ComponentName, Boolean> entry : desiredStates.get().entrySet()) {
+            final ComponentName component = entry.getKey();
+            final boolean enabled = entry.getValue();
+            final String key = component.flattenToString();
+            final Boolean applied = mAppliedStates.get(key);
+            if (applied != null && applied == enabled) {
+                continue;
+            }
+            if (setComponentEnabled(pm, component, enabled)) {
+                changedList.append(component.toShortString()).append(",");
+            }
+            mAppliedStates.put(key, enabled);
+            if (editor == null) {
+                editor = prefs.edit().putString(KEY_BUILD_FINGERPRINT, Build.FINGERPRINT);
+            }
+            editor.putBoolean(key, enabled);
+        }
+        if (editor != null) {
+            editor.apply();
+        }
+
+        if (changedList.length() > 0) {
+            Log.d(TAG, "Enabled state changed for some tiles " + changedList);
+            for (Runnable callback : callbacks) {
+                ThreadUtils.postOnMainThread(callback);
+            }
+        }
+    }
+
+    /**
+     * @return whether or not the enabled state actually changed.
+     */
+    static boolean setComponentEnabled(PackageManager pm, ComponentName component,
+            boolean enabled) {
+        final int state = pm.getComponentEnabledSetting(component);
+        final boolean isEnabled = state == PackageManager.COMPONENT_ENABLED_STATE_ENABLED;
+        if (isEnabled != enabled || state == PackageManager.COMPONENT_ENABLED_STATE_DEFAULT) {
+            SettingsBaseActivity.updateTileBlacklist(component, enabled);
+            pm.setComponentEnabledSetting(component, enabled
+                            ? PackageManager.COMPONENT_ENABLED_STATE_ENABLED
+                            : PackageManager.COMPONENT_ENABLED_STATE_DISABLED,
+                    PackageManager.DONT_KILL_APP);
+            return true;
+        }
+        return false;
+    }
+
+    private static Map<String, Boolean> loadAppliedStates(SharedPreferences prefs) {
+        final Map<String, Boolean> states = new ArrayMap<>();
+        if (!Build.FINGERPRINT.equals(prefs.getString(KEY_BUILD_FINGERPRINT, null))) {
+            // Component states may have been reset by the update, apply everything again.
+            prefs.edit().clear().apply();
+            return states;
+        }
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (entry.getValue() instanceof Boolean) {
+                states.put(entry.getKey(), (Boolean) entry.getValue());
+            }
+        }
+        return states;
+    }
+}
@@ -23,6 +23,7 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Process;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
@@ -36,24 +37,54 @@ import com.android.settings.intelligence.LogProto.SettingsLog;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.core.instrumentation.LogWriter;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * {@link LogWriter} sending the logs to Settings Intelligence in batches.
+ *
+ * Events are kept as primitives in a fixed size buffer and only turned into
+ * {@link SettingsLog}s when a batch is sent, which happens {@link #MESSAGE_DELAY} after the first
+ * buffered event or as soon as {@link #FLUSH_THRESHOLD} events are buffered. Events logged while
+ * the buffer is full are dropped and counted.
+ */
 public class SettingsIntelligenceLogWriter implements LogWriter {
     private static final String TAG = "IntelligenceLogWriter";
 
     private static final String LOG = "logs";
     private static final long MESSAGE_DELAY = DateUtils.MINUTE_IN_MILLIS; // 1 minute
+    @VisibleForTesting
+    static final int BUFFER_CAPACITY = 256;
+    @VisibleForTesting
+    static final int FLUSH_THRESHOLD = 64;
 
-    private List<SettingsLog> mSettingsLogList;
-    private SendLogHandler mLogHandler;
+    private final Object mLock = new Object();
+    private final SendLogHandler mLogHandler;
+    // Events are added to mEventBuffer while mSendingBuffer is turned into a broadcast, the two
+    // are swapped at each send. Both guarded by mLock.
+    private EventBuffer mEventBuffer;
+    private EventBuffer mSendingBuffer;
+    private boolean mSendLogScheduled;
+    // An immediate send is posted, later events until it runs are part of the same batch.
+    private boolean mSendLogPosted;
+    private long mFirstEventTime;
+    private long mEventCount;
+    private long mDroppedCount;
+    private long mFlushCount;
+    private long mTotalFlushLatencyUs;
+    private long mLastFlushLatencyUs;
 
     public SettingsIntelligenceLogWriter() {
-        mSettingsLogList = new LinkedList<>();
+        mEventBuffer = new EventBuffer(BUFFER_CAPACITY);
+        mSendingBuffer = new EventBuffer(BUFFER_CAPACITY);
         final HandlerThread workerThread = new HandlerThread("SettingsIntelligenceLogWriter",
                 Process.THREAD_PRIORITY_BACKGROUND);
         workerThread.start();
@@ -116,26 +147,59 @@ public class SettingsIntelligenceLogWriter implements LogWriter {
 
     @Override
     public void action(int attribution, int action, int pageId, String key, int value) {
-        final ZonedDateTime now = ZonedDateTime.now(ZoneId.systemDefault());
-        final SettingsLog settingsLog = SettingsLog.newBuilder()
-                .setAttribution(attribution)
-                .setAction(action)
-                .setPageId(pageId)
-                .setChangedPreferenceKey(key != null ? key : "")
-                .setChangedPreferenceIntValue(value)
-                .setTimestamp(now.toString())
-                .build();
-        mLogHandler.post(() -> {
-            mSettingsLogList.add(settingsLog);
-        });
-        if (action == SettingsEnums.ACTION_CONTEXTUAL_CARD_DISMISS) {
+        final boolean sendNow;
+        final boolean schedule;
+        synchronized (mLock) {
+            if (mFirstEventTime == 0) {
+                mFirstEventTime = SystemClock.elapsedRealtime();
+            }
+            if (!mEventBuffer.add(attribution, action, pageId, key, value,
+                    System.currentTimeMillis())) {
+                // The buffer is full and a send is already pending, drop the event.
+                mDroppedCount++;
+                return;
+            }
+            mEventCount++;
             // Directly send this event to notify SI instantly that the card is dismissed
+            final boolean flush = action == SettingsEnums.ACTION_CONTEXTUAL_CARD_DISMISS
+                    || mEventBuffer.size() >= FLUSH_THRESHOLD;
+            sendNow = flush && !mSendLogPosted;
+            schedule = !flush && !mSendLogScheduled;
+            if (sendNow) {
+                mSendLogPosted = true;
+            }
+            if (sendNow || schedule) {
+                mSendLogScheduled = true;
+            }
+        }
+        if (sendNow) {
             mLogHandler.sendLog();
-        } else {
+        } else if (schedule) {
             mLogHandler.scheduleSendLog();
         }
     }
 
+    /**
+     * Dumps the event rate, drops and send latency for
+     * {@link com.android.settings.SettingsDumpService}.
+     */
+    public JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        synchronized (mLock) {
+            final long elapsedMs = mFirstEventTime == 0
+                    ? 0 : SystemClock.elapsedRealtime() - mFirstEventTime;
+            obj.put("events", mEventCount);
+            obj.put("events_per_sec", elapsedMs == 0 ? 0 : mEventCount * 1000.0 / elapsedMs);
+            obj.put("dropped", mDroppedCount);
+            obj.put("buffered", mEventBuffer.size());
+            obj.put("flushes", mFlushCount);
+            obj.put("last_flush_latency_us", mLastFlushLatencyUs);
+            obj.put("avg_flush_latency_us",
+                    mFlushCount == 0 ? 0 : mTotalFlushLatencyUs / mFlushCount);
+        }
+        return obj;
+    }
+
     @VisibleForTesting
     static byte[] serialize(List<SettingsLog> settingsLogs) {
         final int size = settingsLogs.size();
@@ -169,7 +233,6 @@ public class SettingsIntelligenceLogWriter implements LogWriter {
         }
 
         void scheduleSendLog() {
-            removeCallbacks(mSendLogsRunnable);
             postDelayed(mSendLogsRunnable, MESSAGE_DELAY);
         }
 
@@ -185,16 +248,105 @@ public class SettingsIntelligenceLogWriter implements LogWriter {
             Log.e(TAG, "context is null");
             return;
         }
+        final long startTime = SystemClock.elapsedRealtimeNanos();
+        final EventBuffer sendingBuffer;
+        synchronized (mLock) {
+            mSendLogScheduled = false;
+            mSendLogPosted = false;
+            sendingBuffer = mEventBuffer;
+            mEventBuffer = mSendingBuffer;
+            mSendingBuffer = sendingBuffer;
+        }
+        // Only this thread touches the sending buffer until the next swap.
+        final List<SettingsLog> settingsLogs = sendingBuffer.drain();
+        if (settingsLogs.isEmpty()) {
+            return;
+        }
         final String action = context.getString(R.string
                 .config_settingsintelligence_log_action);
-        if (!TextUtils.isEmpty(action) && !mSettingsLogList.isEmpty()) {
+        if (!TextUtils.isEmpty(action)) {
             final Intent intent = new Intent();
             intent.setPackage(context.getString(R.string
                     .config_settingsintelligence_package_name));
             intent.setAction(action);
-            intent.putExtra(LOG, serialize(mSettingsLogList));
+            intent.putExtra(LOG, serialize(settingsLogs));
             context.sendBroadcastAsUser(intent, UserHandle.CURRENT);
-            mSettingsLogList.clear();
+        }
+        final long latencyUs = (SystemClock.elapsedRealtimeNanos() - startTime) / 1000;
+        synchronized (mLock) {
+            mFlushCount++;
+            mTotalFlushLatencyUs += latencyUs;
+            mLastFlushLatencyUs = latencyUs;
         }
     };
+
+    /**
+     * Fixed capacity buffer of log events stored as primitives, not thread safe.
+     */
+    @VisibleForTesting
+    static class EventBuffer {
+        private final int[] mAttribution;
+        private final int[] mAction;
+        private final int[] mPageId;
+        private final int[] mValue;
+        private final long[] mTimestamp;
+        private final String[] mKey;
+        private int mSize;
+
+        EventBuffer(int capacity) {
+            mAttribution = new int[capacity];
+            mAction = new int[capacity];
+            mPageId = new int[capacity];
+            mValue = new int[capacity];
+            mTimestamp = new long[capacity];
+            mKey = new String[capacity];
+        }
+
+        /**
+         * @return false if the buffer is full and the event was dropped.
+         */
+        boolean add(int attribution, int action, int pageId, String key, int value,
+                long timestamp) {
+            if (mSize == mAction.length) {
+                return false;
+            }
+            final int index = mSize;
+            mAttribution[index] = attribution;
+            mAction[index] = action;
+            mPageId[index] = pageId;
+            mKey[index] = key;
+            mValue[index] = value;
+            mTimestamp[index] = timestamp;
+            mSize++;
+            return true;
+        }
+
+        /**
+         * Removes all the buffered events.
+         *
+         * @return the events as {@link SettingsLog}s, oldest first.
+         */
+        List<SettingsLog> drain() {
+            final List<SettingsLog> settingsLogs = new ArrayList<>(mSize);
+            final ZoneId zone = ZoneId.systemDefault();
+            for (int index = 0; index < mSize; index++) {
+                settingsLogs.add(SettingsLog.newBuilder()
+                        .setAttribution(mAttribution[index])
+                        .setAction(mAction[index])
+                        .setPageId(mPageId[index])
+                        .setChangedPreferenceKey(mKey[index] != null ? mKey[index] : "")
+                        .setChangedPreferenceIntValue(mValue[index])
+                        .setTimestamp(ZonedDateTime.ofInstant(
+                                Instant.ofEpochMilli(mTimestamp[index]), zone).toString())
+                        .build());
+                mKey[index] = null;
+            }
+            mSize = 0;
+            return settingsLogs;
+        }
+
+        int size() {
+            return mSize;
+        }
+    }
 }
@@ -22,14 +22,27 @@ import android.util.Pair;
 
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 public class SettingsMetricsFeatureProvider extends MetricsFeatureProvider {
     private static final String TAG = "SettingsMetricsFeature";
 
+    private SettingsIntelligenceLogWriter mIntelligenceLogWriter;
+
     @Override
     protected void installLogWriters() {
+        mIntelligenceLogWriter = new SettingsIntelligenceLogWriter();
         mLoggerWriters.add(new StatsLogWriter());
         mLoggerWriters.add(new SettingsEventLogWriter());
-        mLoggerWriters.add(new SettingsIntelligenceLogWriter());
+        mLoggerWriters.add(mIntelligenceLogWriter);
+    }
+
+    /**
+     * @return the counters of the log writer sending logs to Settings Intelligence.
+     */
+    public JSONObject dumpIntelligenceLogWriter() throws JSONException {
+        return mIntelligenceLogWriter.dump();
     }
 
     /**
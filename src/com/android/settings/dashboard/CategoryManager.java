@@ -30,6 +30,7 @@ import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.ProviderTile;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.drawer.TileUtils;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -54,6 +55,8 @@ public class CategoryManager {
 
     private List<DashboardCategory> mCategories;
 
+    private final TileSnapshot mTileSnapshot;
+
     public static CategoryManager get(Context context) {
         if (sInstance == null) {
             sInstance = new CategoryManager(context);
@@ -66,6 +69,7 @@ public class CategoryManager {
         mCategoryByKeyMap = new ArrayMap<>();
         mInterestingConfigChanges = new InterestingConfigChanges();
         mInterestingConfigChanges.applyNewConfig(context.getResources());
+        mTileSnapshot = new TileSnapshot(context);
     }
 
     public synchronized DashboardCategory getTilesByCategory(Context context, String categoryKey) {
@@ -82,10 +86,23 @@ public class CategoryManager {
     public synchronized void reloadAllCategories(Context context) {
         final boolean forceClearCache = mInterestingConfigChanges.applyNewConfig(
                 context.getResources());
+        if (!forceClearCache && mCategories != null
+                && !mTileSnapshot.hasPackagesChanged(context)) {
+            // No package was installed, updated or changed its components since the categories
+            // were built, so the tiles are still up to date.
+            return;
+        }
         mCategories = null;
         tryInitCategories(context, forceClearCache);
     }
 
+    /**
+     * Called when a package change broadcast is received, the next reload rebuilds the tiles.
+     */
+    public synchronized void onPackageChanged() {
+        mTileSnapshot.invalidate();
+    }
+
     public synchronized void updateCategoryFromBlacklist(Set<ComponentName> tileBlacklist) {
         if (mCategories == null) {
             Log.w(TAG, "Category is null, skipping blacklist update");
@@ -140,6 +157,10 @@ public class CategoryManager {
                 mTileByComponentCache.clear();
             }
             mCategoryByKeyMap.clear();
+            if (firstLoading && !forceClearCache && tryLoadSnapshot(context)) {
+                return;
+            }
+            final int sequenceNumber = TileSnapshot.getSequenceNumber(context);
             mCategories = TileUtils.getCategories(context, mTileByComponentCache);
             for (DashboardCategory category : mCategories) {
                 mCategoryByKeyMap.put(category.key, category);
@@ -150,7 +171,61 @@ public class CategoryManager {
             if (firstLoading) {
                 logTiles(context);
             }
+            final Context appContext = context.getApplicationContext();
+            ThreadUtils.postOnBackgroundThread(() -> writeSnapshot(appContext, sequenceNumber));
+        }
+    }
+
+    private void writeSnapshot(Context context, int sequenceNumber) {
+        final List<DashboardCategory> categories = new ArrayList<>();
+        final List<DashboardCategory> extraCategories = new ArrayList<>();
+        // Copied under the lock, the file is written without blocking the UI thread.
+        synchronized (this) {
+            if (mCategories == null) {
+                return;
+            }
+            for (DashboardCategory category : mCategories) {
+                categories.add(copyCategory(category));
+            }
+            for (DashboardCategory category : mCategoryByKeyMap.values()) {
+                if (!mCategories.contains(category)) {
+                    extraCategories.add(copyCategory(category));
+                }
+            }
+        }
+        mTileSnapshot.write(context, categories, extraCategories, sequenceNumber);
+    }
+
+    private static DashboardCategory copyCategory(DashboardCategory category) {
+        final DashboardCategory copy = new DashboardCategory(category.key);
+        for (int i = 0, count = category.getTilesCount(); i < count; i++) {
+            copy.addTile(category.getTile(i));
+        }
+        return copy;
+    }
+
+    /**
+     * Restores the categories persisted by a previous process.
+     *
+     * @return false if there is no up to date snapshot.
+     */
+    private boolean tryLoadSnapshot(Context context) {
+        final Pair<List<DashboardCategory>, List<DashboardCategory>> snapshot =
+                mTileSnapshot.read(context);
+        if (snapshot == null) {
+            return false;
+        }
+        mCategories = snapshot.first;
+        for (DashboardCategory category : mCategories) {
+            mCategoryByKeyMap.put(category.key, category);
+        }
+        for (DashboardCategory category : snapshot.second) {
+            mCategoryByKeyMap.put(category.key, category);
+        }
+        if (DEBUG) {
+            Log.d(TAG, "Restored " + mCategories.size() + " categories from snapshot");
         }
+        return true;
     }
 
     @VisibleForTesting
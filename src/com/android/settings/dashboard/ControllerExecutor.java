@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded executor dedicated to running {@link ControllerTask}s of {@link DashboardFragment}.
+ *
+ * Pending tasks are ordered by {@link ControllerFutureTask#getPriority()}, so controllers whose
+ * preferences are closer to the top of the screen are evaluated first. Tasks which are still
+ * queued when their deadline passes update their preference on the main thread instead.
+ */
+public class ControllerExecutor {
+
+    @VisibleForTesting
+    static final long DEFAULT_DEADLINE_MS = 1000L;
+    private static final int POOL_SIZE =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+
+    private static ThreadPoolExecutor sExecutor;
+
+    private ControllerExecutor() {
+    }
+
+    /**
+     * Queues the tasks on the shared pool without waiting for them. Each task posts its result
+     * to the main thread as soon as it completes.
+     */
+    public static void execute(List<ControllerFutureTask> tasks) {
+        execute(tasks, DEFAULT_DEADLINE_MS);
+    }
+
+    /**
+     * Same as {@link #execute(List)} with a custom deadline in milliseconds.
+     */
+    public static void execute(List<ControllerFutureTask> tasks, long deadlineMs) {
+        final long deadline = SystemClock.uptimeMillis() + deadlineMs;
+        final ThreadPoolExecutor executor = getExecutor();
+        // A task submitted while the pool has fewer threads than its core size starts a new
+        // thread right away and bypasses the priority queue.
+        executor.prestartAllCoreThreads();
+        for (ControllerFutureTask task : tasks) {
+            task.getControllerTask().setDeadline(deadline);
+            executor.execute(task);
+        }
+    }
+
+    @VisibleForTesting
+    static synchronized ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new PriorityBlockingQueue<>(), new ControllerThreadFactory());
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+
+    private static class ControllerThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "DashboardController-" + mCount.getAndIncrement());
+        }
+    }
+}
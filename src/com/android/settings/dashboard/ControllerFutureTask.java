@@ -22,12 +22,44 @@ import java.util.concurrent.FutureTask;
 /**
  *  {@link FutureTask} of the Controller.
  */
-public class ControllerFutureTask extends FutureTask<Void> {
+public class ControllerFutureTask extends FutureTask<Void>
+        implements Comparable<ControllerFutureTask> {
+    private final ControllerTask mTask;
     private final AbstractPreferenceController mController;
+    private final int mPriority;
 
     public ControllerFutureTask(ControllerTask task, Void result) {
+        this(task, result, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param priority lower values run first, e.g. the position of the preference on screen.
+     */
+    public ControllerFutureTask(ControllerTask task, Void result, int priority) {
         super(task, result);
+        mTask = task;
         mController = task.getController();
+        mPriority = priority;
+    }
+
+    @Override
+    public int compareTo(ControllerFutureTask other) {
+        return Integer.compare(mPriority, other.mPriority);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        // Also drops the state update the task may have posted already.
+        mTask.cancel();
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    int getPriority() {
+        return mPriority;
+    }
+
+    ControllerTask getControllerTask() {
+        return mTask;
     }
 
     AbstractPreferenceController getController() {
@@ -35,11 +35,15 @@ import com.android.settingslib.utils.ThreadUtils;
 public class ControllerTask implements Runnable {
     private static final String TAG = "ControllerTask";
     private static final int CONTROLLER_UPDATESTATE_TIME_THRESHOLD = 50;
+    private static final int CONTROLLER_AVAILABILITY_TIME_THRESHOLD = 50;
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
 
     private final AbstractPreferenceController mController;
     private final PreferenceScreen mScreen;
     private final int mMetricsCategory;
     private final MetricsFeatureProvider mMetricsFeature;
+    private long mDeadline = NO_DEADLINE;
+    private volatile boolean mCancelled;
 
     public ControllerTask(AbstractPreferenceController controller, PreferenceScreen screen,
             MetricsFeatureProvider metricsFeature, int metricsCategory) {
@@ -49,42 +53,95 @@ public class ControllerTask implements Runnable {
         mMetricsCategory = metricsCategory;
     }
 
+    /**
+     * Sets the {@link SystemClock#uptimeMillis()} after which this task no longer waits for a
+     * background thread, and updates its preference synchronously on the main thread instead.
+     */
+    void setDeadline(long deadline) {
+        mDeadline = deadline;
+    }
+
+    /**
+     * Stops this task from touching its preference, e.g. once the fragment is paused. A state
+     * update already posted to the main thread is dropped.
+     */
+    void cancel() {
+        mCancelled = true;
+    }
+
     @Override
     public void run() {
-        if (!mController.isAvailable()) {
+        if (mCancelled) {
             return;
         }
+        if (SystemClock.uptimeMillis() > mDeadline) {
+            Log.w(TAG, "Deadline exceeded, update Controller "
+                    + mController.getClass().getSimpleName() + " on the main thread");
+            ThreadUtils.postOnMainThread(() -> {
+                final Preference preference = findAvailablePreference();
+                if (preference != null) {
+                    updateState(preference);
+                }
+            });
+            return;
+        }
+
+        final Preference preference = findAvailablePreference();
+        if (preference == null) {
+            return;
+        }
+        ThreadUtils.postOnMainThread(() -> updateState(preference));
+    }
+
+    AbstractPreferenceController getController() {
+        return mController;
+    }
+
+    private Preference findAvailablePreference() {
+        if (mCancelled) {
+            return null;
+        }
+        final long start = SystemClock.elapsedRealtime();
+        final boolean available = mController.isAvailable();
+        final int availabilityTime = (int) (SystemClock.elapsedRealtime() - start);
+        if (availabilityTime > CONTROLLER_AVAILABILITY_TIME_THRESHOLD) {
+            Log.w(TAG, "The isAvailable took " + availabilityTime + " ms in Controller "
+                    + mController.getClass().getSimpleName());
+        }
+        if (!available) {
+            return null;
+        }
 
         final String key = mController.getPreferenceKey();
         if (TextUtils.isEmpty(key)) {
             Log.d(TAG, String.format("Preference key is %s in Controller %s",
                     key, mController.getClass().getSimpleName()));
-            return;
+            return null;
         }
 
         final Preference preference = mScreen.findPreference(key);
         if (preference == null) {
             Log.d(TAG, String.format("Cannot find preference with key %s in Controller %s",
                     key, mController.getClass().getSimpleName()));
-            return;
         }
-        ThreadUtils.postOnMainThread(() -> {
-            final long t = SystemClock.elapsedRealtime();
-            mController.updateState(preference);
-            final int elapsedTime = (int) (SystemClock.elapsedRealtime() - t);
-            if (elapsedTime > CONTROLLER_UPDATESTATE_TIME_THRESHOLD) {
-                Log.w(TAG, "The updateState took " + elapsedTime + " ms in Controller "
-                        + mController.getClass().getSimpleName());
-                if (mMetricsFeature != null) {
-                    mMetricsFeature.action(SettingsEnums.PAGE_UNKNOWN,
-                            SettingsEnums.ACTION_CONTROLLER_UPDATE_STATE, mMetricsCategory,
-                            mController.getClass().getSimpleName(), elapsedTime);
-                }
-            }
-        });
+        return preference;
     }
 
-    AbstractPreferenceController getController() {
-        return mController;
+    private void updateState(Preference preference) {
+        if (mCancelled) {
+            return;
+        }
+        final long t = SystemClock.elapsedRealtime();
+        mController.updateState(preference);
+        final int elapsedTime = (int) (SystemClock.elapsedRealtime() - t);
+        if (elapsedTime > CONTROLLER_UPDATESTATE_TIME_THRESHOLD) {
+            Log.w(TAG, "The updateState took " + elapsedTime + " ms in Controller "
+                    + mController.getClass().getSimpleName());
+            if (mMetricsFeature != null) {
+                mMetricsFeature.action(SettingsEnums.PAGE_UNKNOWN,
+                        SettingsEnums.ACTION_CONTROLLER_UPDATE_STATE, mMetricsCategory,
+                        mController.getClass().getSimpleName(), elapsedTime);
+            }
+        }
     }
 }
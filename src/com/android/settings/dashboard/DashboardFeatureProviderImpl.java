@@ -361,7 +361,8 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
         // to get the style to tint the icon. Using mContext here won't get the correct style.
         final Icon tileIcon = tile.getIcon(preference.getContext());
         if (tileIcon != null) {
-            Drawable iconDrawable = tileIcon.loadDrawable(preference.getContext());
+            Drawable iconDrawable = TileIconCache.getInstance().loadDrawable(
+                    preference.getContext(), tileIcon);
             if ("com.google.android.gms".equals(tile.getPackageName()) && "Google".equalsIgnoreCase(tile.getTitle(preference.getContext()).toString())) {
                 iconDrawable = preference.getContext().getDrawable(R.drawable.ic_fluid_homepage_google_settings);
             } else if ("com.google.android.apps.wellbeing".equals(tile.getPackageName())) {
@@ -373,6 +374,17 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
             preference.setIcon(iconDrawable);
         } else if (tile.getMetaData() != null
                 && tile.getMetaData().containsKey(META_DATA_PREFERENCE_ICON_URI)) {
+            final Uri uri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_ICON_URI,
+                    METHOD_GET_PROVIDER_ICON);
+            final Pair<String, Integer> cachedIconInfo = uri == null ? null
+                    : TileIconCache.getInstance().getUriIcon(uri.toString());
+            if (cachedIconInfo != null) {
+                final Icon icon = Icon.createWithResource(cachedIconInfo.first,
+                        cachedIconInfo.second);
+                preference.setIcon(TileIconCache.getInstance().loadDrawable(
+                        preference.getContext(), icon));
+                return;
+            }
             ThreadUtils.postOnBackgroundThread(() -> {
                 final Intent intent = tile.getIntent();
                 String packageName = null;
@@ -382,17 +394,19 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
                     packageName = intent.getComponent().getPackageName();
                 }
                 final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-                final Uri uri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_ICON_URI,
-                        METHOD_GET_PROVIDER_ICON);
                 final Pair<String, Integer> iconInfo = TileUtils.getIconFromUri(
                         mContext, packageName, uri, providerMap);
                 if (iconInfo == null) {
                     Log.w(TAG, "Failed to get icon from uri " + uri);
                     return;
                 }
+                if (uri != null) {
+                    TileIconCache.getInstance().putUriIcon(uri.toString(), iconInfo);
+                }
                 final Icon icon = Icon.createWithResource(iconInfo.first, iconInfo.second);
                 ThreadUtils.postOnMainThread(() ->
-                        preference.setIcon(icon.loadDrawable(preference.getContext()))
+                        preference.setIcon(TileIconCache.getInstance().loadDrawable(
+                                preference.getContext(), icon))
                 );
             });
         }
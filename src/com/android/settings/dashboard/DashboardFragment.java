@@ -48,7 +48,6 @@ import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.ProviderTile;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.search.Indexable;
-import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -57,7 +56,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -75,6 +73,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             new ArrayMap<>();
     private final List<DynamicDataObserver> mRegisteredObservers = new ArrayList<>();
     private final List<AbstractPreferenceController> mControllers = new ArrayList<>();
+    // Tasks of the last parallel update, cancelled once the fragment stops showing their results.
+    private final List<ControllerFutureTask> mControllerTasks = new ArrayList<>();
     @VisibleForTesting
     UiBlockerController mBlockerController;
     private DashboardFeatureProvider mDashboardFeatureProvider;
@@ -223,6 +223,18 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                 "isParalleledControllers:" + isParalleledControllers());
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        cancelControllerTasks();
+    }
+
+    @Override
+    public void onDestroy() {
+        cancelControllerTasks();
+        super.onDestroy();
+    }
+
     @Override
     public boolean onPreferenceTreeClick(Preference preference) {
         final Collection<List<AbstractPreferenceController>> controllers =
@@ -394,28 +406,65 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
     /**
      * Use parallel method to update state of each preference managed by PreferenceController.
+     *
+     * Controllers are queued on {@link ControllerExecutor} ordered by the position of their
+     * preference on screen, and each one commits its state to the main thread as it finishes.
+     * Tasks of a previous update which have not finished yet are cancelled.
      */
     @VisibleForTesting
     void updatePreferenceStatesInParallel() {
+        cancelControllerTasks();
+        if (!isAdded()) {
+            return;
+        }
         final PreferenceScreen screen = getPreferenceScreen();
+        final Map<String, Integer> preferenceRanks = getPreferenceRanks(screen);
         final Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
         final List<ControllerFutureTask> taskList = new ArrayList<>();
         for (List<AbstractPreferenceController> controllerList : controllerLists) {
             for (AbstractPreferenceController controller : controllerList) {
+                final Integer rank = preferenceRanks.get(controller.getPreferenceKey());
                 final ControllerFutureTask task = new ControllerFutureTask(
                         new ControllerTask(controller, screen, mMetricsFeatureProvider,
-                                getMetricsCategory()), null /* result */);
+                                getMetricsCategory()), null /* result */,
+                        rank != null ? rank : Integer.MAX_VALUE);
                 taskList.add(task);
-                ThreadUtils.postOnBackgroundThread(task);
             }
         }
+        mControllerTasks.addAll(taskList);
+        ControllerExecutor.execute(taskList);
+    }
 
-        for (ControllerFutureTask task : taskList) {
-            try {
-                task.get();
-            } catch (InterruptedException | ExecutionException e) {
-                Log.w(TAG, task.getController().getPreferenceKey() + " " + e.getMessage());
+    private void cancelControllerTasks() {
+        for (ControllerFutureTask task : mControllerTasks) {
+            task.cancel(false /* mayInterruptIfRunning */);
+        }
+        mControllerTasks.clear();
+    }
+
+    /**
+     * Returns the display position of every preference on screen keyed by preference key.
+     */
+    @VisibleForTesting
+    static Map<String, Integer> getPreferenceRanks(PreferenceGroup group) {
+        final Map<String, Integer> ranks = new ArrayMap<>();
+        if (group != null) {
+            collectPreferenceRanks(group, ranks);
+        }
+        return ranks;
+    }
+
+    private static void collectPreferenceRanks(PreferenceGroup group, Map<String, Integer> ranks) {
+        final int count = group.getPreferenceCount();
+        for (int i = 0; i < count; i++) {
+            final Preference preference = group.getPreference(i);
+            final String key = preference.getKey();
+            if (!TextUtils.isEmpty(key)) {
+                ranks.put(key, ranks.size());
+            }
+            if (preference instanceof PreferenceGroup) {
+                collectPreferenceRanks((PreferenceGroup) preference, ranks);
             }
         }
     }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.dashboard;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.util.ArrayMap;
+import android.util.LruCache;
+import android.util.Pair;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Map;
+
+/**
+ * Process-wide cache of the tile icons bound by {@link DashboardFeatureProviderImpl}.
+ *
+ * Resource icons are cached as {@link Drawable.ConstantState}s keyed by package, resource id,
+ * density, ui mode, theme and tint, so binding a tile again neither decodes the icon nor touches the tile's
+ * package resources. Icons resolved through a content provider uri are cached by uri. Both are
+ * cleared when a package changes.
+ */
+public class TileIconCache {
+
+    private static final int MAX_ICONS = 64;
+
+    private static TileIconCache sInstance;
+
+    private final LruCache<String, Drawable.ConstantState> mIcons = new LruCache<>(MAX_ICONS);
+    private final Map<String, Pair<String, Integer>> mUriIcons = new ArrayMap<>();
+
+    public static synchronized TileIconCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new TileIconCache();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    TileIconCache() {
+    }
+
+    /**
+     * Returns the drawable of {@code icon}, loading it on a miss.
+     */
+    public Drawable loadDrawable(Context context, Icon icon) {
+        if (icon.getType() != Icon.TYPE_RESOURCE) {
+            return icon.loadDrawable(context);
+        }
+        final String key = getKey(context, icon);
+        final Drawable.ConstantState cached = mIcons.get(key);
+        if (cached != null) {
+            return cached.newDrawable(context.getResources());
+        }
+        final Drawable drawable = icon.loadDrawable(context);
+        if (drawable != null && drawable.getConstantState() != null) {
+            mIcons.put(key, drawable.getConstantState());
+        }
+        return drawable;
+    }
+
+    /**
+     * Returns the icon package and resource id last resolved for {@code uri}, or null.
+     */
+    public synchronized Pair<String, Integer> getUriIcon(String uri) {
+        return mUriIcons.get(uri);
+    }
+
+    public synchronized void putUriIcon(String uri, Pair<String, Integer> iconInfo) {
+        mUriIcons.put(uri, iconInfo);
+    }
+
+    /**
+     * Drops all icons, e.g. when a package was updated.
+     */
+    public synchronized void clear() {
+        mIcons.evictAll();
+        mUriIcons.clear();
+    }
+
+    @VisibleForTesting
+    int size() {
+        return mIcons.size();
+    }
+
+    @VisibleForTesting
+    static String getKey(Context context, Icon icon) {
+        final ColorStateList tint = icon.getTintList();
+        final Resources res = context.getResources();
+        // Night mode and the theme change the attributes the drawable resolves.
+        return icon.getResPackage() + ":" + icon.getResId() + ":"
+                + res.getDisplayMetrics().densityDpi + ":"
+                + res.getConfiguration().uiMode + ":"
+                + Integer.toHexString(context.getTheme().getKey().hashCode()) + ":"
+                + (tint == null ? "none" : Integer.toHexString(tint.getDefaultColor()));
+    }
+}
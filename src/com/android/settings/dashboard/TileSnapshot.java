@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.dashboard;
+
+import android.content.Context;
+import android.content.pm.ChangedPackages;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.UserInfo;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.provider.Settings;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.Pair;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.drawer.DashboardCategory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Persists the categories built by {@link CategoryManager}, so a cold start can skip the
+ * PackageManager queries for injected tiles.
+ *
+ * The snapshot is tied to the Settings apk, the build, the boot, the user and the locale. Within
+ * a boot, {@link PackageManager#getChangedPackages(int)} of the user and its profiles tells
+ * whether any package changed since the snapshot was taken.
+ */
+class TileSnapshot {
+
+    private static final String TAG = "TileSnapshot";
+    @VisibleForTesting
+    static final String FILE_NAME = "dashboard_tile_snapshot";
+    private static final int FORMAT_VERSION = 1;
+
+    private final AtomicFile mFile;
+    private final Object mWriteLock = new Object();
+    private int mSequenceNumber = -1;
+
+    TileSnapshot(Context context) {
+        mFile = new AtomicFile(new File(context.getCacheDir(), FILE_NAME));
+    }
+
+    /**
+     * @return true if a package changed since the last {@link #read(Context)} or
+     * {@link #write(Context, List, List, int)}, or if that is unknown.
+     */
+    synchronized boolean hasPackagesChanged(Context context) {
+        if (mSequenceNumber < 0) {
+            return true;
+        }
+        final ChangedPackages changedPackages = getChangedPackages(context, mSequenceNumber);
+        if (changedPackages == null) {
+            return false;
+        }
+        mSequenceNumber = changedPackages.getSequenceNumber();
+        return true;
+    }
+
+    /**
+     * Drops the snapshot, e.g. when a package change broadcast is received.
+     */
+    synchronized void invalidate() {
+        mSequenceNumber = -1;
+        mFile.delete();
+    }
+
+    /**
+     * @return the persisted categories and extra categories, or null if there is none or it is
+     * stale.
+     */
+    synchronized Pair<List<DashboardCategory>, List<DashboardCategory>> read(Context context) {
+        if (!mFile.getBaseFile().exists()) {
+            return null;
+        }
+        final Parcel parcel = Parcel.obtain();
+        try {
+            final byte[] data = mFile.readFully();
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            if (parcel.readInt() != FORMAT_VERSION
+                    || !getEnvironmentKey(context).equals(parcel.readString())) {
+                Log.d(TAG, "Tile snapshot is stale, discarding");
+                invalidate();
+                return null;
+            }
+            final int sequenceNumber = parcel.readInt();
+            if (getChangedPackages(context, sequenceNumber) != null) {
+                Log.d(TAG, "Packages changed since the tile snapshot, discarding");
+                invalidate();
+                return null;
+            }
+            final List<DashboardCategory> categories =
+                    parcel.createTypedArrayList(DashboardCategory.CREATOR);
+            final List<DashboardCategory> extraCategories =
+                    parcel.createTypedArrayList(DashboardCategory.CREATOR);
+            mSequenceNumber = sequenceNumber;
+            return Pair.create(categories, extraCategories);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to read tile snapshot", e);
+            invalidate();
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * @return the current package sequence number, to be passed to
+     * {@link #write(Context, List, List, int)} once the categories are built.
+     */
+    static int getSequenceNumber(Context context) {
+        final ChangedPackages changedPackages =
+                context.getPackageManager().getChangedPackages(0 /* sequenceNumber */);
+        return changedPackages == null ? 0 : changedPackages.getSequenceNumber();
+    }
+
+    /**
+     * The packages changed since {@code sequenceNumber} for the user or one of its profiles,
+     * whose apps can inject tiles too. The sequence number is shared by all users.
+     *
+     * @return null if no package changed.
+     */
+    private static ChangedPackages getChangedPackages(Context context, int sequenceNumber) {
+        final ChangedPackages changedPackages =
+                context.getPackageManager().getChangedPackages(sequenceNumber);
+        if (changedPackages != null) {
+            return changedPackages;
+        }
+        final int myUserId = UserHandle.myUserId();
+        final UserManager userManager = context.getSystemService(UserManager.class);
+        for (UserInfo profile : userManager.getProfiles(myUserId)) {
+            if (profile.id == myUserId) {
+                continue;
+            }
+            final ChangedPackages profileChangedPackages = context
+                    .createContextAsUser(profile.getUserHandle(), 0 /* flags */)
+                    .getPackageManager().getChangedPackages(sequenceNumber);
+            if (profileChangedPackages != null) {
+                return profileChangedPackages;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Persists {@code categories}, built after {@code sequenceNumber} was obtained.
+     * {@code extraCategories} are the categories only reachable by key, see
+     * {@link CategoryManager#backwardCompatCleanupForCategory}. The categories must not be
+     * modified while they are written.
+     */
+    void write(Context context, List<DashboardCategory> categories,
+            List<DashboardCategory> extraCategories, int sequenceNumber) {
+        synchronized (this) {
+            mSequenceNumber = sequenceNumber;
+        }
+        final Parcel parcel = Parcel.obtain();
+        FileOutputStream out = null;
+        // Only serializes writers, hasPackagesChanged() does not wait for the IO.
+        synchronized (mWriteLock) {
+            try {
+                parcel.writeInt(FORMAT_VERSION);
+                parcel.writeString(getEnvironmentKey(context));
+                parcel.writeInt(sequenceNumber);
+                parcel.writeTypedList(categories);
+                parcel.writeTypedList(extraCategories);
+                out = mFile.startWrite();
+                out.write(parcel.marshall());
+                mFile.finishWrite(out);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Failed to write tile snapshot", e);
+                mFile.failWrite(out);
+            } finally {
+                parcel.recycle();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static String getEnvironmentKey(Context context) {
+        String apkVersion;
+        try {
+            final PackageInfo info = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0 /* flags */);
+            apkVersion = info.getLongVersionCode() + ":" + info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            apkVersion = "";
+        }
+        final int bootCount = Settings.Global.getInt(context.getContentResolver(),
+                Settings.Global.BOOT_COUNT, -1);
+        return apkVersion + ":" + Build.FINGERPRINT + ":" + bootCount + ":"
+                + UserHandle.myUserId() + ":"
+                + context.getResources().getConfiguration().getLocales().toLanguageTags();
+    }
+}
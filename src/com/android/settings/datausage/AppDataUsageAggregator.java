@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.TrafficStats.UID_REMOVED;
+import static android.net.TrafficStats.UID_TETHERING;
+
+import android.app.usage.NetworkStats;
+import android.app.usage.NetworkStats.Bucket;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+import android.util.SparseLongArray;
+
+import com.android.settingslib.AppItem;
+import com.android.settingslib.net.UidDetailProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collapses the buckets of a {@link NetworkStats} summary into the {@link AppItem}s shown by
+ * {@link DataUsageList}.
+ *
+ * Usage is accumulated per collapse key in primitive maps, and the {@link AppItem}s are only
+ * created once all buckets have been read, so this can run on a background thread for cycles
+ * with thousands of buckets.
+ */
+public class AppDataUsageAggregator {
+
+    private final int mCurrentUserId;
+    private final SparseBooleanArray mProfileIds;
+    private final UserManager mUserManager;
+    // User id -> whether the user still exists, for the users which are not profiles.
+    private final SparseBooleanArray mExistingUsers = new SparseBooleanArray();
+    // Collapse key -> total bytes.
+    private final SparseLongArray mTotals = new SparseLongArray();
+    // Collapse key -> AppItem category.
+    private final SparseIntArray mCategories = new SparseIntArray();
+    // Uid -> collapse key.
+    private final SparseIntArray mUidKeys = new SparseIntArray();
+
+    public AppDataUsageAggregator(int currentUserId, List<UserHandle> profiles,
+            UserManager userManager) {
+        mCurrentUserId = currentUserId;
+        mUserManager = userManager;
+        mProfileIds = new SparseBooleanArray(profiles.size());
+        for (UserHandle profile : profiles) {
+            mProfileIds.put(profile.getIdentifier(), true);
+        }
+    }
+
+    /**
+     * Reads and closes {@code stats}.
+     */
+    public void addAll(NetworkStats stats) {
+        final Bucket bucket = new Bucket();
+        while (stats.hasNextBucket() && stats.getNextBucket(bucket)) {
+            add(bucket.getUid(), bucket.getRxBytes() + bucket.getTxBytes());
+        }
+        stats.close();
+    }
+
+    /**
+     * Accumulates {@code bytes} used by {@code uid}, deciding how to collapse items together.
+     */
+    public void add(int uid, long bytes) {
+        final int collapseKey;
+        final int category;
+        final int userId = UserHandle.getUserId(uid);
+        if (UserHandle.isApp(uid)) {
+            if (mProfileIds.get(userId)) {
+                if (userId != mCurrentUserId) {
+                    // Add to a managed user item.
+                    accumulate(UidDetailProvider.buildKeyForUser(userId), AppItem.CATEGORY_USER,
+                            bytes);
+                }
+                // Add to app item.
+                collapseKey = uid;
+                category = AppItem.CATEGORY_APP;
+            } else if (!userExists(userId)) {
+                // If it is a removed user add it to the removed users' key
+                collapseKey = UID_REMOVED;
+                category = AppItem.CATEGORY_APP;
+            } else {
+                // Add to other user item.
+                collapseKey = UidDetailProvider.buildKeyForUser(userId);
+                category = AppItem.CATEGORY_USER;
+            }
+        } else if (uid == UID_REMOVED || uid == UID_TETHERING
+                || uid == Process.OTA_UPDATE_UID) {
+            collapseKey = uid;
+            category = AppItem.CATEGORY_APP;
+        } else {
+            collapseKey = Process.SYSTEM_UID;
+            category = AppItem.CATEGORY_APP;
+        }
+        accumulate(collapseKey, category, bytes);
+        mUidKeys.put(uid, collapseKey);
+    }
+
+    /**
+     * Builds the sorted items, splicing in the restricted state of {@code restrictedUids}.
+     */
+    public Result build(int[] restrictedUids) {
+        final int itemCount = mTotals.size();
+        final SparseArray<AppItem> knownItems = new SparseArray<>(itemCount);
+        final List<AppItem> items = new ArrayList<>(itemCount);
+        long largest = 0;
+        for (int i = 0; i < itemCount; i++) {
+            final int key = mTotals.keyAt(i);
+            final AppItem item = new AppItem(key);
+            item.category = mCategories.get(key);
+            item.total = mTotals.valueAt(i);
+            largest = Math.max(largest, item.total);
+            items.add(item);
+            knownItems.put(key, item);
+        }
+
+        for (int i = 0, size = mUidKeys.size(); i < size; i++) {
+            final int uid = mUidKeys.keyAt(i);
+            knownItems.get(mUidKeys.valueAt(i)).addUid(uid);
+            final int userId = UserHandle.getUserId(uid);
+            if (UserHandle.isApp(uid) && mProfileIds.get(userId) && userId != mCurrentUserId) {
+                knownItems.get(UidDetailProvider.buildKeyForUser(userId)).addUid(uid);
+            }
+        }
+
+        for (int uid : restrictedUids) {
+            // Only splice in restricted state for current user or managed users
+            if (!mProfileIds.get(UserHandle.getUserId(uid))) {
+                continue;
+            }
+
+            AppItem item = knownItems.get(uid);
+            if (item == null) {
+                item = new AppItem(uid);
+                item.total = -1;
+                items.add(item);
+                knownItems.put(item.key, item);
+            }
+            item.restricted = true;
+        }
+
+        Collections.sort(items);
+        return new Result(items, largest);
+    }
+
+    private void accumulate(int collapseKey, int category, long bytes) {
+        final int index = mTotals.indexOfKey(collapseKey);
+        if (index < 0) {
+            mTotals.put(collapseKey, bytes);
+            mCategories.put(collapseKey, category);
+        } else {
+            mTotals.put(collapseKey, mTotals.valueAt(index) + bytes);
+        }
+    }
+
+    private boolean userExists(int userId) {
+        final int index = mExistingUsers.indexOfKey(userId);
+        if (index >= 0) {
+            return mExistingUsers.valueAt(index);
+        }
+        final boolean exists = mUserManager.getUserInfo(userId) != null;
+        mExistingUsers.put(userId, exists);
+        return exists;
+    }
+
+    /**
+     * The aggregated items, sorted for display.
+     */
+    public static class Result {
+        public final List<AppItem> items;
+        public final long largest;
+
+        Result(List<AppItem> items, long largest) {
+            this.items = items;
+            this.largest = largest;
+        }
+    }
+}
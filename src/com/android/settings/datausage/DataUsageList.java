@@ -17,30 +17,23 @@ package com.android.settings.datausage;
 import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
 import static android.net.NetworkStatsHistory.FIELD_RX_BYTES;
 import static android.net.NetworkStatsHistory.FIELD_TX_BYTES;
-import static android.net.TrafficStats.UID_REMOVED;
-import static android.net.TrafficStats.UID_TETHERING;
 
 import android.app.Activity;
 import android.app.ActivityManager;
 import android.app.settings.SettingsEnums;
 import android.app.usage.NetworkStats;
-import android.app.usage.NetworkStats.Bucket;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.UserInfo;
 import android.graphics.Color;
 import android.net.ConnectivityManager;
 import android.net.NetworkPolicy;
 import android.net.NetworkTemplate;
 import android.os.Bundle;
-import android.os.Process;
-import android.os.UserHandle;
 import android.os.UserManager;
 import android.provider.Settings;
 import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 import android.util.Log;
-import android.util.SparseArray;
 import android.view.View;
 import android.view.View.AccessibilityDelegate;
 import android.view.accessibility.AccessibilityEvent;
@@ -54,6 +47,7 @@ import androidx.loader.app.LoaderManager.LoaderCallbacks;
 import androidx.loader.content.Loader;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceGroup;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.settings.R;
 import com.android.settings.core.SubSettingLauncher;
@@ -66,9 +60,9 @@ import com.android.settingslib.net.NetworkCycleChartData;
 import com.android.settingslib.net.NetworkCycleChartDataLoader;
 import com.android.settingslib.net.NetworkStatsSummaryLoader;
 import com.android.settingslib.net.UidDetailProvider;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -96,6 +90,9 @@ public class DataUsageList extends DataUsageBaseFragment
     static final int LOADER_CHART_DATA = 2;
     @VisibleForTesting
     static final int LOADER_SUMMARY = 3;
+    // Number of app preferences added at once, the rest are added while scrolling down.
+    @VisibleForTesting
+    static final int PAGE_SIZE = 30;
 
     @VisibleForTesting
     MobileDataEnabledListener mDataStateListener;
@@ -119,6 +116,9 @@ public class DataUsageList extends DataUsageBaseFragment
     private Preference mUsageAmount;
     private PreferenceGroup mApps;
     private View mHeader;
+    private AppDataUsageAggregator.Result mAppsResult;
+    private int mBoundItemCount;
+    private int mStatsGeneration;
 
     @Override
     public int getMetricsCategory() {
@@ -196,6 +196,15 @@ public class DataUsageList extends DataUsageBaseFragment
         mLoadingViewController = new LoadingViewController(
                 getView().findViewById(R.id.loading_container), getListView());
         mLoadingViewController.showLoadingViewDelayed();
+
+        getListView().addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (!recyclerView.canScrollVertically(1 /* scrolling down */)) {
+                    bindNextPage();
+                }
+            }
+        });
     }
 
     @Override
@@ -340,87 +349,56 @@ public class DataUsageList extends DataUsageBaseFragment
     }
 
     /**
-     * Bind the given {@link NetworkStats}, or {@code null} to clear list.
+     * Aggregates the given {@link NetworkStats} on a background thread, then binds the result.
      */
-    private void bindStats(NetworkStats stats, int[] restrictedUids) {
+    private void loadStats(NetworkStats stats, int[] restrictedUids) {
+        final int generation = ++mStatsGeneration;
+        final int currentUserId = ActivityManager.getCurrentUser();
+        final UserManager userManager = UserManager.get(getContext());
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final AppDataUsageAggregator aggregator = new AppDataUsageAggregator(currentUserId,
+                    userManager.getUserProfiles(), userManager);
+            aggregator.addAll(stats);
+            final AppDataUsageAggregator.Result result = aggregator.build(restrictedUids);
+            ThreadUtils.postOnMainThread(() -> {
+                if (generation != mStatsGeneration || !isAdded()) {
+                    return;
+                }
+                bindStats(result);
+                updateEmptyVisible();
+            });
+        });
+    }
+
+    /**
+     * Bind the first page of the given result, or {@code null} to clear list.
+     */
+    @VisibleForTesting
+    void bindStats(AppDataUsageAggregator.Result result) {
         mApps.removeAll();
-        if (stats == null) {
+        mAppsResult = result;
+        mBoundItemCount = 0;
+        if (result == null) {
             if (LOGD) {
                 Log.d(TAG, "No network stats data. App list cleared.");
             }
             return;
         }
+        bindNextPage();
+    }
 
-        final ArrayList<AppItem> items = new ArrayList<>();
-        long largest = 0;
-
-        final int currentUserId = ActivityManager.getCurrentUser();
-        final UserManager userManager = UserManager.get(getContext());
-        final List<UserHandle> profiles = userManager.getUserProfiles();
-        final SparseArray<AppItem> knownItems = new SparseArray<AppItem>();
-
-        final Bucket bucket = new Bucket();
-        while (stats.hasNextBucket() && stats.getNextBucket(bucket)) {
-            // Decide how to collapse items together
-            final int uid = bucket.getUid();
-            final int collapseKey;
-            final int category;
-            final int userId = UserHandle.getUserId(uid);
-            if (UserHandle.isApp(uid)) {
-                if (profiles.contains(new UserHandle(userId))) {
-                    if (userId != currentUserId) {
-                        // Add to a managed user item.
-                        final int managedKey = UidDetailProvider.buildKeyForUser(userId);
-                        largest = accumulate(managedKey, knownItems, bucket,
-                            AppItem.CATEGORY_USER, items, largest);
-                    }
-                    // Add to app item.
-                    collapseKey = uid;
-                    category = AppItem.CATEGORY_APP;
-                } else {
-                    // If it is a removed user add it to the removed users' key
-                    final UserInfo info = userManager.getUserInfo(userId);
-                    if (info == null) {
-                        collapseKey = UID_REMOVED;
-                        category = AppItem.CATEGORY_APP;
-                    } else {
-                        // Add to other user item.
-                        collapseKey = UidDetailProvider.buildKeyForUser(userId);
-                        category = AppItem.CATEGORY_USER;
-                    }
-                }
-            } else if (uid == UID_REMOVED || uid == UID_TETHERING
-                    || uid == Process.OTA_UPDATE_UID) {
-                collapseKey = uid;
-                category = AppItem.CATEGORY_APP;
-            } else {
-                collapseKey = android.os.Process.SYSTEM_UID;
-                category = AppItem.CATEGORY_APP;
-            }
-            largest = accumulate(collapseKey, knownItems, bucket, category, items, largest);
-        }
-        stats.close();
-
-        final int restrictedUidsMax = restrictedUids.length;
-        for (int i = 0; i < restrictedUidsMax; ++i) {
-            final int uid = restrictedUids[i];
-            // Only splice in restricted state for current user or managed users
-            if (!profiles.contains(new UserHandle(UserHandle.getUserId(uid)))) {
-                continue;
-            }
-
-            AppItem item = knownItems.get(uid);
-            if (item == null) {
-                item = new AppItem(uid);
-                item.total = -1;
-                items.add(item);
-                knownItems.put(item.key, item);
-            }
-            item.restricted = true;
+    /**
+     * Adds the preferences of the next {@link #PAGE_SIZE} items, if any.
+     */
+    @VisibleForTesting
+    void bindNextPage() {
+        if (mAppsResult == null) {
+            return;
         }
-
-        Collections.sort(items);
-        for (int i = 0; i < items.size(); i++) {
+        final List<AppItem> items = mAppsResult.items;
+        final long largest = mAppsResult.largest;
+        final int end = Math.min(items.size(), mBoundItemCount + PAGE_SIZE);
+        for (int i = mBoundItemCount; i < end; i++) {
             final int percentTotal = largest != 0 ? (int) (items.get(i).total * 100 / largest) : 0;
             final AppDataUsagePreference preference = new AppDataUsagePreference(getContext(),
                     items.get(i), percentTotal, mUidDetailProvider);
@@ -435,6 +413,19 @@ public class DataUsageList extends DataUsageBaseFragment
             });
             mApps.addPreference(preference);
         }
+        mBoundItemCount = end;
+    }
+
+    private void updateEmptyVisible() {
+        if ((mApps.getPreferenceCount() != 0) !=
+                (getPreferenceScreen().getPreferenceCount() != 0)) {
+            if (mApps.getPreferenceCount() != 0) {
+                getPreferenceScreen().addPreference(mUsageAmount);
+                getPreferenceScreen().addPreference(mApps);
+            } else {
+                getPreferenceScreen().removeAll();
+            }
+        }
     }
 
     @VisibleForTesting
@@ -463,30 +454,6 @@ public class DataUsageList extends DataUsageBaseFragment
                 .launch();
     }
 
-    /**
-     * Accumulate data usage of a network stats entry for the item mapped by the collapse key.
-     * Creates the item if needed.
-     *
-     * @param collapseKey  the collapse key used to map the item.
-     * @param knownItems   collection of known (already existing) items.
-     * @param bucket       the network stats bucket to extract data usage from.
-     * @param itemCategory the item is categorized on the list view by this category. Must be
-     */
-    private static long accumulate(int collapseKey, final SparseArray<AppItem> knownItems,
-            Bucket bucket, int itemCategory, ArrayList<AppItem> items, long largest) {
-        final int uid = bucket.getUid();
-        AppItem item = knownItems.get(collapseKey);
-        if (item == null) {
-            item = new AppItem(collapseKey);
-            item.category = itemCategory;
-            items.add(item);
-            knownItems.put(item.key, item);
-        }
-        item.addUid(uid);
-        item.total += bucket.getRxBytes() + bucket.getTxBytes();
-        return Math.max(largest, item.total);
-    }
-
     private OnItemSelectedListener mCycleListener = new OnItemSelectedListener() {
         @Override
         public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
@@ -552,26 +519,20 @@ public class DataUsageList extends DataUsageBaseFragment
         public void onLoadFinished(Loader<NetworkStats> loader, NetworkStats data) {
             final int[] restrictedUids = services.mPolicyManager.getUidsWithPolicy(
                     POLICY_REJECT_METERED_BACKGROUND);
-            bindStats(data, restrictedUids);
-            updateEmptyVisible();
+            if (data == null) {
+                mStatsGeneration++;
+                bindStats(null);
+                updateEmptyVisible();
+                return;
+            }
+            loadStats(data, restrictedUids);
         }
 
         @Override
         public void onLoaderReset(Loader<NetworkStats> loader) {
-            bindStats(null, new int[0]);
+            mStatsGeneration++;
+            bindStats(null);
             updateEmptyVisible();
         }
-
-        private void updateEmptyVisible() {
-            if ((mApps.getPreferenceCount() != 0) !=
-                    (getPreferenceScreen().getPreferenceCount() != 0)) {
-                if (mApps.getPreferenceCount() != 0) {
-                    getPreferenceScreen().addPreference(mUsageAmount);
-                    getPreferenceScreen().addPreference(mApps);
-                } else {
-                    getPreferenceScreen().removeAll();
-                }
-            }
-        }
     };
 }
@@ -32,6 +32,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.core.AvailabilityDependencies;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settingslib.DeviceInfoUtils;
 
@@ -57,6 +58,12 @@ public class PhoneNumberPreferenceController extends BasePreferenceController {
         return mTelephonyManager.isVoiceCapable() ? AVAILABLE : UNSUPPORTED_ON_DEVICE;
     }
 
+    @Override
+    protected AvailabilityDependencies getAvailabilityDependencies() {
+        // Voice capability is part of the device configuration.
+        return new AvailabilityDependencies();
+    }
+
     @Override
     public CharSequence getSummary() {
         return getFirstPhoneNumber();
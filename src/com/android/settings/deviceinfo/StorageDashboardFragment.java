@@ -39,6 +39,7 @@ import com.android.settings.R;
 import com.android.settings.Utils;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.dashboard.profileselector.ProfileSelectFragment;
+import com.android.settings.deviceinfo.storage.AppStorageSizeCache;
 import com.android.settings.deviceinfo.storage.AutomaticStorageManagementSwitchPreferenceController;
 import com.android.settings.deviceinfo.storage.CachedStorageValuesHelper;
 import com.android.settings.deviceinfo.storage.SecondaryUserController;
@@ -259,10 +260,27 @@ public class StorageDashboardFragment extends DashboardFragment
     public Loader<SparseArray<StorageAsyncLoader.AppsStorageResult>> onCreateLoader(int id,
             Bundle args) {
         final Context context = getContext();
-        return new StorageAsyncLoader(context, context.getSystemService(UserManager.class),
+        final StorageAsyncLoader loader = new StorageAsyncLoader(context,
+                context.getSystemService(UserManager.class),
                 mVolume.fsUuid,
                 new StorageStatsSource(context),
-                context.getPackageManager());
+                context.getPackageManager(),
+                AppStorageSizeCache.getInstance(context));
+        loader.setProgressListener(this::onPartialAppsResult);
+        return loader;
+    }
+
+    /**
+     * Shows the category sizes accumulated so far, before the whole scan is done. Cached sizes
+     * of a previous scan are more accurate than a partial total, so they are kept instead.
+     */
+    @VisibleForTesting
+    void onPartialAppsResult(SparseArray<StorageAsyncLoader.AppsStorageResult> partialResult) {
+        if (!isAdded() || mStorageInfo == null || mAppsResult != null
+                || partialResult.get(UserHandle.myUserId()) == null) {
+            return;
+        }
+        mPreferenceController.onPartialLoadFinished(partialResult, UserHandle.myUserId());
     }
 
     @Override
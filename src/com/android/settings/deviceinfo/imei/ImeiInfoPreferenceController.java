@@ -30,6 +30,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.core.AvailabilityDependencies;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.slices.Sliceable;
 import com.android.settingslib.Utils;
@@ -118,6 +119,12 @@ public class ImeiInfoPreferenceController extends BasePreferenceController {
                 && !Utils.isWifiOnly(mContext) ? AVAILABLE : UNSUPPORTED_ON_DEVICE;
     }
 
+    @Override
+    protected AvailabilityDependencies getAvailabilityDependencies() {
+        // Neither the user type nor the mobile network support changes while the process runs.
+        return new AvailabilityDependencies();
+    }
+
     @Override
     public boolean useDynamicSliceSummary() {
         return true;
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import android.content.Context;
+import android.provider.Settings;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent per-package storage sizes used by {@link StorageAsyncLoader}, so that a reload only
+ * queries the packages which were updated or whose sizes are older than the storage clobber
+ * threshold.
+ */
+public class AppStorageSizeCache {
+
+    private static final String TAG = "AppStorageSizeCache";
+    @VisibleForTesting
+    static final String CACHE_FILE_NAME = "app_storage_sizes";
+    private static final int FORMAT_VERSION = 1;
+
+    private static AppStorageSizeCache sInstance;
+
+    private final AtomicFile mFile;
+    private final long mClobberThreshold;
+    private final Map<String, Entry> mEntries = new ArrayMap<>();
+    private boolean mLoaded;
+    // This clock is used to provide the time. By default, it uses the system clock, but can be
+    // replaced for test purposes.
+    @VisibleForTesting
+    CachedStorageValuesHelper.Clock mClock = new CachedStorageValuesHelper.Clock();
+
+    public static synchronized AppStorageSizeCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AppStorageSizeCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AppStorageSizeCache(Context context) {
+        mFile = new AtomicFile(new File(context.getCacheDir(), CACHE_FILE_NAME));
+        mClobberThreshold = Settings.Global.getLong(context.getContentResolver(),
+                Settings.Global.STORAGE_SETTINGS_CLOBBER_THRESHOLD,
+                TimeUnit.MINUTES.toMillis(5));
+    }
+
+    /**
+     * @return the cached sizes of the package, or null if the package was updated since or the
+     * sizes are too old.
+     */
+    public synchronized Entry get(String uuid, int userId, String packageName,
+            long lastUpdateTime) {
+        loadLocked();
+        final Entry entry = mEntries.get(getKey(uuid, userId, packageName));
+        if (entry == null
+                || entry.lastUpdateTime != lastUpdateTime
+                || mClock.getCurrentTime() - entry.timestamp >= mClobberThreshold) {
+            return null;
+        }
+        return entry;
+    }
+
+    public synchronized void put(String uuid, int userId, String packageName, Entry entry) {
+        loadLocked();
+        entry.timestamp = mClock.getCurrentTime();
+        mEntries.put(getKey(uuid, userId, packageName), entry);
+    }
+
+    /**
+     * Drops the entries of the volume and user which are not in {@code packageNames}, e.g. after
+     * an uninstall.
+     */
+    public synchronized void retain(String uuid, int userId, Set<String> packageNames) {
+        loadLocked();
+        final String prefix = getKey(uuid, userId, "");
+        mEntries.keySet().removeIf(key -> key.startsWith(prefix)
+                && !packageNames.contains(key.substring(prefix.length())));
+    }
+
+    /**
+     * Writes the entries to disk.
+     */
+    public synchronized void save() {
+        FileOutputStream out = null;
+        try {
+            out = mFile.startWrite();
+            final DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(FORMAT_VERSION);
+            data.writeInt(mEntries.size());
+            for (Map.Entry<String, Entry> mapEntry : mEntries.entrySet()) {
+                final Entry entry = mapEntry.getValue();
+                data.writeUTF(mapEntry.getKey());
+                data.writeLong(entry.lastUpdateTime);
+                data.writeLong(entry.codeBytes);
+                data.writeLong(entry.dataBytes);
+                data.writeLong(entry.cacheBytes);
+                data.writeLong(entry.cacheQuota);
+                data.writeLong(entry.timestamp);
+            }
+            data.flush();
+            mFile.finishWrite(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save app storage sizes", e);
+            mFile.failWrite(out);
+        }
+    }
+
+    private void loadLocked() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mFile.getBaseFile().exists()) {
+            return;
+        }
+        try {
+            final DataInputStream data = new DataInputStream(
+                    new ByteArrayInputStream(mFile.readFully()));
+            if (data.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            final int size = data.readInt();
+            for (int i = 0; i < size; i++) {
+                final String key = data.readUTF();
+                final Entry entry = new Entry();
+                entry.lastUpdateTime = data.readLong();
+                entry.codeBytes = data.readLong();
+                entry.dataBytes = data.readLong();
+                entry.cacheBytes = data.readLong();
+                entry.cacheQuota = data.readLong();
+                entry.timestamp = data.readLong();
+                mEntries.put(key, entry);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read app storage sizes", e);
+            mEntries.clear();
+        }
+    }
+
+    private static String getKey(String uuid, int userId, String packageName) {
+        return uuid + "/" + userId + "/" + packageName;
+    }
+
+    /**
+     * Storage sizes of one package for one user.
+     */
+    public static class Entry {
+        public long lastUpdateTime;
+        public long codeBytes;
+        public long dataBytes;
+        public long cacheBytes;
+        public long cacheQuota;
+        long timestamp;
+    }
+}
@@ -23,44 +23,76 @@ import static android.content.pm.ApplicationInfo.CATEGORY_VIDEO;
 
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.UserInfo;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * StorageAsyncLoader is a Loader which loads categorized app information and external stats for all
- * users
+ * users. The per-package stats are queried on a bounded pool, and partial totals can be observed
+ * through a {@link ProgressListener}.
  */
 public class StorageAsyncLoader
         extends AsyncLoaderCompat<SparseArray<StorageAsyncLoader.AppsStorageResult>> {
     private UserManager mUserManager;
     private static final String TAG = "StorageAsyncLoader";
+    private static final int POOL_SIZE = 4;
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+    private static final long PROGRESS_INTERVAL_MS = 250L;
+
+    private static ExecutorService sExecutor;
 
     private String mUuid;
     private StorageStatsSource mStatsManager;
     private PackageManager mPackageManager;
     private ArraySet<String> mSeenPackages;
+    private AppStorageSizeCache mSizeCache;
+    private volatile ProgressListener mProgressListener;
+    private long mLastProgressTime;
 
     public StorageAsyncLoader(Context context, UserManager userManager,
             String uuid, StorageStatsSource source, PackageManager pm) {
+        this(context, userManager, uuid, source, pm, null /* sizeCache */);
+    }
+
+    /**
+     * @param sizeCache the per-package sizes to reuse for packages which were not updated since
+     *                  they were cached, or null to always query every package.
+     */
+    public StorageAsyncLoader(Context context, UserManager userManager,
+            String uuid, StorageStatsSource source, PackageManager pm,
+            AppStorageSizeCache sizeCache) {
         super(context);
         mUserManager = userManager;
         mUuid = uuid;
         mStatsManager = source;
         mPackageManager = pm;
+        mSizeCache = sizeCache;
     }
 
     @Override
@@ -68,11 +100,20 @@ public class StorageAsyncLoader
         return loadApps();
     }
 
+    /**
+     * Sets a listener notified on the main thread with the totals accumulated so far.
+     */
+    public void setProgressListener(ProgressListener listener) {
+        mProgressListener = listener;
+    }
+
     private SparseArray<AppsStorageResult> loadApps() {
         mSeenPackages = new ArraySet<>();
+        mLastProgressTime = 0;
         SparseArray<AppsStorageResult> result = new SparseArray<>();
         List<UserInfo> infos = mUserManager.getUsers();
-        // Sort the users by user id ascending.
+        // Sort the users by user id ascending. Users must be aggregated in this order so that the
+        // code size of a package is attributed to the first user which has it installed.
         Collections.sort(
                 infos,
                 new Comparator<UserInfo>() {
@@ -83,81 +124,203 @@ public class StorageAsyncLoader
                 });
         for (int i = 0, userCount = infos.size(); i < userCount; i++) {
             UserInfo info = infos.get(i);
-            result.put(info.id, getStorageResultForUser(info.id));
+            final AppsStorageResult userResult = new AppsStorageResult();
+            result.put(info.id, userResult);
+            if (!loadStorageResultForUser(info.id, userResult, result)) {
+                break;
+            }
+            publishProgress(result, true /* force */);
+        }
+        if (mSizeCache != null) {
+            mSizeCache.save();
         }
         return result;
     }
 
-    private AppsStorageResult getStorageResultForUser(int userId) {
+    /**
+     * Fills {@code result} with the sizes of the apps of the user.
+     *
+     * @return false if the load was interrupted.
+     */
+    private boolean loadStorageResultForUser(int userId, AppsStorageResult result,
+            SparseArray<AppsStorageResult> allResults) {
+        // Load the external stats first, so that partial results can already be displayed.
+        Log.d(TAG, "Loading external stats");
+        try {
+            result.externalStats = mStatsManager.getExternalStorageStats(mUuid,
+                    UserHandle.of(userId));
+        } catch (IOException e) {
+            Log.w(TAG, e);
+        }
+
         Log.d(TAG, "Loading apps");
         List<ApplicationInfo> applicationInfos =
                 mPackageManager.getInstalledApplicationsAsUser(0, userId);
-        AppsStorageResult result = new AppsStorageResult();
-        UserHandle myUser = UserHandle.of(userId);
-        for (int i = 0, size = applicationInfos.size(); i < size; i++) {
-            ApplicationInfo app = applicationInfos.get(i);
-
-            StorageStatsSource.AppStorageStats stats;
-            try {
-                stats = mStatsManager.getStatsForPackage(mUuid, app.packageName, myUser);
-            } catch (NameNotFoundException | IOException e) {
-                // This may happen if the package was removed during our calculation.
-                Log.w(TAG, "App unexpectedly not found", e);
-                continue;
+        final UserHandle myUser = UserHandle.of(userId);
+        final ExecutorCompletionService<PackageSizes> completionService =
+                new ExecutorCompletionService<>(getExecutor());
+        final List<Future<PackageSizes>> futures = new ArrayList<>(applicationInfos.size());
+        final ArraySet<String> packageNames = new ArraySet<>();
+        // The cache is keyed by update time, read for all packages in one call.
+        final ArrayMap<String, Long> lastUpdateTimes = new ArrayMap<>();
+        if (mSizeCache != null) {
+            for (PackageInfo info : mPackageManager.getInstalledPackagesAsUser(0, userId)) {
+                lastUpdateTimes.put(info.packageName, info.lastUpdateTime);
             }
+        }
+        for (int i = 0, size = applicationInfos.size(); i < size; i++) {
+            final ApplicationInfo app = applicationInfos.get(i);
+            packageNames.add(app.packageName);
+            final Long lastUpdateTime = lastUpdateTimes.get(app.packageName);
+            futures.add(completionService.submit(() -> getPackageSizes(app, myUser,
+                    lastUpdateTime)));
+        }
 
-            final long dataSize = stats.getDataBytes();
-            final long cacheQuota = mStatsManager.getCacheQuotaBytes(mUuid, app.uid);
-            final long cacheBytes = stats.getCacheBytes();
-            long blamedSize = dataSize;
-            // Technically, we could overages as freeable on the storage settings screen.
-            // If the app is using more cache than its quota, we would accidentally subtract the
-            // overage from the system size (because it shows up as unused) during our attribution.
-            // Thus, we cap the attribution at the quota size.
-            if (cacheQuota < cacheBytes) {
-                blamedSize = blamedSize - cacheBytes + cacheQuota;
+        try {
+            for (int i = 0, size = futures.size(); i < size; i++) {
+                final PackageSizes sizes = completionService.take().get();
+                if (sizes != null) {
+                    addPackageSizes(result, sizes);
+                    publishProgress(allResults, false /* force */);
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while loading apps");
+            for (Future<PackageSizes> future : futures) {
+                future.cancel(true /* mayInterruptIfRunning */);
             }
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            // getPackageSizes() handles the expected failures, so this is a bug.
+            throw new IllegalStateException(e.getCause());
+        }
 
-            // This isn't quite right because it slams the first user by user id with the whole code
-            // size, but this ensures that we count all apps seen once.
-            if (!mSeenPackages.contains(app.packageName)) {
-                blamedSize += stats.getCodeBytes();
-                mSeenPackages.add(app.packageName);
+        if (mSizeCache != null) {
+            mSizeCache.retain(mUuid, userId, packageNames);
+        }
+        Log.d(TAG, "Obtaining result completed");
+        return true;
+    }
+
+    /**
+     * Returns the sizes of the package, from the cache if it was not updated since. Runs on the
+     * worker pool.
+     *
+     * @param lastUpdateTime the update time of the package, or null if it cannot be cached.
+     */
+    private PackageSizes getPackageSizes(ApplicationInfo app, UserHandle user,
+            Long lastUpdateTime) {
+        final int userId = user.getIdentifier();
+        final boolean cacheable = mSizeCache != null && lastUpdateTime != null;
+        if (cacheable) {
+            final AppStorageSizeCache.Entry entry =
+                    mSizeCache.get(mUuid, userId, app.packageName, lastUpdateTime);
+            if (entry != null) {
+                return new PackageSizes(app, entry);
             }
+        }
+
+        final StorageStatsSource.AppStorageStats stats;
+        try {
+            stats = mStatsManager.getStatsForPackage(mUuid, app.packageName, user);
+        } catch (NameNotFoundException | IOException e) {
+            // This may happen if the package was removed during our calculation.
+            Log.w(TAG, "App unexpectedly not found", e);
+            return null;
+        }
 
-            switch (app.category) {
-                case CATEGORY_GAME:
+        final AppStorageSizeCache.Entry entry = new AppStorageSizeCache.Entry();
+        entry.lastUpdateTime = cacheable ? lastUpdateTime : 0;
+        entry.codeBytes = stats.getCodeBytes();
+        entry.dataBytes = stats.getDataBytes();
+        entry.cacheBytes = stats.getCacheBytes();
+        entry.cacheQuota = mStatsManager.getCacheQuotaBytes(mUuid, app.uid);
+        if (cacheable) {
+            mSizeCache.put(mUuid, userId, app.packageName, entry);
+        }
+        return new PackageSizes(app, entry);
+    }
+
+    /**
+     * Adds the sizes of one package to the category totals. Always called on the loader thread.
+     */
+    private void addPackageSizes(AppsStorageResult result, PackageSizes sizes) {
+        final ApplicationInfo app = sizes.app;
+        final AppStorageSizeCache.Entry entry = sizes.entry;
+        final long cacheQuota = entry.cacheQuota;
+        final long cacheBytes = entry.cacheBytes;
+        long blamedSize = entry.dataBytes;
+        // Technically, we could overages as freeable on the storage settings screen.
+        // If the app is using more cache than its quota, we would accidentally subtract the
+        // overage from the system size (because it shows up as unused) during our attribution.
+        // Thus, we cap the attribution at the quota size.
+        if (cacheQuota < cacheBytes) {
+            blamedSize = blamedSize - cacheBytes + cacheQuota;
+        }
+
+        // This isn't quite right because it slams the first user by user id with the whole code
+        // size, but this ensures that we count all apps seen once.
+        if (!mSeenPackages.contains(app.packageName)) {
+            blamedSize += entry.codeBytes;
+            mSeenPackages.add(app.packageName);
+        }
+
+        switch (app.category) {
+            case CATEGORY_GAME:
+                result.gamesSize += blamedSize;
+                break;
+            case CATEGORY_AUDIO:
+                result.musicAppsSize += blamedSize;
+                break;
+            case CATEGORY_VIDEO:
+                result.videoAppsSize += blamedSize;
+                break;
+            case CATEGORY_IMAGE:
+                result.photosAppsSize += blamedSize;
+                break;
+            default:
+                // The deprecated game flag does not set the category.
+                if ((app.flags & ApplicationInfo.FLAG_IS_GAME) != 0) {
                     result.gamesSize += blamedSize;
                     break;
-                case CATEGORY_AUDIO:
-                    result.musicAppsSize += blamedSize;
-                    break;
-                case CATEGORY_VIDEO:
-                    result.videoAppsSize += blamedSize;
-                    break;
-                case CATEGORY_IMAGE:
-                    result.photosAppsSize += blamedSize;
-                    break;
-                default:
-                    // The deprecated game flag does not set the category.
-                    if ((app.flags & ApplicationInfo.FLAG_IS_GAME) != 0) {
-                        result.gamesSize += blamedSize;
-                        break;
-                    }
-                    result.otherAppsSize += blamedSize;
-                    break;
+                }
+                result.otherAppsSize += blamedSize;
+                break;
+        }
+    }
+
+    private void publishProgress(SparseArray<AppsStorageResult> results, boolean force) {
+        final ProgressListener listener = mProgressListener;
+        if (listener == null) {
+            return;
+        }
+        final long now = SystemClock.uptimeMillis();
+        if (!force && now - mLastProgressTime < PROGRESS_INTERVAL_MS) {
+            return;
+        }
+        mLastProgressTime = now;
+
+        // The listener runs on the main thread while we keep adding to the results, so hand it a
+        // copy. Users without external stats yet cannot be displayed and are left out.
+        final SparseArray<AppsStorageResult> copy = new SparseArray<>(results.size());
+        for (int i = 0, size = results.size(); i < size; i++) {
+            final AppsStorageResult result = results.valueAt(i);
+            if (result.externalStats != null) {
+                copy.put(results.keyAt(i), result.copy());
             }
         }
+        ThreadUtils.postOnMainThread(() -> listener.onProgress(copy));
+    }
 
-        Log.d(TAG, "Loading external stats");
-        try {
-            result.externalStats = mStatsManager.getExternalStorageStats(mUuid,
-                    UserHandle.of(userId));
-        } catch (IOException e) {
-            Log.w(TAG, e);
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
         }
-        Log.d(TAG, "Obtaining result completed");
-        return result;
+        return sExecutor;
     }
 
     @Override
@@ -172,6 +335,35 @@ public class StorageAsyncLoader
         public long otherAppsSize;
         public long cacheSize;
         public StorageStatsSource.ExternalStorageStats externalStats;
+
+        AppsStorageResult copy() {
+            final AppsStorageResult copy = new AppsStorageResult();
+            copy.gamesSize = gamesSize;
+            copy.musicAppsSize = musicAppsSize;
+            copy.photosAppsSize = photosAppsSize;
+            copy.videoAppsSize = videoAppsSize;
+            copy.otherAppsSize = otherAppsSize;
+            copy.cacheSize = cacheSize;
+            copy.externalStats = externalStats;
+            return copy;
+        }
+    }
+
+    /**
+     * Receives the partial results of a {@link StorageAsyncLoader} while it is loading.
+     */
+    public interface ProgressListener {
+        void onProgress(SparseArray<AppsStorageResult> partialResult);
+    }
+
+    private static class PackageSizes {
+        final ApplicationInfo app;
+        final AppStorageSizeCache.Entry entry;
+
+        PackageSizes(ApplicationInfo app, AppStorageSizeCache.Entry entry) {
+            this.app = app;
+            this.entry = entry;
+        }
     }
 
     /**
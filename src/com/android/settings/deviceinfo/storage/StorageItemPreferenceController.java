@@ -253,6 +253,20 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
 
     public void onLoadFinished(SparseArray<StorageAsyncLoader.AppsStorageResult> result,
             int userId) {
+        updateSizes(result, userId, false /* partial */);
+    }
+
+    /**
+     * Shows the category sizes of a scan still in progress. System is left alone, it is
+     * whatever the categories do not attribute, so it would be overstated until the scan is done.
+     */
+    public void onPartialLoadFinished(SparseArray<StorageAsyncLoader.AppsStorageResult> result,
+            int userId) {
+        updateSizes(result, userId, true /* partial */);
+    }
+
+    private void updateSizes(SparseArray<StorageAsyncLoader.AppsStorageResult> result,
+            int userId, boolean partial) {
         final StorageAsyncLoader.AppsStorageResult data = result.get(userId);
         final StorageAsyncLoader.AppsStorageResult profileData = result.get(
                 Utils.getManagedProfileId(mContext.getSystemService(UserManager.class), userId));
@@ -264,7 +278,7 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
         mAppPreference.setStorageSize(getAppsSize(data, profileData), mTotalSize);
         mFilePreference.setStorageSize(getFilesSize(data, profileData), mTotalSize);
 
-        if (mSystemPreference != null) {
+        if (mSystemPreference != null && !partial) {
             // Everything else that hasn't already been attributed is tracked as
             // belonging to system.
             long attributedSize = 0;
@@ -18,12 +18,12 @@ package com.android.settings.enterprise;
 
 import android.content.Context;
 import android.content.pm.PackageManager;
-import android.util.IconDrawableFactory;
 
 import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.SettingsPreferenceFragment;
+import com.android.settings.applications.AppIconCache;
 import com.android.settings.applications.ApplicationFeatureProvider;
 import com.android.settings.applications.UserAppInfo;
 import com.android.settings.core.PreferenceControllerMixin;
@@ -65,13 +65,13 @@ public class ApplicationListPreferenceController extends AbstractPreferenceContr
         if (screen == null) {
             return;
         }
-        final IconDrawableFactory iconDrawableFactory = IconDrawableFactory.newInstance(mContext);
+        final AppIconCache appIconCache = AppIconCache.getInstance(mContext);
         final Context prefContext = mParent.getPreferenceManager().getContext();
         for (int position = 0; position < result.size(); position++) {
             final UserAppInfo item = result.get(position);
             final Preference preference = new AppPreference(prefContext);
             preference.setTitle(item.appInfo.loadLabel(mPm));
-            preference.setIcon(iconDrawableFactory.getBadgedIcon(item.appInfo));
+            appIconCache.loadBadgedIcon(item.appInfo, preference::setIcon);
             preference.setOrder(position);
             preference.setSelectable(false);
             screen.addPreference(preference);
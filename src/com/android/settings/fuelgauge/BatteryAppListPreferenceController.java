@@ -84,18 +84,8 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case BatteryEntry.MSG_UPDATE_NAME_ICON:
-                    BatteryEntry entry = (BatteryEntry) msg.obj;
-                    PowerGaugePreference pgp =
-                            (PowerGaugePreference) mAppListGroup.findPreference(
-                                    Integer.toString(entry.sipper.uidObj.getUid()));
-                    if (pgp != null) {
-                        final int userId = UserHandle.getUserId(entry.sipper.getUid());
-                        final UserHandle userHandle = new UserHandle(userId);
-                        pgp.setIcon(mUserManager.getBadgedIconForUser(entry.getIcon(), userHandle));
-                        pgp.setTitle(entry.name);
-                        if (entry.sipper.drainType == DrainType.APP) {
-                            pgp.setContentDescription(entry.name);
-                        }
+                    for (BatteryEntry entry : BatteryEntry.takeLoadedEntries()) {
+                        updateNameAndIcon(entry);
                     }
                     break;
                 case BatteryEntry.MSG_REPORT_FULLY_DRAWN:
@@ -125,6 +115,22 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
         mFragment = fragment;
     }
 
+    @VisibleForTesting
+    void updateNameAndIcon(BatteryEntry entry) {
+        PowerGaugePreference pgp =
+                (PowerGaugePreference) mAppListGroup.findPreference(
+                        Integer.toString(entry.sipper.uidObj.getUid()));
+        if (pgp != null) {
+            final int userId = UserHandle.getUserId(entry.sipper.getUid());
+            final UserHandle userHandle = new UserHandle(userId);
+            pgp.setIcon(mUserManager.getBadgedIconForUser(entry.getIcon(), userHandle));
+            pgp.setTitle(entry.name);
+            if (entry.sipper.drainType == DrainType.APP) {
+                pgp.setContentDescription(entry.name);
+            }
+        }
+    }
+
     @Override
     public void onPause() {
         BatteryEntry.stopRequestQueue();
@@ -32,87 +32,103 @@ import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.internal.os.BatterySipper;
 import com.android.settings.R;
+import com.android.settings.applications.AppIconCache;
 import com.android.settingslib.Utils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Wraps the power usage data of a BatterySipper with information about package name
  * and icon image.
  */
 public class BatteryEntry {
+    /**
+     * Sent to the handler about once per frame while names and icons are loaded, the loaded
+     * entries are returned by {@link #takeLoadedEntries()}.
+     */
     public static final int MSG_UPDATE_NAME_ICON = 1;
     public static final int MSG_REPORT_FULLY_DRAWN = 2;
 
     private static final String TAG = "BatteryEntry";
     private static final String PACKAGE_SYSTEM = "android";
 
-    static final HashMap<String,UidToDetail> sUidCache = new HashMap<String,UidToDetail>();
-
-    static final ArrayList<BatteryEntry> mRequestQueue = new ArrayList<BatteryEntry>();
+    @VisibleForTesting
+    static final int MAX_UID_CACHE_SIZE = 256;
+    @VisibleForTesting
+    static final int LOADER_THREADS = 3;
+    // Loaded entries are delivered in one message per frame instead of one message each.
+    @VisibleForTesting
+    static final long DELIVERY_DELAY_MS = 16L;
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+
+    static final Map<String, UidToDetail> sUidCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, UidToDetail>(16, 0.75f, true /* accessOrder */) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, UidToDetail> eldest) {
+                    return size() > MAX_UID_CACHE_SIZE;
+                }
+            });
+
+    // Pending requests keyed by uid, guarded by itself. Only the first entry of a uid is loaded,
+    // later entries of the same uid receive its name and icon.
+    @VisibleForTesting
+    static final LinkedHashMap<Integer, BatteryEntry> sRequestQueue = new LinkedHashMap<>();
+    // Entries loaded since the last MSG_UPDATE_NAME_ICON, guarded by sRequestQueue.
+    private static ArrayList<BatteryEntry> sLoadedEntries = new ArrayList<>();
+    private static int sRunningLoaders;
+    // Incremented when the queue is stopped, so that loads still running do not deliver.
+    private static int sGeneration;
     static Handler sHandler;
 
     static Locale sCurrentLocale = null;
 
-    static private class NameAndIconLoader extends Thread {
-        private boolean mAbort = false;
+    private static final ThreadPoolExecutor sLoaderExecutor = new ThreadPoolExecutor(
+            LOADER_THREADS, LOADER_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                final Thread thread = new Thread(runnable, "BatteryUsage Icon Loader");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
 
-        public NameAndIconLoader() {
-            super("BatteryUsage Icon Loader");
-        }
-
-        public void abort() {
-            mAbort = true;
-        }
-
-        @Override
-        public void run() {
-            while (true) {
-                BatteryEntry be;
-                synchronized (mRequestQueue) {
-                    if (mRequestQueue.isEmpty() || mAbort) {
-                        if (sHandler != null) {
-                            sHandler.sendEmptyMessage(MSG_REPORT_FULLY_DRAWN);
-                        }
-                        mRequestQueue.clear();
-                        return;
-                    }
-                    be = mRequestQueue.remove(0);
-                }
-                be.loadNameAndIcon();
-            }
-        }
+    static {
+        sLoaderExecutor.allowCoreThreadTimeOut(true);
     }
 
-    private static NameAndIconLoader mRequestThread;
-
     public static void startRequestQueue() {
-        if (sHandler != null) {
-            synchronized (mRequestQueue) {
-                if (!mRequestQueue.isEmpty()) {
-                    if (mRequestThread != null) {
-                        mRequestThread.abort();
-                    }
-                    mRequestThread = new NameAndIconLoader();
-                    mRequestThread.setPriority(Thread.MIN_PRIORITY);
-                    mRequestThread.start();
-                    mRequestQueue.notify();
-                }
+        synchronized (sRequestQueue) {
+            if (sHandler == null) {
+                return;
+            }
+            final int loaders = Math.min(LOADER_THREADS, sRequestQueue.size())
+                    - sRunningLoaders;
+            final int generation = sGeneration;
+            for (int i = 0; i < loaders; i++) {
+                sRunningLoaders++;
+                sLoaderExecutor.execute(() -> drainRequestQueue(generation));
             }
         }
     }
 
     public static void stopRequestQueue() {
-        synchronized (mRequestQueue) {
-            if (mRequestThread != null) {
-                mRequestThread.abort();
-                mRequestThread = null;
-                sHandler = null;
-            }
+        synchronized (sRequestQueue) {
+            sRequestQueue.clear();
+            sLoadedEntries = new ArrayList<>();
+            sRunningLoaders = 0;
+            sGeneration++;
+            sHandler = null;
         }
     }
 
@@ -120,6 +136,55 @@ public class BatteryEntry {
         sUidCache.clear();
     }
 
+    /**
+     * @return the entries whose name and icon were loaded since the last call, on the main
+     * thread in response to {@link #MSG_UPDATE_NAME_ICON}.
+     */
+    public static List<BatteryEntry> takeLoadedEntries() {
+        synchronized (sRequestQueue) {
+            final List<BatteryEntry> loaded = sLoadedEntries;
+            sLoadedEntries = new ArrayList<>();
+            return loaded;
+        }
+    }
+
+    private static void drainRequestQueue(int generation) {
+        while (true) {
+            final BatteryEntry entry;
+            synchronized (sRequestQueue) {
+                if (generation != sGeneration) {
+                    return;
+                }
+                final Iterator<BatteryEntry> iterator = sRequestQueue.values().iterator();
+                if (!iterator.hasNext()) {
+                    sRunningLoaders--;
+                    if (sRunningLoaders == 0 && sHandler != null) {
+                        // Sent after the last batch, which was posted with the same delay.
+                        sHandler.sendEmptyMessageDelayed(MSG_REPORT_FULLY_DRAWN,
+                                DELIVERY_DELAY_MS);
+                    }
+                    return;
+                }
+                entry = iterator.next();
+                iterator.remove();
+            }
+            entry.loadNameAndIcon();
+            entry.updateSameUidEntries();
+            synchronized (sRequestQueue) {
+                if (generation != sGeneration) {
+                    return;
+                }
+                if (sHandler != null) {
+                    if (sLoadedEntries.isEmpty()) {
+                        sHandler.sendEmptyMessageDelayed(MSG_UPDATE_NAME_ICON,
+                                DELIVERY_DELAY_MS);
+                    }
+                    sLoadedEntries.add(entry);
+                }
+            }
+        }
+    }
+
     public final Context context;
     public final BatterySipper sipper;
 
@@ -127,6 +192,8 @@ public class BatteryEntry {
     public Drawable icon;
     public int iconId; // For passing to the detail screen.
     public String defaultPackageName;
+    // Entries of the same uid requested while this one was pending, guarded by sRequestQueue.
+    private final List<BatteryEntry> mSameUidEntries = new ArrayList<>();
 
     static class UidToDetail {
         String name;
@@ -242,8 +309,8 @@ public class BatteryEntry {
         }
 
         final String uidString = Integer.toString(uid);
-        if (sUidCache.containsKey(uidString)) {
-            UidToDetail utd = sUidCache.get(uidString);
+        final UidToDetail utd = sUidCache.get(uidString);
+        if (utd != null) {
             defaultPackageName = utd.packageName;
             name = utd.name;
             icon = utd.icon;
@@ -263,13 +330,34 @@ public class BatteryEntry {
             icon = context.getDrawable(iconId);
         }
 
-        if (sHandler != null) {
-            synchronized (mRequestQueue) {
-                mRequestQueue.add(this);
+        synchronized (sRequestQueue) {
+            if (sHandler != null) {
+                final BatteryEntry pending = sRequestQueue.get(uid);
+                if (pending != null) {
+                    pending.mSameUidEntries.add(this);
+                } else {
+                    sRequestQueue.put(uid, this);
+                }
             }
         }
     }
 
+    /**
+     * Copies the loaded name and icon to the entries of the same uid which were not loaded.
+     */
+    @VisibleForTesting
+    void updateSameUidEntries() {
+        synchronized (sRequestQueue) {
+            for (BatteryEntry entry : mSameUidEntries) {
+                entry.name = name;
+                entry.icon = icon;
+                entry.iconId = iconId;
+                entry.defaultPackageName = defaultPackageName;
+            }
+            mSameUidEntries.clear();
+        }
+    }
+
     /**
      * Loads the app label and icon image and stores into the cache.
      */
@@ -292,6 +380,7 @@ public class BatteryEntry {
 
             // Convert package names to user-facing labels where possible
             IPackageManager ipm = AppGlobals.getPackageManager();
+            final AppIconCache appIconCache = AppIconCache.getInstance(context);
             final int userId = UserHandle.getUserId(uid);
             for (int i = 0; i < packageLabels.length; i++) {
                 try {
@@ -302,13 +391,13 @@ public class BatteryEntry {
                                 + packageLabels[i] + ", user " + userId);
                         continue;
                     }
-                    CharSequence label = ai.loadLabel(pm);
+                    CharSequence label = appIconCache.getLabel(ai);
                     if (label != null) {
                         packageLabels[i] = label.toString();
                     }
                     if (ai.icon != 0) {
                         defaultPackageName = packages[i];
-                        icon = ai.loadIcon(pm);
+                        icon = appIconCache.getIcon(ai, userId, false /* badged */);
                         break;
                     }
                 } catch (RemoteException e) {
@@ -363,9 +452,6 @@ public class BatteryEntry {
         utd.icon = icon;
         utd.packageName = defaultPackageName;
         sUidCache.put(uidString, utd);
-        if (sHandler != null) {
-            sHandler.sendMessage(sHandler.obtainMessage(MSG_UPDATE_NAME_ICON, this));
-        }
     }
 
     String[] extractPackagesFromSipper(BatterySipper sipper) {
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.os.BatteryStats;
+import android.os.BatteryStats.HistoryItem;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Battery history of one {@link BatteryStats} decoded into primitive columns, so that every
+ * {@link BatteryInfo.BatteryDataParser} of a load replays arrays instead of walking the history
+ * again.
+ *
+ * Only the fields used by the chart and the tips are kept: {@link HistoryItem#cmd},
+ * {@link HistoryItem#time}, {@link HistoryItem#currentTime}, {@link HistoryItem#batteryLevel},
+ * {@link HistoryItem#states} and {@link HistoryItem#states2}.
+ */
+final class BatteryHistorySnapshot {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // The snapshot of the last stats seen, a new BatteryStatsHelper load brings new stats.
+    // The decoded columns can be large, so they are dropped under memory pressure and decoded
+    // again on the next load.
+    private static WeakReference<BatteryStats> sStats;
+    private static SoftReference<BatteryHistorySnapshot> sSnapshot;
+
+    @VisibleForTesting
+    int mSize;
+    private byte[] mCmd = new byte[INITIAL_CAPACITY];
+    private long[] mTime = new long[INITIAL_CAPACITY];
+    private long[] mCurrentTime = new long[INITIAL_CAPACITY];
+    private byte[] mBatteryLevel = new byte[INITIAL_CAPACITY];
+    private int[] mStates = new int[INITIAL_CAPACITY];
+    private int[] mStates2 = new int[INITIAL_CAPACITY];
+
+    // Values of the first pass of the original parse, needed to replay the records.
+    private long mStartWalltime;
+    private long mEndWalltime;
+    private long mHistoryStart;
+    private long mLastRealtime;
+    // Number of records up to the last delta record, the trailing ones are never replayed.
+    private int mLastInteresting;
+
+    /**
+     * @return the snapshot of {@code stats}, decoding its history if it was not already.
+     */
+    static synchronized BatteryHistorySnapshot get(BatteryStats stats) {
+        BatteryHistorySnapshot snapshot = sSnapshot != null ? sSnapshot.get() : null;
+        if (snapshot == null || sStats.get() != stats) {
+            snapshot = decode(stats);
+            sSnapshot = new SoftReference<>(snapshot);
+            sStats = new WeakReference<>(stats);
+        }
+        return snapshot;
+    }
+
+    @VisibleForTesting
+    static synchronized void clear() {
+        sStats = null;
+        sSnapshot = null;
+    }
+
+    @VisibleForTesting
+    static BatteryHistorySnapshot decode(BatteryStats stats) {
+        final BatteryHistorySnapshot snapshot = new BatteryHistorySnapshot();
+        long startWalltime = 0;
+        long historyStart = 0;
+        long historyEnd = 0;
+        long lastWallTime = 0;
+        long lastRealtime = 0;
+        int lastInteresting = 0;
+        boolean first = true;
+        if (stats.startIteratingHistoryLocked()) {
+            final HistoryItem rec = new HistoryItem();
+            while (stats.getNextHistoryLocked(rec)) {
+                snapshot.add(rec);
+                if (first) {
+                    first = false;
+                    historyStart = rec.time;
+                }
+                if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
+                        || rec.cmd == HistoryItem.CMD_RESET) {
+                    // If there is a ridiculously large jump in time, then we won't be
+                    // able to create a good chart with that data, so just ignore the
+                    // times we got before and pretend like our data extends back from
+                    // the time we have now.
+                    // Also, if we are getting a time change and we are less than 5 minutes
+                    // since the start of the history real time, then also use this new
+                    // time to compute the base time, since whatever time we had before is
+                    // pretty much just noise.
+                    if (rec.currentTime > (lastWallTime + (180 * 24 * 60 * 60 * 1000L))
+                            || rec.time < (historyStart + (5 * 60 * 1000L))) {
+                        startWalltime = 0;
+                    }
+                    lastWallTime = rec.currentTime;
+                    lastRealtime = rec.time;
+                    if (startWalltime == 0) {
+                        startWalltime = lastWallTime - (lastRealtime - historyStart);
+                    }
+                }
+                if (rec.isDeltaData()) {
+                    lastInteresting = snapshot.mSize;
+                    historyEnd = rec.time;
+                }
+            }
+        }
+        stats.finishIteratingHistoryLocked();
+
+        snapshot.mStartWalltime = startWalltime;
+        snapshot.mEndWalltime = lastWallTime + historyEnd - lastRealtime;
+        snapshot.mHistoryStart = historyStart;
+        snapshot.mLastRealtime = lastRealtime;
+        snapshot.mLastInteresting = lastInteresting;
+        return snapshot;
+    }
+
+    /**
+     * Replays the history to {@code parsers}, with the same callbacks as walking the
+     * {@link BatteryStats} itself.
+     */
+    void replay(BatteryInfo.BatteryDataParser... parsers) {
+        final long startWalltime = mStartWalltime;
+        long curWalltime = 0;
+        long lastRealtime = mLastRealtime;
+
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingStarted(startWalltime, mEndWalltime);
+        }
+        if (mEndWalltime > startWalltime) {
+            final HistoryItem rec = new HistoryItem();
+            for (int i = 0; i < mLastInteresting; i++) {
+                fill(i, rec);
+                if (rec.isDeltaData()) {
+                    curWalltime += rec.time - lastRealtime;
+                    lastRealtime = rec.time;
+                    long x = (curWalltime - startWalltime);
+                    if (x < 0) {
+                        x = 0;
+                    }
+                    for (int j = 0; j < parsers.length; j++) {
+                        parsers[j].onDataPoint(x, rec);
+                    }
+                } else {
+                    long lastWalltime = curWalltime;
+                    if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
+                            || rec.cmd == HistoryItem.CMD_RESET) {
+                        if (rec.currentTime >= startWalltime) {
+                            curWalltime = rec.currentTime;
+                        } else {
+                            curWalltime = startWalltime + (rec.time - mHistoryStart);
+                        }
+                        lastRealtime = rec.time;
+                    }
+
+                    if (rec.cmd != HistoryItem.CMD_OVERFLOW
+                            && (rec.cmd != HistoryItem.CMD_CURRENT_TIME
+                            || Math.abs(lastWalltime - curWalltime) > (60 * 60 * 1000))) {
+                        for (int j = 0; j < parsers.length; j++) {
+                            parsers[j].onDataGap();
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingDone();
+        }
+    }
+
+    private void add(HistoryItem rec) {
+        if (mSize == mTime.length) {
+            final int capacity = mSize * 2;
+            mCmd = Arrays.copyOf(mCmd, capacity);
+            mTime = Arrays.copyOf(mTime, capacity);
+            mCurrentTime = Arrays.copyOf(mCurrentTime, capacity);
+            mBatteryLevel = Arrays.copyOf(mBatteryLevel, capacity);
+            mStates = Arrays.copyOf(mStates, capacity);
+            mStates2 = Arrays.copyOf(mStates2, capacity);
+        }
+        mCmd[mSize] = rec.cmd;
+        mTime[mSize] = rec.time;
+        mCurrentTime[mSize] = rec.currentTime;
+        mBatteryLevel[mSize] = rec.batteryLevel;
+        mStates[mSize] = rec.states;
+        mStates2[mSize] = rec.states2;
+        mSize++;
+    }
+
+    private void fill(int index, HistoryItem rec) {
+        rec.cmd = mCmd[index];
+        rec.time = mTime[index];
+        rec.currentTime = mCurrentTime[index];
+        rec.batteryLevel = mBatteryLevel[index];
+        rec.states = mStates[index];
+        rec.states2 = mStates2[index];
+    }
+}
@@ -45,6 +45,7 @@ import com.android.settings.R;
 import com.android.settings.SettingsActivity;
 import com.android.settings.Utils;
 import com.android.settings.core.SubSettingLauncher;
+import com.android.settings.fuelgauge.batterytip.BatteryTipCache;
 import com.android.settings.fuelgauge.batterytip.BatteryTipLoader;
 import com.android.settings.fuelgauge.batterytip.BatteryTipPreferenceController;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
@@ -437,6 +438,8 @@ public class PowerUsageSummary extends PowerUsageBase implements OnLongClickList
 
     @Override
     public void onBatteryTipHandled(BatteryTip batteryTip) {
+        // Handling a tip changes the tips without a new BatteryStats.
+        BatteryTipCache.getInstance(getContext()).clear();
         restartBatteryTipLoader();
     }
 
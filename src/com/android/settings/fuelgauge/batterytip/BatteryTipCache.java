@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batterytip;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.BatteryStats;
+import android.os.Parcel;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.fuelgauge.batterytip.detectors.BatteryTipDetector;
+import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Battery tips of the last {@link BatteryStats} snapshot, shared by the battery page and the
+ * homepage battery card, which load their own {@link BatteryStats} of the same history.
+ *
+ * Two {@link BatteryStats} are the same snapshot when they have the same history, so a tip list
+ * is reused until a new history record, a battery saver change, a change of the settings read by
+ * the detectors or {@link #MAX_AGE_MS}. Callers
+ * get their own copy, tips are updated in place by their preference controller.
+ *
+ * The detectors of a load run on a small shared executor, see {@link #runDetectors}.
+ */
+public class BatteryTipCache {
+
+    @VisibleForTesting
+    static final long MAX_AGE_MS = 30 * DateUtils.SECOND_IN_MILLIS;
+    private static final int POOL_SIZE = 3;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static BatteryTipCache sInstance;
+
+    private final Context mContext;
+    private final Executor mExecutor;
+    private SnapshotKey mKey;
+    private List<BatteryTip> mTips;
+    private long mLoadTime;
+    // Incremented on invalidation, so that loads started before are not cached.
+    private int mGeneration;
+    private long mHitCount;
+    private long mMissCount;
+    // Detector class name -> its timings.
+    private final ArrayMap<String, DetectorTiming> mTimings = new ArrayMap<>();
+
+    public static synchronized BatteryTipCache getInstance(Context context) {
+        final Context appContext = context.getApplicationContext();
+        // Bound to the application, which lives as long as the process.
+        if (sInstance == null || sInstance.mContext != appContext) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            sInstance = new BatteryTipCache(appContext, executor);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    BatteryTipCache(Context context, Executor executor) {
+        mContext = context;
+        mExecutor = executor;
+    }
+
+    /**
+     * @return a copy of the tips of the snapshot of {@code stats}, computing them with
+     * {@code loader} on a miss.
+     */
+    public List<BatteryTip> getTips(BatteryStats stats, Supplier<List<BatteryTip>> loader) {
+        if (stats == null) {
+            return loader.get();
+        }
+        final ContentResolver resolver = mContext.getContentResolver();
+        final SnapshotKey key = new SnapshotKey(stats,
+                mContext.getSystemService(PowerManager.class).isPowerSaveMode(),
+                Settings.Global.getInt(resolver,
+                        Settings.Global.ADAPTIVE_BATTERY_MANAGEMENT_ENABLED, 1),
+                Settings.Global.getString(resolver, Settings.Global.BATTERY_TIP_CONSTANTS));
+        final int generation;
+        synchronized (this) {
+            if (mTips != null && key.equals(mKey)
+                    && SystemClock.elapsedRealtime() - mLoadTime < MAX_AGE_MS) {
+                mHitCount++;
+                return copy(mTips);
+            }
+            mMissCount++;
+            generation = mGeneration;
+        }
+        final List<BatteryTip> tips = loader.get();
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mKey = key;
+                mTips = copy(tips);
+                mLoadTime = SystemClock.elapsedRealtime();
+            }
+        }
+        return tips;
+    }
+
+    /**
+     * Runs {@code detectors} concurrently and returns their tips in the same order.
+     *
+     * The calling thread runs the detectors no pool thread has started yet, so a busy pool never
+     * makes a load wait longer than running the detectors itself.
+     */
+    public List<BatteryTip> runDetectors(List<BatteryTipDetector> detectors) {
+        final List<FutureTask<BatteryTip>> tasks = new ArrayList<>(detectors.size());
+        for (BatteryTipDetector detector : detectors) {
+            final FutureTask<BatteryTip> task = new FutureTask<>(() -> detect(detector));
+            tasks.add(task);
+            mExecutor.execute(task);
+        }
+        final List<BatteryTip> tips = new ArrayList<>(tasks.size());
+        for (FutureTask<BatteryTip> task : tasks) {
+            // No-op if a pool thread already ran or is running it.
+            task.run();
+            try {
+                tips.add(task.get());
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Failed to detect battery tip", e);
+            }
+        }
+        return tips;
+    }
+
+    /**
+     * Drops the cached tips, to be called when a tip is handled since that changes their state
+     * without a new {@link BatteryStats}.
+     */
+    public synchronized void clear() {
+        mKey = null;
+        mTips = null;
+        mGeneration++;
+    }
+
+    /**
+     * Dumps the hit/miss counters and detector timings for
+     * {@link com.android.settings.SettingsDumpService}.
+     */
+    public synchronized JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        obj.put("hit", mHitCount);
+        obj.put("miss", mMissCount);
+        final JSONObject timings = new JSONObject();
+        for (int i = 0, size = mTimings.size(); i < size; i++) {
+            final DetectorTiming timing = mTimings.valueAt(i);
+            final JSONObject timingObj = new JSONObject();
+            timingObj.put("count", timing.mCount);
+            timingObj.put("last_ms", timing.mLastMs);
+            timingObj.put("max_ms", timing.mMaxMs);
+            timingObj.put("total_ms", timing.mTotalMs);
+            timings.put(mTimings.keyAt(i), timingObj);
+        }
+        obj.put("detectors", timings);
+        return obj;
+    }
+
+    private BatteryTip detect(BatteryTipDetector detector) {
+        final long startTime = SystemClock.elapsedRealtime();
+        final BatteryTip tip = detector.detect();
+        final long elapsedMs = SystemClock.elapsedRealtime() - startTime;
+        final String name = detector.getClass().getSimpleName();
+        synchronized (this) {
+            DetectorTiming timing = mTimings.get(name);
+            if (timing == null) {
+                timing = new DetectorTiming();
+                mTimings.put(name, timing);
+            }
+            timing.mCount++;
+            timing.mLastMs = elapsedMs;
+            timing.mMaxMs = Math.max(timing.mMaxMs, elapsedMs);
+            timing.mTotalMs += elapsedMs;
+        }
+        return tip;
+    }
+
+    private static List<BatteryTip> copy(List<BatteryTip> tips) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeParcelableList(tips, 0 /* flags */);
+            parcel.setDataPosition(0);
+            return parcel.readParcelableList(new ArrayList<>(),
+                    BatteryTip.class.getClassLoader());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Identity of a {@link BatteryStats} snapshot, equal for two loads of the same history, along
+     * with the settings the detectors read: the adaptive battery setting of
+     * {@link com.android.settings.fuelgauge.batterytip.detectors.SmartBatteryDetector} and the
+     * {@link BatteryTipPolicy} constants.
+     */
+    private static class SnapshotKey {
+        private final long mStartClockTime;
+        private final int mHistoryUsedSize;
+        private final int mDischargeCurrentLevel;
+        private final boolean mPowerSaveMode;
+        private final int mAdaptiveBattery;
+        private final String mTipConstants;
+
+        SnapshotKey(BatteryStats stats, boolean powerSaveMode, int adaptiveBattery,
+                String tipConstants) {
+            mStartClockTime = stats.getStartClockTime();
+            mHistoryUsedSize = stats.getHistoryUsedSize();
+            mDischargeCurrentLevel = stats.getDischargeCurrentLevel();
+            mPowerSaveMode = powerSaveMode;
+            mAdaptiveBattery = adaptiveBattery;
+            mTipConstants = tipConstants;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SnapshotKey)) {
+                return false;
+            }
+            final SnapshotKey other = (SnapshotKey) o;
+            return mStartClockTime == other.mStartClockTime
+                    && mHistoryUsedSize == other.mHistoryUsedSize
+                    && mDischargeCurrentLevel == other.mDischargeCurrentLevel
+                    && mPowerSaveMode == other.mPowerSaveMode
+                && mAdaptiveBattery == other.mAdaptiveBattery
+                && Objects.equals(mTipConstants, other.mTipConstants);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Long.hashCode(mStartClockTime);
+            result = 31 * result + mHistoryUsedSize;
+            result = 31 * result + mDischargeCurrentLevel;
+            result = 31 * result + Boolean.hashCode(mPowerSaveMode);
+            result = 31 * result + mAdaptiveBattery;
+            return 31 * result + Objects.hashCode(mTipConstants);
+        }
+    }
+
+    private static class DetectorTiming {
+        private long mCount;
+        private long mLastMs;
+        private long mMaxMs;
+        private long mTotalMs;
+    }
+}
@@ -24,6 +24,7 @@ import com.android.internal.os.BatteryStatsHelper;
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.batterytip.detectors.BatteryDefenderDetector;
+import com.android.settings.fuelgauge.batterytip.detectors.BatteryTipDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.EarlyWarningDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.LowBatteryDetector;
@@ -51,11 +52,14 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
     private BatteryStatsHelper mBatteryStatsHelper;
     @VisibleForTesting
     BatteryUtils mBatteryUtils;
+    @VisibleForTesting
+    BatteryTipCache mBatteryTipCache;
 
     public BatteryTipLoader(Context context, BatteryStatsHelper batteryStatsHelper) {
         super(context);
         mBatteryStatsHelper = batteryStatsHelper;
         mBatteryUtils = BatteryUtils.getInstance(context);
+        mBatteryTipCache = BatteryTipCache.getInstance(context);
     }
 
     @Override
@@ -63,22 +67,28 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
         if (USE_FAKE_DATA) {
             return getFakeData();
         }
-        final List<BatteryTip> tips = new ArrayList<>();
+        return mBatteryTipCache.getTips(mBatteryStatsHelper.getStats(), this::detectTips);
+    }
+
+    private List<BatteryTip> detectTips() {
         final BatteryTipPolicy policy = new BatteryTipPolicy(getContext());
         final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(mBatteryStatsHelper, TAG);
         final Context context = getContext();
 
-        tips.add(new LowBatteryDetector(context, policy, batteryInfo).detect());
-        tips.add(new HighUsageDetector(context, policy, mBatteryStatsHelper,
-                batteryInfo.discharging).detect());
-        tips.add(new SmartBatteryDetector(policy, context.getContentResolver()).detect());
-        tips.add(new EarlyWarningDetector(policy, context).detect());
-        tips.add(new BatteryDefenderDetector(batteryInfo).detect());
-        tips.add(new SummaryDetector(policy, batteryInfo.averageTimeToDischarge).detect());
+        // Detectors only read the policy and battery info, so they can run concurrently.
+        final List<BatteryTipDetector> detectors = new ArrayList<>();
+        detectors.add(new LowBatteryDetector(context, policy, batteryInfo));
+        detectors.add(new HighUsageDetector(context, policy, mBatteryStatsHelper,
+                batteryInfo.discharging));
+        detectors.add(new SmartBatteryDetector(policy, context.getContentResolver()));
+        detectors.add(new EarlyWarningDetector(policy, context));
+        detectors.add(new BatteryDefenderDetector(batteryInfo));
+        detectors.add(new SummaryDetector(policy, batteryInfo.averageTimeToDischarge));
         // Disable this feature now since it introduces false positive cases. We will try to improve
         // it in the future.
-        // tips.add(new RestrictAppDetector(context, policy).detect());
+        // detectors.add(new RestrictAppDetector(context, policy));
 
+        final List<BatteryTip> tips = mBatteryTipCache.runDetectors(detectors);
         Collections.sort(tips);
         return tips;
     }
@@ -44,6 +44,7 @@ import com.android.internal.util.UserIcons;
 import com.android.settings.R;
 import com.android.settings.accounts.AvatarViewMixin;
 import com.android.settings.core.HideNonSystemOverlayMixin;
+import com.android.settings.core.PreferenceXmlMetadataCache;
 import com.android.settings.homepage.contextualcards.ContextualCardsFragment;
 import com.android.settings.overlay.FeatureFactory;
 import com.google.android.material.appbar.CollapsingToolbarLayout;
@@ -62,6 +63,8 @@ public class SettingsHomepageActivity extends FragmentActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Read before the fragments parse their preference xml.
+        PreferenceXmlMetadataCache.getInstance(this).preload();
 
         setContentView(R.layout.settings_homepage_container);
         final View root = findViewById(R.id.settings_homepage_container);
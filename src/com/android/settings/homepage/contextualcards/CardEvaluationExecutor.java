@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared, bounded executor evaluating homepage cards, used by both {@link ContextualCardLoader}
+ * and {@link com.android.settings.homepage.contextualcards.conditional.ConditionManager}.
+ *
+ * It also remembers the result of slice eligibility checks: an eligible card is reused for a
+ * short time, and a card whose slice failed to bind is skipped until its slice uri notifies a
+ * change.
+ */
+public class CardEvaluationExecutor {
+
+    @VisibleForTesting
+    static final long ELIGIBLE_TTL_MS = 5000L;
+    @VisibleForTesting
+    static final long INELIGIBLE_TTL_MS = 10 * 60 * 1000L;
+    private static final int POOL_SIZE = 6;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static CardEvaluationExecutor sInstance;
+
+    private final Context mContext;
+    private final ThreadPoolExecutor mExecutor;
+    private final Map<Uri, CachedResult> mEligibilityCache = new ArrayMap<>();
+    private final Map<String, LatencyStats> mLatencyStats = new ArrayMap<>();
+
+    public static synchronized CardEvaluationExecutor getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new CardEvaluationExecutor(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    CardEvaluationExecutor(Context context) {
+        mContext = context;
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Submits a single evaluation, recording its latency under {@code key}.
+     */
+    public <T> Future<T> submit(String key, Callable<T> task) {
+        return mExecutor.submit(timed(key, task));
+    }
+
+    /**
+     * Runs all evaluations and waits at most {@code timeoutMs} for them; unfinished ones are
+     * cancelled. Latencies are recorded under the matching entry of {@code keys}.
+     */
+    public <T> List<Future<T>> invokeAll(List<String> keys, List<? extends Callable<T>> tasks,
+            long timeoutMs) throws InterruptedException {
+        final List<Callable<T>> timedTasks = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            timedTasks.add(timed(keys.get(i), tasks.get(i)));
+        }
+        return mExecutor.invokeAll(timedTasks, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the card evaluated as eligible for {@code uri} within {@link #ELIGIBLE_TTL_MS},
+     * or null.
+     */
+    synchronized ContextualCard getCachedEligibleCard(Uri uri) {
+        final CachedResult result = mEligibilityCache.get(uri);
+        if (result == null || result.mCard == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - result.mTime > ELIGIBLE_TTL_MS) {
+            mEligibilityCache.remove(uri);
+            return null;
+        }
+        return result.mCard;
+    }
+
+    /**
+     * @return true if the slice of {@code uri} failed to bind and has not changed since.
+     */
+    synchronized boolean isKnownIneligible(Uri uri) {
+        final CachedResult result = mEligibilityCache.get(uri);
+        if (result == null || result.mCard != null) {
+            return false;
+        }
+        // Safety net in case the slice never notifies its uri.
+        if (SystemClock.elapsedRealtime() - result.mTime > INELIGIBLE_TTL_MS) {
+            removeIneligibleLocked(uri);
+            return false;
+        }
+        return true;
+    }
+
+    synchronized void setEligible(Uri uri, ContextualCard card) {
+        removeIneligibleLocked(uri);
+        mEligibilityCache.put(uri, new CachedResult(card, null /* observer */));
+    }
+
+    synchronized void setIneligible(Uri uri) {
+        if (isKnownIneligible(uri)) {
+            return;
+        }
+        final ContentObserver observer = new ContentObserver(
+                new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                synchronized (CardEvaluationExecutor.this) {
+                    removeIneligibleLocked(uri);
+                }
+            }
+        };
+        mEligibilityCache.put(uri, new CachedResult(null /* card */, observer));
+        try {
+            mContext.getContentResolver().registerContentObserver(uri, false /* descendants */,
+                    observer);
+        } catch (SecurityException e) {
+            // Not allowed to observe the slice, fall back to the ttl.
+        }
+    }
+
+    /**
+     * Dumps the evaluation latency of each card for
+     * {@link com.android.settings.SettingsDumpService}.
+     */
+    public synchronized JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        for (Map.Entry<String, LatencyStats> entry : mLatencyStats.entrySet()) {
+            final LatencyStats stats = entry.getValue();
+            final JSONObject statsObj = new JSONObject();
+            statsObj.put("count", stats.mCount);
+            statsObj.put("avg_ms", stats.mCount == 0 ? 0 : stats.mTotalMs / stats.mCount);
+            statsObj.put("max_ms", stats.mMaxMs);
+            obj.put(entry.getKey(), statsObj);
+        }
+        return obj;
+    }
+
+    @VisibleForTesting
+    synchronized LatencyStats getLatencyStats(String key) {
+        return mLatencyStats.get(key);
+    }
+
+    private void removeIneligibleLocked(Uri uri) {
+        final CachedResult result = mEligibilityCache.get(uri);
+        if (result == null || result.mCard != null) {
+            return;
+        }
+        mEligibilityCache.remove(uri);
+        mContext.getContentResolver().unregisterContentObserver(result.mObserver);
+    }
+
+    private synchronized void recordLatency(String key, long latencyMs) {
+        LatencyStats stats = mLatencyStats.get(key);
+        if (stats == null) {
+            stats = new LatencyStats();
+            mLatencyStats.put(key, stats);
+        }
+        stats.mCount++;
+        stats.mTotalMs += latencyMs;
+        stats.mMaxMs = Math.max(stats.mMaxMs, latencyMs);
+    }
+
+    private <T> Callable<T> timed(String key, Callable<T> task) {
+        return () -> {
+            final long startTime = SystemClock.elapsedRealtime();
+            try {
+                return task.call();
+            } finally {
+                recordLatency(key, SystemClock.elapsedRealtime() - startTime);
+            }
+        };
+    }
+
+    @VisibleForTesting
+    static class LatencyStats {
+        int mCount;
+        long mTotalMs;
+        long mMaxMs;
+    }
+
+    private static class CachedResult {
+        final ContextualCard mCard;
+        final ContentObserver mObserver;
+        final long mTime;
+
+        CachedResult(ContextualCard card, ContentObserver observer) {
+            mCard = card;
+            mObserver = observer;
+            mTime = SystemClock.elapsedRealtime();
+        }
+    }
+}
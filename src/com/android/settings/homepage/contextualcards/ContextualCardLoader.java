@@ -41,10 +41,7 @@ import com.android.settingslib.utils.AsyncLoaderCompat;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>> {
@@ -197,20 +194,21 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             return candidates;
         }
 
-        final ExecutorService executor = Executors.newFixedThreadPool(candidates.size());
         final List<ContextualCard> cards = new ArrayList<>();
         List<Future<ContextualCard>> eligibleCards = new ArrayList<>();
 
         final List<EligibleCardChecker> checkers = candidates.stream()
                 .map(card -> new EligibleCardChecker(mContext, card))
                 .collect(Collectors.toList());
+        final List<String> keys = candidates.stream()
+                .map(ContextualCard::getTextSliceUri)
+                .collect(Collectors.toList());
         try {
-            eligibleCards = executor.invokeAll(checkers, ELIGIBILITY_CHECKER_TIMEOUT_MS,
-                    TimeUnit.MILLISECONDS);
+            eligibleCards = CardEvaluationExecutor.getInstance(mContext).invokeAll(keys, checkers,
+                    ELIGIBILITY_CHECKER_TIMEOUT_MS);
         } catch (InterruptedException e) {
             Log.w(TAG, "Failed to get eligible states for all cards", e);
         }
-        executor.shutdown();
 
         // Collect future and eligible cards
         for (int i = 0; i < eligibleCards.size(); i++) {
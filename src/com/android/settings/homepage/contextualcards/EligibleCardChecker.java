@@ -46,10 +46,13 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
 
     @VisibleForTesting
     ContextualCard mCard;
+    @VisibleForTesting
+    CardEvaluationExecutor mEvaluator;
 
     EligibleCardChecker(Context context, ContextualCard card) {
         mContext = context;
         mCard = card;
+        mEvaluator = CardEvaluationExecutor.getInstance(context);
     }
 
     @Override
@@ -93,10 +96,25 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
             return false;
         }
 
+        if (mEvaluator.isKnownIneligible(uri)) {
+            Log.d(TAG, "Slice failed to bind before and has not changed, skipping " + uri);
+            return false;
+        }
+
+        final ContextualCard cachedCard = mEvaluator.getCachedEligibleCard(uri);
+        if (cachedCard != null) {
+            mCard = card.mutate()
+                    .setSlice(cachedCard.getSlice())
+                    .setHasInlineAction(cachedCard.hasInlineAction())
+                    .build();
+            return true;
+        }
+
         final Slice slice = bindSlice(uri);
 
         if (slice == null || slice.hasHint(HINT_ERROR)) {
             Log.w(TAG, "Failed to bind slice, not eligible for display " + uri);
+            mEvaluator.setIneligible(uri);
             return false;
         }
 
@@ -106,6 +124,7 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
             mCard = card.mutate().setHasInlineAction(true).build();
         }
 
+        mEvaluator.setEligible(uri, mCard);
         return true;
     }
 
@@ -22,8 +22,8 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.homepage.contextualcards.CardEvaluationExecutor;
 import com.android.settings.homepage.contextualcards.ContextualCard;
-import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -59,10 +59,11 @@ public class ConditionManager {
     public List<ContextualCard> getDisplayableCards() {
         final List<ContextualCard> cards = new ArrayList<>();
         final List<Future<ContextualCard>> displayableCards = new ArrayList<>();
+        final CardEvaluationExecutor executor = CardEvaluationExecutor.getInstance(mAppContext);
         // Check displayable future
         for (ConditionalCardController card : mCardControllers) {
             final DisplayableChecker checker = new DisplayableChecker(getController(card.getId()));
-            displayableCards.add(ThreadUtils.postOnBackgroundThread(checker));
+            displayableCards.add(executor.submit(card.getClass().getSimpleName(), checker));
         }
         // Collect future and add displayable cards
         for (Future<ContextualCard> cardFuture : displayableCards) {
@@ -15,6 +15,7 @@ import androidx.preference.Preference;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settings.core.AvailabilityDependencies;
 import com.android.settings.core.PreferenceControllerMixin;
 
 import java.util.Arrays;
@@ -50,6 +51,12 @@ public class AppLocationPermissionPreferenceController extends
                 : UNSUPPORTED_ON_DEVICE;
     }
 
+    @Override
+    protected AvailabilityDependencies getAvailabilityDependencies() {
+        return new AvailabilityDependencies().addSetting(Settings.Global.getUriFor(
+                Settings.Global.LOCATION_SETTINGS_LINK_TO_PERMISSIONS_ENABLED));
+    }
+
     @Override
     public CharSequence getSummary() {
         if (mLocationManager.isLocationEnabled()) {
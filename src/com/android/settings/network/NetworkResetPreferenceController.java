@@ -17,27 +17,31 @@
 package com.android.settings.network;
 
 import android.content.Context;
+import android.os.UserManager;
 
-import com.android.settings.core.PreferenceControllerMixin;
-import com.android.settingslib.core.AbstractPreferenceController;
+import com.android.settings.core.AvailabilityDependencies;
+import com.android.settings.core.BasePreferenceController;
 
-public class NetworkResetPreferenceController extends AbstractPreferenceController
-        implements PreferenceControllerMixin {
+public class NetworkResetPreferenceController extends BasePreferenceController {
+
+    private static final String KEY_NETWORK_RESET = "network_reset_pref";
 
     private final NetworkResetRestrictionChecker mRestrictionChecker;
 
     public NetworkResetPreferenceController(Context context) {
-        super(context);
+        super(context, KEY_NETWORK_RESET);
         mRestrictionChecker = new NetworkResetRestrictionChecker(context);
     }
 
     @Override
-    public boolean isAvailable() {
-        return !mRestrictionChecker.hasUserRestriction();
+    public int getAvailabilityStatus() {
+        return mRestrictionChecker.hasUserRestriction() ? DISABLED_FOR_USER : AVAILABLE;
     }
 
     @Override
-    public String getPreferenceKey() {
-        return "network_reset_pref";
+    protected AvailabilityDependencies getAvailabilityDependencies() {
+        // Whether the user is an admin does not change while the process runs.
+        return new AvailabilityDependencies().addUserRestriction(
+                UserManager.DISALLOW_NETWORK_RESET);
     }
 }
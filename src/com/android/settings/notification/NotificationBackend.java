@@ -51,6 +51,8 @@ import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.applications.AppIconCache;
+import com.android.settings.notification.app.ChannelGroupCache;
 import com.android.settingslib.R;
 import com.android.settingslib.Utils;
 import com.android.settingslib.notification.ConversationIconFactory;
@@ -75,13 +77,14 @@ public class NotificationBackend {
         final AppRow row = new AppRow();
         row.pkg = app.packageName;
         row.uid = app.uid;
+        final AppIconCache appIconCache = AppIconCache.getInstance(context);
         try {
-            row.label = app.loadLabel(pm);
+            row.label = appIconCache.getLabel(app);
         } catch (Throwable t) {
             Log.e(TAG, "Error loading application label for " + row.pkg, t);
             row.label = row.pkg;
         }
-        row.icon = IconDrawableFactory.newInstance(context).getBadgedIcon(app);
+        row.icon = appIconCache.getBadgedIcon(app);
         row.banned = getNotificationsBanned(row.pkg, row.uid);
         row.showBadge = canShowBadge(row.pkg, row.uid);
         row.bubblePreference = getBubblePreference(row.pkg, row.uid);
@@ -319,6 +322,8 @@ public class NotificationBackend {
     }
 
     public void updateChannel(String pkg, int uid, NotificationChannel channel) {
+        // Callers change the cached objects before updating them.
+        ChannelGroupCache.getInstance().invalidate(pkg, uid);
         try {
             sINM.updateNotificationChannelForPackage(pkg, uid, channel);
         } catch (Exception e) {
@@ -327,6 +332,7 @@ public class NotificationBackend {
     }
 
     public void updateChannelGroup(String pkg, int uid, NotificationChannelGroup group) {
+        ChannelGroupCache.getInstance().invalidate(pkg, uid);
         try {
             sINM.updateNotificationChannelGroupForPackage(pkg, uid, group);
         } catch (Exception e) {
@@ -30,11 +30,11 @@ import android.service.notification.NotifyingApp;
 import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
-import android.util.IconDrawableFactory;
 import android.util.Slog;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settings.applications.AppIconCache;
 import com.android.settings.applications.AppInfoBase;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settings.core.SubSettingLauncher;
@@ -78,7 +78,7 @@ public class RecentNotifyingAppsPreferenceController extends AbstractPreferenceC
     private final PackageManager mPm;
     private final NotificationBackend mNotificationBackend;
     private IUsageStatsManager mUsageStatsManager;
-    private final IconDrawableFactory mIconDrawableFactory;
+    private final AppIconCache mAppIconCache;
 
     private Calendar mCal;
     List<NotifyingApp> mApps;
@@ -100,7 +100,7 @@ public class RecentNotifyingAppsPreferenceController extends AbstractPreferenceC
             IUsageStatsManager usageStatsManager, UserManager userManager,
             ApplicationsState appState, Fragment host) {
         super(context);
-        mIconDrawableFactory = IconDrawableFactory.newInstance(context);
+        mAppIconCache = AppIconCache.getInstance(context);
         mPm = context.getPackageManager();
         mHost = host;
         mApplicationsState = appState;
@@ -252,7 +252,7 @@ public class RecentNotifyingAppsPreferenceController extends AbstractPreferenceC
             }
             pref.setKey(getKey(app.getUserId(), pkgName));
             pref.setTitle(appEntry.label);
-            pref.setIcon(mIconDrawableFactory.getBadgedIcon(appEntry.info));
+            pref.setIcon(mAppIconCache.getBadgedIcon(appEntry.info));
             pref.setIconSize(TwoTargetPreference.ICON_SIZE_SMALL);
             pref.setSummary(StringUtil.formatRelativeTime(mContext,
                     System.currentTimeMillis() - app.getLastNotified(), true));
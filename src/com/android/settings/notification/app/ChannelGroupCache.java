@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification.app;
+
+import android.app.NotificationChannelGroup;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.notification.NotificationBackend;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Snapshots of the notification channel groups of recently shown packages, so returning to the
+ * notification page of an app does not fetch all of its channels again.
+ *
+ * A snapshot is dropped when Settings changes a channel or group of its package, through
+ * {@link #invalidate}. Snapshots older than {@link #MAX_AGE_MS} are still delivered, then
+ * refreshed in the background to pick up the changes made by the app itself. Loads run on one
+ * shared executor and concurrent loads of a package share one fetch.
+ */
+public class ChannelGroupCache {
+
+    @VisibleForTesting
+    static final long MAX_AGE_MS = 30 * DateUtils.SECOND_IN_MILLIS;
+    private static final int MAX_PACKAGES = 8;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static ChannelGroupCache sInstance;
+
+    private final Executor mExecutor;
+    private final LruCache<String, Snapshot> mSnapshots = new LruCache<>(MAX_PACKAGES);
+    private final ArrayMap<String, List<Request>> mPendingRequests = new ArrayMap<>();
+    // Incremented on invalidation, so that fetches started before are not cached.
+    private int mGeneration;
+
+    public static synchronized ChannelGroupCache getInstance() {
+        if (sInstance == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            sInstance = new ChannelGroupCache(executor);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    ChannelGroupCache(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Delivers the sorted channel groups of a package to {@code callback} on the main thread.
+     *
+     * A cached snapshot is delivered right away. If it is stale, it is refreshed and delivered
+     * again only if it changed. Must be called on the main thread.
+     */
+    public void getGroups(NotificationBackend backend, String pkg, int uid,
+            Consumer<List<NotificationChannelGroup>> callback) {
+        final String key = getKey(pkg, uid);
+        final Request request = new Request(callback);
+        synchronized (this) {
+            final Snapshot snapshot = mSnapshots.get(key);
+            if (snapshot != null) {
+                request.mDelivered = snapshot.mGroups;
+            }
+            if (snapshot == null
+                    || SystemClock.elapsedRealtime() - snapshot.mLoadTime >= MAX_AGE_MS) {
+                List<Request> requests = mPendingRequests.get(key);
+                if (requests == null) {
+                    requests = new ArrayList<>();
+                    mPendingRequests.put(key, requests);
+                    final int generation = mGeneration;
+                    mExecutor.execute(() -> fetch(backend, pkg, uid, generation));
+                }
+                requests.add(request);
+            }
+        }
+        if (request.mDelivered != null) {
+            callback.accept(request.mDelivered);
+        }
+    }
+
+    /**
+     * Drops the snapshot of a package, to be called when one of its channels or groups changes.
+     */
+    public synchronized void invalidate(String pkg, int uid) {
+        mSnapshots.remove(getKey(pkg, uid));
+        mGeneration++;
+    }
+
+    public synchronized void clear() {
+        mSnapshots.evictAll();
+        mGeneration++;
+    }
+
+    private void fetch(NotificationBackend backend, String pkg, int uid, int generation) {
+        final List<NotificationChannelGroup> groups = backend.getGroups(pkg, uid).getList();
+        Collections.sort(groups, NotificationPreferenceController.CHANNEL_GROUP_COMPARATOR);
+        for (NotificationChannelGroup group : groups) {
+            Collections.sort(group.getChannels(),
+                    NotificationPreferenceController.CHANNEL_COMPARATOR);
+        }
+
+        final String key = getKey(pkg, uid);
+        final List<Request> requests;
+        synchronized (this) {
+            requests = mPendingRequests.remove(key);
+            if (generation == mGeneration) {
+                mSnapshots.put(key, new Snapshot(groups, SystemClock.elapsedRealtime()));
+            }
+        }
+        ThreadUtils.postOnMainThread(() -> {
+            for (Request request : requests) {
+                if (!groups.equals(request.mDelivered)) {
+                    request.mCallback.accept(groups);
+                }
+            }
+        });
+    }
+
+    private static String getKey(String pkg, int uid) {
+        return pkg + "|" + uid;
+    }
+
+    private static class Snapshot {
+        private final List<NotificationChannelGroup> mGroups;
+        private final long mLoadTime;
+
+        Snapshot(List<NotificationChannelGroup> groups, long loadTime) {
+            mGroups = groups;
+            mLoadTime = loadTime;
+        }
+    }
+
+    private static class Request {
+        private final Consumer<List<NotificationChannelGroup>> mCallback;
+        // The snapshot already delivered to the callback, if any.
+        private List<NotificationChannelGroup> mDelivered;
+
+        Request(Consumer<List<NotificationChannelGroup>> callback) {
+            mCallback = callback;
+        }
+    }
+}
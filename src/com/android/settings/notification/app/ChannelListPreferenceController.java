@@ -24,10 +24,10 @@ import android.app.NotificationChannelGroup;
 import android.app.settings.SettingsEnums;
 import android.content.Context;
 import android.graphics.drawable.Drawable;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.provider.Settings;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -47,6 +47,7 @@ import com.android.settingslib.RestrictedSwitchPreference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 public class ChannelListPreferenceController extends NotificationPreferenceController {
 
@@ -57,6 +58,9 @@ public class ChannelListPreferenceController extends NotificationPreferenceContr
 
     private List<NotificationChannelGroup> mChannelGroupList;
     private PreferenceCategory mPreference;
+    // Channel id -> latest channel and state of its row, so unchanged rows are not rebound.
+    private final ArrayMap<String, NotificationChannel> mChannels = new ArrayMap<>();
+    private final ArrayMap<String, ChannelRowState> mRowStates = new ArrayMap<>();
 
     public ChannelListPreferenceController(Context context, NotificationBackend backend) {
         super(context, backend);
@@ -87,23 +91,15 @@ public class ChannelListPreferenceController extends NotificationPreferenceContr
     @Override
     public void updateState(Preference preference) {
         mPreference = (PreferenceCategory) preference;
-        // Load channel settings
-        new AsyncTask<Void, Void, Void>() {
-            @Override
-            protected Void doInBackground(Void... unused) {
-                mChannelGroupList = mBackend.getGroups(mAppRow.pkg, mAppRow.uid).getList();
-                Collections.sort(mChannelGroupList, CHANNEL_GROUP_COMPARATOR);
-                return null;
-            }
-
-            @Override
-            protected void onPostExecute(Void unused) {
-                if (mContext == null) {
-                    return;
-                }
-                updateFullList(mPreference, mChannelGroupList);
-            }
-        }.execute();
+        // Load channel settings, sorted by the cache
+        ChannelGroupCache.getInstance().getGroups(mBackend, mAppRow.pkg, mAppRow.uid,
+                groups -> {
+                    if (mContext == null) {
+                        return;
+                    }
+                    mChannelGroupList = groups;
+                    updateFullList(mPreference, mChannelGroupList);
+                });
     }
 
     /**
@@ -306,24 +302,40 @@ public class ChannelListPreferenceController extends NotificationPreferenceContr
         return preference;
     }
 
-    /** Update the properties of the channel preference with the values from the channel object. */
+    /**
+     * Update the properties of the channel preference with the values from the channel object.
+     * Rows showing the same state are left alone.
+     */
     private void updateSingleChannelPrefs(@NonNull final MasterSwitchPreference channelPref,
             @NonNull final NotificationChannel channel,
             final boolean groupBlocked) {
-        channelPref.setSwitchEnabled(mAdmin == null
-                && isChannelBlockable(channel)
-                && isChannelConfigurable(channel)
-                && !groupBlocked);
+        mChannels.put(channel.getId(), channel);
+        final ChannelRowState state = new ChannelRowState(channelPref, channel.getName(),
+                NotificationBackend.getSentSummary(
+                        mContext, mAppRow.sentByChannel.get(channel.getId()), false),
+                channel.getImportance(),
+                mAdmin == null
+                        && isChannelBlockable(channel)
+                        && isChannelConfigurable(channel)
+                        && !groupBlocked);
+        final ChannelRowState boundState = mRowStates.put(channel.getId(), state);
+        if (state.equals(boundState)) {
+            return;
+        }
+        channelPref.setSwitchEnabled(state.mSwitchEnabled);
         if (channel.getImportance() > IMPORTANCE_LOW) {
             channelPref.setIcon(getAlertingIcon());
         } else {
             channelPref.setIcon(null);
         }
         channelPref.setIconSize(MasterSwitchPreference.ICON_SIZE_SMALL);
-        channelPref.setTitle(channel.getName());
-        channelPref.setSummary(NotificationBackend.getSentSummary(
-                mContext, mAppRow.sentByChannel.get(channel.getId()), false));
+        channelPref.setTitle(state.mTitle);
+        channelPref.setSummary(state.mSummary);
         channelPref.setChecked(channel.getImportance() != IMPORTANCE_NONE);
+        if (boundState != null && boundState.mPreference == channelPref) {
+            // Intent and listener only depend on the channel id.
+            return;
+        }
         Bundle channelArgs = new Bundle();
         channelArgs.putInt(AppInfoBase.ARG_PACKAGE_UID, mAppRow.uid);
         channelArgs.putString(AppInfoBase.ARG_PACKAGE_NAME, mAppRow.pkg);
@@ -338,16 +350,19 @@ public class ChannelListPreferenceController extends NotificationPreferenceContr
 
         channelPref.setOnPreferenceChangeListener(
                 (preference, o) -> {
+                    final NotificationChannel current = mChannels.get(preference.getKey());
                     boolean value = (Boolean) o;
-                    int importance = value ? channel.getOriginalImportance() : IMPORTANCE_NONE;
-                    channel.setImportance(importance);
-                    channel.lockFields(NotificationChannel.USER_LOCKED_IMPORTANCE);
+                    int importance = value ? current.getOriginalImportance() : IMPORTANCE_NONE;
+                    current.setImportance(importance);
+                    current.lockFields(NotificationChannel.USER_LOCKED_IMPORTANCE);
                     MasterSwitchPreference channelPref1 = (MasterSwitchPreference) preference;
                     channelPref1.setIcon(null);
-                    if (channel.getImportance() > IMPORTANCE_LOW) {
+                    if (current.getImportance() > IMPORTANCE_LOW) {
                         channelPref1.setIcon(getAlertingIcon());
                     }
-                    mBackend.updateChannel(mAppRow.pkg, mAppRow.uid, channel);
+                    mBackend.updateChannel(mAppRow.pkg, mAppRow.uid, current);
+                    // The row no longer shows the bound state, rebind it on the next update.
+                    mRowStates.remove(current.getId());
 
                     return true;
                 });
@@ -368,4 +383,40 @@ public class ChannelListPreferenceController extends NotificationPreferenceContr
             updateGroupPreferences(group, groupPrefGroup);
         }
     }
+
+    /** The values shown by a channel row. */
+    private static class ChannelRowState {
+        private final Preference mPreference;
+        private final CharSequence mTitle;
+        private final CharSequence mSummary;
+        private final int mImportance;
+        private final boolean mSwitchEnabled;
+
+        ChannelRowState(Preference preference, CharSequence title, CharSequence summary,
+                int importance, boolean switchEnabled) {
+            mPreference = preference;
+            mTitle = title;
+            mSummary = summary;
+            mImportance = importance;
+            mSwitchEnabled = switchEnabled;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ChannelRowState)) {
+                return false;
+            }
+            final ChannelRowState other = (ChannelRowState) o;
+            return mPreference == other.mPreference
+                    && TextUtils.equals(mTitle, other.mTitle)
+                    && TextUtils.equals(mSummary, other.mSummary)
+                    && mImportance == other.mImportance
+                    && mSwitchEnabled == other.mSwitchEnabled;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mPreference, mTitle, mSummary, mImportance, mSwitchEnabled);
+        }
+    }
 }
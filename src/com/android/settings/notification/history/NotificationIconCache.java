@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification.history;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Small icons of the notifications shown in the notification log, keyed by resource so the many
+ * notifications of one app load them once. Package icons and labels come from
+ * {@link com.android.settings.applications.AppIconCache}.
+ *
+ * Icons are kept as {@link Drawable.ConstantState}, every caller gets its own drawable to tint.
+ * Icons of a package are dropped when it is added, changed or removed.
+ */
+class NotificationIconCache {
+
+    @VisibleForTesting
+    static final int MAX_ENTRIES = 128;
+
+    private static NotificationIconCache sInstance;
+
+    private final LruCache<String, Drawable.ConstantState> mIcons = new LruCache<>(MAX_ENTRIES);
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            if (data != null) {
+                invalidate(data.getSchemeSpecificPart());
+            }
+        }
+    };
+
+    static synchronized NotificationIconCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NotificationIconCache();
+            sInstance.register(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    NotificationIconCache() {
+    }
+
+    private void register(Context context) {
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        context.registerReceiverAsUser(mPackageReceiver, UserHandle.ALL, filter,
+                null /* broadcastPermission */, null /* scheduler */);
+    }
+
+    /**
+     * @return a new drawable for the icon cached under {@code key}, or null.
+     */
+    synchronized Drawable getIcon(String key) {
+        final Drawable.ConstantState state = key != null ? mIcons.get(key) : null;
+        return state != null ? state.newDrawable() : null;
+    }
+
+    /**
+     * Caches {@code icon} under {@code key}, if the drawable can be shared.
+     */
+    synchronized void putIcon(String key, Drawable icon) {
+        final Drawable.ConstantState state = icon.getConstantState();
+        if (key != null && state != null) {
+            mIcons.put(key, state);
+        }
+    }
+
+    /**
+     * Drops the icons of {@code packageName}, for all users.
+     */
+    synchronized void invalidate(String packageName) {
+        final String prefix = packageName + "/";
+        for (String key : mIcons.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                mIcons.remove(key);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        mIcons.evictAll();
+    }
+
+    /**
+     * @return the key of a notification small icon, or null if it is not a package resource
+     * and cannot be shared.
+     */
+    static String getSmallIconKey(Icon icon, String pkg, int userId) {
+        if (icon == null || icon.getType() != Icon.TYPE_RESOURCE) {
+            return null;
+        }
+        final String resPackage = TextUtils.isEmpty(icon.getResPackage())
+                ? pkg : icon.getResPackage();
+        return resPackage + "/" + userId + "/" + icon.getResId();
+    }
+}
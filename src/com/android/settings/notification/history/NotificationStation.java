@@ -35,6 +35,7 @@ import android.content.pm.PackageManager;
 import android.graphics.PorterDuff;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
 import android.os.Bundle;
 import android.os.Parcel;
 import android.os.RemoteException;
@@ -50,6 +51,8 @@ import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
 import android.text.TextUtils;
 import android.text.style.StyleSpan;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
@@ -57,6 +60,7 @@ import android.widget.DateTimeView;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceViewHolder;
 import androidx.recyclerview.widget.RecyclerView;
@@ -64,14 +68,15 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.Utils;
+import com.android.settings.applications.AppIconCache;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settingslib.search.SearchIndexableRaw;
 import com.android.settingslib.search.SearchIndexable;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 
 @SearchIndexable(forTarget = SearchIndexable.ALL & ~SearchIndexable.ARC)
 public class NotificationStation extends SettingsPreferenceFragment {
@@ -88,9 +93,12 @@ public class NotificationStation extends SettingsPreferenceFragment {
         // but we need channel id to launch settings.
         public String channelId;
         public String pkg;
-        public Drawable pkgicon;
         public CharSequence pkgname;
+        // Loaded when the row is first bound, from smallIcon tinted with color.
         public Drawable icon;
+        public Icon smallIcon;
+        public int color;
+        public boolean iconRequested;
         public boolean badged;
         public CharSequence title;
         public CharSequence text;
@@ -102,10 +110,20 @@ public class NotificationStation extends SettingsPreferenceFragment {
         public CharSequence rankingExtra;
         public boolean alerted;
         public boolean visuallyInterruptive;
+        // Null until the row is added to the list.
+        public HistoricalNotificationPreference preference;
 
         public void updateFrom(HistoricalNotificationInfo updatedInfo) {
             this.channel = updatedInfo.channel;
-            this.icon = updatedInfo.icon;
+            final String iconKey = NotificationIconCache.getSmallIconKey(smallIcon, pkg, user);
+            // Icons which are not package resources cannot be compared, load them again.
+            if (iconKey == null || !iconKey.equals(NotificationIconCache.getSmallIconKey(
+                    updatedInfo.smallIcon, pkg, user)) || this.color != updatedInfo.color) {
+                this.icon = null;
+                this.iconRequested = false;
+            }
+            this.smallIcon = updatedInfo.smallIcon;
+            this.color = updatedInfo.color;
             this.title = updatedInfo.title;
             this.text = updatedInfo.text;
             this.priority = updatedInfo.priority;
@@ -118,10 +136,24 @@ public class NotificationStation extends SettingsPreferenceFragment {
         }
     }
 
+    // Number of notifications added to the list at once, the rest are added while scrolling down.
+    @VisibleForTesting
+    static final int PAGE_SIZE = 30;
+
     private PackageManager mPm;
     private INotificationManager mNoMan;
-    private RankingMap mRanking;
-    private LinkedList<HistoricalNotificationInfo> mNotificationInfos;
+    private volatile RankingMap mRanking;
+    // Newest first, the first mBoundCount ones have a preference.
+    private final List<HistoricalNotificationInfo> mNotificationInfos = new ArrayList<>();
+    // Key -> newest notification with that key.
+    private final ArrayMap<String, HistoricalNotificationInfo> mLatestInfos = new ArrayMap<>();
+    private int mBoundCount;
+    private int mNextOrder;
+    private int mNextTopOrder;
+    private volatile int mLoadGeneration;
+    private boolean mLoading;
+    // Listener events received while loading, applied once the load is done.
+    private final List<Runnable> mPendingUpdates = new ArrayList<>();
 
     private final NotificationListenerService mListener = new NotificationListenerService() {
         @Override
@@ -132,7 +164,7 @@ public class NotificationStation extends SettingsPreferenceFragment {
             if (sbn.getNotification().isGroupSummary()) {
                 return;
             }
-            addOrUpdateNotification(sbn);
+            applyUpdate(() -> addOrUpdateNotification(sbn));
         }
 
         @Override
@@ -143,7 +175,7 @@ public class NotificationStation extends SettingsPreferenceFragment {
             if (sbn.getNotification().isGroupSummary()) {
                 return;
             }
-            markNotificationAsDismissed(sbn);
+            applyUpdate(() -> markNotificationAsDismissed(sbn));
         }
 
         @Override
@@ -151,7 +183,7 @@ public class NotificationStation extends SettingsPreferenceFragment {
             logd("onNotificationRankingUpdate with update for %d",
                     ranking == null ? 0 : ranking.getOrderedKeys().length);
             mRanking = ranking;
-            updateNotificationsFromRanking();
+            applyUpdate(() -> updateNotificationsFromRanking());
         }
 
         @Override
@@ -165,9 +197,6 @@ public class NotificationStation extends SettingsPreferenceFragment {
 
     private Context mContext;
 
-    private final Comparator<HistoricalNotificationInfo> mNotificationSorter
-            = (lhs, rhs) -> Long.compare(rhs.timestamp, lhs.timestamp);
-
     @Override
     public void onAttach(Activity activity) {
         logd("onAttach(%s)", activity.getClass().getSimpleName());
@@ -176,12 +205,13 @@ public class NotificationStation extends SettingsPreferenceFragment {
         mPm = mContext.getPackageManager();
         mNoMan = INotificationManager.Stub.asInterface(
                 ServiceManager.getService(Context.NOTIFICATION_SERVICE));
-        mNotificationInfos = new LinkedList<>();
     }
 
     @Override
     public void onDetach() {
         logd("onDetach()");
+        // Drops the pages still being loaded.
+        mLoadGeneration++;
         super.onDetach();
     }
 
@@ -207,6 +237,14 @@ public class NotificationStation extends SettingsPreferenceFragment {
 
         RecyclerView listView = getListView();
         Utils.forceCustomPadding(listView, false /* non additive padding */);
+        listView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (!recyclerView.canScrollVertically(1 /* scrolling down */)) {
+                    bindNextPage();
+                }
+            }
+        });
     }
 
     @Override
@@ -225,31 +263,80 @@ public class NotificationStation extends SettingsPreferenceFragment {
      * Adds all current and historical notifications when the NLS connects.
      */
     private void populateNotifications() {
-        loadNotifications();
-        final int N = mNotificationInfos.size();
-        logd("adding %d infos", N);
         if (getPreferenceScreen() == null) {
             setPreferenceScreen(getPreferenceManager().createPreferenceScreen(getContext()));
         }
         getPreferenceScreen().removeAll();
-        for (int i = 0; i < N; i++) {
-            getPreferenceScreen().addPreference(new HistoricalNotificationPreference(
-                    getPrefContext(), mNotificationInfos.get(i), i));
+        mNotificationInfos.clear();
+        mLatestInfos.clear();
+        mBoundCount = 0;
+        mNextOrder = 0;
+        mNextTopOrder = 0;
+        loadNotifications();
+    }
+
+    /**
+     * Applies a listener event now, or once the notifications being loaded are shown.
+     */
+    private void applyUpdate(Runnable update) {
+        if (mLoading) {
+            mPendingUpdates.add(update);
+        } else if (getPreferenceScreen() != null) {
+            update.run();
+        }
+    }
+
+    /**
+     * Appends a page of loaded notifications, in chronological order.
+     */
+    private void onPageLoaded(int generation, List<HistoricalNotificationInfo> page,
+            boolean lastPage) {
+        if (generation != mLoadGeneration || getPreferenceScreen() == null) {
+            return;
+        }
+        logd("adding %d infos", page.size());
+        for (HistoricalNotificationInfo info : page) {
+            mNotificationInfos.add(info);
+            if (!mLatestInfos.containsKey(info.key)) {
+                mLatestInfos.put(info.key, info);
+            }
+        }
+        if (mBoundCount < PAGE_SIZE) {
+            bindNextPage();
+        }
+        if (lastPage) {
+            mLoading = false;
+            for (Runnable update : mPendingUpdates) {
+                update.run();
+            }
+            mPendingUpdates.clear();
         }
     }
 
+    /**
+     * Adds the preferences of the next {@link #PAGE_SIZE} loaded notifications, if any.
+     */
+    @VisibleForTesting
+    void bindNextPage() {
+        final int end = Math.min(mNotificationInfos.size(), mBoundCount + PAGE_SIZE);
+        for (int i = mBoundCount; i < end; i++) {
+            final HistoricalNotificationInfo info = mNotificationInfos.get(i);
+            info.preference = new HistoricalNotificationPreference(getPrefContext(), info,
+                    mNextOrder++);
+            getPreferenceScreen().addPreference(info.preference);
+        }
+        mBoundCount = end;
+    }
+
     /**
      * Finds and dims the given notification in the preferences list.
      */
     private void markNotificationAsDismissed(StatusBarNotification sbn) {
-        final int N = mNotificationInfos.size();
-        for (int i = 0; i < N; i++) {
-            final HistoricalNotificationInfo info = mNotificationInfos.get(i);
-            if (TextUtils.equals(info.key, sbn.getKey())) {
-                info.active = false;
-                ((HistoricalNotificationPreference) getPreferenceScreen().findPreference(
-                        sbn.getKey())).updatePreference(info);
-               break;
+        final HistoricalNotificationInfo info = mLatestInfos.get(sbn.getKey());
+        if (info != null) {
+            info.active = false;
+            if (info.preference != null) {
+                info.preference.refresh();
             }
         }
     }
@@ -259,43 +346,43 @@ public class NotificationStation extends SettingsPreferenceFragment {
      * would consider a new notification) adds a new entry at the start of the list.
      */
     private void addOrUpdateNotification(StatusBarNotification sbn) {
-        HistoricalNotificationInfo newInfo = createFromSbn(sbn, true);
-        boolean needsAdd = true;
-        final int N = mNotificationInfos.size();
-        for (int i = 0; i < N; i++) {
-            final HistoricalNotificationInfo info = mNotificationInfos.get(i);
-            if (TextUtils.equals(info.key, sbn.getKey()) && info.active
-                    && !newInfo.alerted && !newInfo.visuallyInterruptive) {
-                info.updateFrom(newInfo);
-
-                ((HistoricalNotificationPreference) getPreferenceScreen().findPreference(
-                        sbn.getKey())).updatePreference(info);
-                needsAdd = false;
-                break;
+        final HistoricalNotificationInfo newInfo = createFromSbn(sbn, true);
+        final HistoricalNotificationInfo info = mLatestInfos.get(sbn.getKey());
+        if (info != null && info.active && !newInfo.alerted && !newInfo.visuallyInterruptive) {
+            info.updateFrom(newInfo);
+            if (info.preference != null) {
+                info.preference.refresh();
             }
+            return;
         }
-        if (needsAdd) {
-            mNotificationInfos.addFirst(newInfo);
-            getPreferenceScreen().addPreference(new HistoricalNotificationPreference(
-                    getPrefContext(), mNotificationInfos.peekFirst(),
-                    -1 * mNotificationInfos.size()));
-        }
+        mNotificationInfos.add(0, newInfo);
+        mLatestInfos.put(newInfo.key, newInfo);
+        mBoundCount++;
+        newInfo.preference = new HistoricalNotificationPreference(getPrefContext(), newInfo,
+                --mNextTopOrder);
+        getPreferenceScreen().addPreference(newInfo.preference);
     }
 
     /**
-     * Updates all notifications in the list based on new information in the ranking.
+     * Updates the active notifications in the list based on new information in the ranking,
+     * historical ones are not part of it.
      */
     private void updateNotificationsFromRanking() {
-        Ranking rank = new Ranking();
-        for (int i = 0; i < getPreferenceScreen().getPreferenceCount(); i++) {
-            final HistoricalNotificationPreference p =
-                    (HistoricalNotificationPreference) getPreferenceScreen().getPreference(i);
-            final HistoricalNotificationInfo info = mNotificationInfos.get(i);
-            mRanking.getRanking(p.getKey(), rank);
-
+        for (int i = 0; i < mLatestInfos.size(); i++) {
+            final HistoricalNotificationInfo info = mLatestInfos.valueAt(i);
+            if (!info.active) {
+                continue;
+            }
+            final CharSequence rankingExtra = info.rankingExtra;
+            final boolean alerted = info.alerted;
+            final NotificationChannel channel = info.channel;
             updateFromRanking(info);
-            ((HistoricalNotificationPreference) getPreferenceScreen().findPreference(
-                    info.key)).updatePreference(info);
+            if (info.preference != null && (alerted != info.alerted
+                    || !Objects.equals(channel, info.channel)
+                    || !TextUtils.equals(String.valueOf(rankingExtra),
+                            String.valueOf(info.rankingExtra)))) {
+                info.preference.refresh();
+            }
         }
     }
 
@@ -347,14 +434,36 @@ public class NotificationStation extends SettingsPreferenceFragment {
         return text == null ? null : String.valueOf(text);
     }
 
-    private Drawable loadIcon(HistoricalNotificationInfo info, StatusBarNotification sbn) {
-        Drawable draw = sbn.getNotification().getSmallIcon().loadDrawableAsUser(
-                sbn.getPackageContext(mContext), info.user);
+    /**
+     * Loads the small icon of a notification tinted with its color, or the icon of its package.
+     * Must not be called on the main thread.
+     */
+    private static Drawable loadIcon(Context context, HistoricalNotificationInfo info) {
+        final NotificationIconCache cache = NotificationIconCache.getInstance(context);
+        final String key = NotificationIconCache.getSmallIconKey(info.smallIcon, info.pkg,
+                info.user);
+        Drawable draw = cache.getIcon(key);
+        if (draw == null && info.smallIcon != null) {
+            Context iconContext = context;
+            if (info.smallIcon.getType() == Icon.TYPE_RESOURCE
+                    && TextUtils.isEmpty(info.smallIcon.getResPackage())) {
+                try {
+                    iconContext = context.createPackageContextAsUser(info.pkg, 0 /* flags */,
+                            UserHandle.of(info.user));
+                } catch (PackageManager.NameNotFoundException e) {
+                    Log.e(TAG, "Cannot create package context", e);
+                }
+            }
+            draw = info.smallIcon.loadDrawableAsUser(iconContext, info.user);
+            if (draw != null) {
+                cache.putIcon(key, draw);
+            }
+        }
         if (draw == null) {
-            return null;
+            return loadPackageIconDrawable(context, info.pkg, info.user);
         }
-        draw.mutate();
-        draw.setColorFilter(sbn.getNotification().color, PorterDuff.Mode.SRC_ATOP);
+        draw = draw.mutate();
+        draw.setColorFilter(info.color, PorterDuff.Mode.SRC_ATOP);
         return draw;
     }
 
@@ -373,38 +482,63 @@ public class NotificationStation extends SettingsPreferenceFragment {
 
     /**
      * Reads all current and past notifications (up to the system limit, since the device was
-     * booted), stores the data we need to present them, and sorts them chronologically for display.
+     * booted) in the background, and hands the data we need to present them to
+     * {@link #onPageLoaded} page by page, sorted chronologically for display.
      */
     private void loadNotifications() {
-        try {
-            StatusBarNotification[] active = mNoMan.getActiveNotificationsWithAttribution(
-                    mContext.getPackageName(), mContext.getAttributionTag());
-            StatusBarNotification[] dismissed = mNoMan.getHistoricalNotificationsWithAttribution(
-                    mContext.getPackageName(), mContext.getAttributionTag(), 50, false);
-
-            List<HistoricalNotificationInfo> list
-                    = new ArrayList<>(active.length + dismissed.length);
-
-            for (StatusBarNotification[] resultSet
-                    : new StatusBarNotification[][] { active, dismissed }) {
-                for (StatusBarNotification sbn : resultSet) {
-                    if (sbn.getNotification().isGroupSummary()) {
-                        continue;
+        final int generation = ++mLoadGeneration;
+        mLoading = true;
+        mPendingUpdates.clear();
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final List<StatusBarNotification> list = new ArrayList<>();
+            final ArraySet<StatusBarNotification> activeSet = new ArraySet<>();
+            try {
+                StatusBarNotification[] active = mNoMan.getActiveNotificationsWithAttribution(
+                        mContext.getPackageName(), mContext.getAttributionTag());
+                StatusBarNotification[] dismissed =
+                        mNoMan.getHistoricalNotificationsWithAttribution(
+                                mContext.getPackageName(), mContext.getAttributionTag(), 50,
+                                false);
+
+                for (StatusBarNotification[] resultSet
+                        : new StatusBarNotification[][] { active, dismissed }) {
+                    for (StatusBarNotification sbn : resultSet) {
+                        if (sbn.getNotification().isGroupSummary()) {
+                            continue;
+                        }
+                        list.add(sbn);
+                        if (resultSet == active) {
+                            activeSet.add(sbn);
+                        }
                     }
-                    final HistoricalNotificationInfo info = createFromSbn(sbn, resultSet == active);
-                    logd("   [%d] %s: %s", info.timestamp, info.pkg, info.title);
-                    list.add(info);
                 }
+            } catch (RemoteException e) {
+                Log.e(TAG, "Cannot load Notifications: ", e);
             }
 
             // notifications are given to us in the same order as the shade; sorted by inferred
             // priority. Resort chronologically for our display.
-            list.sort(mNotificationSorter);
-            mNotificationInfos = new LinkedList<>(list);
-
-        } catch (RemoteException e) {
-            Log.e(TAG, "Cannot load Notifications: ", e);
-        }
+            list.sort((lhs, rhs) -> Long.compare(rhs.getPostTime(), lhs.getPostTime()));
+
+            int start = 0;
+            do {
+                final int end = Math.min(list.size(), start + PAGE_SIZE);
+                final List<HistoricalNotificationInfo> page = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    if (generation != mLoadGeneration) {
+                        return;
+                    }
+                    final StatusBarNotification sbn = list.get(i);
+                    final HistoricalNotificationInfo info = createFromSbn(sbn,
+                            activeSet.contains(sbn));
+                    logd("   [%d] %s: %s", info.timestamp, info.pkg, info.title);
+                    page.add(info);
+                }
+                final boolean lastPage = end == list.size();
+                ThreadUtils.postOnMainThread(() -> onPageLoaded(generation, page, lastPage));
+                start = end;
+            } while (start < list.size());
+        });
     }
 
     private HistoricalNotificationInfo createFromSbn(StatusBarNotification sbn, boolean active) {
@@ -414,10 +548,8 @@ public class NotificationStation extends SettingsPreferenceFragment {
         info.user = sbn.getUserId() == UserHandle.USER_ALL
                 ? UserHandle.USER_SYSTEM : sbn.getUserId();
         info.badged = info.user != ActivityManager.getCurrentUser();
-        info.icon = loadIcon(info, sbn);
-        if (info.icon == null) {
-            info.icon = loadPackageIconDrawable(info.pkg, info.user);
-        }
+        info.smallIcon = n.getSmallIcon();
+        info.color = n.color;
         info.pkgname = loadPackageName(info.pkg);
         info.title = getTitleString(n);
         info.text = getTextString(sbn.getPackageContext(mContext), n);
@@ -451,16 +583,16 @@ public class NotificationStation extends SettingsPreferenceFragment {
      */
     private CharSequence generateRankingExtraText(HistoricalNotificationInfo info) {
         final SpannableStringBuilder sb = new SpannableStringBuilder();
-        final String delim = getString(R.string.notification_log_details_delimiter);
+        final String delim = mContext.getString(R.string.notification_log_details_delimiter);
 
         Ranking rank = new Ranking();
         if (mRanking != null && mRanking.getRanking(info.key, rank)) {
             if (info.active && info.alerted) {
                 sb.append("\n")
-                        .append(bold(getString(R.string.notification_log_details_alerted)));
+                        .append(bold(mContext.getString(R.string.notification_log_details_alerted)));
             }
             sb.append("\n")
-                    .append(bold(getString(R.string.notification_log_channel)))
+                    .append(bold(mContext.getString(R.string.notification_log_channel)))
                     .append(delim)
                     .append(info.channel.toString());
             sb.append("\n")
@@ -477,19 +609,19 @@ public class NotificationStation extends SettingsPreferenceFragment {
                     .append(rank.isBubble() ? "true" : "false");
             if (info.active) {
                 sb.append("\n")
-                        .append(bold(getString(
+                        .append(bold(mContext.getString(
                                 R.string.notification_log_details_importance)))
                         .append(delim)
                         .append(Ranking.importanceToString(rank.getImportance()));
                 if (rank.getImportanceExplanation() != null) {
                     sb.append("\n")
-                            .append(bold(getString(
+                            .append(bold(mContext.getString(
                                     R.string.notification_log_details_explanation)))
                             .append(delim)
                             .append(rank.getImportanceExplanation());
                 }
                 sb.append("\n")
-                        .append(bold(getString(
+                        .append(bold(mContext.getString(
                                 R.string.notification_log_details_badge)))
                         .append(delim)
                         .append(Boolean.toString(rank.canShowBadge()));
@@ -497,11 +629,11 @@ public class NotificationStation extends SettingsPreferenceFragment {
         } else {
             if (mRanking == null) {
                 sb.append("\n")
-                        .append(bold(getString(
+                        .append(bold(mContext.getString(
                                 R.string.notification_log_details_ranking_null)));
             } else {
                 sb.append("\n")
-                        .append(bold(getString(
+                        .append(bold(mContext.getString(
                                 R.string.notification_log_details_ranking_none)));
             }
         }
@@ -516,16 +648,16 @@ public class NotificationStation extends SettingsPreferenceFragment {
                                            HistoricalNotificationInfo info) {
         final Notification n = sbn.getNotification();
         final SpannableStringBuilder sb = new SpannableStringBuilder();
-        final String delim = getString(R.string.notification_log_details_delimiter);
-        sb.append(bold(getString(R.string.notification_log_details_package)))
+        final String delim = mContext.getString(R.string.notification_log_details_delimiter);
+        sb.append(bold(mContext.getString(R.string.notification_log_details_package)))
                 .append(delim)
                 .append(info.pkg)
                 .append("\n")
-                .append(bold(getString(R.string.notification_log_details_key)))
+                .append(bold(mContext.getString(R.string.notification_log_details_key)))
                 .append(delim)
                 .append(sbn.getKey());
         sb.append("\n")
-                .append(bold(getString(R.string.notification_log_details_icon)))
+                .append(bold(mContext.getString(R.string.notification_log_details_icon)))
                 .append(delim)
                 .append(String.valueOf(n.getSmallIcon()));
         sb.append("\n")
@@ -540,17 +672,17 @@ public class NotificationStation extends SettingsPreferenceFragment {
         }
         if (sbn.isGroup()) {
             sb.append("\n")
-                    .append(bold(getString(R.string.notification_log_details_group)))
+                    .append(bold(mContext.getString(R.string.notification_log_details_group)))
                     .append(delim)
                     .append(String.valueOf(sbn.getGroupKey()));
             if (n.isGroupSummary()) {
                 sb.append(bold(
-                        getString(R.string.notification_log_details_group_summary)));
+                        mContext.getString(R.string.notification_log_details_group_summary)));
             }
         }
         if (n.publicVersion != null) {
             sb.append("\n")
-                    .append(bold(getString(
+                    .append(bold(mContext.getString(
                             R.string.notification_log_details_public_version)))
                     .append(delim)
                     .append(getTitleString(n.publicVersion));
@@ -558,45 +690,45 @@ public class NotificationStation extends SettingsPreferenceFragment {
 
         if (n.contentIntent != null) {
             sb.append("\n")
-                    .append(bold(getString(
+                    .append(bold(mContext.getString(
                             R.string.notification_log_details_content_intent)))
                     .append(delim)
                     .append(formatPendingIntent(n.contentIntent));
         }
         if (n.deleteIntent != null) {
             sb.append("\n")
-                    .append(bold(getString(
+                    .append(bold(mContext.getString(
                             R.string.notification_log_details_delete_intent)))
                     .append(delim)
                     .append(formatPendingIntent(n.deleteIntent));
         }
         if (n.fullScreenIntent != null) {
             sb.append("\n")
-                    .append(bold(getString(
+                    .append(bold(mContext.getString(
                             R.string.notification_log_details_full_screen_intent)))
                     .append(delim)
                     .append(formatPendingIntent(n.fullScreenIntent));
         }
         if (n.actions != null && n.actions.length > 0) {
             sb.append("\n")
-                    .append(bold(getString(R.string.notification_log_details_actions)));
+                    .append(bold(mContext.getString(R.string.notification_log_details_actions)));
             for (int ai=0; ai<n.actions.length; ai++) {
                 final Notification.Action action = n.actions[ai];
                 sb.append("\n  ").append(String.valueOf(ai)).append(' ')
-                        .append(bold(getString(
+                        .append(bold(mContext.getString(
                                 R.string.notification_log_details_title)))
                         .append(delim)
                         .append(action.title);
                 if (action.actionIntent != null) {
                     sb.append("\n    ")
-                            .append(bold(getString(
+                            .append(bold(mContext.getString(
                                     R.string.notification_log_details_content_intent)))
                             .append(delim)
                             .append(formatPendingIntent(action.actionIntent));
                 }
                 if (action.getRemoteInputs() != null) {
                     sb.append("\n    ")
-                            .append(bold(getString(
+                            .append(bold(mContext.getString(
                                     R.string.notification_log_details_remoteinput)))
                             .append(delim)
                             .append(String.valueOf(action.getRemoteInputs().length));
@@ -605,7 +737,7 @@ public class NotificationStation extends SettingsPreferenceFragment {
         }
         if (n.contentView != null) {
             sb.append("\n")
-                    .append(bold(getString(
+                    .append(bold(mContext.getString(
                             R.string.notification_log_details_content_view)))
                     .append(delim)
                     .append(n.contentView.toString());
@@ -626,7 +758,7 @@ public class NotificationStation extends SettingsPreferenceFragment {
         if (DUMP_EXTRAS) {
             if (n.extras != null && n.extras.size() > 0) {
                 sb.append("\n")
-                        .append(bold(getString(
+                        .append(bold(mContext.getString(
                                 R.string.notification_log_details_extras)));
                 for (String extraKey : n.extras.keySet()) {
                     String val = String.valueOf(n.extras.get(extraKey));
@@ -639,11 +771,11 @@ public class NotificationStation extends SettingsPreferenceFragment {
             final Parcel p = Parcel.obtain();
             n.writeToParcel(p, 0);
             sb.append("\n")
-                    .append(bold(getString(R.string.notification_log_details_parcel)))
+                    .append(bold(mContext.getString(R.string.notification_log_details_parcel)))
                     .append(delim)
                     .append(String.valueOf(p.dataPosition()))
                     .append(' ')
-                    .append(bold(getString(R.string.notification_log_details_ashmem)))
+                    .append(bold(mContext.getString(R.string.notification_log_details_ashmem)))
                     .append(delim)
                     .append(String.valueOf(p.getBlobAshmemSize()))
                     .append("\n");
@@ -651,10 +783,12 @@ public class NotificationStation extends SettingsPreferenceFragment {
         return sb;
     }
 
-    private Drawable loadPackageIconDrawable(String pkg, int userId) {
+    private static Drawable loadPackageIconDrawable(Context context, String pkg, int userId) {
         Drawable icon = null;
         try {
-            icon = mPm.getApplicationIcon(pkg);
+            final ApplicationInfo info = context.getPackageManager().getApplicationInfo(pkg,
+                    0 /* flags */);
+            icon = AppIconCache.getInstance(context).getIcon(info, userId, false /* badged */);
         } catch (PackageManager.NameNotFoundException e) {
             Log.e(TAG, "Cannot get application icon", e);
         }
@@ -666,7 +800,9 @@ public class NotificationStation extends SettingsPreferenceFragment {
         try {
             ApplicationInfo info = mPm.getApplicationInfo(pkg,
                     PackageManager.MATCH_ANY_USER);
-            if (info != null) return mPm.getApplicationLabel(info);
+            if (info != null) {
+                return AppIconCache.getInstance(mContext).getLabel(info);
+            }
         } catch (PackageManager.NameNotFoundException e) {
             Log.e(TAG, "Cannot load package name", e);
         }
@@ -695,6 +831,9 @@ public class NotificationStation extends SettingsPreferenceFragment {
 
             mItemView = (ViewGroup) row.itemView;
 
+            if (mInfo.icon == null && !mInfo.iconRequested) {
+                loadIconAsync();
+            }
             updatePreference(mInfo);
 
             row.findViewById(R.id.timestamp).setOnLongClickListener(v -> {
@@ -706,13 +845,33 @@ public class NotificationStation extends SettingsPreferenceFragment {
             });
         }
 
+        /**
+         * Rebinds the row after its notification changed.
+         */
+        void refresh() {
+            notifyChanged();
+        }
+
+        private void loadIconAsync() {
+            final HistoricalNotificationInfo info = mInfo;
+            final Icon smallIcon = info.smallIcon;
+            info.iconRequested = true;
+            ThreadUtils.postOnBackgroundThread(() -> {
+                final Drawable icon = loadIcon(mContext, info);
+                ThreadUtils.postOnMainThread(() -> {
+                    // The notification may have been updated with another icon meanwhile.
+                    if (info.smallIcon == smallIcon) {
+                        info.icon = icon;
+                        refresh();
+                    }
+                });
+            });
+        }
+
         public void updatePreference(HistoricalNotificationInfo info) {
             if (mItemView == null) {
                 return;
             }
-            if (info.icon != null) {
-                ((ImageView) mItemView.findViewById(R.id.icon)).setImageDrawable(mInfo.icon);
-            }
             ((TextView) mItemView.findViewById(R.id.pkgname)).setText(mInfo.pkgname);
             ((DateTimeView) mItemView.findViewById(R.id.timestamp)).setTime(info.timestamp);
             if (!TextUtils.isEmpty(info.title)) {
@@ -727,9 +886,8 @@ public class NotificationStation extends SettingsPreferenceFragment {
             } else {
                 mItemView.findViewById(R.id.text).setVisibility(View.GONE);
             }
-            if (info.icon != null) {
-                ((ImageView) mItemView.findViewById(R.id.icon)).setImageDrawable(info.icon);
-            }
+            // Also clears the icon of a recycled row until this one is loaded.
+            ((ImageView) mItemView.findViewById(R.id.icon)).setImageDrawable(info.icon);
 
             ImageView profileBadge = mItemView.findViewById(R.id.profile_badge);
             Drawable profile = mContext.getPackageManager().getUserBadgeForDensity(
@@ -29,6 +29,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.core.AvailabilityDependencies;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settingslib.RestrictedPreference;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
@@ -64,6 +65,12 @@ public class PrintSettingPreferenceController extends BasePreferenceController i
                 ? AVAILABLE : UNSUPPORTED_ON_DEVICE;
     }
 
+    @Override
+    protected AvailabilityDependencies getAvailabilityDependencies() {
+        // Neither the printing feature nor the print service change while the process runs.
+        return new AvailabilityDependencies();
+    }
+
     @Override
     public void displayPreference(PreferenceScreen screen) {
         super.displayPreference(screen);
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.search.SearchIndexableData;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a query against every {@link SearchIndexableData} on a bounded pool and hands the results
+ * back in registry order, so the caller can write rows as soon as each provider is done instead
+ * of collecting everything first. The time spent in each provider is kept for dumpsys.
+ *
+ * Queries not handed back yet are cancelled when the caller is interrupted or one of its handlers
+ * throws.
+ */
+public class SearchIndexProviderExecutor {
+
+    private static final int POOL_SIZE =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+
+    /**
+     * A query against one provider.
+     */
+    public interface ProviderQuery<T> {
+        List<T> query(SearchIndexableData bundle) throws Exception;
+    }
+
+    /**
+     * Receives the result of a {@link ProviderQuery}, on the calling thread.
+     */
+    public interface ResultConsumer<T> {
+        void accept(SearchIndexableData bundle, List<T> result);
+    }
+
+    /**
+     * Handles a failed {@link ProviderQuery}, on the calling thread.
+     */
+    public interface ErrorHandler {
+        void onError(SearchIndexableData bundle, Throwable error);
+    }
+
+    private static ExecutorService sExecutor;
+
+    private final Map<String, Long> mProviderTimes =
+            Collections.synchronizedMap(new ArrayMap<>());
+
+    /**
+     * Runs {@code query} on every bundle and passes the results to {@code consumer} in the order
+     * of {@code bundles}.
+     */
+    public <T> void execute(String queryName, Collection<SearchIndexableData> bundles,
+            ProviderQuery<T> query, ResultConsumer<T> consumer, ErrorHandler errorHandler) {
+        final ExecutorService executor = getExecutor();
+        final List<SearchIndexableData> bundleList = new ArrayList<>(bundles);
+        final List<Future<List<T>>> futures = new ArrayList<>(bundleList.size());
+        for (SearchIndexableData bundle : bundleList) {
+            futures.add(executor.submit(() -> {
+                final long startTime = SystemClock.elapsedRealtime();
+                try {
+                    return query.query(bundle);
+                } finally {
+                    mProviderTimes.put(queryName + "/" + bundle.getTargetClass().getName(),
+                            SystemClock.elapsedRealtime() - startTime);
+                }
+            }));
+        }
+
+        int i = 0;
+        try {
+            for (; i < futures.size(); i++) {
+                final SearchIndexableData bundle = bundleList.get(i);
+                final List<T> result;
+                try {
+                    result = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    errorHandler.onError(bundle, e.getCause());
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    errorHandler.onError(bundle, e);
+                    return;
+                }
+                consumer.accept(bundle, result);
+            }
+        } finally {
+            // Interrupted, or a handler threw: nobody takes the remaining results, so do not
+            // keep the pool busy computing them.
+            for (; i < futures.size(); i++) {
+                futures.get(i).cancel(true /* mayInterruptIfRunning */);
+            }
+        }
+    }
+
+    /**
+     * Prints the last time spent in each provider, the most expensive first.
+     */
+    public void dump(PrintWriter writer) {
+        final List<Map.Entry<String, Long>> entries;
+        synchronized (mProviderTimes) {
+            entries = new ArrayList<>(mProviderTimes.entrySet());
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        writer.println("Provider query times (ms):");
+        for (Map.Entry<String, Long> entry : entries) {
+            writer.println("  " + entry.getKey() + ": " + entry.getValue());
+        }
+    }
+
+    @VisibleForTesting
+    Map<String, Long> getProviderTimes() {
+        return mProviderTimes;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+        return sExecutor;
+    }
+}
@@ -71,10 +71,11 @@ import com.android.settingslib.drawer.ActivityTile;
 import com.android.settingslib.drawer.CategoryKey;
 import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.Tile;
-import com.android.settingslib.search.Indexable;
 import com.android.settingslib.search.SearchIndexableData;
 import com.android.settingslib.search.SearchIndexableRaw;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -100,6 +101,9 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         INVALID_KEYS.add("");
     }
 
+    private final SearchIndexProviderExecutor mProviderExecutor =
+            new SearchIndexProviderExecutor();
+
     @Override
     public boolean onCreate() {
         return true;
@@ -108,19 +112,29 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryXmlResources(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_XML_RES_COLUMNS);
-        final List<SearchIndexableResource> resources =
-                getSearchIndexableResourcesFromProvider(getContext());
-        for (SearchIndexableResource val : resources) {
-            final Object[] ref = new Object[INDEXABLES_XML_RES_COLUMNS.length];
-            ref[COLUMN_INDEX_XML_RES_RANK] = val.rank;
-            ref[COLUMN_INDEX_XML_RES_RESID] = val.xmlResId;
-            ref[COLUMN_INDEX_XML_RES_CLASS_NAME] = val.className;
-            ref[COLUMN_INDEX_XML_RES_ICON_RESID] = val.iconResId;
-            ref[COLUMN_INDEX_XML_RES_INTENT_ACTION] = val.intentAction;
-            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_PACKAGE] = val.intentTargetPackage;
-            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_CLASS] = null; // intent target class
-            cursor.addRow(ref);
-        }
+        final Context context = getContext();
+        mProviderExecutor.execute("xml", getProviderValues(context),
+                bundle -> bundle.getSearchIndexProvider().getXmlResourcesToIndex(context,
+                        true /* enabled */),
+                (bundle, resList) -> {
+                    if (resList == null) {
+                        return;
+                    }
+                    for (SearchIndexableResource val : resList) {
+                        final Object[] ref = new Object[INDEXABLES_XML_RES_COLUMNS.length];
+                        ref[COLUMN_INDEX_XML_RES_RANK] = val.rank;
+                        ref[COLUMN_INDEX_XML_RES_RESID] = val.xmlResId;
+                        ref[COLUMN_INDEX_XML_RES_CLASS_NAME] = TextUtils.isEmpty(val.className)
+                                ? bundle.getTargetClass().getName()
+                                : val.className;
+                        ref[COLUMN_INDEX_XML_RES_ICON_RESID] = val.iconResId;
+                        ref[COLUMN_INDEX_XML_RES_INTENT_ACTION] = val.intentAction;
+                        ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_PACKAGE] = val.intentTargetPackage;
+                        ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_CLASS] = null; // target class
+                        cursor.addRow(ref);
+                    }
+                },
+                SettingsSearchIndexablesProvider::rethrow);
 
         return cursor;
     }
@@ -131,10 +145,12 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryRawData(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_RAW_COLUMNS);
-        final List<SearchIndexableRaw> raws = getSearchIndexableRawFromProvider(getContext());
-        for (SearchIndexableRaw val : raws) {
-            cursor.addRow(createIndexableRawColumnObjects(val));
-        }
+        final Context context = getContext();
+        mProviderExecutor.execute("raw", getProviderValues(context),
+                bundle -> bundle.getSearchIndexProvider().getRawDataToIndex(context,
+                        true /* enabled */),
+                (bundle, raws) -> addRawRows(cursor, bundle, raws),
+                SettingsSearchIndexablesProvider::rethrow);
 
         return cursor;
     }
@@ -147,12 +163,37 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryNonIndexableKeys(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(NON_INDEXABLES_KEYS_COLUMNS);
-        final List<String> nonIndexableKeys = getNonIndexableKeysFromProvider(getContext());
-        for (String nik : nonIndexableKeys) {
-            final Object[] ref = new Object[NON_INDEXABLES_KEYS_COLUMNS.length];
-            ref[COLUMN_INDEX_NON_INDEXABLE_KEYS_KEY_VALUE] = nik;
-            cursor.addRow(ref);
-        }
+        final Context context = getContext();
+        mProviderExecutor.execute("non_indexable", getProviderValues(context),
+                bundle -> bundle.getSearchIndexProvider().getNonIndexableKeys(context),
+                (bundle, nonIndexableKeys) -> {
+                    if (nonIndexableKeys == null || nonIndexableKeys.isEmpty()) {
+                        return;
+                    }
+                    if (nonIndexableKeys.removeAll(INVALID_KEYS)) {
+                        Log.v(TAG, bundle.getSearchIndexProvider()
+                                + " tried to add an empty non-indexable key");
+                    }
+                    for (String nik : nonIndexableKeys) {
+                        final Object[] ref = new Object[NON_INDEXABLES_KEYS_COLUMNS.length];
+                        ref[COLUMN_INDEX_NON_INDEXABLE_KEYS_KEY_VALUE] = nik;
+                        cursor.addRow(ref);
+                    }
+                },
+                (bundle, error) -> {
+                    // Catch a generic crash. In the absence of the catch, the background thread
+                    // will silently fail anyway, so we aren't losing information by catching the
+                    // exception. We crash when the system property exists so that we can test if
+                    // crashes need to be fixed.
+                    // The gain is that if there is a crash in a specific controller, we don't
+                    // lose all non-indexable keys, but we can still find specific crashes in
+                    // development.
+                    if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
+                        throw new RuntimeException(error);
+                    }
+                    Log.e(TAG, "Error trying to get non-indexable keys from: "
+                            + bundle.getTargetClass().getName(), error);
+                });
 
         return cursor;
     }
@@ -165,18 +206,24 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryDynamicRawData(String[] projection) {
         final Context context = getContext();
-        final List<SearchIndexableRaw> rawList = new ArrayList<>();
-        rawList.addAll(getDynamicSearchIndexableRawFromProvider(context));
-        rawList.addAll(getInjectionIndexableRawData(context));
-
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_RAW_COLUMNS);
-        for (SearchIndexableRaw raw : rawList) {
+        mProviderExecutor.execute("dynamic_raw", getProviderValues(context),
+                bundle -> bundle.getSearchIndexProvider().getDynamicRawDataToIndex(context,
+                        true /* enabled */),
+                (bundle, raws) -> addRawRows(cursor, bundle, raws),
+                SettingsSearchIndexablesProvider::rethrow);
+        for (SearchIndexableRaw raw : getInjectionIndexableRawData(context)) {
             cursor.addRow(createIndexableRawColumnObjects(raw));
         }
 
         return cursor;
     }
 
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        mProviderExecutor.dump(writer);
+    }
+
     @Override
     public Cursor querySiteMapPairs() {
         final MatrixCursor cursor = new MatrixCursor(SITE_MAP_COLUMNS);
@@ -252,133 +299,29 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return cursor;
     }
 
-    private List<String> getNonIndexableKeysFromProvider(Context context) {
-        final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
+    private static Collection<SearchIndexableData> getProviderValues(Context context) {
+        return FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-
-        final List<String> nonIndexableKeys = new ArrayList<>();
-
-        for (SearchIndexableData bundle : bundles) {
-            final long startTime = System.currentTimeMillis();
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            List<String> providerNonIndexableKeys;
-            try {
-                providerNonIndexableKeys = provider.getNonIndexableKeys(context);
-            } catch (Exception e) {
-                // Catch a generic crash. In the absence of the catch, the background thread will
-                // silently fail anyway, so we aren't losing information by catching the exception.
-                // We crash when the system property exists so that we can test if crashes need to
-                // be fixed.
-                // The gain is that if there is a crash in a specific controller, we don't lose all
-                // non-indexable keys, but we can still find specific crashes in development.
-                if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
-                    throw new RuntimeException(e);
-                }
-                Log.e(TAG, "Error trying to get non-indexable keys from: "
-                        + bundle.getTargetClass().getName(), e);
-                continue;
-            }
-
-            if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
-                if (DEBUG) {
-                    final long totalTime = System.currentTimeMillis() - startTime;
-                    Log.d(TAG, "No indexable, total time " + totalTime);
-                }
-                continue;
-            }
-
-            if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
-                Log.v(TAG, provider + " tried to add an empty non-indexable key");
-            }
-
-            if (DEBUG) {
-                final long totalTime = System.currentTimeMillis() - startTime;
-                Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
-                        + totalTime);
-            }
-
-            nonIndexableKeys.addAll(providerNonIndexableKeys);
-        }
-
-        return nonIndexableKeys;
     }
 
-    private List<SearchIndexableResource> getSearchIndexableResourcesFromProvider(Context context) {
-        final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
-                .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-        List<SearchIndexableResource> resourceList = new ArrayList<>();
-
-        for (SearchIndexableData bundle : bundles) {
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            final List<SearchIndexableResource> resList =
-                    provider.getXmlResourcesToIndex(context, true);
-
-            if (resList == null) {
-                continue;
-            }
-
-            for (SearchIndexableResource item : resList) {
-                item.className = TextUtils.isEmpty(item.className)
-                        ? bundle.getTargetClass().getName()
-                        : item.className;
-            }
-
-            resourceList.addAll(resList);
+    private static void addRawRows(MatrixCursor cursor, SearchIndexableData bundle,
+            List<SearchIndexableRaw> providerRaws) {
+        if (providerRaws == null) {
+            return;
         }
-
-        return resourceList;
-    }
-
-    private List<SearchIndexableRaw> getSearchIndexableRawFromProvider(Context context) {
-        final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
-                .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-        final List<SearchIndexableRaw> rawList = new ArrayList<>();
-
-        for (SearchIndexableData bundle : bundles) {
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            final List<SearchIndexableRaw> providerRaws = provider.getRawDataToIndex(context,
-                    true /* enabled */);
-
-            if (providerRaws == null) {
-                continue;
-            }
-
-            for (SearchIndexableRaw raw : providerRaws) {
-                // The classname and intent information comes from the PreIndexData
-                // This will be more clear when provider conversion is done at PreIndex time.
-                raw.className = bundle.getTargetClass().getName();
-
-            }
-            rawList.addAll(providerRaws);
+        for (SearchIndexableRaw raw : providerRaws) {
+            // The classname and intent information comes from the PreIndexData
+            // This will be more clear when provider conversion is done at PreIndex time.
+            raw.className = bundle.getTargetClass().getName();
+            cursor.addRow(createIndexableRawColumnObjects(raw));
         }
-
-        return rawList;
     }
 
-    private List<SearchIndexableRaw> getDynamicSearchIndexableRawFromProvider(Context context) {
-        final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
-                .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-        final List<SearchIndexableRaw> rawList = new ArrayList<>();
-
-        for (SearchIndexableData bundle : bundles) {
-            final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            final List<SearchIndexableRaw> providerRaws =
-                    provider.getDynamicRawDataToIndex(context, true /* enabled */);
-
-            if (providerRaws == null) {
-                continue;
-            }
-
-            for (SearchIndexableRaw raw : providerRaws) {
-                // The classname and intent information comes from the PreIndexData
-                // This will be more clear when provider conversion is done at PreIndex time.
-                raw.className = bundle.getTargetClass().getName();
-
-            }
-            rawList.addAll(providerRaws);
+    private static void rethrow(SearchIndexableData bundle, Throwable error) {
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
         }
-
-        return rawList;
+        throw new RuntimeException("Error querying " + bundle.getTargetClass().getName(), error);
     }
 
     private List<SearchIndexableRaw> getInjectionIndexableRawData(Context context) {
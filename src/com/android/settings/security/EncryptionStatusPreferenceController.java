@@ -24,6 +24,7 @@ import androidx.preference.Preference;
 
 import com.android.internal.widget.LockPatternUtils;
 import com.android.settings.R;
+import com.android.settings.core.AvailabilityDependencies;
 import com.android.settings.core.BasePreferenceController;
 
 public class EncryptionStatusPreferenceController extends BasePreferenceController {
@@ -51,6 +52,12 @@ public class EncryptionStatusPreferenceController extends BasePreferenceControll
         return mUserManager.isAdminUser() ? AVAILABLE : DISABLED_FOR_USER;
     }
 
+    @Override
+    protected AvailabilityDependencies getAvailabilityDependencies() {
+        // Whether the user is an admin does not change while the process runs.
+        return new AvailabilityDependencies();
+    }
+
     @Override
     public void updateState(Preference preference) {
         final boolean encryptionEnabled = LockPatternUtils.isDeviceEncryptionEnabled();
@@ -27,6 +27,7 @@ import android.telephony.TelephonyManager;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
+import com.android.settings.core.AvailabilityDependencies;
 import com.android.settings.core.BasePreferenceController;
 
 import java.util.List;
@@ -67,6 +68,12 @@ public class SimLockPreferenceController extends BasePreferenceController {
         return DISABLED_FOR_USER;
     }
 
+    @Override
+    protected AvailabilityDependencies getAvailabilityDependencies() {
+        // A SIM is inserted or removed along with a subscription change.
+        return new AvailabilityDependencies().addSubscriptions().addCarrierConfig();
+    }
+
     @Override
     public void displayPreference(PreferenceScreen screen) {
         super.displayPreference(screen);
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2021 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.security.applock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorted suffixes of the lower case app labels. Any substring of a label is a prefix of one of
+ * its suffixes, so a search is a binary search instead of a scan of every label.
+ */
+class AppLabelIndex {
+
+    private final List<AppLockInfo> mApps;
+    private final String[] mLabels;
+    // Suffixes packed as (app index << 32 | offset in the label), sorted by suffix.
+    private final long[] mSuffixes;
+
+    AppLabelIndex(List<AppLockInfo> apps) {
+        mApps = apps;
+        mLabels = new String[apps.size()];
+        int count = 0;
+        for (int i = 0; i < mLabels.length; i++) {
+            mLabels[i] = apps.get(i).getSearchLabel();
+            count += mLabels[i].length();
+        }
+        final Long[] suffixes = new Long[count];
+        int n = 0;
+        for (int i = 0; i < mLabels.length; i++) {
+            for (int offset = 0; offset < mLabels[i].length(); offset++) {
+                suffixes[n++] = ((long) i << 32) | offset;
+            }
+        }
+        Arrays.sort(suffixes, (a, b) -> compareSuffix(a, b));
+        mSuffixes = new long[count];
+        for (int i = 0; i < count; i++) {
+            mSuffixes[i] = suffixes[i];
+        }
+    }
+
+    /**
+     * @return the list this index was built from.
+     */
+    List<AppLockInfo> getApps() {
+        return mApps;
+    }
+
+    /**
+     * @return the apps whose label contains {@code query}, ignoring case, in the order they were
+     * indexed.
+     */
+    List<AppLockInfo> search(String query) {
+        final String lowerQuery = query.toLowerCase();
+        if (lowerQuery.isEmpty()) {
+            return new ArrayList<>(mApps);
+        }
+        final boolean[] matched = new boolean[mApps.size()];
+        for (int i = lowerBound(lowerQuery); i < mSuffixes.length; i++) {
+            final int app = (int) (mSuffixes[i] >>> 32);
+            final int offset = (int) mSuffixes[i];
+            if (!mLabels[app].startsWith(lowerQuery, offset)) {
+                break;
+            }
+            matched[app] = true;
+        }
+        final List<AppLockInfo> results = new ArrayList<>();
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) {
+                results.add(mApps.get(i));
+            }
+        }
+        return results;
+    }
+
+    // Index of the first suffix which is not smaller than the query.
+    private int lowerBound(String query) {
+        int low = 0;
+        int high = mSuffixes.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            final String label = mLabels[(int) (mSuffixes[mid] >>> 32)];
+            final int offset = (int) mSuffixes[mid];
+            if (compare(label, offset, query, 0) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareSuffix(long a, long b) {
+        return compare(mLabels[(int) (a >>> 32)], (int) a, mLabels[(int) (b >>> 32)], (int) b);
+    }
+
+    private static int compare(String a, int offsetA, String b, int offsetB) {
+        final int lengthA = a.length() - offsetA;
+        final int lengthB = b.length() - offsetB;
+        final int length = Math.min(lengthA, lengthB);
+        for (int i = 0; i < length; i++) {
+            final char charA = a.charAt(offsetA + i);
+            final char charB = b.charAt(offsetB + i);
+            if (charA != charB) {
+                return charA - charB;
+            }
+        }
+        return lengthA - lengthB;
+    }
+}
@@ -22,16 +22,25 @@ import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.graphics.drawable.Drawable;
 
+/**
+ * A launcher app shown by {@link AppLockSettings}. The label is loaded right away to sort the
+ * list, the icon only when it is first displayed.
+ */
 public class AppLockInfo {
 
+    private final ResolveInfo mResolveInfo;
+    private final PackageManager mPackageManager;
     private String mLabel;
-    private String mPackageName;
+    private final String mSearchLabel;
+    private final String mPackageName;
     private Drawable mIcon;
     private boolean mAppLocked;
 
     AppLockInfo(ResolveInfo info, PackageManager pm, AppLockManager am) {
+        mResolveInfo = info;
+        mPackageManager = pm;
         mLabel = info.loadLabel(pm).toString();
-        mIcon = info.loadIcon(pm);
+        mSearchLabel = mLabel.toLowerCase();
         mPackageName = info.activityInfo.packageName;
         mAppLocked = am.isAppLocked(mPackageName);
     }
@@ -44,6 +53,14 @@ public class AppLockInfo {
         mLabel = label;
     }
 
+    /**
+     * @return the lower case label used to search apps, without the suffix added by
+     * {@link #setLabel(String)} to tell apart apps with the same label.
+     */
+    String getSearchLabel() {
+        return mSearchLabel;
+    }
+
     String getPackageName() {
         return mPackageName;
     }
@@ -56,7 +73,13 @@ public class AppLockInfo {
         mAppLocked = locked;
     }
 
-    Drawable getIcon() {
+    /**
+     * Loads the icon the first time it is called, so should not be called on the main thread.
+     */
+    synchronized Drawable getIcon() {
+        if (mIcon == null) {
+            mIcon = mResolveInfo.loadIcon(mPackageManager);
+        }
         return mIcon;
     }
 
@@ -23,11 +23,11 @@ import android.app.Activity;
 import android.app.AppLockManager;
 import android.app.admin.DevicePolicyManager;
 import android.content.Intent;
-import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.UserHandle;
 import android.provider.Settings;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -108,7 +108,12 @@ public class AppLockSettings extends SubSettings {
 
         private final TreeMap<String, AppLockInfo> mLockedApps = new TreeMap<>();
         private final TreeMap<String, AppLockInfo> mUnlockedApps = new TreeMap<>();
+        private final ArrayMap<String, AppLockInfo> mAppsByPackage = new ArrayMap<>();
         private final ArrayList<AppLockInfo> mAllApps = new ArrayList<>();
+        // Built by the first search after the list changes, on the filter thread. Only valid
+        // while its list is still mIndexedApps.
+        private volatile AppLabelIndex mLabelIndex;
+        private volatile List<AppLockInfo> mIndexedApps = new ArrayList<>();
 
         @Override
         public int getMetricsCategory() {
@@ -188,34 +193,66 @@ public class AppLockSettings extends SubSettings {
             }
         }
 
+        /**
+         * Applies a new list from {@link AppLockViewModel}, only adding and removing the
+         * preferences of the packages which changed.
+         */
         private void updateAppsList(List<AppLockInfo> entries) {
+            final ArrayMap<String, AppLockInfo> latest = new ArrayMap<>(entries.size());
+            for (AppLockInfo info : entries) {
+                latest.put(info.getPackageName(), info);
+            }
+            for (int i = mAppsByPackage.size() - 1; i >= 0; i--) {
+                final AppLockInfo info = mAppsByPackage.valueAt(i);
+                if (latest.get(info.getPackageName()) != info) {
+                    // Removed or reloaded after a package change.
+                    removeFromLocked(info.getLabel());
+                    removeFromUnlocked(info.getLabel());
+                    final Preference pref = mPreferenceScreen.findPreference(
+                            info.getPackageName());
+                    if (pref != null) {
+                        mPreferenceScreen.removePreference(pref);
+                    }
+                    mAppsByPackage.removeAt(i);
+                }
+            }
             for (AppLockInfo info : entries) {
-                boolean locked = info.isAppLocked();
-                if (locked) {
+                if (mAppsByPackage.containsKey(info.getPackageName())) {
+                    continue;
+                }
+                mAppsByPackage.put(info.getPackageName(), info);
+                if (info.isAppLocked()) {
                     addToLocked(info.getLabel(), info);
                 } else {
                     addToUnlocked(info.getLabel(), info);
                 }
+                mPreferenceScreen.addPreference(createPreference(info));
             }
+            mAllApps.clear();
             mAllApps.addAll(mLockedApps.values());
             mAllApps.addAll(mUnlockedApps.values());
-            addPreferences();
+            mIndexedApps = new ArrayList<>(mAllApps);
+            updatePreferenceOrder();
+            if (mSearching && mSearchView != null) {
+                mSearchFilter.filter(mSearchView.getQuery());
+            } else {
+                updateCategoryVisibility(mLockedApps.size(), mUnlockedApps.size());
+            }
         }
 
         private void updateAppsLocked(Preference preference, boolean isLocked) {
-            String label = preference.getTitle().toString();
+            // Titles are not unique, the preference key is the package.
+            final AppLockInfo info = mAppsByPackage.get(preference.getKey());
             if (isLocked) {
                 mAppLockManager.addAppToList(preference.getKey());
-                AppLockInfo info = mUnlockedApps.get(label);
                 info.setAppLocked(true);
-                addToLocked(label, info);
-                removeFromUnlocked(label);
+                removeFromUnlocked(info.getLabel());
+                addToLocked(info.getLabel(), info);
             } else {
                 mAppLockManager.removeAppFromList(preference.getKey());
-                AppLockInfo info = mLockedApps.get(label);
                 info.setAppLocked(false);
-                addToUnlocked(label, info);
-                removeFromLocked(label);
+                removeFromLocked(info.getLabel());
+                addToUnlocked(info.getLabel(), info);
             }
             updatePreferenceOrder();
             if (mSearching) {
@@ -255,6 +292,12 @@ public class AppLockSettings extends SubSettings {
                     dup += DUPLICATE_CHAR;
                 }
                 duplicate.setLabel(dup);
+                // Its preference may already be shown with the previous label.
+                final Preference pref = mPreferenceScreen.findPreference(
+                        duplicate.getPackageName());
+                if (pref != null) {
+                    pref.setTitle(dup);
+                }
                 duplicate = map.put(dup, duplicate);
                 count++;
             }
@@ -284,25 +327,6 @@ public class AppLockSettings extends SubSettings {
             }
         }
 
-        private void addPreferences() {
-            int order = 0;
-            for (AppLockInfo info : mLockedApps.values()) {
-                AppLockPreference pref = createPreference(info);
-                mPreferenceScreen.addPreference(pref);
-                pref.setOrder(order);
-                order++;
-            }
-            mUnlocked.setOrder(order);
-            order++;
-            for (AppLockInfo info : mUnlockedApps.values()) {
-                AppLockPreference pref = createPreference(info);
-                mPreferenceScreen.addPreference(pref);
-                pref.setOrder(order);
-                order++;
-            }
-            updateCategoryVisibility(mLockedApps.size(), mUnlockedApps.size());
-        }
-
         private void performNotifHintAnimation() {
             for (AppLockInfo info : mLockedApps.values()) {
                 AppLockPreference pref = mPreferenceScreen.findPreference(info.getPackageName());
@@ -382,13 +406,12 @@ public class AppLockSettings extends SubSettings {
 
         private AppLockPreference createPreference(AppLockInfo info) {
             String label = info.getLabel().toString();
-            Drawable icon = info.getIcon();
             String packageName = info.getPackageName();
             boolean locked = info.isAppLocked();
             AppLockPreference pref = new AppLockPreference(getPrefContext(), mAppLockManager,
                     packageName);
             pref.setTitle(label);
-            pref.setIcon(icon);
+            pref.setIconLoader(info::getIcon);
             pref.setKey(packageName);
             pref.setChecked(locked);
             pref.setOnPreferenceChangeListener((preference, isLocked) -> {
@@ -421,17 +444,15 @@ public class AppLockSettings extends SubSettings {
             @WorkerThread
             @Override
             protected FilterResults performFiltering(CharSequence query) {
-                final ArrayList<AppLockInfo> matchedEntries = new ArrayList<>();
-                if (!TextUtils.isEmpty(query)) {
-                    for (AppLockInfo info : mAllApps) {
-                        if (info.getLabel().toString()
-                                .toLowerCase().contains(query.toString().toLowerCase())) {
-                            matchedEntries.add(info);
-                        }
-                    }
-                } else {
-                    matchedEntries.addAll(mAllApps);
+                final List<AppLockInfo> apps = mIndexedApps;
+                AppLabelIndex labelIndex = mLabelIndex;
+                // The list may have changed while an older index was being built.
+                if (labelIndex == null || labelIndex.getApps() != apps) {
+                    labelIndex = new AppLabelIndex(apps);
+                    mLabelIndex = labelIndex;
                 }
+                final ArrayList<AppLockInfo> matchedEntries = new ArrayList<>(
+                        labelIndex.search(TextUtils.isEmpty(query) ? "" : query.toString()));
                 final FilterResults results = new FilterResults();
                 results.values = matchedEntries;
                 results.count = matchedEntries.size();
@@ -19,16 +19,20 @@ import static com.android.settings.Utils.SETTINGS_PACKAGE_NAME;
 
 import android.app.Application;
 import android.app.AppLockManager;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.os.AsyncTask;
+import android.net.Uri;
+import android.util.ArrayMap;
 
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 
 import com.android.settings.Utils;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -45,51 +49,131 @@ public class AppLockViewModel extends AndroidViewModel {
     public LiveData<List<AppLockInfo>> getAppList() {
         return mLiveData;
     }
+
+    @Override
+    protected void onCleared() {
+        mLiveData.release();
+    }
 }
 
+/**
+ * Launcher apps keyed by package. The list is loaded once, then only the packages named by
+ * package broadcasts are queried again. Unchanged packages keep their {@link AppLockInfo}.
+ */
 class AppListLiveData extends LiveData<List<AppLockInfo>> {
 
+    private final Context mContext;
     private final PackageManager mPackageManager;
     private final AppLockManager mAppLockManager;
+    // Only accessed on the main thread.
+    private final ArrayMap<String, AppLockInfo> mAppsByPackage = new ArrayMap<>();
     private int mCurrentDataVersion;
+    private boolean mLoading;
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            final String packageName = data != null ? data.getSchemeSpecificPart() : null;
+            if (packageName != null) {
+                loadPackageData(packageName);
+            }
+        }
+    };
 
     public AppListLiveData(Context context) {
+        mContext = context;
         mPackageManager = context.getPackageManager();
         mAppLockManager = Utils.getAppLockManager(context);
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        context.registerReceiver(mPackageReceiver, filter);
         loadSupportedAppData();
     }
 
+    void release() {
+        mContext.unregisterReceiver(mPackageReceiver);
+    }
+
     void loadSupportedAppData() {
         final int dataVersion = ++mCurrentDataVersion;
+        mLoading = true;
 
-        new AsyncTask<Void, Void, List<AppLockInfo>>() {
-            @Override
-            protected List<AppLockInfo> doInBackground(Void... voids) {
-                Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
-                mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
-
-                List<ResolveInfo> apps = mPackageManager.queryIntentActivities(mainIntent,
-                        PackageManager.GET_META_DATA);
-
-                List<AppLockInfo> entries = new ArrayList<>();
-                if (apps != null) {
-                    for (ResolveInfo app : apps) {
-                        if (app.activityInfo.packageName.equals(SETTINGS_PACKAGE_NAME)) {
-                            continue;
-                        }
-                        AppLockInfo entry = new AppLockInfo(app, mPackageManager, mAppLockManager);
-                        entries.add(entry);
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final List<AppLockInfo> entries = queryApps(null /* packageName */);
+            ThreadUtils.postOnMainThread(() -> {
+                if (mCurrentDataVersion != dataVersion) {
+                    return;
+                }
+                mLoading = false;
+                mAppsByPackage.clear();
+                for (AppLockInfo entry : entries) {
+                    mAppsByPackage.put(entry.getPackageName(), entry);
+                }
+                publish();
+            });
+        });
+    }
+
+    private void loadPackageData(String packageName) {
+        if (mLoading) {
+            // The running load may have queried the package before it changed.
+            loadSupportedAppData();
+            return;
+        }
+        final int dataVersion = mCurrentDataVersion;
+
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final List<AppLockInfo> entries = queryApps(packageName);
+            ThreadUtils.postOnMainThread(() -> {
+                if (mCurrentDataVersion != dataVersion) {
+                    return;
+                }
+                if (entries.isEmpty()) {
+                    if (mAppsByPackage.remove(packageName) == null) {
+                        return;
                     }
+                } else {
+                    mAppsByPackage.put(packageName, entries.get(0));
                 }
-                return entries;
-            }
+                publish();
+            });
+        });
+    }
 
-            @Override
-            protected void onPostExecute(List<AppLockInfo> data) {
-                if (mCurrentDataVersion == dataVersion) {
-                    setValue(data);
+    private void publish() {
+        setValue(new ArrayList<>(mAppsByPackage.values()));
+    }
+
+    /**
+     * @return one entry per package with a launcher activity, limited to {@code packageName}
+     * if not null.
+     */
+    private List<AppLockInfo> queryApps(String packageName) {
+        final Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
+        mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+        mainIntent.setPackage(packageName);
+
+        final List<ResolveInfo> apps = mPackageManager.queryIntentActivities(mainIntent,
+                0 /* flags */);
+
+        final List<AppLockInfo> entries = new ArrayList<>();
+        if (apps != null) {
+            final ArrayMap<String, ResolveInfo> appsByPackage = new ArrayMap<>();
+            for (ResolveInfo app : apps) {
+                final String appPackage = app.activityInfo.packageName;
+                if (!appPackage.equals(SETTINGS_PACKAGE_NAME)
+                        && !appsByPackage.containsKey(appPackage)) {
+                    appsByPackage.put(appPackage, app);
                 }
             }
-        }.execute();
+            for (ResolveInfo app : appsByPackage.values()) {
+                entries.add(new AppLockInfo(app, mPackageManager, mAppLockManager));
+            }
+        }
+        return entries;
     }
-}
\ No newline at end of file
+}
@@ -25,9 +25,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
+import android.content.res.Configuration;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.StrictMode;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
@@ -60,7 +62,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -75,9 +76,10 @@ import java.util.stream.Collectors;
  * return an stub {@link Slice} with the correct {@link Uri} immediately. In the background, the
  * data corresponding to the key in the {@link Uri} is read by {@link SlicesDatabaseAccessor}, and
  * the entire row is converted into a {@link SliceData}. Once complete, it is stored in
- * {@link #mSliceWeakDataCache}, and then an update sent via the Slice framework to the Slice.
+ * {@link #mSliceDataCache}, and then an update sent via the Slice framework to the Slice.
  * The {@link Slice} displayed by the Slice-presenter will re-query this Slice-provider and find
- * the {@link SliceData} cached to build the full {@link Slice}.
+ * the {@link SliceData} cached to build the full {@link Slice}. Slices pinned together are loaded
+ * with a single query.
  *
  * <p>When an action is taken on that {@link Slice}, we receive the action in
  * {@link SliceBroadcastReceiver}, and use the
@@ -139,7 +141,14 @@ public class SettingsSliceProvider extends SliceProvider {
     SlicesDatabaseAccessor mSlicesDatabaseAccessor;
 
     @VisibleForTesting
-    Map<Uri, SliceData> mSliceWeakDataCache;
+    SliceDataCache mSliceDataCache;
+
+    // Uris waiting to be loaded by the next loadPendingSlices().
+    private final Set<Uri> mPendingLoads = new ArraySet<>();
+
+    // Uris whose intent filter and background worker are set up and not yet torn down by
+    // onSliceUnpinned(), guarded by itself.
+    private final Set<Uri> mLoadedUris = new ArraySet<>();
 
     @VisibleForTesting
     final Map<Uri, SliceBackgroundWorker> mPinnedWorkers = new ArrayMap<>();
@@ -153,10 +162,17 @@ public class SettingsSliceProvider extends SliceProvider {
     @Override
     public boolean onCreateSliceProvider() {
         mSlicesDatabaseAccessor = new SlicesDatabaseAccessor(getContext());
-        mSliceWeakDataCache = new WeakHashMap<>();
+        mSliceDataCache = SliceDataCache.getInstance();
         return true;
     }
 
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // The cached titles and summaries may be in another language now.
+        mSliceDataCache.clear();
+    }
+
     @Override
     public void onSlicePinned(Uri sliceUri) {
         if (CustomSliceRegistry.isValidUri(sliceUri)) {
@@ -185,6 +201,9 @@ public class SettingsSliceProvider extends SliceProvider {
 
     @Override
     public void onSliceUnpinned(Uri sliceUri) {
+        synchronized (mLoadedUris) {
+            mLoadedUris.remove(sliceUri);
+        }
         final Context context = getContext();
         if (!VolumeSliceHelper.unregisterUri(context, sliceUri)) {
             SliceBroadcastRelay.unregisterReceivers(context, sliceUri);
@@ -207,6 +226,7 @@ public class SettingsSliceProvider extends SliceProvider {
                 Log.e(TAG, "Requested blocked slice with Uri: " + sliceUri);
                 return null;
             }
+            SliceBackgroundWorker.onSliceBound(sliceUri);
 
             final boolean nightMode = Utils.isNightMode(getContext());
             if (mNightMode == null) {
@@ -248,17 +268,16 @@ public class SettingsSliceProvider extends SliceProvider {
                         .createWifiCallingPreferenceSlice(sliceUri);
             }
 
-            final SliceData cachedSliceData = mSliceWeakDataCache.get(sliceUri);
+            final SliceData cachedSliceData = mSliceDataCache.get(sliceUri);
             if (cachedSliceData == null) {
                 loadSliceInBackground(sliceUri);
                 return getSliceStub(sliceUri);
             }
 
-            // Remove the SliceData from the cache after it has been used to prevent a memory-leak.
-            if (!getPinnedSlices().contains(sliceUri)) {
-                mSliceWeakDataCache.remove(sliceUri);
-            }
-            return SliceBuilderUtils.buildSlice(getContext(), cachedSliceData);
+            final long startBindTime = SystemClock.elapsedRealtime();
+            final Slice slice = SliceBuilderUtils.buildSlice(getContext(), cachedSliceData);
+            mSliceDataCache.recordBindLatency(SystemClock.elapsedRealtime() - startBindTime);
+            return slice;
         } finally {
             StrictMode.setThreadPolicy(oldPolicy);
         }
@@ -379,7 +398,7 @@ public class SettingsSliceProvider extends SliceProvider {
 
     @VisibleForTesting
     void loadSlice(Uri uri) {
-        long startBuildTime = System.currentTimeMillis();
+        final long startBuildTime = SystemClock.elapsedRealtime();
 
         final SliceData sliceData;
         try {
@@ -389,8 +408,69 @@ public class SettingsSliceProvider extends SliceProvider {
             return;
         }
 
-        final BasePreferenceController controller = SliceBuilderUtils.getPreferenceController(
-                getContext(), sliceData);
+        onSliceDataLoaded(uri, sliceData);
+
+        final long buildTime = SystemClock.elapsedRealtime() - startBuildTime;
+        mSliceDataCache.recordLoadLatency(buildTime);
+        Log.d(TAG, "Built slice (" + uri + ") in: " + buildTime);
+    }
+
+    /**
+     * Loads several slices with one database query, reusing the cached data when there is some.
+     * Slices which are already loaded, e.g. by a racing bind, are skipped.
+     */
+    @VisibleForTesting
+    void loadSlices(List<Uri> uris) {
+        final long startBuildTime = SystemClock.elapsedRealtime();
+
+        final List<Uri> missingUris = new ArrayList<>(uris.size());
+        for (Uri uri : uris) {
+            final SliceData cachedSliceData = mSliceDataCache.get(uri);
+            if (cachedSliceData != null) {
+                if (!isLoaded(uri)) {
+                    onSliceDataLoaded(uri, cachedSliceData);
+                }
+            } else {
+                missingUris.add(uri);
+            }
+        }
+        if (missingUris.isEmpty()) {
+            return;
+        }
+
+        final Map<Uri, SliceData> sliceDatas;
+        try {
+            sliceDatas = mSlicesDatabaseAccessor.getSliceDataFromUris(missingUris);
+        } catch (IllegalStateException e) {
+            Log.d(TAG, "Could not create slicedata for uris: " + missingUris, e);
+            return;
+        }
+        for (Uri uri : missingUris) {
+            final SliceData sliceData = sliceDatas.get(uri);
+            if (sliceData == null) {
+                Log.d(TAG, "Could not create slicedata for uri: " + uri);
+                continue;
+            }
+            onSliceDataLoaded(uri, sliceData);
+        }
+
+        final long buildTime = SystemClock.elapsedRealtime() - startBuildTime;
+        mSliceDataCache.recordLoadLatency(buildTime);
+        Log.d(TAG, "Built " + sliceDatas.size() + " slices in: " + buildTime);
+    }
+
+    private boolean isLoaded(Uri uri) {
+        synchronized (mLoadedUris) {
+            return mLoadedUris.contains(uri);
+        }
+    }
+
+    private void onSliceDataLoaded(Uri uri, SliceData sliceData) {
+        synchronized (mLoadedUris) {
+            mLoadedUris.add(uri);
+        }
+        final BasePreferenceController controller =
+                SliceBuilderUtils.getPreferenceController(getContext(), sliceData);
 
         final IntentFilter filter = controller.getIntentFilter();
         if (filter != null) {
@@ -405,16 +485,35 @@ public class SettingsSliceProvider extends SliceProvider {
 
         ThreadUtils.postOnMainThread(() -> startBackgroundWorker(controller, uri));
 
-        mSliceWeakDataCache.put(uri, sliceData);
+        mSliceDataCache.put(uri, sliceData);
         getContext().getContentResolver().notifyChange(uri, null /* content observer */);
-
-        Log.d(TAG, "Built slice (" + uri + ") in: " +
-                (System.currentTimeMillis() - startBuildTime));
     }
 
     @VisibleForTesting
     void loadSliceInBackground(Uri uri) {
-        ThreadUtils.postOnBackgroundThread(() -> loadSlice(uri));
+        synchronized (mPendingLoads) {
+            // Slices pinned before the pending ones are loaded, e.g. by a panel opening, are
+            // loaded together.
+            final boolean scheduled = !mPendingLoads.isEmpty();
+            mPendingLoads.add(uri);
+            if (scheduled) {
+                return;
+            }
+        }
+        ThreadUtils.postOnBackgroundThread(this::loadPendingSlices);
+    }
+
+    private void loadPendingSlices() {
+        final List<Uri> uris;
+        synchronized (mPendingLoads) {
+            uris = new ArrayList<>(mPendingLoads);
+            mPendingLoads.clear();
+        }
+        if (uris.size() == 1) {
+            loadSlice(uris.get(0));
+        } else if (!uris.isEmpty()) {
+            loadSlices(uris);
+        }
     }
 
     @VisibleForTesting
@@ -29,11 +29,16 @@ import android.os.SystemClock;
 import android.util.ArrayMap;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -54,14 +59,12 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
 
     private static final String TAG = "SliceBackgroundWorker";
 
-    private static final long SLICE_UPDATE_THROTTLE_INTERVAL = 300L;
-
     private static final Map<Uri, SliceBackgroundWorker> LIVE_WORKERS = new ArrayMap<>();
 
     private final Context mContext;
     private final Uri mUri;
 
-    private List<E> mCachedResults;
+    private volatile List<E> mCachedResults;
 
     protected SliceBackgroundWorker(Context context, Uri uri) {
         mContext = context;
@@ -142,7 +145,8 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
      * @return a {@link List} of cached results
      */
     public final List<E> getResults() {
-        return mCachedResults == null ? null : new ArrayList<>(mCachedResults);
+        final List<E> results = mCachedResults;
+        return results == null ? null : new ArrayList<>(results);
     }
 
     /**
@@ -159,8 +163,10 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
             needNotify = !areListsTheSame(results, mCachedResults);
         }
 
+        NotifySliceChangeHandler.getInstance().recordResults(this, needNotify);
         if (needNotify) {
-            mCachedResults = results;
+            // Copied, so a list changed in place by the caller still compares as changed.
+            mCachedResults = results == null ? null : new ArrayList<>(results);
             notifySliceChange();
         }
     }
@@ -185,64 +191,207 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
         NotifySliceChangeHandler.getInstance().cancelSliceUpdate(this);
     }
 
-    private static class NotifySliceChangeHandler extends Handler {
+    /**
+     * Called when the Slice of {@code uri} is bound, to adapt the update rate of its worker to how
+     * often the Slice is actually bound.
+     */
+    static void onSliceBound(Uri uri) {
+        final NotifySliceChangeHandler handler = NotifySliceChangeHandler.sHandler;
+        if (handler != null) {
+            handler.onSliceBound(uri);
+        }
+    }
 
-        private static final int MSG_UPDATE_SLICE = 1000;
+    /**
+     * Dumps the update rate of every worker for {@link com.android.settings.SettingsDumpService}.
+     */
+    public static JSONObject dumpUpdateRates() throws JSONException {
+        final NotifySliceChangeHandler handler = NotifySliceChangeHandler.sHandler;
+        return handler != null ? handler.dump() : new JSONObject();
+    }
 
-        private static NotifySliceChangeHandler sHandler;
+    /**
+     * Notifies the Slices of all workers with an update due in the same frame with one
+     * {@code notifyChange}.
+     *
+     * The interval between the updates of a worker starts at {@link #MIN_THROTTLE_INTERVAL}. It
+     * doubles every time its Slice was not bound again since the previous update, up to
+     * {@link #MAX_THROTTLE_INTERVAL}, and halves back every time it was.
+     */
+    @VisibleForTesting
+    static class NotifySliceChangeHandler extends Handler {
+
+        private static final int MSG_NOTIFY_SLICES = 1000;
+
+        @VisibleForTesting
+        static final long MIN_THROTTLE_INTERVAL = 300L;
+        @VisibleForTesting
+        static final long MAX_THROTTLE_INTERVAL = 2400L;
+        // Updates due within a frame of each other are sent together.
+        @VisibleForTesting
+        static final long COALESCE_WINDOW = 16L;
 
-        private final Map<Uri, Long> mLastUpdateTimeLookup = Collections.synchronizedMap(
-                new ArrayMap<>());
+        private static volatile NotifySliceChangeHandler sHandler;
+
+        // Guarded by this.
+        private final Map<SliceBackgroundWorker, Long> mPendingUpdates = new ArrayMap<>();
+        private final Map<Uri, UpdateRate> mUpdateRates = new ArrayMap<>();
 
         private static NotifySliceChangeHandler getInstance() {
             if (sHandler == null) {
-                final HandlerThread workerThread = new HandlerThread("NotifySliceChangeHandler",
-                        Process.THREAD_PRIORITY_BACKGROUND);
-                workerThread.start();
-                sHandler = new NotifySliceChangeHandler(workerThread.getLooper());
+                synchronized (NotifySliceChangeHandler.class) {
+                    if (sHandler == null) {
+                        final HandlerThread workerThread = new HandlerThread(
+                                "NotifySliceChangeHandler", Process.THREAD_PRIORITY_BACKGROUND);
+                        workerThread.start();
+                        sHandler = new NotifySliceChangeHandler(workerThread.getLooper());
+                    }
+                }
             }
             return sHandler;
         }
 
-        private NotifySliceChangeHandler(Looper looper) {
+        @VisibleForTesting
+        NotifySliceChangeHandler(Looper looper) {
             super(looper);
         }
 
         @Override
         public void handleMessage(Message msg) {
-            if (msg.what != MSG_UPDATE_SLICE) {
+            if (msg.what != MSG_NOTIFY_SLICES) {
                 return;
             }
 
-            final SliceBackgroundWorker worker = (SliceBackgroundWorker) msg.obj;
-            final Uri uri = worker.getUri();
-            final Context context = worker.getContext();
-            mLastUpdateTimeLookup.put(uri, SystemClock.uptimeMillis());
-            context.getContentResolver().notifyChange(uri, null);
+            final List<Uri> uris = new ArrayList<>();
+            Context context = null;
+            synchronized (this) {
+                final long now = SystemClock.uptimeMillis();
+                final Iterator<Map.Entry<SliceBackgroundWorker, Long>> iterator =
+                        mPendingUpdates.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    final Map.Entry<SliceBackgroundWorker, Long> entry = iterator.next();
+                    if (entry.getValue() > now + COALESCE_WINDOW) {
+                        continue;
+                    }
+                    final SliceBackgroundWorker worker = entry.getKey();
+                    iterator.remove();
+                    getUpdateRate(worker.getUri()).onNotify(now);
+                    uris.add(worker.getUri());
+                    context = worker.getContext();
+                }
+                scheduleNotify();
+            }
+            if (context != null) {
+                context.getContentResolver().notifyChange(uris, null /* observer */,
+                        0 /* flags */);
+            }
         }
 
-        private void updateSlice(SliceBackgroundWorker worker) {
-            if (hasMessages(MSG_UPDATE_SLICE, worker)) {
+        private synchronized void updateSlice(SliceBackgroundWorker worker) {
+            final UpdateRate rate = getUpdateRate(worker.getUri());
+            if (mPendingUpdates.containsKey(worker)) {
+                rate.mCoalescedCount++;
                 return;
             }
 
-            final Message message = obtainMessage(MSG_UPDATE_SLICE, worker);
-            final long lastUpdateTime = mLastUpdateTimeLookup.getOrDefault(worker.getUri(), 0L);
-            if (lastUpdateTime == 0L) {
-                // Postpone the first update triggering by onSlicePinned() to avoid being too close
-                // to the first Slice bind.
-                sendMessageDelayed(message, SLICE_UPDATE_THROTTLE_INTERVAL);
-            } else if (SystemClock.uptimeMillis() - lastUpdateTime
-                    > SLICE_UPDATE_THROTTLE_INTERVAL) {
-                sendMessage(message);
+            final long now = SystemClock.uptimeMillis();
+            // Postpone the first update triggering by onSlicePinned() to avoid being too close
+            // to the first Slice bind.
+            final long dueTime = rate.mLastNotifyTime == 0L
+                    ? now + rate.mThrottleInterval
+                    : Math.max(now, rate.mLastNotifyTime + rate.mThrottleInterval);
+            mPendingUpdates.put(worker, dueTime);
+            scheduleNotify();
+        }
+
+        private synchronized void cancelSliceUpdate(SliceBackgroundWorker worker) {
+            mPendingUpdates.remove(worker);
+            getUpdateRate(worker.getUri()).reset();
+            scheduleNotify();
+        }
+
+        private synchronized void recordResults(SliceBackgroundWorker worker, boolean changed) {
+            final UpdateRate rate = getUpdateRate(worker.getUri());
+            if (changed) {
+                rate.mChangedResultsCount++;
             } else {
-                sendMessageAtTime(message, lastUpdateTime + SLICE_UPDATE_THROTTLE_INTERVAL);
+                rate.mUnchangedResultsCount++;
             }
         }
 
-        private void cancelSliceUpdate(SliceBackgroundWorker worker) {
-            removeMessages(MSG_UPDATE_SLICE, worker);
-            mLastUpdateTimeLookup.remove(worker.getUri());
+        private synchronized void onSliceBound(Uri uri) {
+            final UpdateRate rate = mUpdateRates.get(uri);
+            if (rate != null) {
+                rate.mBoundSinceNotify = true;
+            }
+        }
+
+        private synchronized JSONObject dump() throws JSONException {
+            final JSONObject obj = new JSONObject();
+            for (Map.Entry<Uri, UpdateRate> entry : mUpdateRates.entrySet()) {
+                obj.put(entry.getKey().toString(), entry.getValue().dump());
+            }
+            return obj;
+        }
+
+        private UpdateRate getUpdateRate(Uri uri) {
+            UpdateRate rate = mUpdateRates.get(uri);
+            if (rate == null) {
+                rate = new UpdateRate();
+                mUpdateRates.put(uri, rate);
+            }
+            return rate;
+        }
+
+        private void scheduleNotify() {
+            removeMessages(MSG_NOTIFY_SLICES);
+            long nextDueTime = Long.MAX_VALUE;
+            for (long dueTime : mPendingUpdates.values()) {
+                nextDueTime = Math.min(nextDueTime, dueTime);
+            }
+            if (nextDueTime != Long.MAX_VALUE) {
+                sendEmptyMessageAtTime(MSG_NOTIFY_SLICES, nextDueTime);
+            }
+        }
+    }
+
+    /** Throttling state and update counters of the worker of one Slice. */
+    private static class UpdateRate {
+        private long mThrottleInterval = NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL;
+        private long mLastNotifyTime;
+        private boolean mBoundSinceNotify;
+        private long mNotifyCount;
+        private long mCoalescedCount;
+        private long mChangedResultsCount;
+        private long mUnchangedResultsCount;
+
+        private void onNotify(long now) {
+            if (mLastNotifyTime != 0L) {
+                mThrottleInterval = mBoundSinceNotify
+                        ? Math.max(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL,
+                                mThrottleInterval / 2)
+                        : Math.min(NotifySliceChangeHandler.MAX_THROTTLE_INTERVAL,
+                                mThrottleInterval * 2);
+            }
+            mLastNotifyTime = now;
+            mBoundSinceNotify = false;
+            mNotifyCount++;
         }
-    };
+
+        private void reset() {
+            mThrottleInterval = NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL;
+            mLastNotifyTime = 0L;
+            mBoundSinceNotify = false;
+        }
+
+        private JSONObject dump() throws JSONException {
+            final JSONObject obj = new JSONObject();
+            obj.put("notifications", mNotifyCount);
+            obj.put("coalesced", mCoalescedCount);
+            obj.put("changed_results", mChangedResultsCount);
+            obj.put("unchanged_results", mUnchangedResultsCount);
+            obj.put("throttle_interval_ms", mThrottleInterval);
+            return obj;
+        }
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import android.net.Uri;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Size-bounded cache of the {@link SliceData} loaded by {@link SettingsSliceProvider}, so that
+ * binding a slice again does not go back to the slices database. Controllers are not cached, they
+ * are built again at each bind like before.
+ *
+ * It also keeps the hit rate and latency histograms reported by
+ * {@link com.android.settings.SettingsDumpService}.
+ */
+public class SliceDataCache {
+
+    @VisibleForTesting
+    static final int MAX_ENTRIES = 64;
+    // Upper bounds in ms of the histogram buckets, the last bucket has no upper bound.
+    @VisibleForTesting
+    static final long[] LATENCY_BUCKETS_MS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512};
+
+    private static SliceDataCache sInstance;
+
+    private final LruCache<Uri, SliceData> mCache = new LruCache<>(MAX_ENTRIES);
+    private final long[] mBindLatencies = new long[LATENCY_BUCKETS_MS.length + 1];
+    private final long[] mLoadLatencies = new long[LATENCY_BUCKETS_MS.length + 1];
+    private long mHitCount;
+    private long mMissCount;
+
+    public static synchronized SliceDataCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new SliceDataCache();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    SliceDataCache() {
+    }
+
+    /**
+     * @return the cached data of {@code uri}, or null on a miss.
+     */
+    public synchronized SliceData get(Uri uri) {
+        final SliceData sliceData = mCache.get(uri);
+        if (sliceData == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return sliceData;
+    }
+
+    public synchronized void put(Uri uri, SliceData sliceData) {
+        mCache.put(uri, sliceData);
+    }
+
+    public synchronized boolean contains(Uri uri) {
+        return mCache.get(uri) != null;
+    }
+
+    public synchronized void remove(Uri uri) {
+        mCache.remove(uri);
+    }
+
+    public synchronized void clear() {
+        mCache.evictAll();
+    }
+
+    /**
+     * Records the time spent building a slice from cached data.
+     */
+    public synchronized void recordBindLatency(long latencyMs) {
+        mBindLatencies[getBucket(latencyMs)]++;
+    }
+
+    /**
+     * Records the time spent loading the data of a slice from the database.
+     */
+    public synchronized void recordLoadLatency(long latencyMs) {
+        mLoadLatencies[getBucket(latencyMs)]++;
+    }
+
+    /**
+     * Dumps the hit rate and the latency histograms for
+     * {@link com.android.settings.SettingsDumpService}.
+     */
+    public synchronized JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        final long total = mHitCount + mMissCount;
+        obj.put("hit", mHitCount);
+        obj.put("miss", mMissCount);
+        obj.put("hit_rate", total == 0 ? 0 : (double) mHitCount / total);
+        obj.put("size", mCache.size());
+        obj.put("bind_latency_ms", dumpHistogram(mBindLatencies));
+        obj.put("load_latency_ms", dumpHistogram(mLoadLatencies));
+        return obj;
+    }
+
+    @VisibleForTesting
+    synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    @VisibleForTesting
+    synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    @VisibleForTesting
+    static int getBucket(long latencyMs) {
+        for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+            if (latencyMs <= LATENCY_BUCKETS_MS[i]) {
+                return i;
+            }
+        }
+        return LATENCY_BUCKETS_MS.length;
+    }
+
+    private static JSONArray dumpHistogram(long[] counts) throws JSONException {
+        final JSONArray array = new JSONArray();
+        for (int i = 0; i < counts.length; i++) {
+            final JSONObject bucket = new JSONObject();
+            bucket.put("le", i < LATENCY_BUCKETS_MS.length
+                    ? String.valueOf(LATENCY_BUCKETS_MS[i]) : "inf");
+            bucket.put("count", counts[i]);
+            array.put(bucket);
+        }
+        return array;
+    }
+}
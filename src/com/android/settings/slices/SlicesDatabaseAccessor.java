@@ -24,6 +24,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Binder;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.Pair;
 
 import androidx.slice.Slice;
@@ -32,7 +33,10 @@ import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class used to map a {@link Uri} from {@link SettingsSliceProvider} to a Slice.
@@ -52,6 +56,9 @@ public class SlicesDatabaseAccessor {
             IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
     };
 
+    // Keeps the number of bound arguments of one query well below the SQLite limit.
+    private static final int MAX_KEYS_PER_QUERY = 100;
+
     private final Context mContext;
     private final SlicesDatabaseHelper mHelper;
 
@@ -76,6 +83,59 @@ public class SlicesDatabaseAccessor {
         }
     }
 
+    /**
+     * Query the slices database for all of {@param uris} at once, with one {@code IN} query per
+     * {@link #MAX_KEYS_PER_QUERY} keys. Used to warm several slices pinned together.
+     *
+     * @return the {@link SliceData} of each {@link Uri} which matches an indexed slice.
+     */
+    public Map<Uri, SliceData> getSliceDataFromUris(Collection<Uri> uris) {
+        final Map<String, List<Uri>> urisByKey = new ArrayMap<>();
+        for (Uri uri : uris) {
+            final Pair<Boolean, String> pathData = SliceBuilderUtils.getPathData(uri);
+            if (pathData == null) {
+                continue;
+            }
+            List<Uri> keyUris = urisByKey.get(pathData.second);
+            if (keyUris == null) {
+                keyUris = new ArrayList<>(1);
+                urisByKey.put(pathData.second, keyUris);
+            }
+            keyUris.add(uri);
+        }
+        if (urisByKey.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        verifyIndexing();
+        final Map<Uri, SliceData> result = new ArrayMap<>(uris.size());
+        final SQLiteDatabase database = mHelper.getReadableDatabase();
+        final List<String> keys = new ArrayList<>(urisByKey.keySet());
+        for (int start = 0; start < keys.size(); start += MAX_KEYS_PER_QUERY) {
+            final List<String> chunk = keys.subList(start,
+                    Math.min(keys.size(), start + MAX_KEYS_PER_QUERY));
+            final String whereClause = IndexColumns.KEY + " IN ("
+                    + TextUtils.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            try (Cursor cursor = database.query(TABLE_SLICES_INDEX, SELECT_COLUMNS_ALL,
+                    whereClause, chunk.toArray(new String[0]), null /* groupBy */,
+                    null /* having */, null /* orderBy */)) {
+                while (cursor.moveToNext()) {
+                    final String key = cursor.getString(cursor.getColumnIndex(IndexColumns.KEY));
+                    final List<Uri> keyUris = urisByKey.get(key);
+                    if (keyUris == null) {
+                        continue;
+                    }
+                    for (Uri uri : keyUris) {
+                        final boolean isIntentOnly =
+                                SliceBuilderUtils.getPathData(uri).first;
+                        result.put(uri, buildSliceData(cursor, uri, isIntentOnly));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Query the slices database and return a {@link SliceData} object corresponding to the row
      * matching the {@param key}.
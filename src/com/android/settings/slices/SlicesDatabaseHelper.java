@@ -36,7 +36,10 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "slices_index.db";
     private static final String SHARED_PREFS_TAG = "slices_shared_prefs";
 
-    private static final int DATABASE_VERSION = 8;
+    private static final int DATABASE_VERSION = 10;
+
+    // Table of version 9, which indexed fragments incrementally.
+    private static final String OBSOLETE_TABLE_SLICES_INDEX_STATE = "slices_index_state";
 
     public interface Tables {
         String TABLE_SLICES_INDEX = "slices_index";
@@ -205,6 +208,7 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
 
     private void dropTables(SQLiteDatabase db) {
         db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_INDEX);
+        db.execSQL("DROP TABLE IF EXISTS " + OBSOLETE_TABLE_SLICES_INDEX_STATE);
     }
 
     private void setBuildIndexed() {
@@ -16,9 +16,10 @@
 
 package com.android.settings.slices;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -39,6 +40,22 @@ class SlicesIndexer implements Runnable {
 
     private static final String TAG = "SlicesIndexer";
 
+    private static final String INSERT_SLICE_SQL = "INSERT OR REPLACE INTO "
+            + Tables.TABLE_SLICES_INDEX
+            + " (" + IndexColumns.KEY
+            + ", " + IndexColumns.SLICE_URI
+            + ", " + IndexColumns.TITLE
+            + ", " + IndexColumns.SUMMARY
+            + ", " + IndexColumns.SCREENTITLE
+            + ", " + IndexColumns.KEYWORDS
+            + ", " + IndexColumns.ICON_RESOURCE
+            + ", " + IndexColumns.FRAGMENT
+            + ", " + IndexColumns.CONTROLLER
+            + ", " + IndexColumns.SLICE_TYPE
+            + ", " + IndexColumns.UNAVAILABLE_SLICE_SUBTITLE
+            + ", " + IndexColumns.PUBLIC_SLICE
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
     private Context mContext;
 
     private SlicesDatabaseHelper mHelper;
@@ -68,19 +85,23 @@ class SlicesIndexer implements Runnable {
 
         final SQLiteDatabase database = mHelper.getWritableDatabase();
 
-        long startTime = System.currentTimeMillis();
+        final long startTime = SystemClock.elapsedRealtime();
         database.beginTransaction();
         try {
             mHelper.reconstruct(database);
-            List<SliceData> indexData = getSliceData();
+            final List<SliceData> indexData = getSliceData();
+            final long convertTime = SystemClock.elapsedRealtime();
+
             insertSliceData(database, indexData);
+            final long insertTime = SystemClock.elapsedRealtime();
 
             mHelper.setIndexedState();
-
-            // TODO (b/71503044) Log indexing time.
-            Log.d(TAG,
-                    "Indexing slices database took: " + (System.currentTimeMillis() - startTime));
             database.setTransactionSuccessful();
+
+            Log.d(TAG, "Indexing slices database took: " + (insertTime - startTime)
+                    + " (convert: " + (convertTime - startTime)
+                    + ", insert: " + (insertTime - convertTime)
+                    + "), rows: " + indexData.size());
         } finally {
             database.endTransaction();
         }
@@ -96,29 +117,36 @@ class SlicesIndexer implements Runnable {
 
     @VisibleForTesting
     void insertSliceData(SQLiteDatabase database, List<SliceData> indexData) {
-        ContentValues values;
-
-        for (SliceData dataRow : indexData) {
-            values = new ContentValues();
-            values.put(IndexColumns.KEY, dataRow.getKey());
-            values.put(IndexColumns.SLICE_URI, dataRow.getUri().toSafeString());
-            values.put(IndexColumns.TITLE, dataRow.getTitle());
-            values.put(IndexColumns.SUMMARY, dataRow.getSummary());
-            final CharSequence screenTitle = dataRow.getScreenTitle();
-            if (screenTitle != null) {
-                values.put(IndexColumns.SCREENTITLE, screenTitle.toString());
+        if (indexData.isEmpty()) {
+            return;
+        }
+        try (SQLiteStatement statement = database.compileStatement(INSERT_SLICE_SQL)) {
+            for (SliceData dataRow : indexData) {
+                bindStringOrNull(statement, 1, dataRow.getKey());
+                bindStringOrNull(statement, 2, dataRow.getUri().toSafeString());
+                bindStringOrNull(statement, 3, dataRow.getTitle());
+                bindStringOrNull(statement, 4, dataRow.getSummary());
+                final CharSequence screenTitle = dataRow.getScreenTitle();
+                bindStringOrNull(statement, 5, screenTitle != null ? screenTitle.toString() : null);
+                bindStringOrNull(statement, 6, dataRow.getKeywords());
+                statement.bindLong(7, dataRow.getIconResource());
+                bindStringOrNull(statement, 8, dataRow.getFragmentClassName());
+                bindStringOrNull(statement, 9, dataRow.getPreferenceController());
+                statement.bindLong(10, dataRow.getSliceType());
+                bindStringOrNull(statement, 11, dataRow.getUnavailableSliceSubtitle());
+                statement.bindLong(12, dataRow.isPublicSlice() ? 1 : 0);
+
+                statement.executeInsert();
+                statement.clearBindings();
             }
-            values.put(IndexColumns.KEYWORDS, dataRow.getKeywords());
-            values.put(IndexColumns.ICON_RESOURCE, dataRow.getIconResource());
-            values.put(IndexColumns.FRAGMENT, dataRow.getFragmentClassName());
-            values.put(IndexColumns.CONTROLLER, dataRow.getPreferenceController());
-            values.put(IndexColumns.SLICE_TYPE, dataRow.getSliceType());
-            values.put(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
-                    dataRow.getUnavailableSliceSubtitle());
-            values.put(IndexColumns.PUBLIC_SLICE, dataRow.isPublicSlice());
-
-            database.replaceOrThrow(Tables.TABLE_SLICES_INDEX, null /* nullColumnHack */,
-                    values);
         }
     }
-}
\ No newline at end of file
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
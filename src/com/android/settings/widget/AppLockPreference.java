@@ -18,6 +18,7 @@ package com.android.settings.widget;
 
 import android.app.AppLockManager;
 import android.content.Context;
+import android.graphics.drawable.Drawable;
 import android.widget.ImageView;
 import android.view.View;
 
@@ -26,6 +27,9 @@ import androidx.preference.PreferenceViewHolder;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.function.Supplier;
 
 public class AppLockPreference extends CheckBoxPreference {
 
@@ -37,6 +41,7 @@ public class AppLockPreference extends CheckBoxPreference {
 
     private boolean mHandleClick;
     private boolean mAnimating;
+    private Supplier<Drawable> mIconLoader;
 
     public AppLockPreference(Context context, AppLockManager am, String pkg) {
         super(context, null);
@@ -50,10 +55,26 @@ public class AppLockPreference extends CheckBoxPreference {
         setSummaryOff(R.string.applock_unlocked);
     }
 
+    /**
+     * Sets the icon loaded in the background the first time the preference is displayed.
+     */
+    public void setIconLoader(Supplier<Drawable> iconLoader) {
+        mIconLoader = iconLoader;
+    }
+
     @Override
     public void onBindViewHolder(PreferenceViewHolder view) {
         super.onBindViewHolder(view);
 
+        if (mIconLoader != null) {
+            final Supplier<Drawable> iconLoader = mIconLoader;
+            mIconLoader = null;
+            ThreadUtils.postOnBackgroundThread(() -> {
+                final Drawable icon = iconLoader.get();
+                ThreadUtils.postOnMainThread(() -> setIcon(icon));
+            });
+        }
+
         mNotificationImage = (ImageView) view.findViewById(R.id.notification_img);
         mNotifFrame = (View) view.findViewById(R.id.notification_frame);
         mNotifFrame.setOnClickListener(new View.OnClickListener() {
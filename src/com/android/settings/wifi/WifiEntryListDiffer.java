@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi;
+
+import android.util.ArrayMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Computes the keyed difference between the Wi-Fi entries currently displayed and a new list of
+ * entries, so {@link WifiSettings2} only touches the preferences which changed.
+ *
+ * Entries are matched by key. An entry whose object identity changed for the same key is reported
+ * as an update, because its preference is bound to the entry object.
+ */
+public class WifiEntryListDiffer {
+
+    /** A new key, the preference has to be created. */
+    public static final int OP_INSERT = 0;
+    /** Same key and same entry at another position, only the order has to change. */
+    public static final int OP_MOVE = 1;
+    /** Same key but another entry object, the preference has to be re-created. */
+    public static final int OP_UPDATE = 2;
+
+    private WifiEntryListDiffer() {
+    }
+
+    /**
+     * Computes the operations turning {@code oldItems} into {@code newItems}. Items whose key,
+     * object and position are unchanged produce no operation.
+     */
+    public static <T> Diff<T> diff(List<T> oldItems, List<T> newItems,
+            Function<T, String> keyFunction) {
+        final Map<String, Integer> oldPositions = new ArrayMap<>(oldItems.size());
+        for (int i = 0; i < oldItems.size(); i++) {
+            oldPositions.put(keyFunction.apply(oldItems.get(i)), i);
+        }
+
+        final List<Operation<T>> operations = new ArrayList<>();
+        final Map<String, Integer> newPositions = new ArrayMap<>(newItems.size());
+        for (int i = 0; i < newItems.size(); i++) {
+            final T item = newItems.get(i);
+            final String key = keyFunction.apply(item);
+            if (newPositions.containsKey(key)) {
+                // Duplicated key, keep the first one like the preference hierarchy would.
+                continue;
+            }
+            newPositions.put(key, i);
+            final Integer oldPosition = oldPositions.get(key);
+            if (oldPosition == null) {
+                operations.add(new Operation<>(OP_INSERT, key, item, i));
+            } else if (oldItems.get(oldPosition) != item) {
+                operations.add(new Operation<>(OP_UPDATE, key, item, i));
+            } else if (oldPosition != i) {
+                operations.add(new Operation<>(OP_MOVE, key, item, i));
+            }
+        }
+
+        final List<String> removedKeys = new ArrayList<>();
+        for (String key : oldPositions.keySet()) {
+            if (!newPositions.containsKey(key)) {
+                removedKeys.add(key);
+            }
+        }
+        return new Diff<>(removedKeys, operations, newPositions.size());
+    }
+
+    /**
+     * The result of {@link #diff(List, List, Function)}.
+     */
+    public static class Diff<T> {
+        private final List<String> mRemovedKeys;
+        private final List<Operation<T>> mOperations;
+        private final int mSize;
+
+        Diff(List<String> removedKeys, List<Operation<T>> operations, int size) {
+            mRemovedKeys = Collections.unmodifiableList(removedKeys);
+            mOperations = Collections.unmodifiableList(operations);
+            mSize = size;
+        }
+
+        /** Keys which are not in the new list anymore. */
+        public List<String> getRemovedKeys() {
+            return mRemovedKeys;
+        }
+
+        /** Operations on the remaining keys, ordered by their new position. */
+        public List<Operation<T>> getOperations() {
+            return mOperations;
+        }
+
+        /** Number of distinct keys in the new list. */
+        public int getSize() {
+            return mSize;
+        }
+
+        public boolean isEmpty() {
+            return mRemovedKeys.isEmpty() && mOperations.isEmpty();
+        }
+    }
+
+    /**
+     * A change of a single key.
+     */
+    public static class Operation<T> {
+        public final int type;
+        public final String key;
+        public final T item;
+        public final int position;
+
+        Operation(int type, String key, T item, int position) {
+            this.type = type;
+            this.key = key;
+            this.item = item;
+            this.position = position;
+        }
+    }
+}
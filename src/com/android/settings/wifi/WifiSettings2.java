@@ -83,6 +83,8 @@ import com.android.wifitrackerlib.WifiPickerTracker;
 
 import java.time.Clock;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -115,6 +117,16 @@ public class WifiSettings2 extends RestrictedSettingsFragment
     static final int MANAGE_SUBSCRIPTION = 4;
 
     private static final String PREF_KEY_EMPTY_WIFI_LIST = "wifi_empty_list";
+
+    // Debounce of WifiEntry list updates, adapted to how often the list changes: the closer the
+    // updates are, the longer we wait so that bursts of scan results are drawn only once.
+    @VisibleForTesting
+    static final long DEFAULT_UPDATE_DELAY_MS = 300;
+    @VisibleForTesting
+    static final long MIN_UPDATE_DELAY_MS = 100;
+    @VisibleForTesting
+    static final long MAX_UPDATE_DELAY_MS = 1000;
+    private static final long UPDATE_DELAY_WINDOW_MS = 2000;
     // TODO(b/70983952): Rename these to use WifiEntry instead of AccessPoint.
     private static final String PREF_KEY_CONNECTED_ACCESS_POINTS = "connected_access_point";
     private static final String PREF_KEY_ACCESS_POINTS = "access_points";
@@ -180,6 +192,13 @@ public class WifiSettings2 extends RestrictedSettingsFragment
 
     // Worker thread used for WifiPickerTracker work
     private HandlerThread mWorkerThread;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Incremented to drop the WifiEntry diffs computed for a previous view.
+    private int mWifiEntryDiffGeneration;
+    private boolean mWifiEntryDiffInFlight;
+    private boolean mWifiEntryDiffRequested;
+    private long mLastWifiEntriesChangedTime;
+    private long mAverageWifiEntriesChangedInterval = -1;
 
     @VisibleForTesting
     WifiPickerTracker mWifiPickerTracker;
@@ -341,6 +360,9 @@ public class WifiSettings2 extends RestrictedSettingsFragment
         if (mWifiEnabler != null) {
             mWifiEnabler.teardownSwitchController();
         }
+        mWifiEntryDiffGeneration++;
+        mWifiEntryDiffInFlight = false;
+        mWifiEntryDiffRequested = false;
         mWorkerThread.quit();
 
         super.onDestroyView();
@@ -700,23 +722,44 @@ public class WifiSettings2 extends RestrictedSettingsFragment
         // Safeguard from some delayed event handling
         if (getActivity() != null && !mIsRestricted &&
                 mWifiPickerTracker.getWifiState() == WifiManager.WIFI_STATE_ENABLED) {
+            final long now = SystemClock.elapsedRealtime();
+            if (mLastWifiEntriesChangedTime != 0) {
+                final long interval = now - mLastWifiEntriesChangedTime;
+                mAverageWifiEntriesChangedInterval = mAverageWifiEntriesChangedInterval < 0
+                        ? interval : (mAverageWifiEntriesChangedInterval * 3 + interval) / 4;
+            }
+            mLastWifiEntriesChangedTime = now;
+
             final View view = getView();
             final Handler handler = view.getHandler();
             if (handler != null && handler.hasCallbacks(mUpdateWifiEntryPreferencesRunnable)) {
                 return;
             }
             setProgressBarVisible(true);
-            view.postDelayed(mUpdateWifiEntryPreferencesRunnable, 300);
+            view.postDelayed(mUpdateWifiEntryPreferencesRunnable,
+                    getUpdateDelay(mAverageWifiEntriesChangedInterval));
         }
     }
 
+    /**
+     * Returns how long to wait before updating the WifiEntry preferences, given the average
+     * interval between updates of the list, or a negative value if it is not known yet.
+     */
+    @VisibleForTesting
+    static long getUpdateDelay(long averageInterval) {
+        if (averageInterval < 0) {
+            return DEFAULT_UPDATE_DELAY_MS;
+        }
+        return Math.max(MIN_UPDATE_DELAY_MS,
+                Math.min(MAX_UPDATE_DELAY_MS, UPDATE_DELAY_WINDOW_MS - averageInterval));
+    }
+
     private void updateWifiEntryPreferences() {
         // in case state has changed
         if (mWifiPickerTracker.getWifiState() != WifiManager.WIFI_STATE_ENABLED) {
             return;
         }
 
-        boolean hasAvailableWifiEntries = false;
         mStatusMessagePreference.setVisible(false);
         mWifiEntryPreferenceCategory.setVisible(true);
 
@@ -753,28 +796,81 @@ public class WifiSettings2 extends RestrictedSettingsFragment
             mConnectedWifiEntryPreferenceCategory.removeAll();
         }
 
-        int index = 0;
-        cacheRemoveAllPrefs(mWifiEntryPreferenceCategory);
-        List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
-        for (WifiEntry wifiEntry : wifiEntries) {
-            hasAvailableWifiEntries = true;
+        // Diff the displayed entries against the new ones on the worker thread, then apply only
+        // the changes. A single diff is in flight at a time, later requests are coalesced.
+        if (mWifiEntryDiffInFlight) {
+            mWifiEntryDiffRequested = true;
+            return;
+        }
+        mWifiEntryDiffInFlight = true;
+        final int generation = mWifiEntryDiffGeneration;
+        final List<WifiEntry> displayedEntries = getDisplayedWifiEntries();
+        final List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
+        mWorkerThread.getThreadHandler().post(() -> {
+            final WifiEntryListDiffer.Diff<WifiEntry> diff =
+                    WifiEntryListDiffer.diff(displayedEntries, wifiEntries, WifiEntry::getKey);
+            mMainHandler.post(() -> {
+                if (generation != mWifiEntryDiffGeneration) {
+                    return;
+                }
+                mWifiEntryDiffInFlight = false;
+                applyWifiEntryDiff(diff);
+                if (mWifiEntryDiffRequested) {
+                    mWifiEntryDiffRequested = false;
+                    updateWifiEntryPreferences();
+                }
+            });
+        });
+    }
 
-            String key = wifiEntry.getKey();
-            LongPressWifiEntryPreference pref =
-                    (LongPressWifiEntryPreference) getCachedPreference(key);
+    /** Returns the WifiEntries of the displayed preferences, in display order. */
+    private List<WifiEntry> getDisplayedWifiEntries() {
+        final int count = mWifiEntryPreferenceCategory.getPreferenceCount();
+        final List<LongPressWifiEntryPreference> prefs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Preference pref = mWifiEntryPreferenceCategory.getPreference(i);
+            if (pref instanceof LongPressWifiEntryPreference) {
+                prefs.add((LongPressWifiEntryPreference) pref);
+            }
+        }
+        prefs.sort(Comparator.comparingInt(Preference::getOrder));
+        final List<WifiEntry> entries = new ArrayList<>(prefs.size());
+        for (LongPressWifiEntryPreference pref : prefs) {
+            entries.add(pref.getWifiEntry());
+        }
+        return entries;
+    }
+
+    @VisibleForTesting
+    void applyWifiEntryDiff(WifiEntryListDiffer.Diff<WifiEntry> diff) {
+        // in case state has changed
+        if (mWifiPickerTracker.getWifiState() != WifiManager.WIFI_STATE_ENABLED) {
+            return;
+        }
+
+        for (String key : diff.getRemovedKeys()) {
+            final Preference pref = mWifiEntryPreferenceCategory.findPreference(key);
             if (pref != null) {
-                if (pref.getWifiEntry() == wifiEntry) {
-                    pref.setOrder(index++);
-                    continue;
-                } else {
-                    // Create a new preference if the underlying WifiEntry object has changed
-                    removePreference(key);
-                }
+                mWifiEntryPreferenceCategory.removePreference(pref);
+            }
+        }
+
+        for (WifiEntryListDiffer.Operation<WifiEntry> operation : diff.getOperations()) {
+            final Preference existingPref =
+                    mWifiEntryPreferenceCategory.findPreference(operation.key);
+            if (operation.type == WifiEntryListDiffer.OP_MOVE && existingPref != null) {
+                existingPref.setOrder(operation.position);
+                continue;
+            }
+            if (existingPref != null) {
+                // Create a new preference if the underlying WifiEntry object has changed
+                mWifiEntryPreferenceCategory.removePreference(existingPref);
             }
 
-            pref = createLongPressWifiEntryPreference(wifiEntry);
+            final WifiEntry wifiEntry = operation.item;
+            final LongPressWifiEntryPreference pref = createLongPressWifiEntryPreference(wifiEntry);
             pref.setKey(wifiEntry.getKey());
-            pref.setOrder(index++);
+            pref.setOrder(operation.position);
             pref.refresh();
 
             if (wifiEntry.getHelpUriString() != null) {
@@ -784,17 +880,28 @@ public class WifiSettings2 extends RestrictedSettingsFragment
             }
             mWifiEntryPreferenceCategory.addPreference(pref);
         }
-        removeCachedPrefs(mWifiEntryPreferenceCategory);
 
+        // The entries are ordered from 0, the other preferences follow them.
+        int index = diff.getSize();
+        final boolean hasAvailableWifiEntries = diff.getSize() > 0;
+        final Preference emptyPref =
+                mWifiEntryPreferenceCategory.findPreference(PREF_KEY_EMPTY_WIFI_LIST);
         if (!hasAvailableWifiEntries) {
             setProgressBarVisible(true);
-            Preference pref = new Preference(getPrefContext());
-            pref.setSelectable(false);
-            pref.setSummary(R.string.wifi_empty_list_wifi_on);
-            pref.setOrder(index++);
-            pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
-            mWifiEntryPreferenceCategory.addPreference(pref);
+            if (emptyPref == null) {
+                Preference pref = new Preference(getPrefContext());
+                pref.setSelectable(false);
+                pref.setSummary(R.string.wifi_empty_list_wifi_on);
+                pref.setOrder(index++);
+                pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
+                mWifiEntryPreferenceCategory.addPreference(pref);
+            } else {
+                emptyPref.setOrder(index++);
+            }
         } else {
+            if (emptyPref != null) {
+                mWifiEntryPreferenceCategory.removePreference(emptyPref);
+            }
             // Continuing showing progress bar for an additional delay to overlap with animation
             getView().postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
         }
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.benchmark;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Times a hot path over repeated iterations and reports, for each measurement, the median and
+ * minimum time, the allocations of one iteration and the delta against the baseline checked in
+ * as {@code assets/baselines.json}.
+ *
+ * Results are sent as instrumentation status, so they show up in the output of
+ * {@code atest SettingsBenchmarks} and {@code am instrument -r}. Every measurement also logs its
+ * baseline entry, to be copied into {@code baselines.json} when a change is expected to move it.
+ *
+ * A measurement without an entry in {@code baselines.json} has no delta. It is logged as an error
+ * and reported with a {@code _baseline_missing} status, and fails the test when the
+ * {@code requireBaselines} instrumentation argument is true. Only pass that argument once the
+ * baselines of every measurement are recorded.
+ *
+ * The number of timed iterations can be changed with the {@code iterations} instrumentation
+ * argument.
+ */
+public class BenchmarkRule implements TestRule {
+
+    private static final String TAG = "SettingsBenchmark";
+
+    private static final String BASELINES_ASSET = "baselines.json";
+    private static final String KEY_MEDIAN_NS = "median_ns";
+    private static final String KEY_ALLOCATIONS = "allocations";
+    private static final String ARG_ITERATIONS = "iterations";
+    private static final String ARG_REQUIRE_BASELINES = "requireBaselines";
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int DEFAULT_ITERATIONS = 30;
+    private static final int ALLOCATION_ITERATIONS = 3;
+
+    private static JSONObject sBaselines;
+
+    private final Bundle mStatus = new Bundle();
+
+    /**
+     * A step of a benchmark.
+     */
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    @Override
+    public Statement apply(Statement base, Description description) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                mStatus.clear();
+                try {
+                    base.evaluate();
+                } finally {
+                    // Also sent when a baseline is missing, so the numbers can be recorded.
+                    if (!mStatus.isEmpty()) {
+                        InstrumentationRegistry.getInstrumentation().sendStatus(
+                                Activity.RESULT_OK, mStatus);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Measures {@code operation}.
+     */
+    public void measure(String name, Operation operation) throws Exception {
+        measure(name, null /* setUp */, operation);
+    }
+
+    /**
+     * Measures {@code operation}, running {@code setUp} untimed before every iteration.
+     */
+    public void measure(String name, Operation setUp, Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runOnce(setUp, operation);
+        }
+
+        final long[] times = new long[getIterations()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = runOnce(setUp, operation);
+        }
+        Arrays.sort(times);
+        final long median = times[times.length / 2];
+
+        final long allocations = countAllocations(setUp, operation);
+
+        mStatus.putLong(name + "_" + KEY_MEDIAN_NS, median);
+        mStatus.putLong(name + "_min_ns", times[0]);
+        mStatus.putLong(name + "_" + KEY_ALLOCATIONS, allocations);
+
+        final StringBuilder summary = new StringBuilder()
+                .append(name).append(": ").append(median).append(" ns, ")
+                .append(allocations).append(" allocations");
+        final JSONObject baseline = getBaselines().optJSONObject(name);
+        final boolean hasBaseline = baseline != null && baseline.has(KEY_MEDIAN_NS)
+                && baseline.has(KEY_ALLOCATIONS);
+        if (hasBaseline) {
+            final long baselineMedian = baseline.optLong(KEY_MEDIAN_NS);
+            if (baselineMedian > 0) {
+                final double delta = (median - baselineMedian) * 100.0 / baselineMedian;
+                mStatus.putDouble(name + "_median_delta_pct", delta);
+                summary.append(String.format(", %+.1f%% time", delta));
+            }
+            // A baseline of 0 allocations is a valid result, not a missing one.
+            final long allocationsDelta = allocations - baseline.optLong(KEY_ALLOCATIONS);
+            mStatus.putLong(name + "_allocations_delta", allocationsDelta);
+            summary.append(String.format(", %+d allocations", allocationsDelta));
+        }
+        Log.i(TAG, summary.toString());
+        final String baselineEntry = "\"" + name + "\": {\"" + KEY_MEDIAN_NS + "\": " + median
+                + ", \"" + KEY_ALLOCATIONS + "\": " + allocations + "}";
+        Log.i(TAG, "baseline " + baselineEntry);
+
+        if (!hasBaseline) {
+            mStatus.putBoolean(name + "_baseline_missing", true);
+            final String message = "No baseline recorded for " + name
+                    + ", no delta reported. Add this entry to " + BASELINES_ASSET + ": "
+                    + baselineEntry;
+            Log.e(TAG, message);
+            if (isBaselineRequired()) {
+                throw new AssertionError(message);
+            }
+        }
+    }
+
+    private static long runOnce(Operation setUp, Operation operation) throws Exception {
+        if (setUp != null) {
+            setUp.run();
+        }
+        final long start = SystemClock.elapsedRealtimeNanos();
+        operation.run();
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    // Only counts the allocations of the calling thread, work handed to executors is not seen.
+    @SuppressWarnings("deprecation")
+    private static long countAllocations(Operation setUp, Operation operation) throws Exception {
+        long total = 0;
+        for (int i = 0; i < ALLOCATION_ITERATIONS; i++) {
+            if (setUp != null) {
+                setUp.run();
+            }
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+            try {
+                operation.run();
+            } finally {
+                Debug.stopAllocCounting();
+            }
+            total += Debug.getThreadAllocCount();
+        }
+        return total / ALLOCATION_ITERATIONS;
+    }
+
+    private static int getIterations() {
+        final String iterations = InstrumentationRegistry.getArguments().getString(ARG_ITERATIONS);
+        return iterations != null ? Math.max(1, Integer.parseInt(iterations))
+                : DEFAULT_ITERATIONS;
+    }
+
+    private static boolean isBaselineRequired() {
+        return Boolean.parseBoolean(
+                InstrumentationRegistry.getArguments().getString(ARG_REQUIRE_BASELINES));
+    }
+
+    private static synchronized JSONObject getBaselines() {
+        if (sBaselines == null) {
+            final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+            try (InputStream in = instrumentation.getContext().getAssets().open(BASELINES_ASSET)) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                sBaselines = new JSONObject(out.toString("UTF-8"));
+            } catch (IOException | JSONException e) {
+                Log.w(TAG, "Cannot read " + BASELINES_ASSET + ", reporting without deltas", e);
+                sBaselines = new JSONObject();
+            }
+        }
+        return sBaselines;
+    }
+}
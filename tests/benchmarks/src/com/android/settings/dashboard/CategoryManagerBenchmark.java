@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.content.Context;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.settings.benchmark.BenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class CategoryManagerBenchmark {
+
+    @Rule
+    public final BenchmarkRule mBenchmark = new BenchmarkRule();
+
+    private Context mContext;
+    private CategoryManager mCategoryManager;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+    }
+
+    @Test
+    public void reloadAllCategories_cold() throws Exception {
+        mBenchmark.measure("CategoryManager.reloadAllCategories_cold",
+                () -> mCategoryManager = new CategoryManager(mContext),
+                () -> mCategoryManager.reloadAllCategories(mContext));
+    }
+
+    @Test
+    public void reloadAllCategories_packageChanged() throws Exception {
+        mCategoryManager = new CategoryManager(mContext);
+        mCategoryManager.reloadAllCategories(mContext);
+
+        mBenchmark.measure("CategoryManager.reloadAllCategories_packageChanged",
+                () -> mCategoryManager.onPackageChanged(),
+                () -> mCategoryManager.reloadAllCategories(mContext));
+    }
+
+    @Test
+    public void reloadAllCategories_unchanged() throws Exception {
+        mCategoryManager = new CategoryManager(mContext);
+        mCategoryManager.reloadAllCategories(mContext);
+
+        mBenchmark.measure("CategoryManager.reloadAllCategories_unchanged",
+                () -> mCategoryManager.reloadAllCategories(mContext));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.settings.benchmark.BenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the aggregation {@link DataUsageList} runs before {@link DataUsageList#bindStats},
+ * over synthetic network stats buckets.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class AppDataUsageAggregatorBenchmark {
+
+    private static final int BUCKET_COUNT = 5000;
+    private static final int APP_COUNT = 500;
+    private static final int RESTRICTED_COUNT = 50;
+
+    @Rule
+    public final BenchmarkRule mBenchmark = new BenchmarkRule();
+
+    private UserManager mUserManager;
+    private List<UserHandle> mProfiles;
+    private int[] mUids;
+    private long[] mBytes;
+    private int[] mRestrictedUids;
+
+    @Before
+    public void setUp() {
+        mUserManager = UserManager.get(InstrumentationRegistry.getTargetContext());
+        mProfiles = Arrays.asList(UserHandle.of(UserHandle.USER_SYSTEM));
+        // Fixed seed, so every run aggregates the same buckets.
+        final Random random = new Random(0);
+        mUids = new int[BUCKET_COUNT];
+        mBytes = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mUids[i] = i % 20 == 0 ? Process.SYSTEM_UID
+                    : Process.FIRST_APPLICATION_UID + random.nextInt(APP_COUNT);
+            mBytes[i] = random.nextInt(1 << 20);
+        }
+        mRestrictedUids = new int[RESTRICTED_COUNT];
+        for (int i = 0; i < RESTRICTED_COUNT; i++) {
+            mRestrictedUids[i] = Process.FIRST_APPLICATION_UID + i * (APP_COUNT / RESTRICTED_COUNT);
+        }
+    }
+
+    @Test
+    public void aggregate() throws Exception {
+        mBenchmark.measure("DataUsageList.aggregate", () -> {
+            final AppDataUsageAggregator aggregator = new AppDataUsageAggregator(
+                    UserHandle.USER_SYSTEM, mProfiles, mUserManager);
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                aggregator.add(mUids[i], mBytes[i]);
+            }
+            aggregator.build(mRestrictedUids);
+        });
+    }
+}
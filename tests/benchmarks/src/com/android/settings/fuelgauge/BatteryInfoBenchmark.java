@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import android.os.BatteryStats;
+import android.os.BatteryStats.HistoryItem;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.settings.benchmark.BenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures {@link BatteryInfo#parse} over a synthetic day of battery history, with the three
+ * parsers of the battery usage chart.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class BatteryInfoBenchmark {
+
+    private static final int RECORD_COUNT = 10000;
+    private static final long RECORD_INTERVAL_MS = 10000;
+    private static final long WALL_TIME = 1600000000000L;
+
+    @Rule
+    public final BenchmarkRule mBenchmark = new BenchmarkRule();
+
+    private BatteryStats mBatteryStats;
+    private BatteryInfo.BatteryDataParser[] mParsers;
+
+    @Before
+    public void setUp() {
+        mBatteryStats = mock(BatteryStats.class);
+        doAnswer(invocation -> {
+            final int[] index = new int[1];
+            doAnswer(next -> {
+                if (index[0] == RECORD_COUNT) {
+                    return false;
+                }
+                final HistoryItem record = next.getArgument(0);
+                record.cmd = index[0] == 0 ? HistoryItem.CMD_CURRENT_TIME
+                        : HistoryItem.CMD_UPDATE;
+                record.time = index[0] * RECORD_INTERVAL_MS;
+                record.currentTime = WALL_TIME;
+                record.batteryLevel = (byte) (100 - index[0] * 100 / RECORD_COUNT);
+                record.states = index[0] % 7 == 0 ? HistoryItem.STATE_SCREEN_ON_FLAG : 0;
+                index[0]++;
+                return true;
+            }).when(mBatteryStats).getNextHistoryLocked(any(HistoryItem.class));
+            return true;
+        }).when(mBatteryStats).startIteratingHistoryLocked();
+        mParsers = new BatteryInfo.BatteryDataParser[] {
+                new CountingParser(), new CountingParser(), new CountingParser()};
+        BatteryHistorySnapshot.clear();
+    }
+
+    @Test
+    public void parse_cold() throws Exception {
+        mBenchmark.measure("BatteryInfo.parse_cold",
+                () -> BatteryHistorySnapshot.clear(),
+                () -> BatteryInfo.parse(mBatteryStats, mParsers));
+    }
+
+    @Test
+    public void parse_snapshotCached() throws Exception {
+        mBenchmark.measure("BatteryInfo.parse_snapshotCached",
+                () -> BatteryInfo.parse(mBatteryStats, mParsers));
+    }
+
+    private static class CountingParser implements BatteryInfo.BatteryDataParser {
+        private int mPoints;
+
+        @Override
+        public void onParsingStarted(long startTime, long endTime) {
+            mPoints = 0;
+        }
+
+        @Override
+        public void onDataPoint(long time, HistoryItem record) {
+            mPoints++;
+        }
+
+        @Override
+        public void onDataGap() {
+        }
+
+        @Override
+        public void onParsingDone() {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.tests.perf;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.support.test.uiautomator.By;
+import android.support.test.uiautomator.UiDevice;
+import android.support.test.uiautomator.Until;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the frame times of the Wi-Fi network list while it receives a stream of
+ * WifiPickerTracker updates. Updates are produced by requesting back to back scans, which is
+ * what makes the list churn in dense RF environments.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WifiListFrameTimeTest {
+
+    private static final String PACKAGE = "com.android.settings";
+    private static final int TIME_OUT = 5000;
+    private static final int SCAN_COUNT = 20;
+    private static final int SCAN_INTERVAL_MS = 1000;
+    private static final Pattern JANKY_FRAMES =
+            Pattern.compile("Janky frames:\\s*(\\d+)");
+    private static final Pattern TOTAL_FRAMES =
+            Pattern.compile("Total frames rendered:\\s*(\\d+)");
+    private static final Pattern PERCENTILE =
+            Pattern.compile("(\\d+)th percentile:\\s*(\\d+)ms");
+
+    private Bundle mBundle;
+    private UiDevice mDevice;
+    private Instrumentation mInstrumentation;
+
+    @Before
+    public void setUp() throws Exception {
+        mBundle = new Bundle();
+        mInstrumentation = getInstrumentation();
+        mDevice = UiDevice.getInstance(mInstrumentation);
+        mDevice.executeShellCommand("svc wifi enable");
+        mDevice.pressHome();
+        mDevice.waitForIdle(TIME_OUT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mInstrumentation.sendStatus(0, mBundle);
+        mDevice.executeShellCommand("am force-stop " + PACKAGE);
+    }
+
+    @Test
+    public void wifiListUpdates_frameTime() throws Exception {
+        mDevice.executeShellCommand("am start -W -a android.settings.WIFI_SETTINGS");
+        mDevice.wait(Until.findObject(By.text("Use Wi‑Fi")), TIME_OUT);
+        mDevice.waitForIdle(TIME_OUT);
+        mDevice.executeShellCommand("dumpsys gfxinfo " + PACKAGE + " reset");
+
+        for (int i = 0; i < SCAN_COUNT; i++) {
+            mDevice.executeShellCommand("cmd wifi start-scan");
+            Thread.sleep(SCAN_INTERVAL_MS);
+        }
+
+        putResultToBundle(mDevice.executeShellCommand("dumpsys gfxinfo " + PACKAGE));
+    }
+
+    private void putResultToBundle(String gfxinfo) {
+        Matcher matcher = TOTAL_FRAMES.matcher(gfxinfo);
+        if (matcher.find()) {
+            mBundle.putString("WifiListFrameTimeTest_total_frames", matcher.group(1));
+        }
+        matcher = JANKY_FRAMES.matcher(gfxinfo);
+        if (matcher.find()) {
+            mBundle.putString("WifiListFrameTimeTest_janky_frames", matcher.group(1));
+        }
+        matcher = PERCENTILE.matcher(gfxinfo);
+        while (matcher.find()) {
+            mBundle.putString(String.format("WifiListFrameTimeTest_p%s_ms", matcher.group(1)),
+                    matcher.group(2));
+        }
+    }
+}
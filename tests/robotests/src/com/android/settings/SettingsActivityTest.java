@@ -28,15 +28,23 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.app.ActivityManager;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ActivityInfo;
 
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
 
 import com.android.settings.core.OnActivityResultListener;
+import com.android.settings.dashboard.DashboardFeatureProvider;
 import com.android.settings.testutils.FakeFeatureFactory;
+import com.android.settings.testutils.shadow.ShadowUserManager;
+import com.android.settingslib.drawer.ActivityTile;
+import com.android.settingslib.drawer.CategoryKey;
+import com.android.settingslib.drawer.DashboardCategory;
+import com.android.settingslib.drawer.Tile;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -46,9 +54,13 @@ import org.mockito.MockitoAnnotations;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(RobolectricTestRunner.class)
 public class SettingsActivityTest {
@@ -111,6 +123,44 @@ public class SettingsActivityTest {
         assertThat(((ListenerFragment) fragments.get(1)).mOnActivityResultCalled).isTrue();
     }
 
+    @Test
+    @Config(shadows = ShadowUserManager.class)
+    public void getTileEnabledStates_nonAdminUser_shouldOnlyDisableNotAllowedTiles() {
+        ShadowUserManager.getShadow().setIsAdminUser(false);
+        final String packageName = mActivity.getPackageName();
+        final DashboardCategory category = new DashboardCategory(CategoryKey.CATEGORY_HOMEPAGE);
+        category.addTile(createTile(packageName,
+                Settings.DisplaySettingsActivity.class.getName()));
+        category.addTile(createTile(packageName,
+                Settings.DevelopmentSettingsDashboardActivity.class.getName()));
+        category.addTile(createTile(packageName, "NotAllowedActivity"));
+        final DashboardFeatureProvider dashboardFeatureProvider =
+                mock(DashboardFeatureProvider.class);
+        when(dashboardFeatureProvider.getAllCategories()).thenReturn(
+                new ArrayList<>(Collections.singletonList(category)));
+        ReflectionHelpers.setField(mActivity, "mDashboardFeatureProvider",
+                dashboardFeatureProvider);
+
+        final Map<ComponentName, Boolean> states =
+                mActivity.getTileEnabledStates(true /* batteryPresent */);
+
+        assertThat(states).doesNotContainKey(new ComponentName(packageName,
+                Settings.DisplaySettingsActivity.class.getName()));
+        assertThat(states.get(new ComponentName(packageName,
+                Settings.PowerUsageSummaryActivity.class.getName()))).isTrue();
+        assertThat(states.get(new ComponentName(packageName,
+                Settings.DevelopmentSettingsDashboardActivity.class.getName()))).isFalse();
+        assertThat(states.get(new ComponentName(packageName, "NotAllowedActivity")))
+                .isFalse();
+    }
+
+    private static Tile createTile(String packageName, String className) {
+        final ActivityInfo activityInfo = new ActivityInfo();
+        activityInfo.packageName = packageName;
+        activityInfo.name = className;
+        return new ActivityTile(activityInfo, CategoryKey.CATEGORY_HOMEPAGE);
+    }
+
     public static class ListenerFragment extends Fragment implements OnActivityResultListener {
 
         private boolean mOnActivityResultCalled;
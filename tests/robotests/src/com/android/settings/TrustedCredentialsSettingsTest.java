@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.android.settings.TrustedCredentialsSettings.CertInfo;
+import com.android.settings.TrustedCredentialsSettings.CertInfoCache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class TrustedCredentialsSettingsTest {
+
+    private static final String ALIAS = "system:cert";
+    private static final int PROFILE_ID = 0;
+    private static final int OTHER_PROFILE_ID = 10;
+    private static final byte[] ENCODED = {1, 2, 3};
+
+    private CertInfoCache mCache;
+    private CertInfo mCertInfo;
+
+    @Before
+    public void setUp() {
+        mCache = new CertInfoCache();
+        mCertInfo = mock(CertInfo.class);
+        when(mCertInfo.getEncoded()).thenReturn(ENCODED);
+    }
+
+    @Test
+    public void certInfoCache_sameEncoding_shouldReturnCachedInfo() {
+        mCache.put(PROFILE_ID, ALIAS, mCertInfo);
+
+        assertThat(mCache.get(PROFILE_ID, ALIAS, new byte[] {1, 2, 3})).isSameInstanceAs(
+                mCertInfo);
+    }
+
+    @Test
+    public void certInfoCache_otherEncoding_shouldReturnNull() {
+        mCache.put(PROFILE_ID, ALIAS, mCertInfo);
+
+        assertThat(mCache.get(PROFILE_ID, ALIAS, new byte[] {4, 5, 6})).isNull();
+    }
+
+    @Test
+    public void certInfoCache_otherProfile_shouldReturnNull() {
+        mCache.put(PROFILE_ID, ALIAS, mCertInfo);
+
+        assertThat(mCache.get(OTHER_PROFILE_ID, ALIAS, ENCODED)).isNull();
+    }
+
+    @Test
+    public void certInfoCache_full_shouldEvictLeastRecentlyUsed() {
+        mCache.put(PROFILE_ID, ALIAS, mCertInfo);
+        for (int i = 0; i < CertInfoCache.MAX_ENTRIES; i++) {
+            mCache.put(PROFILE_ID, ALIAS + i, mCertInfo);
+        }
+
+        assertThat(mCache.get(PROFILE_ID, ALIAS, ENCODED)).isNull();
+        assertThat(mCache.get(PROFILE_ID, ALIAS + 0, ENCODED)).isSameInstanceAs(mCertInfo);
+    }
+}
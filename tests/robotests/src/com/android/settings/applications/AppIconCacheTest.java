@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppIconCacheTest {
+
+    private static final String PACKAGE_NAME = "com.android.test";
+    private static final String OTHER_PACKAGE_NAME = "com.android.other";
+
+    private Context mContext;
+    private TestAppIconCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new TestAppIconCache(mContext);
+    }
+
+    @Test
+    public void getBadgedIcon_twice_shouldLoadOnce() {
+        final ApplicationInfo info = createInfo(PACKAGE_NAME, 10001);
+
+        final Drawable first = mCache.getBadgedIcon(info);
+        final Drawable second = mCache.getBadgedIcon(info);
+
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(mCache.mLoadCount).isEqualTo(1);
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void getIcon_badgedAndPlain_shouldBeCachedSeparately() {
+        final ApplicationInfo info = createInfo(PACKAGE_NAME, 10001);
+
+        mCache.getIcon(info, 0 /* userId */, true /* badged */);
+        mCache.getIcon(info, 0 /* userId */, false /* badged */);
+        mCache.getIcon(info, 10 /* userId */, true /* badged */);
+
+        assertThat(mCache.mLoadCount).isEqualTo(3);
+    }
+
+    @Test
+    public void invalidate_shouldOnlyDropIconsOfPackage() {
+        final ApplicationInfo info = createInfo(PACKAGE_NAME, 10001);
+        final ApplicationInfo otherInfo = createInfo(OTHER_PACKAGE_NAME, 10002);
+        mCache.getBadgedIcon(info);
+        mCache.getBadgedIcon(otherInfo);
+
+        mCache.invalidate(PACKAGE_NAME);
+        mCache.getBadgedIcon(info);
+        mCache.getBadgedIcon(otherInfo);
+
+        assertThat(mCache.mLoadCount).isEqualTo(3);
+    }
+
+    @Test
+    public void onTrimMemory_background_shouldDropIcons() {
+        final ApplicationInfo info = createInfo(PACKAGE_NAME, 10001);
+        mCache.getBadgedIcon(info);
+
+        mCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        mCache.getBadgedIcon(info);
+
+        assertThat(mCache.mLoadCount).isEqualTo(2);
+    }
+
+    @Test
+    public void getBadgedIcon_overMemoryBudget_shouldEvictOldest() {
+        // Each icon takes a quarter of the budget.
+        mCache.mIconSize = (int) Math.sqrt(AppIconCache.MAX_ICON_BYTES / 4 / 4);
+        for (int i = 0; i < 5; i++) {
+            mCache.getBadgedIcon(createInfo(PACKAGE_NAME + i, 10001 + i));
+        }
+        mCache.getBadgedIcon(createInfo(PACKAGE_NAME + 4, 10005));
+        mCache.getBadgedIcon(createInfo(PACKAGE_NAME + 0, 10001));
+
+        assertThat(mCache.mLoadCount).isEqualTo(6);
+    }
+
+    @Test
+    public void dump_shouldReportCounters() throws Exception {
+        final ApplicationInfo info = createInfo(PACKAGE_NAME, 10001);
+        mCache.getBadgedIcon(info);
+        mCache.getBadgedIcon(info);
+
+        final JSONObject dump = mCache.dump();
+
+        assertThat(dump.getLong("hit")).isEqualTo(1);
+        assertThat(dump.getLong("miss")).isEqualTo(1);
+        assertThat(dump.getInt("icon_count")).isEqualTo(1);
+        assertThat(dump.getInt("icon_bytes")).isGreaterThan(0);
+    }
+
+    private static ApplicationInfo createInfo(String packageName, int uid) {
+        final ApplicationInfo info = new ApplicationInfo();
+        info.packageName = packageName;
+        info.uid = uid;
+        return info;
+    }
+
+    private static class TestAppIconCache extends AppIconCache {
+        private int mLoadCount;
+        private int mIconSize = 48;
+
+        TestAppIconCache(Context context) {
+            super(context);
+        }
+
+        @Override
+        Drawable loadIcon(ApplicationInfo info, int userId, boolean badged) {
+            mLoadCount++;
+            return new BitmapDrawable(RuntimeEnvironment.application.getResources(),
+                    Bitmap.createBitmap(mIconSize, mIconSize, Bitmap.Config.ARGB_8888));
+        }
+    }
+}
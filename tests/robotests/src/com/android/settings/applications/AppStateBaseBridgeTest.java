@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.pm.ApplicationInfo;
+import android.os.Looper;
+
+import com.android.settingslib.applications.ApplicationsState;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppStateBaseBridgeTest {
+
+    private static final int APP_COUNT = 8;
+
+    @Mock
+    private ApplicationsState.Session mSession;
+    @Mock
+    private ApplicationsState mState;
+
+    private ArrayList<AppEntry> mApps;
+    private TestBridge mBridge;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mState.newSession(any())).thenReturn(mSession);
+        when(mState.getBackgroundLooper()).thenReturn(mock(Looper.class));
+        mApps = new ArrayList<>();
+        for (int i = 0; i < APP_COUNT; i++) {
+            mApps.add(getAppEntry("pkg" + i, 10000 + i));
+        }
+        when(mSession.getAllApps()).thenAnswer(invocation -> new ArrayList<>(mApps));
+
+        mBridge = new TestBridge(mState);
+    }
+
+    @Test
+    public void loadChanged_notLoadedYet_shouldLoadAll() {
+        assertThat(mBridge.loadChanged()).isNull();
+        assertThat(mBridge.mLoadAllCount).isEqualTo(1);
+    }
+
+    @Test
+    public void loadChanged_onePackageChanged_shouldOnlyUpdateIt() {
+        mBridge.loadAll();
+        final AppEntry changed = mApps.get(3);
+        changed.info = copy(changed.info);
+
+        final List<AppEntry> result = mBridge.loadChanged();
+
+        assertThat(result).containsExactly(changed);
+        assertThat(mBridge.mUpdated).containsExactly(changed);
+        assertThat(mBridge.mLoadAllCount).isEqualTo(1);
+    }
+
+    @Test
+    public void loadChanged_nothingChanged_shouldUpdateNothing() {
+        mBridge.loadAll();
+        mApps.remove(0);
+
+        assertThat(mBridge.loadChanged()).isEmpty();
+        assertThat(mBridge.mUpdated).isEmpty();
+    }
+
+    @Test
+    public void loadChanged_manyPackagesChanged_shouldLoadAll() {
+        mBridge.loadAll();
+        for (int i = 0; i < APP_COUNT / 2; i++) {
+            mApps.get(i).info = copy(mApps.get(i).info);
+        }
+
+        assertThat(mBridge.loadChanged()).isNull();
+        assertThat(mBridge.mLoadAllCount).isEqualTo(2);
+        assertThat(mBridge.mUpdated).isEmpty();
+    }
+
+    @Test
+    public void loadPackage_shouldOnlyUpdateMatchingEntry() {
+        mBridge.loadAll();
+        final AppEntry app = mApps.get(5);
+
+        assertThat(mBridge.loadPackage(app.info.packageName, app.info.uid)).isSameAs(app);
+        assertThat(mBridge.mUpdated).containsExactly(app);
+        assertThat(mBridge.loadPackage(app.info.packageName, app.info.uid + 1)).isNull();
+    }
+
+    private static AppEntry getAppEntry(String pkg, int uid) {
+        final AppEntry entry = mock(AppEntry.class);
+        entry.info = new ApplicationInfo();
+        entry.info.packageName = pkg;
+        entry.info.uid = uid;
+        return entry;
+    }
+
+    private static ApplicationInfo copy(ApplicationInfo info) {
+        return new ApplicationInfo(info);
+    }
+
+    private static class TestBridge extends AppStateBaseBridge {
+        private final List<AppEntry> mUpdated = new ArrayList<>();
+        private int mLoadAllCount;
+
+        TestBridge(ApplicationsState appState) {
+            super(appState, mock(Callback.class));
+        }
+
+        @Override
+        protected void loadAllExtraInfo() {
+            mLoadAllCount++;
+        }
+
+        @Override
+        protected void updateExtraInfo(AppEntry app, String pkg, int uid) {
+            mUpdated.add(app);
+        }
+    }
+}
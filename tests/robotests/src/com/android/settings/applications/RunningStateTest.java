@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.pm.ApplicationInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class RunningStateTest {
+
+    @Test
+    public void getContentsUpdateDelay_changed_shouldResetToDefault() {
+        assertThat(RunningState.getContentsUpdateDelay(
+                RunningState.MAX_CONTENTS_UPDATE_DELAY, true /* changed */))
+                .isEqualTo(RunningState.CONTENTS_UPDATE_DELAY);
+    }
+
+    @Test
+    public void getContentsUpdateDelay_unchanged_shouldBackOffUpToMax() {
+        long delay = RunningState.CONTENTS_UPDATE_DELAY;
+
+        delay = RunningState.getContentsUpdateDelay(delay, false /* changed */);
+        assertThat(delay).isEqualTo(RunningState.CONTENTS_UPDATE_DELAY * 2);
+
+        for (int i = 0; i < 10; i++) {
+            delay = RunningState.getContentsUpdateDelay(delay, false /* changed */);
+        }
+        assertThat(delay).isEqualTo(RunningState.MAX_CONTENTS_UPDATE_DELAY);
+    }
+
+    @Test
+    public void labelCache_shouldBeKeyedByUidAndProcess() {
+        final RunningState.LabelCache cache = new RunningState.LabelCache();
+        final ApplicationInfo info = new ApplicationInfo();
+        cache.put(10001, "com.example", "Example", info);
+
+        assertThat(cache.get(10001, "com.example").mDisplayLabel.toString())
+                .isEqualTo("Example");
+        assertThat(cache.get(10001, "com.example").mPackageInfo).isSameAs(info);
+        assertThat(cache.get(10002, "com.example")).isNull();
+        assertThat(cache.get(10001, "com.example:remote")).isNull();
+
+        cache.clear();
+        assertThat(cache.get(10001, "com.example")).isNull();
+    }
+}
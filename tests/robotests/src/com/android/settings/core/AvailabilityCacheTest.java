@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.provider.Settings;
+import android.telephony.CarrierConfigManager;
+
+import com.android.settings.testutils.shadow.ShadowUserManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = ShadowUserManager.class)
+public class AvailabilityCacheTest {
+
+    private static final Uri SETTING_URI = Settings.Global.getUriFor("test_setting");
+    private static final Uri OTHER_SETTING_URI = Settings.Global.getUriFor("other_setting");
+
+    private Context mContext;
+    private AvailabilityCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new AvailabilityCache(mContext);
+    }
+
+    @Test
+    public void getAvailabilityStatus_twice_shouldEvaluateOnce() {
+        final FakeController controller = new FakeController(mContext,
+                new AvailabilityDependencies().addSetting(SETTING_URI));
+
+        mCache.getAvailabilityStatus(controller, controller.getAvailabilityDependencies());
+        final int status = mCache.getAvailabilityStatus(controller,
+                controller.getAvailabilityDependencies());
+
+        assertThat(status).isEqualTo(BasePreferenceController.AVAILABLE);
+        assertThat(controller.mEvaluationCount).isEqualTo(1);
+    }
+
+    @Test
+    public void settingChanged_shouldOnlyEvaluateDependentControllersAgain() {
+        final FakeController controller = new FakeController(mContext,
+                new AvailabilityDependencies().addSetting(SETTING_URI));
+        final FakeController otherController = new FakeController(mContext, "other_key",
+                new AvailabilityDependencies().addSetting(OTHER_SETTING_URI));
+        evaluate(controller);
+        evaluate(otherController);
+
+        mContext.getContentResolver().notifyChange(SETTING_URI, null /* observer */);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        evaluate(controller);
+        evaluate(otherController);
+
+        assertThat(controller.mEvaluationCount).isEqualTo(2);
+        assertThat(otherController.mEvaluationCount).isEqualTo(1);
+    }
+
+    @Test
+    public void userRestrictionChanged_shouldOnlyEvaluateDependentControllersAgain() {
+        final FakeController controller = new FakeController(mContext,
+                new AvailabilityDependencies().addUserRestriction(
+                        UserManager.DISALLOW_CONFIG_WIFI));
+        final FakeController otherController = new FakeController(mContext, "other_key",
+                new AvailabilityDependencies().addUserRestriction(
+                        UserManager.DISALLOW_CONFIG_BLUETOOTH));
+        evaluate(controller);
+        evaluate(otherController);
+
+        setUserRestriction(UserManager.DISALLOW_CONFIG_WIFI, true);
+        evaluate(controller);
+        evaluate(otherController);
+
+        assertThat(controller.mEvaluationCount).isEqualTo(2);
+        assertThat(otherController.mEvaluationCount).isEqualTo(1);
+    }
+
+    @Test
+    public void userRestrictionsBroadcastWithoutChange_shouldNotEvaluateAgain() {
+        final FakeController controller = new FakeController(mContext,
+                new AvailabilityDependencies().addUserRestriction(
+                        UserManager.DISALLOW_CONFIG_WIFI));
+        evaluate(controller);
+
+        setUserRestriction(UserManager.DISALLOW_CONFIG_BLUETOOTH, true);
+        evaluate(controller);
+
+        assertThat(controller.mEvaluationCount).isEqualTo(1);
+    }
+
+    @Test
+    public void baseUserRestrictionChanged_shouldEvaluateAgain() {
+        final FakeController controller = new FakeController(mContext,
+                new AvailabilityDependencies().addUserRestriction(
+                        UserManager.DISALLOW_NETWORK_RESET));
+        setUserRestriction(UserManager.DISALLOW_NETWORK_RESET, true);
+        evaluate(controller);
+
+        // Still set by the admin, only the base restriction changes.
+        ShadowUserManager.getShadow().addBaseUserRestriction(UserManager.DISALLOW_NETWORK_RESET);
+        mContext.sendBroadcast(new Intent(UserManager.ACTION_USER_RESTRICTIONS_CHANGED));
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        evaluate(controller);
+
+        assertThat(controller.mEvaluationCount).isEqualTo(2);
+    }
+
+    @Test
+    public void carrierConfigChanged_shouldOnlyEvaluateDependentControllersAgain() {
+        final FakeController controller = new FakeController(mContext,
+                new AvailabilityDependencies().addCarrierConfig());
+        final FakeController otherController = new FakeController(mContext, "other_key",
+                new AvailabilityDependencies().addSetting(SETTING_URI));
+        evaluate(controller);
+        evaluate(otherController);
+
+        mContext.sendBroadcast(new Intent(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED));
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        evaluate(controller);
+        evaluate(otherController);
+
+        assertThat(controller.mEvaluationCount).isEqualTo(2);
+        assertThat(otherController.mEvaluationCount).isEqualTo(1);
+    }
+
+    @Test
+    public void emptyDependencies_shouldNeverEvaluateAgain() {
+        final FakeController controller = new FakeController(mContext,
+                new AvailabilityDependencies());
+        evaluate(controller);
+
+        mContext.getContentResolver().notifyChange(SETTING_URI, null /* observer */);
+        mContext.sendBroadcast(new Intent(UserManager.ACTION_USER_RESTRICTIONS_CHANGED));
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        evaluate(controller);
+
+        assertThat(controller.mEvaluationCount).isEqualTo(1);
+    }
+
+    @Test
+    public void isAvailable_withoutDependencies_shouldEvaluateEveryCall() {
+        final FakeController controller = new FakeController(mContext, null /* dependencies */);
+
+        controller.isAvailable();
+        controller.isSupported();
+
+        assertThat(controller.mEvaluationCount).isEqualTo(2);
+    }
+
+    private void setUserRestriction(String restriction, boolean value) {
+        ShadowUserManager.getShadow().setUserRestriction(UserHandle.of(UserHandle.myUserId()),
+                restriction, value);
+        mContext.sendBroadcast(new Intent(UserManager.ACTION_USER_RESTRICTIONS_CHANGED));
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private void evaluate(FakeController controller) {
+        mCache.getAvailabilityStatus(controller, controller.getAvailabilityDependencies());
+    }
+
+    private static class FakeController extends BasePreferenceController {
+        private final AvailabilityDependencies mDependencies;
+        private int mEvaluationCount;
+
+        FakeController(Context context, AvailabilityDependencies dependencies) {
+            this(context, "key", dependencies);
+        }
+
+        FakeController(Context context, String key, AvailabilityDependencies dependencies) {
+            super(context, key);
+            mDependencies = dependencies;
+        }
+
+        @Override
+        public int getAvailabilityStatus() {
+            mEvaluationCount++;
+            return AVAILABLE;
+        }
+
+        @Override
+        protected AvailabilityDependencies getAvailabilityDependencies() {
+            return mDependencies;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Configuration;
+import android.os.Bundle;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.io.File;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceXmlMetadataCacheTest {
+
+    private Context mContext;
+    private PreferenceXmlMetadataCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new PreferenceXmlMetadataCache(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        ReflectionHelpers.setStaticField(PreferenceXmlMetadataCache.class, "sInstance", null);
+        new File(mContext.getCacheDir(), PreferenceXmlMetadataCache.CACHE_FILE_NAME).delete();
+    }
+
+    @Test
+    public void getMetadata_sameResource_hitsCache() throws Exception {
+        final List<Bundle> first = mCache.getMetadata(mContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_KEY);
+        final List<Bundle> second = mCache.getMetadata(mContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_KEY);
+
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+        assertThat(second).hasSize(first.size());
+        assertThat(second.get(0).getString(METADATA_KEY))
+                .isEqualTo(first.get(0).getString(METADATA_KEY));
+    }
+
+    @Test
+    public void getMetadata_differentFlags_missesCache() throws Exception {
+        mCache.getMetadata(mContext, R.xml.display_settings, MetadataFlag.FLAG_NEED_KEY);
+        mCache.getMetadata(mContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_TITLE);
+
+        assertThat(mCache.getMissCount()).isEqualTo(2);
+        assertThat(mCache.getHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void getMetadata_returnsCopy() throws Exception {
+        final List<Bundle> first = mCache.getMetadata(mContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_KEY);
+        first.get(0).putString(METADATA_KEY, "modified");
+
+        final List<Bundle> second = mCache.getMetadata(mContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_KEY);
+
+        assertThat(second.get(0).getString(METADATA_KEY)).isNotEqualTo("modified");
+    }
+
+    @Test
+    public void getMetadata_persisted_loadedByNewInstance() throws Exception {
+        mCache.getMetadata(mContext, R.xml.display_settings, MetadataFlag.FLAG_NEED_KEY);
+        mCache.persist();
+
+        final PreferenceXmlMetadataCache newCache = new PreferenceXmlMetadataCache(mContext);
+        newCache.getMetadata(mContext, R.xml.display_settings, MetadataFlag.FLAG_NEED_KEY);
+
+        assertThat(newCache.getHitCount()).isEqualTo(1);
+        assertThat(newCache.getMissCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void persist_afterTrimMemory_keepsPersistedEntries() throws Exception {
+        mCache.getMetadata(mContext, R.xml.display_settings, MetadataFlag.FLAG_NEED_KEY);
+        mCache.persist();
+
+        mCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        mCache.getMetadata(mContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_TITLE);
+        mCache.persist();
+
+        final PreferenceXmlMetadataCache newCache = new PreferenceXmlMetadataCache(mContext);
+        newCache.getMetadata(mContext, R.xml.display_settings, MetadataFlag.FLAG_NEED_KEY);
+        newCache.getMetadata(mContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_TITLE);
+
+        assertThat(newCache.getHitCount()).isEqualTo(2);
+        assertThat(newCache.getMissCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void onConfigurationChanged_clearsMemoryCache() throws Exception {
+        mCache.getMetadata(mContext, R.xml.display_settings, MetadataFlag.FLAG_NEED_KEY);
+
+        mCache.onConfigurationChanged(new Configuration());
+
+        assertThat(mCache.dump().getInt("size")).isEqualTo(0);
+    }
+
+    @Test
+    public void getKey_differentMcc_differentKey() {
+        final Configuration config = new Configuration(mContext.getResources().getConfiguration());
+        config.mcc = 999;
+        final Context mccContext = mContext.createConfigurationContext(config);
+
+        assertThat(PreferenceXmlMetadataCache.getKey(mccContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_KEY)).isNotEqualTo(PreferenceXmlMetadataCache.getKey(
+                mContext, R.xml.display_settings, MetadataFlag.FLAG_NEED_KEY));
+    }
+
+    @Test
+    public void getInstance_newApplication_replacesInstance() {
+        final PreferenceXmlMetadataCache stale =
+                new PreferenceXmlMetadataCache(new ContextWrapper(mContext));
+        ReflectionHelpers.setStaticField(PreferenceXmlMetadataCache.class, "sInstance", stale);
+
+        assertThat(PreferenceXmlMetadataCache.getInstance(mContext)).isNotSameAs(stale);
+    }
+}
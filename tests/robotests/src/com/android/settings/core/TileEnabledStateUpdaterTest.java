@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.ArrayMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class TileEnabledStateUpdaterTest {
+
+    private static final ComponentName COMPONENT_1 = new ComponentName("pkg", "Tile1");
+    private static final ComponentName COMPONENT_2 = new ComponentName("pkg", "Tile2");
+
+    private Context mContext;
+    private PackageManager mPackageManager;
+    private List<Runnable> mQueuedTasks;
+    private TileEnabledStateUpdater mUpdater;
+    private int mChangedCount;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mPackageManager = mContext.getPackageManager();
+        mQueuedTasks = new ArrayList<>();
+        mUpdater = new TileEnabledStateUpdater(mContext, mQueuedTasks::add);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.getSharedPreferences(TileEnabledStateUpdater.PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().clear().commit();
+    }
+
+    @Test
+    public void requestUpdate_shouldApplyDesiredStates() {
+        requestUpdate(states(true, false));
+        runQueuedTasks();
+
+        assertThat(mPackageManager.getComponentEnabledSetting(COMPONENT_1))
+                .isEqualTo(PackageManager.COMPONENT_ENABLED_STATE_ENABLED);
+        assertThat(mPackageManager.getComponentEnabledSetting(COMPONENT_2))
+                .isEqualTo(PackageManager.COMPONENT_ENABLED_STATE_DISABLED);
+        assertThat(mChangedCount).isEqualTo(1);
+    }
+
+    @Test
+    public void requestUpdate_whilePending_shouldCoalesceWithLatestStates() {
+        requestUpdate(states(true, true));
+        requestUpdate(states(false, true));
+
+        assertThat(mQueuedTasks).hasSize(1);
+        runQueuedTasks();
+
+        assertThat(mPackageManager.getComponentEnabledSetting(COMPONENT_1))
+                .isEqualTo(PackageManager.COMPONENT_ENABLED_STATE_DISABLED);
+        assertThat(mChangedCount).isEqualTo(2);
+    }
+
+    @Test
+    public void requestUpdate_sameStates_shouldSkipPackageManager() {
+        requestUpdate(states(true, true));
+        runQueuedTasks();
+        // Changed behind the updater's back, the last applied state is trusted.
+        mPackageManager.setComponentEnabledSetting(COMPONENT_1,
+                PackageManager.COMPONENT_ENABLED_STATE_DISABLED, 0 /* flags */);
+        mChangedCount = 0;
+
+        requestUpdate(states(true, true));
+        runQueuedTasks();
+
+        assertThat(mPackageManager.getComponentEnabledSetting(COMPONENT_1))
+                .isEqualTo(PackageManager.COMPONENT_ENABLED_STATE_DISABLED);
+        assertThat(mChangedCount).isEqualTo(0);
+    }
+
+    @Test
+    public void requestUpdate_newInstance_shouldUsePersistedStates() {
+        requestUpdate(states(true, true));
+        runQueuedTasks();
+        mUpdater = new TileEnabledStateUpdater(mContext, mQueuedTasks::add);
+        mChangedCount = 0;
+
+        requestUpdate(states(true, false));
+        runQueuedTasks();
+
+        assertThat(mPackageManager.getComponentEnabledSetting(COMPONENT_2))
+                .isEqualTo(PackageManager.COMPONENT_ENABLED_STATE_DISABLED);
+        assertThat(mChangedCount).isEqualTo(1);
+    }
+
+    private void requestUpdate(Map<ComponentName, Boolean> states) {
+        mUpdater.requestUpdate(() -> states, () -> mChangedCount++);
+    }
+
+    private void runQueuedTasks() {
+        final List<Runnable> tasks = new ArrayList<>(mQueuedTasks);
+        mQueuedTasks.clear();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private static Map<ComponentName, Boolean> states(boolean enabled1, boolean enabled2) {
+        final Map<ComponentName, Boolean> states = new ArrayMap<>();
+        states.put(COMPONENT_1, enabled1);
+        states.put(COMPONENT_2, enabled2);
+        return states;
+    }
+}
@@ -75,4 +75,36 @@ public class SettingsIntelligenceLogWriterTest {
         assertThat(settingsLog.getChangedPreferenceKey()).isEqualTo("package");
         assertThat(settingsLog.getChangedPreferenceIntValue()).isEqualTo(100);
     }
+
+    @Test
+    public void eventBuffer_full_shouldRejectEvents() {
+        final SettingsIntelligenceLogWriter.EventBuffer buffer =
+                new SettingsIntelligenceLogWriter.EventBuffer(2);
+
+        assertThat(buffer.add(0, SettingsEnums.PAGE_VISIBLE, 1, "", 0, 0L)).isTrue();
+        assertThat(buffer.add(0, SettingsEnums.PAGE_VISIBLE, 2, "", 0, 0L)).isTrue();
+        assertThat(buffer.add(0, SettingsEnums.PAGE_VISIBLE, 3, "", 0, 0L)).isFalse();
+        assertThat(buffer.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void eventBuffer_drain_returnEventsInOrderAndEmpty() {
+        final SettingsIntelligenceLogWriter.EventBuffer buffer =
+                new SettingsIntelligenceLogWriter.EventBuffer(4);
+        buffer.add(SettingsEnums.DASHBOARD_SUMMARY, SettingsEnums.ACTION_SET_NEW_PASSWORD,
+                SettingsEnums.SET_NEW_PASSWORD_ACTIVITY, "package", 100, 0L);
+        buffer.add(SettingsEnums.PAGE_UNKNOWN, SettingsEnums.PAGE_HIDE,
+                SettingsEnums.SET_NEW_PASSWORD_ACTIVITY, null, 5, 0L);
+
+        final List<SettingsLog> logs = buffer.drain();
+
+        assertThat(logs).hasSize(2);
+        assertThat(logs.get(0).getAction()).isEqualTo(SettingsEnums.ACTION_SET_NEW_PASSWORD);
+        assertThat(logs.get(0).getChangedPreferenceKey()).isEqualTo("package");
+        assertThat(logs.get(0).getChangedPreferenceIntValue()).isEqualTo(100);
+        assertThat(logs.get(1).getAction()).isEqualTo(SettingsEnums.PAGE_HIDE);
+        assertThat(logs.get(1).getChangedPreferenceKey()).isEmpty();
+        assertThat(logs.get(1).getTimestamp()).isNotEmpty();
+        assertThat(buffer.size()).isEqualTo(0);
+    }
 }
@@ -57,6 +57,19 @@ public class ControllerFutureTaskTest {
         assertThat(futureTask.getController().getPreferenceKey()).isEqualTo(KEY);
     }
 
+    @Test
+    public void compareTo_lowerPriorityValue_sortedFirst() {
+        final ControllerFutureTask first = new ControllerFutureTask(
+                new ControllerTask(mTestController, mScreen, null /* metricsFeature */,
+                        METRICS_CATEGORY_UNKNOWN), null /* result */, 0 /* priority */);
+        final ControllerFutureTask second = new ControllerFutureTask(
+                new ControllerTask(mTestController, mScreen, null /* metricsFeature */,
+                        METRICS_CATEGORY_UNKNOWN), null /* result */);
+
+        assertThat(first.compareTo(second)).isLessThan(0);
+        assertThat(second.compareTo(first)).isGreaterThan(0);
+    }
+
 
     static class TestPreferenceController extends BasePreferenceController {
         TestPreferenceController(Context context, String preferenceKey) {
@@ -23,6 +23,7 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 
 import android.content.Context;
+import android.os.SystemClock;
 
 import androidx.preference.Preference;
 import androidx.preference.PreferenceManager;
@@ -35,6 +36,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
 
 @RunWith(RobolectricTestRunner.class)
 public class ControllerTaskTest {
@@ -94,6 +96,38 @@ public class ControllerTaskTest {
         verify(mTestController).updateState(any(Preference.class));
     }
 
+    @Test
+    public void doRun_deadlineExceeded_updateStateOnMainThread() {
+        mTestController.setKey(KEY);
+        final Preference preference = new Preference(mContext);
+        preference.setKey(KEY);
+        mScreen.addPreference(preference);
+        mControllerTask.setDeadline(SystemClock.uptimeMillis() - 1);
+        ShadowLooper.pauseMainLooper();
+
+        mControllerTask.run();
+        verify(mTestController, never()).isAvailable();
+
+        ShadowLooper.unPauseMainLooper();
+        verify(mTestController).isAvailable();
+        verify(mTestController).updateState(preference);
+    }
+
+    @Test
+    public void doRun_cancelled_noRunUpdateState() {
+        mTestController.setKey(KEY);
+        final Preference preference = new Preference(mContext);
+        preference.setKey(KEY);
+        mScreen.addPreference(preference);
+        ShadowLooper.pauseMainLooper();
+
+        mControllerTask.run();
+        mControllerTask.cancel();
+        ShadowLooper.unPauseMainLooper();
+
+        verify(mTestController, never()).updateState(any(Preference.class));
+    }
+
     static class TestPreferenceController extends AbstractPreferenceController {
         private boolean mAvailable;
         private String mKey;
@@ -40,6 +40,7 @@ import android.os.Bundle;
 import android.util.FeatureFlagUtils;
 
 import androidx.preference.Preference;
+import androidx.preference.PreferenceCategory;
 import androidx.preference.PreferenceFragmentCompat;
 import androidx.preference.PreferenceManager;
 import androidx.preference.PreferenceScreen;
@@ -366,6 +367,28 @@ public class DashboardFragmentTest {
         verify(testFragment, never()).updatePreferenceStatesInParallel();
     }
 
+    @Test
+    public void getPreferenceRanks_nestedPreferences_rankedInDisplayOrder() {
+        final Context context = RuntimeEnvironment.application;
+        final PreferenceManager preferenceManager = new PreferenceManager(context);
+        final PreferenceScreen screen = preferenceManager.createPreferenceScreen(context);
+        final Preference first = new Preference(context);
+        first.setKey("first");
+        final PreferenceCategory category = new PreferenceCategory(context);
+        category.setKey("category");
+        final Preference nested = new Preference(context);
+        nested.setKey("nested");
+        screen.addPreference(first);
+        screen.addPreference(category);
+        category.addPreference(nested);
+
+        final Map<String, Integer> ranks = DashboardFragment.getPreferenceRanks(screen);
+
+        assertThat(ranks.get("first")).isEqualTo(0);
+        assertThat(ranks.get("category")).isEqualTo(1);
+        assertThat(ranks.get("nested")).isEqualTo(2);
+    }
+
     public static class TestPreferenceController extends AbstractPreferenceController
             implements PreferenceControllerMixin {
 
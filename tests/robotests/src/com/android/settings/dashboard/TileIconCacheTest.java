@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.dashboard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.util.Pair;
+import android.view.ContextThemeWrapper;
+
+import com.android.settings.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class TileIconCacheTest {
+
+    private Context mContext;
+    private TileIconCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new TileIconCache();
+    }
+
+    @Test
+    public void loadDrawable_resourceIcon_shouldBeCached() {
+        final Icon icon = Icon.createWithResource(mContext, R.drawable.ic_settings_about);
+
+        final Drawable first = mCache.loadDrawable(mContext, icon);
+        final Drawable second = mCache.loadDrawable(mContext, icon);
+
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(mCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void loadDrawable_bitmapIcon_shouldNotBeCached() {
+        final Icon icon = Icon.createWithBitmap(Bitmap.createBitmap(1, 1, Bitmap.Config.RGB_565));
+
+        assertThat(mCache.loadDrawable(mContext, icon)).isNotNull();
+        assertThat(mCache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void getKey_differentTint_shouldBeDifferent() {
+        final Icon icon = Icon.createWithResource(mContext, R.drawable.ic_settings_about);
+        final String untintedKey = TileIconCache.getKey(mContext, icon);
+        icon.setTint(Color.RED);
+
+        assertThat(TileIconCache.getKey(mContext, icon)).isNotEqualTo(untintedKey);
+    }
+
+    @Test
+    public void getKey_differentUiMode_shouldBeDifferent() {
+        final Icon icon = Icon.createWithResource(mContext, R.drawable.ic_settings_about);
+        final Configuration config = new Configuration(mContext.getResources().getConfiguration());
+        config.uiMode = Configuration.UI_MODE_NIGHT_YES | Configuration.UI_MODE_TYPE_NORMAL;
+        final Context nightContext = mContext.createConfigurationContext(config);
+        config.uiMode = Configuration.UI_MODE_NIGHT_NO | Configuration.UI_MODE_TYPE_NORMAL;
+        final Context dayContext = mContext.createConfigurationContext(config);
+
+        assertThat(TileIconCache.getKey(nightContext, icon))
+                .isNotEqualTo(TileIconCache.getKey(dayContext, icon));
+    }
+
+    @Test
+    public void getKey_differentTheme_shouldBeDifferent() {
+        final Icon icon = Icon.createWithResource(mContext, R.drawable.ic_settings_about);
+        final Context themedContext = new ContextThemeWrapper(mContext, R.style.Theme_Settings);
+        final Context otherThemedContext =
+                new ContextThemeWrapper(mContext, R.style.Theme_SubSettings);
+
+        assertThat(TileIconCache.getKey(themedContext, icon))
+                .isNotEqualTo(TileIconCache.getKey(otherThemedContext, icon));
+    }
+
+    @Test
+    public void clear_shouldDropIconsAndUriIcons() {
+        mCache.loadDrawable(mContext,
+                Icon.createWithResource(mContext, R.drawable.ic_settings_about));
+        mCache.putUriIcon("content://test/icon", Pair.create("pkg", 1));
+
+        mCache.clear();
+
+        assertThat(mCache.size()).isEqualTo(0);
+        assertThat(mCache.getUriIcon("content://test/icon")).isNull();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.TrafficStats.UID_REMOVED;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.pm.UserInfo;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+
+import com.android.settingslib.AppItem;
+import com.android.settingslib.net.UidDetailProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppDataUsageAggregatorTest {
+
+    private static final int CURRENT_USER = 0;
+    private static final int MANAGED_USER = 10;
+    private static final int OTHER_USER = 11;
+    private static final int APP_ID = Process.FIRST_APPLICATION_UID + 1;
+
+    @Mock
+    private UserManager mUserManager;
+    private AppDataUsageAggregator mAggregator;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mAggregator = new AppDataUsageAggregator(CURRENT_USER,
+                Arrays.asList(UserHandle.of(CURRENT_USER), UserHandle.of(MANAGED_USER)),
+                mUserManager);
+    }
+
+    @Test
+    public void build_sameUid_shouldAccumulate() {
+        final int uid = UserHandle.getUid(CURRENT_USER, APP_ID);
+        mAggregator.add(uid, 100);
+        mAggregator.add(uid, 50);
+
+        final AppDataUsageAggregator.Result result = mAggregator.build(new int[0]);
+
+        assertThat(result.items).hasSize(1);
+        assertThat(result.items.get(0).key).isEqualTo(uid);
+        assertThat(result.items.get(0).total).isEqualTo(150);
+        assertThat(result.largest).isEqualTo(150);
+    }
+
+    @Test
+    public void build_managedProfileUid_shouldAlsoCountForProfile() {
+        final int uid = UserHandle.getUid(MANAGED_USER, APP_ID);
+        mAggregator.add(uid, 100);
+
+        final AppDataUsageAggregator.Result result = mAggregator.build(new int[0]);
+
+        assertThat(result.items).hasSize(2);
+        final AppItem userItem = findItem(result, UidDetailProvider.buildKeyForUser(MANAGED_USER));
+        assertThat(userItem.category).isEqualTo(AppItem.CATEGORY_USER);
+        assertThat(userItem.total).isEqualTo(100);
+        assertThat(userItem.uids.get(uid)).isTrue();
+    }
+
+    @Test
+    public void build_otherUsers_shouldCollapseByUser() {
+        final UserInfo otherUser = new UserInfo();
+        when(mUserManager.getUserInfo(OTHER_USER)).thenReturn(otherUser);
+        mAggregator.add(UserHandle.getUid(OTHER_USER, APP_ID), 100);
+        mAggregator.add(UserHandle.getUid(OTHER_USER, APP_ID + 1), 100);
+        mAggregator.add(UserHandle.getUid(12, APP_ID), 10);
+
+        final AppDataUsageAggregator.Result result = mAggregator.build(new int[0]);
+
+        assertThat(findItem(result, UidDetailProvider.buildKeyForUser(OTHER_USER)).total)
+                .isEqualTo(200);
+        assertThat(findItem(result, UID_REMOVED).total).isEqualTo(10);
+        // User lookups are done once per user.
+        verify(mUserManager, times(2)).getUserInfo(anyInt());
+    }
+
+    @Test
+    public void build_systemUid_shouldCollapseToSystem() {
+        mAggregator.add(Process.SYSTEM_UID, 10);
+        mAggregator.add(Process.PHONE_UID, 20);
+
+        final AppDataUsageAggregator.Result result = mAggregator.build(new int[0]);
+
+        assertThat(result.items).hasSize(1);
+        assertThat(result.items.get(0).key).isEqualTo(Process.SYSTEM_UID);
+        assertThat(result.items.get(0).total).isEqualTo(30);
+    }
+
+    @Test
+    public void build_restrictedUidWithoutUsage_shouldBeAdded() {
+        final int uid = UserHandle.getUid(CURRENT_USER, APP_ID);
+
+        final AppDataUsageAggregator.Result result = mAggregator.build(new int[] {uid});
+
+        assertThat(result.items).hasSize(1);
+        assertThat(result.items.get(0).restricted).isTrue();
+        assertThat(result.items.get(0).total).isEqualTo(-1);
+    }
+
+    @Test
+    public void build_shouldSortByUsage() {
+        mAggregator.add(UserHandle.getUid(CURRENT_USER, APP_ID), 10);
+        mAggregator.add(UserHandle.getUid(CURRENT_USER, APP_ID + 1), 1000);
+
+        final AppDataUsageAggregator.Result result = mAggregator.build(new int[0]);
+
+        assertThat(result.items.get(0).total).isEqualTo(1000);
+        assertThat(result.items.get(1).total).isEqualTo(10);
+    }
+
+    private static AppItem findItem(AppDataUsageAggregator.Result result, int key) {
+        for (AppItem item : result.items) {
+            if (item.key == key) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
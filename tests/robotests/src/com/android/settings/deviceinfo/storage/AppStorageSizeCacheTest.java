@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.util.ArraySet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppStorageSizeCacheTest {
+
+    private static final String UUID = "uuid";
+    private static final String PACKAGE_NAME = "com.android.test";
+    private static final long LAST_UPDATE_TIME = 100L;
+
+    @Mock
+    private CachedStorageValuesHelper.Clock mClock;
+    private Context mContext;
+    private AppStorageSizeCache mCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mCache = new AppStorageSizeCache(mContext);
+        mCache.mClock = mClock;
+        when(mClock.getCurrentTime()).thenReturn(10000L);
+    }
+
+    @Test
+    public void get_samePackageVersion_shouldReturnEntry() {
+        mCache.put(UUID, 0, PACKAGE_NAME, createEntry());
+
+        final AppStorageSizeCache.Entry entry = mCache.get(UUID, 0, PACKAGE_NAME,
+                LAST_UPDATE_TIME);
+
+        assertThat(entry.codeBytes).isEqualTo(1L);
+        assertThat(entry.dataBytes).isEqualTo(10L);
+    }
+
+    @Test
+    public void get_packageUpdated_shouldReturnNull() {
+        mCache.put(UUID, 0, PACKAGE_NAME, createEntry());
+
+        assertThat(mCache.get(UUID, 0, PACKAGE_NAME, LAST_UPDATE_TIME + 1)).isNull();
+    }
+
+    @Test
+    public void get_otherUser_shouldReturnNull() {
+        mCache.put(UUID, 0, PACKAGE_NAME, createEntry());
+
+        assertThat(mCache.get(UUID, 10, PACKAGE_NAME, LAST_UPDATE_TIME)).isNull();
+    }
+
+    @Test
+    public void get_entryTooOld_shouldReturnNull() {
+        mCache.put(UUID, 0, PACKAGE_NAME, createEntry());
+        when(mClock.getCurrentTime()).thenReturn(10000L + TimeUnit.MINUTES.toMillis(5));
+
+        assertThat(mCache.get(UUID, 0, PACKAGE_NAME, LAST_UPDATE_TIME)).isNull();
+    }
+
+    @Test
+    public void retain_uninstalledPackage_shouldBeRemoved() {
+        mCache.put(UUID, 0, PACKAGE_NAME, createEntry());
+
+        mCache.retain(UUID, 0, new ArraySet<>());
+
+        assertThat(mCache.get(UUID, 0, PACKAGE_NAME, LAST_UPDATE_TIME)).isNull();
+    }
+
+    @Test
+    public void save_shouldBeReadByNewInstance() {
+        mCache.put(UUID, 0, PACKAGE_NAME, createEntry());
+        mCache.save();
+
+        final AppStorageSizeCache cache = new AppStorageSizeCache(mContext);
+        cache.mClock = mClock;
+        final AppStorageSizeCache.Entry entry = cache.get(UUID, 0, PACKAGE_NAME,
+                LAST_UPDATE_TIME);
+
+        assertThat(entry.cacheBytes).isEqualTo(100L);
+        assertThat(entry.cacheQuota).isEqualTo(1000L);
+    }
+
+    private static AppStorageSizeCache.Entry createEntry() {
+        final AppStorageSizeCache.Entry entry = new AppStorageSizeCache.Entry();
+        entry.lastUpdateTime = LAST_UPDATE_TIME;
+        entry.codeBytes = 1L;
+        entry.dataBytes = 10L;
+        entry.cacheBytes = 100L;
+        entry.cacheQuota = 1000L;
+        return entry;
+    }
+}
@@ -329,6 +329,48 @@ public class StorageItemPreferenceControllerTest {
         assertThat(files.getSummary().toString()).isEqualTo("0.05 GB");
     }
 
+    @Test
+    @Config(shadows = ShadowUserManager.class)
+    public void testPartialMeasurementDoesNotUpdateSystem() {
+        final StorageItemPreference audio = new StorageItemPreference(mContext);
+        final StorageItemPreference image = new StorageItemPreference(mContext);
+        final StorageItemPreference games = new StorageItemPreference(mContext);
+        final StorageItemPreference movies = new StorageItemPreference(mContext);
+        final StorageItemPreference apps = new StorageItemPreference(mContext);
+        final StorageItemPreference system = new StorageItemPreference(mContext);
+        final StorageItemPreference files = new StorageItemPreference(mContext);
+        final PreferenceScreen screen = mock(PreferenceScreen.class);
+        when(screen.findPreference(eq(StorageItemPreferenceController.GAME_KEY)))
+            .thenReturn(games);
+        when(screen.findPreference(eq(StorageItemPreferenceController.AUDIO_KEY)))
+            .thenReturn(audio);
+        when(screen.findPreference(eq(StorageItemPreferenceController.PHOTO_KEY)))
+            .thenReturn(image);
+        when(screen.findPreference(eq(StorageItemPreferenceController.FILES_KEY)))
+            .thenReturn(files);
+        when(screen.findPreference(eq(StorageItemPreferenceController.MOVIES_KEY)))
+            .thenReturn(movies);
+        when(screen.findPreference(eq(StorageItemPreferenceController.SYSTEM_KEY)))
+            .thenReturn(system);
+        when(screen.findPreference(eq(StorageItemPreferenceController.OTHER_APPS_KEY)))
+            .thenReturn(apps);
+        mController.displayPreference(screen);
+        final CharSequence systemSummary = system.getSummary();
+
+        mController.setUsedSize(MEGABYTE_IN_BYTES * 970);
+        final StorageAsyncLoader.AppsStorageResult result =
+            new StorageAsyncLoader.AppsStorageResult();
+        result.gamesSize = MEGABYTE_IN_BYTES * 80;
+        result.externalStats =
+                new StorageStatsSource.ExternalStorageStats(0, 0, 0, 0, 0);
+        final SparseArray<StorageAsyncLoader.AppsStorageResult> results = new SparseArray<>();
+        results.put(0, result);
+        mController.onPartialLoadFinished(results, 0);
+
+        assertThat(games.getSummary().toString()).isEqualTo("0.08 GB");
+        assertThat(system.getSummary()).isEqualTo(systemSummary);
+    }
+
     @Test
     public void settingUserIdAppliesNewIcons() {
         final StorageItemPreference audio = spy(new StorageItemPreference(mContext));
@@ -24,6 +24,8 @@ import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import android.os.Process;
 import android.os.UserManager;
@@ -177,4 +179,48 @@ public class BatteryEntryTest {
         createBatteryEntryForApp();
         assertThat(BatteryEntry.sUidCache).isEmpty(); // check if cache is clear
     }
+
+    @Test
+    public void getQuickNameIconForUid_sameUidTwice_shouldQueueFirstEntryOnce() {
+        BatteryEntry.stopRequestQueue();
+
+        final BatteryEntry first = createBatteryEntryForApp();
+        createBatteryEntryForApp();
+
+        assertThat(BatteryEntry.sRequestQueue).hasSize(1);
+        assertThat(BatteryEntry.sRequestQueue.get(APP_UID)).isSameAs(first);
+        BatteryEntry.stopRequestQueue();
+        assertThat(BatteryEntry.sRequestQueue).isEmpty();
+    }
+
+    @Test
+    public void updateSameUidEntries_shouldCopyLoadedNameAndIcon() {
+        BatteryEntry.stopRequestQueue();
+        final BatteryEntry first = createBatteryEntryForApp();
+        final BatteryEntry second = createBatteryEntryForApp();
+        final Drawable icon = new ColorDrawable();
+        first.name = APP_LABEL;
+        first.icon = icon;
+        first.defaultPackageName = APP_DEFAULT_PACKAGE_NAME;
+
+        first.updateSameUidEntries();
+
+        assertThat(second.name).isEqualTo(APP_LABEL);
+        assertThat(second.icon).isSameAs(icon);
+        assertThat(second.defaultPackageName).isEqualTo(APP_DEFAULT_PACKAGE_NAME);
+        BatteryEntry.stopRequestQueue();
+    }
+
+    @Test
+    public void uidCache_overMaxSize_shouldEvictEldest() {
+        BatteryEntry.clearUidCache();
+
+        for (int i = 0; i <= BatteryEntry.MAX_UID_CACHE_SIZE; i++) {
+            BatteryEntry.sUidCache.put(Integer.toString(i), new BatteryEntry.UidToDetail());
+        }
+
+        assertThat(BatteryEntry.sUidCache).hasSize(BatteryEntry.MAX_UID_CACHE_SIZE);
+        assertThat(BatteryEntry.sUidCache).doesNotContainKey("0");
+        BatteryEntry.clearUidCache();
+    }
 }
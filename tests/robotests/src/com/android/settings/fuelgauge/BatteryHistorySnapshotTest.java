@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.os.BatteryStats;
+import android.os.BatteryStats.HistoryItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.lang.ref.SoftReference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatteryHistorySnapshotTest {
+
+    private static final long WALL_TIME = 10000000L;
+
+    private static final byte[] CMDS = {HistoryItem.CMD_CURRENT_TIME, HistoryItem.CMD_UPDATE,
+            HistoryItem.CMD_UPDATE, HistoryItem.CMD_START, HistoryItem.CMD_UPDATE};
+    private static final long[] TIMES = {0, 1000, 2000, 2500, 3000};
+    private static final byte[] LEVELS = {100, 99, 98, 98, 97};
+
+    @Mock
+    private BatteryStats mBatteryStats;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        BatteryHistorySnapshot.clear();
+        doAnswer(invocation -> {
+            doAnswer(new HistoryAnswer()).when(mBatteryStats).getNextHistoryLocked(
+                    any(HistoryItem.class));
+            return true;
+        }).when(mBatteryStats).startIteratingHistoryLocked();
+    }
+
+    @After
+    public void tearDown() {
+        BatteryHistorySnapshot.clear();
+    }
+
+    @Test
+    public void parse_shouldReplayDataPointsAndGaps() {
+        final RecordingParser parser = new RecordingParser();
+
+        BatteryInfo.parse(mBatteryStats, parser);
+
+        assertThat(parser.mStartTime).isEqualTo(WALL_TIME);
+        assertThat(parser.mEndTime).isEqualTo(WALL_TIME + 3000);
+        assertThat(parser.mTimes).containsExactly(1000L, 2000L, 3000L).inOrder();
+        assertThat(parser.mLevels).containsExactly((byte) 99, (byte) 98, (byte) 97).inOrder();
+        assertThat(parser.mGaps).isEqualTo(2);
+        assertThat(parser.mDone).isTrue();
+    }
+
+    @Test
+    public void parse_twiceWithSameStats_shouldDecodeOnce() {
+        BatteryInfo.parse(mBatteryStats, new RecordingParser());
+        final RecordingParser parser = new RecordingParser();
+
+        BatteryInfo.parse(mBatteryStats, parser);
+
+        verify(mBatteryStats, times(1)).startIteratingHistoryLocked();
+        assertThat(parser.mTimes).containsExactly(1000L, 2000L, 3000L).inOrder();
+    }
+
+    @Test
+    public void parse_snapshotCollected_shouldDecodeAgain() {
+        BatteryInfo.parse(mBatteryStats, new RecordingParser());
+        // Simulates the snapshot being dropped under memory pressure.
+        final SoftReference<BatteryHistorySnapshot> snapshot =
+                ReflectionHelpers.getStaticField(BatteryHistorySnapshot.class, "sSnapshot");
+        snapshot.clear();
+        final RecordingParser parser = new RecordingParser();
+
+        BatteryInfo.parse(mBatteryStats, parser);
+
+        verify(mBatteryStats, times(2)).startIteratingHistoryLocked();
+        assertThat(parser.mTimes).containsExactly(1000L, 2000L, 3000L).inOrder();
+    }
+
+    @Test
+    public void decode_manyRecords_shouldGrowColumns() {
+        doAnswer(invocation -> {
+            doAnswer(new UpdatesAnswer(1000)).when(mBatteryStats).getNextHistoryLocked(
+                    any(HistoryItem.class));
+            return true;
+        }).when(mBatteryStats).startIteratingHistoryLocked();
+
+        final BatteryHistorySnapshot snapshot = BatteryHistorySnapshot.decode(mBatteryStats);
+
+        assertThat(snapshot.mSize).isEqualTo(1000);
+    }
+
+    private static class UpdatesAnswer implements Answer<Boolean> {
+        private final int mCount;
+        private int mIndex;
+
+        UpdatesAnswer(int count) {
+            mCount = count;
+        }
+
+        @Override
+        public Boolean answer(InvocationOnMock invocation) {
+            if (mIndex == mCount) {
+                return false;
+            }
+            final HistoryItem record = invocation.getArgument(0);
+            record.cmd = HistoryItem.CMD_UPDATE;
+            record.time = mIndex * 1000L;
+            mIndex++;
+            return true;
+        }
+    }
+
+    private static class HistoryAnswer implements Answer<Boolean> {
+        private int mIndex;
+
+        @Override
+        public Boolean answer(InvocationOnMock invocation) {
+            if (mIndex == CMDS.length) {
+                return false;
+            }
+            final HistoryItem record = invocation.getArgument(0);
+            record.cmd = CMDS[mIndex];
+            record.time = TIMES[mIndex];
+            record.batteryLevel = LEVELS[mIndex];
+            if (record.cmd == HistoryItem.CMD_CURRENT_TIME) {
+                record.currentTime = WALL_TIME;
+            }
+            mIndex++;
+            return true;
+        }
+    }
+
+    private static class RecordingParser implements BatteryInfo.BatteryDataParser {
+        private final List<Long> mTimes = new ArrayList<>();
+        private final List<Byte> mLevels = new ArrayList<>();
+        private long mStartTime;
+        private long mEndTime;
+        private int mGaps;
+        private boolean mDone;
+
+        @Override
+        public void onParsingStarted(long startTime, long endTime) {
+            mStartTime = startTime;
+            mEndTime = endTime;
+        }
+
+        @Override
+        public void onDataPoint(long time, HistoryItem record) {
+            mTimes.add(time);
+            mLevels.add(record.batteryLevel);
+        }
+
+        @Override
+        public void onDataGap() {
+            mGaps++;
+        }
+
+        @Override
+        public void onParsingDone() {
+            mDone = true;
+        }
+    }
+}
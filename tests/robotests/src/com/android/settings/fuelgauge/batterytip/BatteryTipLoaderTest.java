@@ -21,10 +21,14 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import android.content.Context;
 import android.content.Intent;
 import android.os.PowerManager;
+import android.provider.Settings;
 
 import com.android.internal.os.BatteryStatsHelper;
 import com.android.settings.fuelgauge.BatteryInfo;
@@ -80,6 +84,8 @@ public class BatteryTipLoaderTest {
         doReturn(mBatteryInfo).when(mBatteryUtils).getBatteryInfo(any(), any());
         mBatteryTipLoader = new BatteryTipLoader(mContext, mBatteryStatsHelper);
         mBatteryTipLoader.mBatteryUtils = mBatteryUtils;
+        // Detectors left to the executor are run by the loading thread.
+        mBatteryTipLoader.mBatteryTipCache = new BatteryTipCache(mContext, runnable -> {});
     }
 
     @After
@@ -97,4 +103,60 @@ public class BatteryTipLoaderTest {
             assertThat(batteryTips.get(i).getType()).isEqualTo(TIP_ORDER[i]);
         }
     }
+
+    @Test
+    public void testLoadBackground_sameStatsSnapshot_detectOnce() {
+        final List<BatteryTip> batteryTips = mBatteryTipLoader.loadInBackground();
+        final List<BatteryTip> cachedTips = mBatteryTipLoader.loadInBackground();
+
+        verify(mBatteryUtils, times(1)).getBatteryInfo(any(), any());
+        assertThat(cachedTips).hasSize(batteryTips.size());
+        for (int i = 0, size = batteryTips.size(); i < size; i++) {
+            assertThat(cachedTips.get(i)).isNotSameInstanceAs(batteryTips.get(i));
+            assertThat(cachedTips.get(i).getType()).isEqualTo(batteryTips.get(i).getType());
+            assertThat(cachedTips.get(i).getState()).isEqualTo(batteryTips.get(i).getState());
+        }
+    }
+
+    @Test
+    public void testLoadBackground_afterClear_detectAgain() {
+        mBatteryTipLoader.loadInBackground();
+
+        mBatteryTipLoader.mBatteryTipCache.clear();
+        mBatteryTipLoader.loadInBackground();
+
+        verify(mBatteryUtils, times(2)).getBatteryInfo(any(), any());
+    }
+
+    @Test
+    public void testLoadBackground_newHistoryRecord_detectAgain() {
+        mBatteryTipLoader.loadInBackground();
+
+        when(mBatteryStatsHelper.getStats().getHistoryUsedSize()).thenReturn(1);
+        mBatteryTipLoader.loadInBackground();
+
+        verify(mBatteryUtils, times(2)).getBatteryInfo(any(), any());
+    }
+
+    @Test
+    public void testLoadBackground_adaptiveBatteryChanged_detectAgain() {
+        mBatteryTipLoader.loadInBackground();
+
+        Settings.Global.putInt(mContext.getContentResolver(),
+                Settings.Global.ADAPTIVE_BATTERY_MANAGEMENT_ENABLED, 0);
+        mBatteryTipLoader.loadInBackground();
+
+        verify(mBatteryUtils, times(2)).getBatteryInfo(any(), any());
+    }
+
+    @Test
+    public void testLoadBackground_tipConstantsChanged_detectAgain() {
+        mBatteryTipLoader.loadInBackground();
+
+        Settings.Global.putString(mContext.getContentResolver(),
+                Settings.Global.BATTERY_TIP_CONSTANTS, "low_battery_enabled=false");
+        mBatteryTipLoader.loadInBackground();
+
+        verify(mBatteryUtils, times(2)).getBatteryInfo(any(), any());
+    }
 }
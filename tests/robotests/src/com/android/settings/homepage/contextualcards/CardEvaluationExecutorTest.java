@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+@RunWith(RobolectricTestRunner.class)
+public class CardEvaluationExecutorTest {
+
+    private static final Uri TEST_SLICE_URI = Uri.parse("content://test/test");
+
+    private Context mContext;
+    private CardEvaluationExecutor mExecutor;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mExecutor = new CardEvaluationExecutor(mContext);
+    }
+
+    @Test
+    public void invokeAll_recordsLatencyPerKey() throws Exception {
+        final List<Callable<String>> tasks = Arrays.asList(() -> "a", () -> "b");
+
+        final List<Future<String>> futures = mExecutor.invokeAll(Arrays.asList("key1", "key2"),
+                tasks, 1000 /* timeoutMs */);
+
+        assertThat(futures.get(0).get()).isEqualTo("a");
+        assertThat(futures.get(1).get()).isEqualTo("b");
+        assertThat(mExecutor.getLatencyStats("key1").mCount).isEqualTo(1);
+        assertThat(mExecutor.getLatencyStats("key2").mCount).isEqualTo(1);
+    }
+
+    @Test
+    public void setIneligible_isKnownIneligible() {
+        mExecutor.setIneligible(TEST_SLICE_URI);
+
+        assertThat(mExecutor.isKnownIneligible(TEST_SLICE_URI)).isTrue();
+        assertThat(mExecutor.getCachedEligibleCard(TEST_SLICE_URI)).isNull();
+    }
+
+    @Test
+    public void setEligible_clearsIneligibleState() {
+        final ContextualCard card = new ContextualCard.Builder()
+                .setName("test_card")
+                .setCardType(ContextualCard.CardType.SLICE)
+                .setSliceUri(TEST_SLICE_URI)
+                .build();
+        mExecutor.setIneligible(TEST_SLICE_URI);
+
+        mExecutor.setEligible(TEST_SLICE_URI, card);
+
+        assertThat(mExecutor.isKnownIneligible(TEST_SLICE_URI)).isFalse();
+        assertThat(mExecutor.getCachedEligibleCard(TEST_SLICE_URI)).isEqualTo(card);
+    }
+}
@@ -23,6 +23,8 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import android.content.Context;
 import android.net.Uri;
@@ -53,6 +55,7 @@ public class EligibleCardCheckerTest {
         mContext = RuntimeEnvironment.application;
         mEligibleCardChecker =
                 spy(new EligibleCardChecker(mContext, getContextualCard(TEST_SLICE_URI)));
+        mEligibleCardChecker.mEvaluator = new CardEvaluationExecutor(mContext);
         SliceProvider.setSpecs(SliceLiveData.SUPPORTED_SPECS);
     }
 
@@ -125,6 +128,28 @@ public class EligibleCardCheckerTest {
         assertThat(mEligibleCardChecker.mCard.getSlice()).isNotNull();
     }
 
+    @Test
+    public void isCardEligibleToDisplay_failedBefore_doesNotBindAgain() {
+        doReturn(null).when(mEligibleCardChecker).bindSlice(any(Uri.class));
+        mEligibleCardChecker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI));
+
+        assertThat(mEligibleCardChecker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI)))
+                .isFalse();
+        verify(mEligibleCardChecker, times(1)).bindSlice(any(Uri.class));
+    }
+
+    @Test
+    public void isCardEligibleToDisplay_eligibleBefore_reusesSlice() {
+        final ContextualWifiSlice wifiSlice = new ContextualWifiSlice(mContext);
+        final Slice slice = wifiSlice.getSlice();
+        doReturn(slice).when(mEligibleCardChecker).bindSlice(any(Uri.class));
+        mEligibleCardChecker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI));
+
+        assertThat(mEligibleCardChecker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI)))
+                .isTrue();
+        verify(mEligibleCardChecker, times(1)).bindSlice(any(Uri.class));
+    }
+
     private ContextualCard getContextualCard(Uri sliceUri) {
         return new ContextualCard.Builder()
                 .setName("test_card")
@@ -22,6 +22,8 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.android.settings.core.AvailabilityCache;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -54,6 +56,8 @@ public class NetworkResetPreferenceControllerTest {
         assertThat(mController.isAvailable()).isFalse();
 
         when(mRestrictionChecker.hasUserRestriction()).thenReturn(false);
+        // The availability is cached until the user restriction changes.
+        AvailabilityCache.getInstance(RuntimeEnvironment.application).clear();
 
         assertThat(mController.isAvailable()).isTrue();
         verify(mRestrictionChecker, never()).isRestrictionEnforcedByAdmin();
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification.app;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.NotificationChannel;
+import android.app.NotificationChannelGroup;
+import android.content.pm.ParceledListSlice;
+import android.os.SystemClock;
+
+import com.android.settings.notification.NotificationBackend;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class ChannelGroupCacheTest {
+
+    private static final String PKG = "pkg";
+    private static final int UID = 1234;
+
+    @Mock
+    private NotificationBackend mBackend;
+
+    private List<Runnable> mQueuedTasks;
+    private ChannelGroupCache mCache;
+    private List<List<NotificationChannelGroup>> mDelivered;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mQueuedTasks = new ArrayList<>();
+        mCache = new ChannelGroupCache(mQueuedTasks::add);
+        mDelivered = new ArrayList<>();
+        when(mBackend.getGroups(anyString(), anyInt()))
+                .thenAnswer(invocation -> createGroups("b", "a"));
+    }
+
+    @Test
+    public void getGroups_shouldDeliverSortedGroups() {
+        getGroups();
+        runQueuedTasks();
+
+        assertThat(mDelivered).hasSize(1);
+        assertThat(mDelivered.get(0).get(0).getId()).isEqualTo("a");
+    }
+
+    @Test
+    public void getGroups_whileLoading_shouldShareFetch() {
+        getGroups();
+        getGroups();
+
+        assertThat(mQueuedTasks).hasSize(1);
+        runQueuedTasks();
+
+        assertThat(mDelivered).hasSize(2);
+    }
+
+    @Test
+    public void getGroups_freshSnapshot_shouldNotFetch() {
+        getGroups();
+        runQueuedTasks();
+
+        getGroups();
+
+        assertThat(mQueuedTasks).isEmpty();
+        assertThat(mDelivered).hasSize(2);
+        verify(mBackend, times(1)).getGroups(PKG, UID);
+    }
+
+    @Test
+    public void getGroups_staleUnchangedSnapshot_shouldDeliverOnce() {
+        getGroups();
+        runQueuedTasks();
+        // Advances the Robolectric clock.
+        SystemClock.sleep(ChannelGroupCache.MAX_AGE_MS);
+
+        getGroups();
+        runQueuedTasks();
+
+        verify(mBackend, times(2)).getGroups(PKG, UID);
+        assertThat(mDelivered).hasSize(2);
+    }
+
+    @Test
+    public void getGroups_afterInvalidate_shouldFetch() {
+        getGroups();
+        runQueuedTasks();
+
+        mCache.invalidate(PKG, UID);
+        getGroups();
+
+        assertThat(mQueuedTasks).hasSize(1);
+    }
+
+    @Test
+    public void invalidate_duringFetch_shouldNotCacheResult() {
+        getGroups();
+        mCache.invalidate(PKG, UID);
+        runQueuedTasks();
+
+        getGroups();
+
+        assertThat(mQueuedTasks).hasSize(1);
+    }
+
+    private void getGroups() {
+        mCache.getGroups(mBackend, PKG, UID, mDelivered::add);
+    }
+
+    private void runQueuedTasks() {
+        final List<Runnable> tasks = new ArrayList<>(mQueuedTasks);
+        mQueuedTasks.clear();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private static ParceledListSlice<NotificationChannelGroup> createGroups(String... ids) {
+        final List<NotificationChannelGroup> groups = new ArrayList<>();
+        for (String id : ids) {
+            final NotificationChannelGroup group = new NotificationChannelGroup(id, id);
+            group.addChannel(new NotificationChannel(id + "_channel", id, 3));
+            groups.add(group);
+        }
+        return new ParceledListSlice<>(groups);
+    }
+}
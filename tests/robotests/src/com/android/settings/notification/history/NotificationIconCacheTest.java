@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification.history;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationIconCacheTest {
+
+    private NotificationIconCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new NotificationIconCache();
+    }
+
+    @Test
+    public void getIcon_shouldReturnNewDrawableEachTime() {
+        mCache.putIcon("key", new ColorDrawable(Color.RED));
+
+        final Drawable first = mCache.getIcon("key");
+        final Drawable second = mCache.getIcon("key");
+
+        assertThat(first).isNotNull();
+        assertThat(first).isNotSameAs(second);
+    }
+
+    @Test
+    public void getIcon_nullKey_shouldReturnNull() {
+        assertThat(mCache.getIcon(null)).isNull();
+    }
+
+    @Test
+    public void putIcon_overMaxEntries_shouldEvictLeastRecentlyUsed() {
+        for (int i = 0; i <= NotificationIconCache.MAX_ENTRIES; i++) {
+            mCache.putIcon("key" + i, new ColorDrawable(Color.RED));
+        }
+
+        assertThat(mCache.getIcon("key0")).isNull();
+        assertThat(mCache.getIcon("key" + NotificationIconCache.MAX_ENTRIES)).isNotNull();
+    }
+
+    @Test
+    public void invalidate_shouldDropIconsOfPackageOnly() {
+        final String key = NotificationIconCache.getSmallIconKey(
+                Icon.createWithResource("pkg", 1), "pkg", 0);
+        final String otherKey = NotificationIconCache.getSmallIconKey(
+                Icon.createWithResource("pkg.other", 1), "pkg.other", 0);
+        mCache.putIcon(key, new ColorDrawable(Color.RED));
+        mCache.putIcon(otherKey, new ColorDrawable(Color.RED));
+
+        mCache.invalidate("pkg");
+
+        assertThat(mCache.getIcon(key)).isNull();
+        assertThat(mCache.getIcon(otherKey)).isNotNull();
+    }
+
+    @Test
+    public void getSmallIconKey_resourceIcon_shouldBeKeyedByPackageAndUser() {
+        final Icon icon = Icon.createWithResource("pkg", 1);
+
+        assertThat(NotificationIconCache.getSmallIconKey(icon, "other", 0))
+                .isEqualTo(NotificationIconCache.getSmallIconKey(
+                        Icon.createWithResource("pkg", 1), "other", 0));
+        assertThat(NotificationIconCache.getSmallIconKey(icon, "other", 0))
+                .isNotEqualTo(NotificationIconCache.getSmallIconKey(icon, "other", 10));
+    }
+
+    @Test
+    public void getSmallIconKey_emptyResPackage_shouldUseNotificationPackage() {
+        final Icon icon = Icon.createWithResource("", 1);
+
+        assertThat(NotificationIconCache.getSmallIconKey(icon, "pkg1", 0))
+                .isNotEqualTo(NotificationIconCache.getSmallIconKey(icon, "pkg2", 0));
+    }
+
+    @Test
+    public void getSmallIconKey_bitmapIcon_shouldBeNull() {
+        final Icon icon = Icon.createWithBitmap(
+                Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888));
+
+        assertThat(NotificationIconCache.getSmallIconKey(icon, "pkg", 0)).isNull();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.fail;
+
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchIndexProviderExecutorTest {
+
+    private SearchIndexProviderExecutor mExecutor;
+    private List<SearchIndexableData> mBundles;
+
+    @Before
+    public void setUp() {
+        mExecutor = new SearchIndexProviderExecutor();
+        mBundles = Arrays.asList(
+                new SearchIndexableData(String.class, null /* provider */),
+                new SearchIndexableData(Integer.class, null /* provider */),
+                new SearchIndexableData(Long.class, null /* provider */));
+    }
+
+    @Test
+    public void execute_resultsDeliveredInBundleOrder() {
+        final List<String> results = new ArrayList<>();
+
+        mExecutor.execute("test", mBundles,
+                bundle -> {
+                    if (bundle.getTargetClass() == String.class) {
+                        Thread.sleep(50);
+                    }
+                    return Collections.singletonList(bundle.getTargetClass().getSimpleName());
+                },
+                (bundle, result) -> results.addAll(result),
+                (bundle, error) -> {
+                    throw new AssertionError(error);
+                });
+
+        assertThat(results).containsExactly("String", "Integer", "Long").inOrder();
+        assertThat(mExecutor.getProviderTimes()).containsKey("test/" + String.class.getName());
+    }
+
+    @Test
+    public void execute_providerThrows_errorHandledAndOthersDelivered() {
+        final List<String> results = new ArrayList<>();
+        final List<Class> failures = new ArrayList<>();
+
+        mExecutor.execute("test", mBundles,
+                bundle -> {
+                    if (bundle.getTargetClass() == Integer.class) {
+                        throw new IllegalStateException();
+                    }
+                    return Collections.singletonList(bundle.getTargetClass().getSimpleName());
+                },
+                (bundle, result) -> results.addAll(result),
+                (bundle, error) -> failures.add(bundle.getTargetClass()));
+
+        assertThat(results).containsExactly("String", "Long").inOrder();
+        assertThat(failures).containsExactly(Integer.class);
+    }
+
+    @Test
+    public void execute_errorHandlerThrows_remainingQueriesCancelled() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Class> completed = Collections.synchronizedList(new ArrayList<>());
+
+        try {
+            mExecutor.execute("test", mBundles,
+                    bundle -> {
+                        if (bundle.getTargetClass() == String.class) {
+                            throw new IllegalStateException();
+                        }
+                        release.await();
+                        completed.add(bundle.getTargetClass());
+                        return Collections.emptyList();
+                    },
+                    (bundle, result) -> {
+                    },
+                    (bundle, error) -> {
+                        throw new IllegalArgumentException(error);
+                    });
+            fail("Error handler should have thrown");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+        release.countDown();
+        Thread.sleep(100);
+
+        assertThat(completed).isEmpty();
+    }
+}
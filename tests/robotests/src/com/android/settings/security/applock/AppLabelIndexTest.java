@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2021 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.security.applock;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppLabelIndexTest {
+
+    private AppLockInfo mCamera;
+    private AppLockInfo mCalendar;
+    private AppLockInfo mMessages;
+    private AppLabelIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mCamera = createApp("Camera");
+        mCalendar = createApp("Calendar");
+        mMessages = createApp("Messages");
+        mIndex = new AppLabelIndex(Arrays.asList(mCamera, mCalendar, mMessages));
+    }
+
+    @Test
+    public void search_emptyQuery_shouldReturnAllApps() {
+        assertThat(mIndex.search("")).containsExactly(mCamera, mCalendar, mMessages).inOrder();
+    }
+
+    @Test
+    public void search_prefix_shouldReturnMatchesInIndexOrder() {
+        assertThat(mIndex.search("ca")).containsExactly(mCamera, mCalendar).inOrder();
+    }
+
+    @Test
+    public void search_substring_shouldMatchInsideLabels() {
+        assertThat(mIndex.search("ss")).containsExactly(mMessages);
+        assertThat(mIndex.search("en")).containsExactly(mCalendar);
+        assertThat(mIndex.search("a")).containsExactly(mCamera, mCalendar, mMessages).inOrder();
+    }
+
+    @Test
+    public void search_upperCaseQuery_shouldIgnoreCase() {
+        assertThat(mIndex.search("MERA")).containsExactly(mCamera);
+    }
+
+    @Test
+    public void search_noMatch_shouldReturnEmpty() {
+        assertThat(mIndex.search("phone")).isEmpty();
+        assertThat(mIndex.search("cameras")).isEmpty();
+    }
+
+    @Test
+    public void search_emptyIndex_shouldReturnEmpty() {
+        final List<AppLockInfo> apps = Arrays.asList();
+
+        assertThat(new AppLabelIndex(apps).search("a")).isEmpty();
+    }
+
+    private static AppLockInfo createApp(String label) {
+        final AppLockInfo info = mock(AppLockInfo.class);
+        when(info.getLabel()).thenReturn(label);
+        when(info.getSearchLabel()).thenReturn(label.toLowerCase());
+        return info;
+    }
+}
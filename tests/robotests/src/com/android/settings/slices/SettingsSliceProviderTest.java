@@ -33,6 +33,7 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -87,7 +88,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -149,7 +149,7 @@ public class SettingsSliceProviderTest {
 
         mProvider = spy(new SettingsSliceProvider());
         ShadowStrictMode.reset();
-        mProvider.mSliceWeakDataCache = new HashMap<>();
+        mProvider.mSliceDataCache = new SliceDataCache();
         mProvider.mSlicesDatabaseAccessor = new SlicesDatabaseAccessor(mContext);
         when(mProvider.getContext()).thenReturn(mContext);
 
@@ -184,7 +184,7 @@ public class SettingsSliceProviderTest {
         SliceTestUtils.insertSliceToDb(mContext, KEY);
 
         mProvider.loadSlice(INTENT_SLICE_URI);
-        SliceData data = mProvider.mSliceWeakDataCache.get(INTENT_SLICE_URI);
+        SliceData data = mProvider.mSliceDataCache.get(INTENT_SLICE_URI);
 
         assertThat(data.getKey()).isEqualTo(KEY);
         assertThat(data.getTitle()).isEqualTo(SliceTestUtils.FAKE_TITLE);
@@ -214,15 +214,80 @@ public class SettingsSliceProviderTest {
     }
 
     @Test
-    public void testLoadSlice_cachedEntryRemovedOnBuild() {
+    public void testLoadSlice_cachedEntryKeptOnBuild() {
         SliceData data = getDummyData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
-        SliceTestUtils.insertSliceToDb(mContext, data.getKey());
 
-        SliceData cachedData = mProvider.mSliceWeakDataCache.get(data.getUri());
+        SliceData cachedData = mProvider.mSliceDataCache.get(data.getUri());
 
-        assertThat(cachedData).isNull();
+        assertThat(cachedData).isSameAs(data);
+    }
+
+    @Test
+    public void loadSlices_shouldLoadAllUrisFromAccessor() {
+        final String otherKey = "other_key";
+        final Uri otherUri = new Uri.Builder().scheme(SCHEME_CONTENT)
+                .authority(SettingsSliceProvider.SLICE_AUTHORITY)
+                .appendPath(SettingsSlicesContract.PATH_SETTING_INTENT)
+                .appendPath(otherKey)
+                .build();
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        SliceTestUtils.insertSliceToDb(mContext, otherKey);
+
+        mProvider.loadSlices(Arrays.asList(INTENT_SLICE_URI, otherUri));
+
+        assertThat(mProvider.mSliceDataCache.get(INTENT_SLICE_URI).getKey()).isEqualTo(KEY);
+        assertThat(mProvider.mSliceDataCache.get(otherUri).getKey()).isEqualTo(otherKey);
+        verify(mProvider)
+                .registerIntentToUri(eq(FakeToggleController.INTENT_FILTER), eq(otherUri));
+    }
+
+    @Test
+    public void loadSlices_alreadyLoaded_shouldNotRegisterAgain() {
+        final String otherKey = "other_key";
+        final Uri otherUri = new Uri.Builder().scheme(SCHEME_CONTENT)
+                .authority(SettingsSliceProvider.SLICE_AUTHORITY)
+                .appendPath(SettingsSlicesContract.PATH_SETTING_INTENT)
+                .appendPath(otherKey)
+                .build();
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        SliceTestUtils.insertSliceToDb(mContext, otherKey);
+
+        mProvider.loadSlices(Arrays.asList(INTENT_SLICE_URI, otherUri));
+        mProvider.loadSlices(Arrays.asList(INTENT_SLICE_URI, otherUri));
+
+        verify(mProvider)
+                .registerIntentToUri(eq(FakeToggleController.INTENT_FILTER), eq(otherUri));
+    }
+
+    @Test
+    public void loadSlices_unpinnedSinceLoad_shouldRegisterAgain() {
+        final String otherKey = "other_key";
+        final Uri otherUri = new Uri.Builder().scheme(SCHEME_CONTENT)
+                .authority(SettingsSliceProvider.SLICE_AUTHORITY)
+                .appendPath(SettingsSlicesContract.PATH_SETTING_INTENT)
+                .appendPath(otherKey)
+                .build();
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        SliceTestUtils.insertSliceToDb(mContext, otherKey);
+        mProvider.loadSlices(Arrays.asList(INTENT_SLICE_URI, otherUri));
+
+        mProvider.onSliceUnpinned(otherUri);
+        mProvider.loadSlices(Arrays.asList(INTENT_SLICE_URI, otherUri));
+
+        verify(mProvider, times(2))
+                .registerIntentToUri(eq(FakeToggleController.INTENT_FILTER), eq(otherUri));
+    }
+
+    @Test
+    public void onConfigurationChanged_shouldClearCache() {
+        SliceData data = getDummyData();
+        mProvider.mSliceDataCache.put(data.getUri(), data);
+
+        mProvider.onConfigurationChanged(mContext.getResources().getConfiguration());
+
+        assertThat(mProvider.mSliceDataCache.get(data.getUri())).isNull();
     }
 
     @Test
@@ -230,7 +295,7 @@ public class SettingsSliceProviderTest {
         ShadowThreadUtils.setIsMainThread(true);
         final StrictMode.ThreadPolicy oldThreadPolicy = StrictMode.getThreadPolicy();
         SliceData data = getDummyData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         final StrictMode.ThreadPolicy newThreadPolicy = StrictMode.getThreadPolicy();
@@ -244,7 +309,7 @@ public class SettingsSliceProviderTest {
         ShadowThreadUtils.setIsMainThread(false);
 
         SliceData data = getDummyData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         assertThat(ShadowStrictMode.isThreadPolicyOverridden()).isTrue();
@@ -272,7 +337,7 @@ public class SettingsSliceProviderTest {
     public void onBindSlice_nightModeChanged_shouldReloadTheme() {
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
         final SliceData data = getDummyData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_YES;
@@ -285,7 +350,7 @@ public class SettingsSliceProviderTest {
     public void onBindSlice_nightModeNotChanged_shouldNotReloadTheme() {
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
         SliceData data = getDummyData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
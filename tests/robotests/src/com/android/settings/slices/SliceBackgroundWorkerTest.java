@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Looper;
+
+import com.android.settings.slices.SliceBackgroundWorker.NotifySliceChangeHandler;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class SliceBackgroundWorkerTest {
+
+    private static final Uri URI_A = Uri.parse("content://com.android.settings.slices/action/a");
+    private static final Uri URI_B = Uri.parse("content://com.android.settings.slices/action/b");
+
+    @Mock
+    private Context mContext;
+    @Mock
+    private ContentResolver mResolver;
+    @Captor
+    private ArgumentCaptor<Collection<Uri>> mUrisCaptor;
+
+    private TestWorker mWorkerA;
+    private TestWorker mWorkerB;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mContext.getContentResolver()).thenReturn(mResolver);
+        // Drive the handler from the paused main looper instead of its own thread.
+        ShadowLooper.pauseMainLooper();
+        ReflectionHelpers.setStaticField(NotifySliceChangeHandler.class, "sHandler",
+                new NotifySliceChangeHandler(Looper.getMainLooper()));
+        mWorkerA = new TestWorker(mContext, URI_A);
+        mWorkerB = new TestWorker(mContext, URI_B);
+    }
+
+    @After
+    public void tearDown() {
+        ReflectionHelpers.setStaticField(NotifySliceChangeHandler.class, "sHandler", null);
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void notifySliceChange_shouldWaitForThrottleInterval() {
+        mWorkerA.notifySliceChange();
+
+        idle(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL - 1);
+        verify(mResolver, never()).notifyChange(any(Collection.class), any(), anyInt());
+
+        idle(1);
+        verify(mResolver).notifyChange(mUrisCaptor.capture(), any(), eq(0));
+        assertThat(mUrisCaptor.getValue()).containsExactly(URI_A);
+    }
+
+    @Test
+    public void notifySliceChange_twoWorkersInSameWindow_shouldNotifyOnce() {
+        mWorkerA.notifySliceChange();
+        idle(NotifySliceChangeHandler.COALESCE_WINDOW / 2);
+        mWorkerB.notifySliceChange();
+
+        idle(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+
+        verify(mResolver).notifyChange(mUrisCaptor.capture(), any(), eq(0));
+        assertThat(mUrisCaptor.getValue()).containsExactly(URI_A, URI_B);
+    }
+
+    @Test
+    public void notifySliceChange_twoWorkersInDifferentWindows_shouldNotifySeparately() {
+        mWorkerA.notifySliceChange();
+        idle(NotifySliceChangeHandler.COALESCE_WINDOW * 2);
+        mWorkerB.notifySliceChange();
+
+        idle(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+
+        verify(mResolver, times(2)).notifyChange(mUrisCaptor.capture(), any(), eq(0));
+        assertThat(mUrisCaptor.getAllValues().get(0)).containsExactly(URI_A);
+        assertThat(mUrisCaptor.getAllValues().get(1)).containsExactly(URI_B);
+    }
+
+    @Test
+    public void notifySliceChange_pendingUpdate_shouldBeCoalesced() throws JSONException {
+        mWorkerA.notifySliceChange();
+        mWorkerA.notifySliceChange();
+
+        idle(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+
+        verify(mResolver).notifyChange(any(Collection.class), any(), anyInt());
+        assertThat(getUpdateRate(URI_A).getLong("coalesced")).isEqualTo(1);
+    }
+
+    @Test
+    public void notifySliceChange_notBound_shouldDoubleThrottleInterval() throws JSONException {
+        long interval = NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL;
+        // The first update only records its time.
+        notifyAndIdle(mWorkerA, interval);
+        assertThat(getThrottleInterval(URI_A)).isEqualTo(interval);
+
+        while (interval < NotifySliceChangeHandler.MAX_THROTTLE_INTERVAL) {
+            notifyAndIdle(mWorkerA, interval);
+            interval *= 2;
+            assertThat(getThrottleInterval(URI_A)).isEqualTo(interval);
+        }
+
+        notifyAndIdle(mWorkerA, interval);
+        assertThat(getThrottleInterval(URI_A))
+                .isEqualTo(NotifySliceChangeHandler.MAX_THROTTLE_INTERVAL);
+    }
+
+    @Test
+    public void notifySliceChange_bound_shouldHalveThrottleInterval() throws JSONException {
+        notifyAndIdle(mWorkerA, NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+        notifyAndIdle(mWorkerA, NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+        notifyAndIdle(mWorkerA, NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL * 2);
+        final long interval = getThrottleInterval(URI_A);
+        assertThat(interval).isEqualTo(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL * 4);
+
+        SliceBackgroundWorker.onSliceBound(URI_A);
+        notifyAndIdle(mWorkerA, interval);
+        assertThat(getThrottleInterval(URI_A)).isEqualTo(interval / 2);
+
+        SliceBackgroundWorker.onSliceBound(URI_A);
+        notifyAndIdle(mWorkerA, interval / 2);
+        SliceBackgroundWorker.onSliceBound(URI_A);
+        notifyAndIdle(mWorkerA, interval / 4);
+        assertThat(getThrottleInterval(URI_A))
+                .isEqualTo(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+    }
+
+    @Test
+    public void notifySliceChange_boundOtherSlice_shouldDoubleThrottleInterval()
+            throws JSONException {
+        notifyAndIdle(mWorkerA, NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+
+        SliceBackgroundWorker.onSliceBound(URI_B);
+        notifyAndIdle(mWorkerA, NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+
+        assertThat(getThrottleInterval(URI_A))
+                .isEqualTo(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL * 2);
+    }
+
+    @Test
+    public void unpin_shouldCancelUpdateAndResetThrottleInterval() throws JSONException {
+        notifyAndIdle(mWorkerA, NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+        notifyAndIdle(mWorkerA, NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+        mWorkerA.notifySliceChange();
+
+        mWorkerA.unpin();
+        idle(NotifySliceChangeHandler.MAX_THROTTLE_INTERVAL);
+
+        verify(mResolver, times(2)).notifyChange(any(Collection.class), any(), anyInt());
+        assertThat(getThrottleInterval(URI_A))
+                .isEqualTo(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+    }
+
+    @Test
+    public void updateResults_unchangedResults_shouldNotNotify() throws JSONException {
+        mWorkerA.updateResults(Arrays.asList("a", "b"));
+        idle(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+
+        mWorkerA.updateResults(Arrays.asList("a", "b"));
+        idle(NotifySliceChangeHandler.MAX_THROTTLE_INTERVAL);
+
+        verify(mResolver).notifyChange(any(Collection.class), any(), anyInt());
+        assertThat(mWorkerA.getResults()).containsExactly("a", "b").inOrder();
+        final JSONObject rate = getUpdateRate(URI_A);
+        assertThat(rate.getLong("changed_results")).isEqualTo(1);
+        assertThat(rate.getLong("unchanged_results")).isEqualTo(1);
+    }
+
+    @Test
+    public void updateResults_listChangedInPlace_shouldNotify() {
+        final List<String> results = new ArrayList<>(Collections.singletonList("a"));
+        mWorkerA.updateResults(results);
+        idle(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+
+        results.add("b");
+        mWorkerA.updateResults(results);
+        idle(NotifySliceChangeHandler.MIN_THROTTLE_INTERVAL);
+
+        verify(mResolver, times(2)).notifyChange(any(Collection.class), any(), anyInt());
+        assertThat(mWorkerA.getResults()).containsExactly("a", "b").inOrder();
+    }
+
+    private static void notifyAndIdle(TestWorker worker, long interval) {
+        worker.notifySliceChange();
+        idle(interval);
+    }
+
+    private static void idle(long millis) {
+        ShadowLooper.idleMainLooper(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private static long getThrottleInterval(Uri uri) throws JSONException {
+        return getUpdateRate(uri).getLong("throttle_interval_ms");
+    }
+
+    private static JSONObject getUpdateRate(Uri uri) throws JSONException {
+        return SliceBackgroundWorker.dumpUpdateRates().getJSONObject(uri.toString());
+    }
+
+    private static class TestWorker extends SliceBackgroundWorker<String> {
+
+        TestWorker(Context context, Uri uri) {
+            super(context, uri);
+        }
+
+        @Override
+        protected void onSlicePinned() {
+        }
+
+        @Override
+        protected void onSliceUnpinned() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
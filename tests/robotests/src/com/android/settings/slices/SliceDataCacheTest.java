@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.provider.SettingsSlicesContract;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class SliceDataCacheTest {
+
+    private SliceDataCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new SliceDataCache();
+    }
+
+    @Test
+    public void get_shouldCountHitsAndMisses() {
+        final SliceData data = getSliceData("key");
+        mCache.put(data.getUri(), data);
+
+        assertThat(mCache.get(data.getUri())).isSameAs(data);
+        assertThat(mCache.get(getUri("other"))).isNull();
+
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void put_overMaxEntries_shouldEvictLeastRecentlyUsed() {
+        final SliceData first = getSliceData("key0");
+        mCache.put(first.getUri(), first);
+        for (int i = 1; i <= SliceDataCache.MAX_ENTRIES; i++) {
+            final SliceData data = getSliceData("key" + i);
+            mCache.put(data.getUri(), data);
+        }
+
+        assertThat(mCache.contains(first.getUri())).isFalse();
+        assertThat(mCache.contains(getUri("key" + SliceDataCache.MAX_ENTRIES))).isTrue();
+    }
+
+    @Test
+    public void clear_shouldDropEntries() {
+        final SliceData data = getSliceData("key");
+        mCache.put(data.getUri(), data);
+
+        mCache.clear();
+
+        assertThat(mCache.contains(data.getUri())).isFalse();
+    }
+
+    @Test
+    public void getBucket_shouldUseUpperBounds() {
+        assertThat(SliceDataCache.getBucket(0)).isEqualTo(0);
+        assertThat(SliceDataCache.getBucket(1)).isEqualTo(0);
+        assertThat(SliceDataCache.getBucket(3)).isEqualTo(2);
+        assertThat(SliceDataCache.getBucket(10000))
+                .isEqualTo(SliceDataCache.LATENCY_BUCKETS_MS.length);
+    }
+
+    @Test
+    public void dump_shouldReportHitRate() throws Exception {
+        final SliceData data = getSliceData("key");
+        mCache.put(data.getUri(), data);
+        mCache.get(data.getUri());
+        mCache.get(getUri("other"));
+        mCache.recordBindLatency(3);
+
+        final JSONObject dump = mCache.dump();
+
+        assertThat(dump.getDouble("hit_rate")).isWithin(0.001).of(0.5);
+        assertThat(dump.getInt("size")).isEqualTo(1);
+        assertThat(dump.getJSONArray("bind_latency_ms").getJSONObject(2).getLong("count"))
+                .isEqualTo(1);
+    }
+
+    private static Uri getUri(String key) {
+        return new Uri.Builder()
+                .scheme(ContentResolver.SCHEME_CONTENT)
+                .authority(SettingsSliceProvider.SLICE_AUTHORITY)
+                .appendPath(SettingsSlicesContract.PATH_SETTING_INTENT)
+                .appendPath(key)
+                .build();
+    }
+
+    private static SliceData getSliceData(String key) {
+        return new SliceData.Builder()
+                .setKey(key)
+                .setUri(getUri(key))
+                .setTitle(SliceTestUtils.FAKE_TITLE)
+                .setFragmentName(SliceTestUtils.FAKE_FRAGMENT_NAME)
+                .setPreferenceControllerClassName(SliceTestUtils.FAKE_CONTROLLER_NAME)
+                .build();
+    }
+}
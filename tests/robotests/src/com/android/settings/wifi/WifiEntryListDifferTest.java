@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class WifiEntryListDifferTest {
+
+    @Test
+    public void diff_sameList_shouldBeEmpty() {
+        final Item a = new Item("a");
+        final Item b = new Item("b");
+
+        final WifiEntryListDiffer.Diff<Item> diff = diff(Arrays.asList(a, b), Arrays.asList(a, b));
+
+        assertThat(diff.isEmpty()).isTrue();
+        assertThat(diff.getSize()).isEqualTo(2);
+    }
+
+    @Test
+    public void diff_newKey_shouldInsert() {
+        final Item a = new Item("a");
+        final Item b = new Item("b");
+
+        final WifiEntryListDiffer.Diff<Item> diff = diff(Arrays.asList(a), Arrays.asList(a, b));
+
+        assertThat(diff.getOperations()).hasSize(1);
+        assertOperation(diff.getOperations().get(0), WifiEntryListDiffer.OP_INSERT, "b", 1);
+        assertThat(diff.getRemovedKeys()).isEmpty();
+    }
+
+    @Test
+    public void diff_missingKey_shouldRemove() {
+        final Item a = new Item("a");
+        final Item b = new Item("b");
+
+        final WifiEntryListDiffer.Diff<Item> diff = diff(Arrays.asList(a, b), Arrays.asList(a));
+
+        assertThat(diff.getOperations()).isEmpty();
+        assertThat(diff.getRemovedKeys()).containsExactly("b");
+    }
+
+    @Test
+    public void diff_reordered_shouldMove() {
+        final Item a = new Item("a");
+        final Item b = new Item("b");
+
+        final WifiEntryListDiffer.Diff<Item> diff = diff(Arrays.asList(a, b), Arrays.asList(b, a));
+
+        assertThat(diff.getOperations()).hasSize(2);
+        assertOperation(diff.getOperations().get(0), WifiEntryListDiffer.OP_MOVE, "b", 0);
+        assertOperation(diff.getOperations().get(1), WifiEntryListDiffer.OP_MOVE, "a", 1);
+    }
+
+    @Test
+    public void diff_newObjectForSameKey_shouldUpdate() {
+        final Item a = new Item("a");
+
+        final WifiEntryListDiffer.Diff<Item> diff =
+                diff(Arrays.asList(a), Arrays.asList(new Item("a")));
+
+        assertThat(diff.getOperations()).hasSize(1);
+        assertOperation(diff.getOperations().get(0), WifiEntryListDiffer.OP_UPDATE, "a", 0);
+    }
+
+    @Test
+    public void diff_duplicatedKey_shouldKeepFirst() {
+        final Item a = new Item("a");
+
+        final WifiEntryListDiffer.Diff<Item> diff =
+                diff(Collections.emptyList(), Arrays.asList(a, new Item("a")));
+
+        assertThat(diff.getOperations()).hasSize(1);
+        assertThat(diff.getOperations().get(0).item).isSameAs(a);
+        assertThat(diff.getSize()).isEqualTo(1);
+    }
+
+    private static WifiEntryListDiffer.Diff<Item> diff(List<Item> oldItems, List<Item> newItems) {
+        return WifiEntryListDiffer.diff(oldItems, newItems, item -> item.mKey);
+    }
+
+    private static void assertOperation(WifiEntryListDiffer.Operation<Item> operation, int type,
+            String key, int position) {
+        assertThat(operation.type).isEqualTo(type);
+        assertThat(operation.key).isEqualTo(key);
+        assertThat(operation.position).isEqualTo(position);
+    }
+
+    private static class Item {
+        final String mKey;
+
+        Item(String key) {
+            mKey = key;
+        }
+    }
+}
@@ -280,6 +280,20 @@ public class WifiSettings2Test {
         verify(mWifiSettings2).changeNextButtonState(anyBoolean());
     }
 
+    @Test
+    public void getUpdateDelay_unknownInterval_shouldReturnDefault() {
+        assertThat(WifiSettings2.getUpdateDelay(-1)).isEqualTo(
+                WifiSettings2.DEFAULT_UPDATE_DELAY_MS);
+    }
+
+    @Test
+    public void getUpdateDelay_frequentUpdates_shouldWaitLonger() {
+        assertThat(WifiSettings2.getUpdateDelay(200)).isEqualTo(
+                WifiSettings2.MAX_UPDATE_DELAY_MS);
+        assertThat(WifiSettings2.getUpdateDelay(10_000)).isEqualTo(
+                WifiSettings2.MIN_UPDATE_DELAY_MS);
+    }
+
     @Test
     public void openSubscriptionHelpPage_shouldCallStartActivityForResult() {
         doReturn(new Intent()).when(mWifiSettings2).getHelpIntent(mContext, FAKE_URI_STRING);
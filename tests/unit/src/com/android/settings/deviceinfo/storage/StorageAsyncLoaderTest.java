@@ -23,10 +23,13 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.UserInfo;
@@ -221,6 +224,33 @@ public class StorageAsyncLoaderTest {
         assertThat(result.get(PRIMARY_USER_ID).otherAppsSize).isEqualTo(DEFAULT_QUOTA + 11);
     }
 
+    @Test
+    public void testCachedPackageSizesAreReused() throws Exception {
+        AppStorageSizeCache sizeCache = mock(AppStorageSizeCache.class);
+        mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource, mPackageManager,
+                sizeCache);
+        ApplicationInfo info = new ApplicationInfo();
+        info.packageName = PACKAGE_NAME_1;
+        info.category = ApplicationInfo.CATEGORY_UNDEFINED;
+        mInfo.add(info);
+        PackageInfo packageInfo = new PackageInfo();
+        packageInfo.lastUpdateTime = 1000L;
+        when(mPackageManager.getPackageInfoAsUser(PACKAGE_NAME_1, 0, PRIMARY_USER_ID))
+                .thenReturn(packageInfo);
+        AppStorageSizeCache.Entry entry = new AppStorageSizeCache.Entry();
+        entry.codeBytes = 1;
+        entry.dataBytes = 10;
+        entry.cacheQuota = DEFAULT_QUOTA;
+        when(sizeCache.get("id", PRIMARY_USER_ID, PACKAGE_NAME_1, 1000L)).thenReturn(entry);
+
+        SparseArray<StorageAsyncLoader.AppsStorageResult> result = mLoader.loadInBackground();
+
+        assertThat(result.get(PRIMARY_USER_ID).otherAppsSize).isEqualTo(11L);
+        verify(mSource, never()).getStatsForPackage(anyString(), anyString(),
+                any(UserHandle.class));
+        verify(sizeCache).save();
+    }
+
     private ApplicationInfo addPackage(String packageName, long cacheSize, long codeSize,
             long dataSize, int category) throws Exception {
         StorageStatsSource.AppStorageStats storageStats =